@@ -33,6 +33,11 @@ public interface Constant {
 	public static final String VALIDATION_REPORT = "validation_report";
 	public static final String REPORT_FILE = "action_report.json";
 	public static final String VALIDATION_FILE = "validation_report.json";
+	public static final String REPORT_WRITER = "report_writer";
+	public static final String METRICS = "metrics";
+	public static final String METRICS_FILE = "metrics.json";
+	public static final String CHECKPOINT = "checkpoint";
+	public static final String CHECKPOINT_FILE = "checkpoint.log";
 	public static final String CANCEL_ASKED = "cancel_asked";
 	public static final String COMMAND_CANCELLED = "command_cancelled";
 
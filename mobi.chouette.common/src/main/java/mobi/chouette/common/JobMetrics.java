@@ -0,0 +1,346 @@
+package mobi.chouette.common;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.chain.Chain;
+import mobi.chouette.common.chain.Command;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * performance telemetry of a job
+ * <p>
+ * phases are timed commands : execution count, total and maximum elapsed time
+ * and bytes allocated by the executing thread ; counters are entities by type,
+ * bytes read and written, rows copied and database round trips.
+ * <p>
+ * metrics of the running job are stored in the context under
+ * {@link Constant#METRICS} and bound to the executing thread for the layers
+ * without context (dao, hibernate) ; all operations are thread safe and do
+ * nothing when no job is measured.
+ */
+@Log4j
+public class JobMetrics {
+
+	public static final String ENTITIES = "entities.";
+	public static final String BYTES_READ = "bytes_read";
+	public static final String BYTES_WRITTEN = "bytes_written";
+	public static final String COPY_ROWS = "copy_rows";
+	public static final String DB_ROUND_TRIPS = "db_round_trips";
+	public static final String SEQUENCE_ROUND_TRIPS = "sequence_round_trips";
+
+	private static final ThreadLocal<JobMetrics> current = new ThreadLocal<>();
+
+	private static final ConcurrentMap<Long, JobMetrics> active = new ConcurrentHashMap<>();
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private static final boolean allocationSupported = isAllocationSupported();
+
+	@Getter
+	private final Long id;
+
+	@Getter
+	private final long startTime = System.currentTimeMillis();
+
+	private volatile long endTime = 0;
+
+	// phases in first execution order
+	private final Map<String, Phase> phases = new LinkedHashMap<>();
+
+	private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+	public JobMetrics(Long id) {
+		this.id = id;
+	}
+
+	/**
+	 * @param context
+	 * @return metrics of the job, null if not measured
+	 */
+	public static JobMetrics get(Context context) {
+		return context == null ? null : (JobMetrics) context.get(Constant.METRICS);
+	}
+
+	/**
+	 * add to a counter of the job metrics found in context
+	 */
+	public static void count(Context context, String name, long delta) {
+		JobMetrics metrics = get(context);
+		if (metrics != null)
+			metrics.add(name, delta);
+	}
+
+	/**
+	 * add to a counter of the job metrics bound to the current thread
+	 */
+	public static void count(String name, long delta) {
+		JobMetrics metrics = current.get();
+		if (metrics != null)
+			metrics.add(name, delta);
+	}
+
+	/**
+	 * execute a command, timed as a phase named by its class when the job is
+	 * measured ; chains are not timed, their commands are
+	 */
+	public static boolean execute(Command command, Context context) throws Exception {
+		JobMetrics metrics = get(context);
+		if (metrics == null || command instanceof Chain)
+			return command.execute(context);
+		Sample sample = metrics.start(getPhaseName(command));
+		try {
+			return command.execute(context);
+		} finally {
+			metrics.stop(sample);
+		}
+	}
+
+	/**
+	 * @return command class simple name, without proxy suffix ; anonymous
+	 *         commands are named by their enclosing class
+	 */
+	public static String getPhaseName(Command command) {
+		String name = command.getClass().getSimpleName();
+		if (name.isEmpty()) {
+			name = command.getClass().getName();
+			name = name.substring(name.lastIndexOf('.') + 1);
+			return name.substring(0, name.indexOf('$'));
+		}
+		int index = name.indexOf("$$");
+		return index > 0 ? name.substring(0, index) : name;
+	}
+
+	/**
+	 * @return metrics bound to the current thread, null if none
+	 */
+	public static JobMetrics current() {
+		return current.get();
+	}
+
+	/**
+	 * bind metrics to the current thread, null to unbind
+	 */
+	public static void setCurrent(JobMetrics metrics) {
+		if (metrics == null)
+			current.remove();
+		else
+			current.set(metrics);
+	}
+
+	/**
+	 * @param id
+	 *            job id
+	 * @return metrics of a running job, null if none
+	 */
+	public static JobMetrics getActive(Long id) {
+		return id == null ? null : active.get(id);
+	}
+
+	/**
+	 * @return ids of the running jobs with metrics
+	 */
+	public static List<Long> getActiveIds() {
+		List<Long> result = new ArrayList<>(active.keySet());
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * publish metrics of a running job
+	 */
+	public void register() {
+		active.put(id, this);
+	}
+
+	public void unregister() {
+		active.remove(id, this);
+	}
+
+	/**
+	 * mark job end
+	 */
+	public void stop() {
+		endTime = System.currentTimeMillis();
+	}
+
+	public void add(String name, long delta) {
+		AtomicLong counter = counters.get(name);
+		if (counter == null) {
+			AtomicLong previous = counters.putIfAbsent(name, counter = new AtomicLong());
+			if (previous != null)
+				counter = previous;
+		}
+		counter.addAndGet(delta);
+	}
+
+	/**
+	 * count entities of a type, as {@link #ENTITIES}type
+	 */
+	public void addEntities(String type, long delta) {
+		add(ENTITIES + type, delta);
+	}
+
+	/**
+	 * @return counter value, 0 if never counted
+	 */
+	public long getCounter(String name) {
+		AtomicLong counter = counters.get(name);
+		return counter == null ? 0L : counter.get();
+	}
+
+	/**
+	 * @return phase metrics, null if never executed
+	 */
+	public Phase getPhase(String name) {
+		synchronized (phases) {
+			return phases.get(name);
+		}
+	}
+
+	/**
+	 * start timing a phase on the current thread
+	 */
+	public Sample start(String phase) {
+		return new Sample(phase, System.nanoTime(), allocatedBytes());
+	}
+
+	/**
+	 * end timing a phase started on the current thread
+	 */
+	public void stop(Sample sample) {
+		long elapsed = System.nanoTime() - sample.nanos;
+		long allocated = sample.allocated < 0 ? -1L : Math.max(0L, allocatedBytes() - sample.allocated);
+		synchronized (phases) {
+			Phase phase = phases.get(sample.phase);
+			if (phase == null) {
+				phase = new Phase();
+				phases.put(sample.phase, phase);
+			}
+			phase.count++;
+			phase.totalNanos += elapsed;
+			phase.maxNanos = Math.max(phase.maxNanos, elapsed);
+			if (allocated >= 0)
+				phase.allocatedBytes += allocated;
+		}
+	}
+
+	/**
+	 * @return compact json form
+	 */
+	public String toJson() {
+		try {
+			JSONObject object = new JSONObject();
+			object.put("job_id", id);
+			object.put("start_time", startTime);
+			long end = endTime;
+			if (end != 0)
+				object.put("end_time", end);
+			object.put("duration_ms", (end == 0 ? System.currentTimeMillis() : end) - startTime);
+			JSONObject counterObject = new JSONObject();
+			for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+				counterObject.put(entry.getKey(), entry.getValue().get());
+			}
+			object.put("counters", counterObject);
+			// jettison objects do not keep insertion order
+			List<JSONObject> phaseList = new ArrayList<>();
+			synchronized (phases) {
+				for (Map.Entry<String, Phase> entry : phases.entrySet()) {
+					Phase phase = entry.getValue();
+					JSONObject phaseObject = new JSONObject();
+					phaseObject.put("name", entry.getKey());
+					phaseObject.put("count", phase.count);
+					phaseObject.put("total_ms", phase.totalNanos / 1000000L);
+					phaseObject.put("max_ms", phase.maxNanos / 1000000L);
+					if (allocationSupported)
+						phaseObject.put("allocated_bytes", phase.allocatedBytes);
+					phaseList.add(phaseObject);
+				}
+			}
+			object.put("phases", phaseList);
+			return object.toString();
+		} catch (JSONException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * write metrics in {@link Constant#METRICS_FILE} of job directory
+	 */
+	public void save(Path directory) throws IOException {
+		Path target = directory.resolve(Constant.METRICS_FILE);
+		Path temp = directory.resolve(Constant.METRICS_FILE + ".tmp");
+		Files.write(temp, toJson().getBytes(StandardCharsets.UTF_8));
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public String toString() {
+		return toJson();
+	}
+
+	private static long allocatedBytes() {
+		if (!allocationSupported)
+			return -1L;
+		return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static boolean isAllocationSupported() {
+		try {
+			if (threads instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+				return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+			}
+		} catch (Throwable e) {
+			log.warn("thread allocated memory not available : " + e.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * running phase measure
+	 */
+	public static class Sample {
+		private final String phase;
+		private final long nanos;
+		private final long allocated;
+
+		private Sample(String phase, long nanos, long allocated) {
+			this.phase = phase;
+			this.nanos = nanos;
+			this.allocated = allocated;
+		}
+	}
+
+	/**
+	 * cumulated measures of a phase
+	 */
+	public static class Phase {
+		@Getter
+		private long count;
+		@Getter
+		private long totalNanos;
+		@Getter
+		private long maxNanos;
+		@Getter
+		private long allocatedBytes;
+	}
+}
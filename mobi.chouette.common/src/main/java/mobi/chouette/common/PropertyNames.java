@@ -5,4 +5,9 @@ public static final String ROOT_DIRECTORY = ".directory";
 public static final String ADMIN_KEY = ".admin.key";
 public static final String MAX_STARTED_JOBS = ".started.jobs.max";
 public static final String MAX_COPY_BY_JOB = ".copy.by.import.max";
+public static final String MAX_UPLOAD_SIZE = ".upload.size.max";
+public static final String MAX_CONCURRENT_JOBS = ".concurrent.jobs.max";
+public static final String JOB_PRIORITY = ".job.priority.";
+public static final String JOB_AGING_DELAY = ".job.aging.delay";
+public static final String BULK_MERGE = ".bulk.merge";
 }
@@ -10,6 +10,7 @@ import lombok.Getter;
 import lombok.Setter;
 import mobi.chouette.common.Constant;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.JobMetrics;
 
 public class ChainCommand implements Chain, Constant {
 
@@ -44,7 +45,7 @@ public class ChainCommand implements Chain, Constant {
 		boolean result = SUCCESS;
 		for (Command command : commands) {
 			try {
-				result = command.execute(context);
+				result = JobMetrics.execute(command, context);
 				if (result == ERROR && !ignored) {
 					break;
 				}
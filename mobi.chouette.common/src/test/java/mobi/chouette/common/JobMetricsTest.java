@@ -0,0 +1,167 @@
+package mobi.chouette.common;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mobi.chouette.common.chain.ChainCommand;
+import mobi.chouette.common.chain.Command;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class JobMetricsTest implements Constant {
+
+	@Test(groups = { "metrics" }, description = "chain commands are timed and counted")
+	public void testChain() throws Exception {
+		JobMetrics metrics = new JobMetrics(12L);
+		Context context = new Context();
+		context.put(METRICS, metrics);
+
+		ChainCommand chain = new ChainCommand();
+		ChainCommand inner = new ChainCommand();
+		inner.add(new ReadCommand());
+		inner.add(new WriteCommand());
+		chain.add(new ReadCommand());
+		chain.add(inner);
+		chain.add(new ReadCommand());
+		Assert.assertEquals(chain.execute(context), SUCCESS);
+
+		Assert.assertEquals(metrics.getPhase("ReadCommand").getCount(), 3L);
+		Assert.assertEquals(metrics.getPhase("WriteCommand").getCount(), 1L);
+		Assert.assertNull(metrics.getPhase("ChainCommand"), "chains are not timed");
+		Assert.assertTrue(metrics.getPhase("WriteCommand").getMaxNanos() > 0);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.ENTITIES + "line"), 4L);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.BYTES_READ), 300L);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.BYTES_WRITTEN), 1000L);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.COPY_ROWS), 0L, "never counted");
+	}
+
+	@Test(groups = { "metrics" }, description = "failing command is timed")
+	public void testFailure() throws Exception {
+		JobMetrics metrics = new JobMetrics(13L);
+		Context context = new Context();
+		context.put(METRICS, metrics);
+		ChainCommand chain = new ChainCommand();
+		chain.add(new Command() {
+			@Override
+			public boolean execute(Context context) throws Exception {
+				throw new IllegalStateException("failure");
+			}
+		});
+		try {
+			chain.execute(context);
+			Assert.fail("exception must be thrown");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		Assert.assertEquals(metrics.getPhase("JobMetricsTest").getCount(), 1L, "anonymous command named by owner");
+	}
+
+	@Test(groups = { "metrics" }, description = "counters without context from many threads")
+	public void testCurrent() throws Exception {
+		final JobMetrics metrics = new JobMetrics(14L);
+		JobMetrics.count(JobMetrics.DB_ROUND_TRIPS, 1);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.DB_ROUND_TRIPS), 0L, "unbound thread is not counted");
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						JobMetrics.setCurrent(metrics);
+						try {
+							for (int j = 0; j < 1000; j++) {
+								JobMetrics.count(JobMetrics.DB_ROUND_TRIPS, 1);
+								JobMetrics.Sample sample = metrics.start("copy");
+								JobMetrics.count(JobMetrics.COPY_ROWS, 10);
+								metrics.stop(sample);
+							}
+						} finally {
+							JobMetrics.setCurrent(null);
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertEquals(metrics.getCounter(JobMetrics.DB_ROUND_TRIPS), 8000L);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.COPY_ROWS), 80000L);
+		Assert.assertEquals(metrics.getPhase("copy").getCount(), 8000L);
+	}
+
+	@Test(groups = { "metrics" }, description = "metrics are published then saved")
+	public void testSave() throws Exception {
+		JobMetrics metrics = new JobMetrics(15L);
+		metrics.register();
+		Assert.assertSame(JobMetrics.getActive(15L), metrics);
+		Assert.assertTrue(JobMetrics.getActiveIds().contains(15L));
+
+		Context context = new Context();
+		context.put(METRICS, metrics);
+		JobMetrics.execute(new WriteCommand(), context);
+		metrics.stop();
+		metrics.unregister();
+		Assert.assertNull(JobMetrics.getActive(15L));
+
+		Path directory = Files.createTempDirectory("metrics");
+		try {
+			metrics.save(directory);
+			Path file = directory.resolve(METRICS_FILE);
+			Assert.assertTrue(Files.exists(file));
+			JSONObject object = new JSONObject(new String(Files.readAllBytes(file), "UTF-8"));
+			Assert.assertEquals(object.getLong("job_id"), 15L);
+			Assert.assertTrue(object.has("end_time"));
+			Assert.assertEquals(object.getJSONObject("counters").getLong(JobMetrics.BYTES_WRITTEN), 1000L);
+			Assert.assertEquals(object.getJSONObject("counters").getLong(JobMetrics.ENTITIES + "line"), 1L);
+			JSONArray phases = object.getJSONArray("phases");
+			Assert.assertEquals(phases.length(), 1);
+			Assert.assertEquals(phases.getJSONObject(0).getString("name"), "WriteCommand");
+			Assert.assertEquals(phases.getJSONObject(0).getLong("count"), 1L);
+		} finally {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	@Test(groups = { "metrics" }, description = "nothing measured without metrics")
+	public void testNoMetrics() throws Exception {
+		Context context = new Context();
+		JobMetrics.count(context, JobMetrics.BYTES_READ, 10);
+		Assert.assertTrue(JobMetrics.execute(new ReadCommand(), context));
+		Assert.assertNull(JobMetrics.get(context));
+	}
+
+	private static class ReadCommand implements Command {
+		@Override
+		public boolean execute(Context context) throws Exception {
+			JobMetrics.count(context, JobMetrics.BYTES_READ, 100);
+			JobMetrics.count(context, JobMetrics.ENTITIES + "line", 1);
+			return SUCCESS;
+		}
+	}
+
+	private static class WriteCommand implements Command {
+		@Override
+		public boolean execute(Context context) throws Exception {
+			JobMetrics.count(context, JobMetrics.BYTES_WRITTEN, 1000);
+			JobMetrics.count(context, JobMetrics.ENTITIES + "line", 1);
+			Thread.sleep(1);
+			return SUCCESS;
+		}
+	}
+}
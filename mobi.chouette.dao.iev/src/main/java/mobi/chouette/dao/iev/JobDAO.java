@@ -1,12 +1,13 @@
 package mobi.chouette.dao.iev;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
-import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -57,33 +58,64 @@ public class JobDAO extends GenericDAOImpl<Job> {
 		return result;
 	}
 
-	public List<Job> findByReferentialAndAction(String referential, String action[]) {
-		return findByReferentialAndAction(referential, action, new Job.STATUS[0]);
-	}
-	
-	public List<Job> findByReferentialAndAction(String referential, String action[], Job.STATUS[] status) {
-		List<Job> result;
+	/**
+	 * jobs of referential changed since version
+	 * 
+	 * @param referential
+	 * @param action
+	 *            actions, all when null or empty
+	 * @param status
+	 *            status, all but CREATED when empty
+	 * @param version
+	 *            0 : all but DELETED jobs ; &gt; 0 : jobs updated after version
+	 *            time ; &lt; 0 : none
+	 * @return jobs ordered by creation
+	 */
+	public List<Job> findByReferentialAndVersion(String referential, String action[], Job.STATUS[] status,
+			long version) {
+		if (version < 0)
+			return new ArrayList<>();
 		CriteriaBuilder builder = em.getCriteriaBuilder();
 		CriteriaQuery<Job> criteria = builder.createQuery(type);
 		Root<Job> root = criteria.from(type);
-		Predicate statusPredicate = builder.notEqual(root.get(Job_.status),
-				Job.STATUS.CREATED); // Created jobs are only in initialization phase, should not be sent
-		if(status.length != 0) {
-			 statusPredicate = root.get(Job_.status).in(Arrays.asList(status));
+		List<Predicate> predicates = new ArrayList<>();
+		predicates.add(builder.equal(root.get(Job_.referential), referential));
+		if (action != null && action.length != 0) {
+			predicates.add(root.get(Job_.action).in(Arrays.asList(action)));
 		}
-		Predicate referentialPredicate = builder.equal(root.get(Job_.referential),
-				referential);
-
-		if(action.length != 0) {
-			Predicate actionPredicate = root.get(Job_.action).in(Arrays.asList(action)); 
-			criteria.where( builder.and(referentialPredicate, actionPredicate,statusPredicate ));
+		if (status.length != 0) {
+			predicates.add(root.get(Job_.status).in(Arrays.asList(status)));
+		} else {
+			// Created jobs are only in initialization phase, should not be sent
+			predicates.add(builder.notEqual(root.get(Job_.status), Job.STATUS.CREATED));
+		}
+		if (version == 0) {
+			predicates.add(builder.notEqual(root.get(Job_.status), Job.STATUS.DELETED));
 		} else {
-			criteria.where( builder.and(referentialPredicate, statusPredicate ));
+			predicates.add(builder.greaterThan(root.get(Job_.updated), new Date(version)));
 		}
+		criteria.where(builder.and(predicates.toArray(new Predicate[predicates.size()])));
 		criteria.orderBy(builder.asc(root.get(Job_.created)));
 		TypedQuery<Job> query = em.createQuery(criteria);
-		result = query.getResultList();
-		return result;
+		return query.getResultList();
+	}
+
+	/**
+	 * cheap summary of referential jobs : count and last update time of jobs
+	 * visible in listings ; any job change of the referential changes it
+	 * 
+	 * @param referential
+	 * @return count-time token
+	 */
+	public String getVersion(String referential) {
+		TypedQuery<Object[]> query = em.createQuery(
+				"select count(j), max(j.updated) from Job j where j.referential = ?1 and j.status <> ?2",
+				Object[].class);
+		query.setParameter(1, referential);
+		query.setParameter(2, Job.STATUS.CREATED);
+		Object[] result = query.getSingleResult();
+		Date updated = (Date) result[1];
+		return result[0] + "-" + (updated == null ? 0 : updated.getTime());
 	}
 
 	public List<Job> findByStatus(Job.STATUS status) {
@@ -101,23 +133,6 @@ public class JobDAO extends GenericDAOImpl<Job> {
 	}
 
 
-	@SuppressWarnings("unchecked")
-	public Job getNextJob(String referential) {
-
-		Job result = null;
-		Query query = em
-				.createQuery("from Job j where j.referential = ?1 and j.status in ( ?2 ) order by id");
-		query.setParameter(1, referential);
-		query.setParameter(2, Arrays.asList(Job.STATUS.STARTED, Job.STATUS.SCHEDULED));
-		List<Job> list = query.getResultList();
-		if (list != null && !list.isEmpty()) {
-			if (list.get(0).getStatus().equals(Job.STATUS.SCHEDULED)) {
-				result = list.get(0);
-			}
-		}
-		return result;
-	}
-
 	public int deleteAll(String referential) {
 		List<Job> list = findByReferential(referential,new Job.STATUS[0]);
 		for (Job entity : list) {
@@ -0,0 +1,180 @@
+package mobi.chouette.dao;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.JobMetrics;
+
+import org.jboss.jca.adapters.jdbc.WrappedConnection;
+import org.postgresql.PGConnection;
+
+/**
+ * COPY into a temporary staging table then merge into target table
+ * <p>
+ * the staging table holds target columns plus an id column and extra columns
+ * used to resolve references; ids of existing rows are taken from target
+ * table by objectid, new rows get ids from target sequence.
+ */
+@Log4j
+class BulkMerge {
+
+	private final String table;
+
+	private final String staging;
+
+	private final String[] columns;
+
+	private final Connection connection;
+
+	/**
+	 * @param connection
+	 * @param table
+	 *            target table
+	 * @param columns
+	 *            target columns copied from staging, without id
+	 */
+	BulkMerge(Connection connection, String table, String[] columns) {
+		this.connection = connection;
+		this.table = table;
+		this.staging = "tmp_" + table;
+		this.columns = columns;
+	}
+
+	/**
+	 * create staging table, dropped at transaction end
+	 *
+	 * @param definition
+	 *            column definitions
+	 */
+	void create(String definition) throws SQLException {
+		execute("DROP TABLE IF EXISTS " + staging);
+		execute("CREATE TEMPORARY TABLE " + staging + " (" + definition + ") ON COMMIT DROP");
+	}
+
+	/**
+	 * copy data into staging table and resolve ids
+	 *
+	 * @param copyColumns
+	 *            columns of data lines
+	 * @param data
+	 * @return copied rows
+	 */
+	long copy(String copyColumns, String data) throws SQLException {
+		long count = 0;
+		try {
+			PGConnection pgConnection = (PGConnection) ((WrappedConnection) connection).getUnderlyingConnection();
+			org.postgresql.copy.CopyManager manager = pgConnection.getCopyAPI();
+			count = manager.copyIn("COPY " + staging + "(" + copyColumns + ") FROM STDIN WITH DELIMITER '|'",
+					new StringReader(data));
+			JobMetrics.count(JobMetrics.DB_ROUND_TRIPS, 1);
+			JobMetrics.count(JobMetrics.COPY_ROWS, count);
+		} catch (IOException e) {
+			throw new SQLException(e);
+		}
+		execute("UPDATE " + staging + " t SET id = s.id FROM " + table + " s WHERE s.objectid = t.objectid");
+		execute("UPDATE " + staging + " SET id = nextval('" + table + "_id_seq') WHERE id IS NULL");
+		return count;
+	}
+
+	/**
+	 * resolve a reference column with an objectid column of staging table
+	 *
+	 * @param column
+	 *            reference column
+	 * @param objectIdColumn
+	 *            objectid column of referenced row
+	 * @param referenced
+	 *            referenced table
+	 */
+	int resolve(String column, String objectIdColumn, String referenced) throws SQLException {
+		return execute("UPDATE " + staging + " t SET " + column + " = r.id FROM " + referenced + " r WHERE r.objectid = t."
+				+ objectIdColumn + " AND t." + column + " IS NULL");
+	}
+
+	/**
+	 * return object ids of existing rows with a changed column value
+	 *
+	 * @param column
+	 * @param result
+	 */
+	void changes(String column, MergeResult result) throws SQLException {
+		String sql = "SELECT t.objectid FROM " + staging + " t JOIN " + table + " s ON s.id = t.id WHERE s." + column
+				+ " IS DISTINCT FROM t." + column;
+		JobMetrics.count(JobMetrics.DB_ROUND_TRIPS, 1);
+		try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+			while (rs.next()) {
+				result.getChanges(column).add(rs.getString(1));
+			}
+		}
+	}
+
+	/**
+	 * merge staging table into target table with a single statement
+	 *
+	 * @param values
+	 *            update expression for each column ; null to keep old value
+	 *            when staging value is null
+	 * @param inserts
+	 *            insert expression for each column ; null for staging value
+	 * @return merge counts
+	 */
+	MergeResult merge(String[] values, String[] inserts) throws SQLException {
+		StringBuilder set = new StringBuilder();
+		StringBuilder newRow = new StringBuilder();
+		StringBuilder oldRow = new StringBuilder();
+		StringBuilder insert = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			String column = columns[i];
+			String value = values[i] != null ? values[i] : "coalesce(t." + column + ", s." + column + ")";
+			if (i > 0) {
+				set.append(", ");
+				newRow.append(", ");
+				oldRow.append(", ");
+				insert.append(", ");
+			}
+			set.append(column).append(" = ").append(value);
+			newRow.append(value);
+			oldRow.append("s.").append(column);
+			insert.append(inserts[i] != null ? inserts[i] : "t." + column);
+		}
+		String names = join(columns);
+		String sql = "WITH upd AS (UPDATE " + table + " s SET " + set + " FROM " + staging + " t WHERE s.id = t.id AND ("
+				+ newRow + ") IS DISTINCT FROM (" + oldRow + ") RETURNING s.id), " //
+				+ "ins AS (INSERT INTO " + table + " (id, " + names + ") SELECT t.id, " + insert + " FROM " + staging
+				+ " t WHERE NOT EXISTS (SELECT 1 FROM " + table + " s WHERE s.id = t.id) RETURNING id) " //
+				+ "SELECT (SELECT count(*) FROM ins), (SELECT count(*) FROM upd), (SELECT count(*) FROM " + staging + ")";
+		MergeResult result = new MergeResult();
+		JobMetrics.count(JobMetrics.DB_ROUND_TRIPS, 1);
+		try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+			rs.next();
+			result.setCreated(rs.getInt(1));
+			result.setUpdated(rs.getInt(2));
+			result.setUnchanged(rs.getInt(3) - result.getCreated() - result.getUpdated());
+		}
+		execute("DROP TABLE " + staging);
+		log.info("[DSU] merge " + table + " " + result);
+		return result;
+	}
+
+	private int execute(String sql) throws SQLException {
+		JobMetrics.count(JobMetrics.DB_ROUND_TRIPS, 1);
+		try (Statement statement = connection.createStatement()) {
+			return statement.executeUpdate(sql);
+		}
+	}
+
+	private static String join(String[] values) {
+		StringBuilder builder = new StringBuilder();
+		for (String value : values) {
+			if (builder.length() > 0)
+				builder.append(", ");
+			builder.append(value);
+		}
+		return builder.toString();
+	}
+}
@@ -1,5 +1,7 @@
 package mobi.chouette.dao;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,9 +17,17 @@ import javax.persistence.criteria.Root;
 import mobi.chouette.model.ConnectionLink;
 import mobi.chouette.model.ConnectionLink_;
 
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
+
 @Stateless
 public class ConnectionLinkDAOImpl extends GenericDAOImpl<ConnectionLink> implements ConnectionLinkDAO{
 
+	private static final String[] COLUMNS = { "departure_id", "arrival_id", "objectid", "object_version",
+			"creation_time", "creator_id", "name", "comment", "link_distance", "link_type", "default_duration",
+			"frequent_traveller_duration", "occasional_traveller_duration", "mobility_restricted_traveller_duration",
+			"mobility_restricted_suitability", "stairs_availability", "lift_availability", "int_user_needs" };
+
 	public ConnectionLinkDAOImpl() {
 		super(ConnectionLink.class);
 	}
@@ -41,4 +51,43 @@ public class ConnectionLinkDAOImpl extends GenericDAOImpl<ConnectionLink> implem
 		result = query.executeUpdate();
 		return result;
 	}
+
+	@Override
+	public MergeResult merge(final String data) {
+
+		Session session = em.unwrap(Session.class);
+
+		return session.doReturningWork(new ReturningWork<MergeResult>() {
+
+			@Override
+			public MergeResult execute(Connection connection) throws SQLException {
+				BulkMerge merge = new BulkMerge(connection, "connection_links", COLUMNS);
+				merge.create("id bigint, departure_id bigint, arrival_id bigint, "
+						+ "departure_objectid character varying(255), arrival_objectid character varying(255), "
+						+ "objectid character varying(255), object_version integer, "
+						+ "creation_time timestamp without time zone, creator_id character varying(255), "
+						+ "name character varying(255), comment character varying(255), "
+						+ "link_distance numeric(19,2), computed_distance numeric(19,2), "
+						+ "link_type character varying(255), default_duration time without time zone, "
+						+ "frequent_traveller_duration time without time zone, "
+						+ "occasional_traveller_duration time without time zone, "
+						+ "mobility_restricted_traveller_duration time without time zone, "
+						+ "mobility_restricted_suitability boolean, stairs_availability boolean, "
+						+ "lift_availability boolean, int_user_needs integer");
+				merge.copy("objectid, departure_objectid, arrival_objectid, object_version, creation_time, "
+						+ "creator_id, name, comment, link_distance, computed_distance, link_type, default_duration, "
+						+ "frequent_traveller_duration, occasional_traveller_duration, "
+						+ "mobility_restricted_traveller_duration, mobility_restricted_suitability, "
+						+ "stairs_availability, lift_availability, int_user_needs", data);
+				merge.resolve("departure_id", "departure_objectid", "stop_areas");
+				merge.resolve("arrival_id", "arrival_objectid", "stop_areas");
+
+				String[] values = new String[COLUMNS.length];
+				values[8] = "coalesce(t.link_distance, s.link_distance, t.computed_distance)";
+				String[] inserts = new String[COLUMNS.length];
+				inserts[8] = "coalesce(t.link_distance, t.computed_distance)";
+				return merge.merge(values, inserts);
+			}
+		});
+	}
 }
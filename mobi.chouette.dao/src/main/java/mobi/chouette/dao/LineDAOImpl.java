@@ -3,6 +3,9 @@ package mobi.chouette.dao;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Root;
 
 import mobi.chouette.model.Line;
 
@@ -17,5 +20,15 @@ public class LineDAOImpl extends GenericDAOImpl<Line> implements LineDAO {
 	public void setEntityManager(EntityManager em) {
 		this.em = em;
 	}
-	
+
+	@Override
+	public void updateContentHash(String objectId, String contentHash) {
+		CriteriaBuilder builder = em.getCriteriaBuilder();
+		CriteriaUpdate<Line> criteria = builder.createCriteriaUpdate(Line.class);
+		Root<Line> root = criteria.from(Line.class);
+		criteria.set(root.<String> get("contentHash"), contentHash);
+		criteria.where(builder.equal(root.get("objectId"), objectId));
+		em.createQuery(criteria).executeUpdate();
+	}
+
 }
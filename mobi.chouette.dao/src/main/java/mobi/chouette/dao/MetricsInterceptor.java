@@ -0,0 +1,22 @@
+package mobi.chouette.dao;
+
+import mobi.chouette.common.JobMetrics;
+
+import org.hibernate.EmptyInterceptor;
+
+/**
+ * count statements sent by hibernate as database round trips of the job
+ * metrics bound to the current thread
+ * <p>
+ * statements are counted when prepared : a jdbc batch counts once
+ */
+public class MetricsInterceptor extends EmptyInterceptor {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public String onPrepareStatement(String sql) {
+		JobMetrics.count(JobMetrics.DB_ROUND_TRIPS, 1);
+		return sql;
+	}
+}
@@ -0,0 +1,140 @@
+package mobi.chouette.dao;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+
+import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.JobMetrics;
+
+import org.jboss.jca.adapters.jdbc.WrappedConnection;
+import org.postgresql.PGConnection;
+
+/**
+ * object ids joined by a bulk statement
+ * <p>
+ * ids are bound as a single text array, so statement text does not depend on
+ * their count and its plan is reused ; above {@link #COPY_THRESHOLD} ids, they
+ * are copied into a temporary table, analyzed to give the planner its real
+ * size.
+ * <p>
+ * statements reference ids as relation <code>ids</code> with a column
+ * <code>objectid</code>, for example
+ * <code>DELETE FROM t USING %s WHERE t.objectid = ids.objectid</code>.
+ */
+@Log4j
+class ObjectIdFilter {
+
+	/**
+	 * id count from which ids are copied into a temporary table
+	 */
+	static final int COPY_THRESHOLD = 10000;
+
+	static final String ARRAY_RELATION = "unnest(?::text[]) AS ids(objectid)";
+
+	static final String TABLE = "tmp_object_ids";
+
+	static final String TABLE_RELATION = TABLE + " ids";
+
+	private final Connection connection;
+
+	private final Collection<String> objectIds;
+
+	ObjectIdFilter(Connection connection, Collection<String> objectIds) {
+		this.connection = connection;
+		this.objectIds = objectIds;
+	}
+
+	/**
+	 * @return true if ids are copied into a temporary table
+	 */
+	static boolean isCopied(int size) {
+		return size >= COPY_THRESHOLD;
+	}
+
+	/**
+	 * @param sql
+	 *            update statement with <code>%s</code> in place of ids relation
+	 * @return statement text for a count of ids
+	 */
+	static String format(String sql, int size) {
+		return String.format(sql, isCopied(size) ? TABLE_RELATION : ARRAY_RELATION);
+	}
+
+	/**
+	 * @return ids in COPY text format, one per line
+	 */
+	static String copyData(Collection<String> objectIds) {
+		StringBuilder builder = new StringBuilder(objectIds.size() * 32);
+		for (String objectId : objectIds) {
+			for (int i = 0; i < objectId.length(); i++) {
+				char c = objectId.charAt(i);
+				switch (c) {
+				case '\\':
+					builder.append("\\\\");
+					break;
+				case '\t':
+					builder.append("\\t");
+					break;
+				case '\n':
+					builder.append("\\n");
+					break;
+				case '\r':
+					builder.append("\\r");
+					break;
+				default:
+					builder.append(c);
+				}
+			}
+			builder.append('\n');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * execute an update statement joining ids
+	 *
+	 * @param sql
+	 *            update statement with <code>%s</code> in place of ids relation
+	 * @return updated rows
+	 */
+	int executeUpdate(String sql) throws SQLException {
+		if (objectIds.isEmpty())
+			return 0;
+		String statement = format(sql, objectIds.size());
+		if (!isCopied(objectIds.size())) {
+			JobMetrics.count(JobMetrics.DB_ROUND_TRIPS, 1);
+			try (PreparedStatement prepared = connection.prepareStatement(statement)) {
+				prepared.setArray(1, connection.createArrayOf("text", objectIds.toArray()));
+				return prepared.executeUpdate();
+			}
+		}
+		execute("DROP TABLE IF EXISTS " + TABLE + "; CREATE TEMPORARY TABLE " + TABLE
+				+ " (objectid text) ON COMMIT DROP");
+		try {
+			PGConnection pgConnection = (PGConnection) ((WrappedConnection) connection).getUnderlyingConnection();
+			long count = pgConnection.getCopyAPI().copyIn("COPY " + TABLE + " (objectid) FROM STDIN",
+					new StringReader(copyData(objectIds)));
+			JobMetrics.count(JobMetrics.DB_ROUND_TRIPS, 1);
+			JobMetrics.count(JobMetrics.COPY_ROWS, count);
+		} catch (IOException e) {
+			throw new SQLException(e);
+		}
+		execute("ANALYZE " + TABLE);
+		int result = execute(statement);
+		execute("DROP TABLE " + TABLE);
+		log.info("[DSU] " + objectIds.size() + " ids joined from " + TABLE);
+		return result;
+	}
+
+	private int execute(String sql) throws SQLException {
+		JobMetrics.count(JobMetrics.DB_ROUND_TRIPS, 1);
+		try (Statement statement = connection.createStatement()) {
+			return statement.executeUpdate(sql);
+		}
+	}
+}
@@ -1,13 +1,25 @@
 package mobi.chouette.dao;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
 import mobi.chouette.model.StopArea;
 
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
+
 @Stateless
 public class StopAreaDAOImpl extends GenericDAOImpl<StopArea> implements StopAreaDAO{
+
+	private static final String[] COLUMNS = { "parent_id", "objectid", "object_version", "creation_time",
+			"creator_id", "name", "comment", "area_type", "registration_number", "nearest_topic_name", "fare_code",
+			"longitude", "latitude", "long_lat_type", "country_code", "street_name", "mobility_restricted_suitability",
+			"stairs_availability", "lift_availability", "int_user_needs", "zip_code", "city_name", "url", "time_zone" };
+
 	public StopAreaDAOImpl() {
 		super(StopArea.class);
 	}
@@ -16,4 +28,48 @@ public class StopAreaDAOImpl extends GenericDAOImpl<StopArea> implements StopAre
 	public void setEntityManager(EntityManager em) {
 		this.em = em;
 	}
+
+	@Override
+	public MergeResult merge(final String data) {
+
+		Session session = em.unwrap(Session.class);
+
+		return session.doReturningWork(new ReturningWork<MergeResult>() {
+
+			@Override
+			public MergeResult execute(Connection connection) throws SQLException {
+				BulkMerge merge = new BulkMerge(connection, "stop_areas", COLUMNS);
+				merge.create("id bigint, parent_id bigint, parent_objectid character varying(255), "
+						+ "objectid character varying(255), object_version integer, "
+						+ "creation_time timestamp without time zone, creator_id character varying(255), "
+						+ "name character varying(255), comment character varying(255), "
+						+ "area_type character varying(255), registration_number character varying(255), "
+						+ "nearest_topic_name character varying(255), fare_code integer, "
+						+ "longitude numeric(19,16), latitude numeric(19,16), long_lat_type character varying(255), "
+						+ "country_code character varying(255), street_name character varying(255), "
+						+ "mobility_restricted_suitability boolean, stairs_availability boolean, "
+						+ "lift_availability boolean, int_user_needs integer, zip_code character varying(255), "
+						+ "city_name character varying(255), url character varying(255), "
+						+ "time_zone character varying(255)");
+				merge.copy("objectid, parent_objectid, object_version, creation_time, creator_id, name, comment, "
+						+ "area_type, registration_number, nearest_topic_name, fare_code, longitude, latitude, "
+						+ "long_lat_type, country_code, street_name, mobility_restricted_suitability, "
+						+ "stairs_availability, lift_availability, int_user_needs, zip_code, city_name, url, time_zone",
+						data);
+				// parents in same data first, then saved ones
+				merge.resolve("parent_id", "parent_objectid", "tmp_stop_areas");
+				merge.resolve("parent_id", "parent_objectid", "stop_areas");
+
+				MergeResult result = new MergeResult();
+				merge.changes("area_type", result);
+				merge.changes("parent_id", result);
+
+				String[] values = new String[COLUMNS.length];
+				values[0] = "t.parent_id"; // parent is removed when missing
+				MergeResult counts = merge.merge(values, new String[COLUMNS.length]);
+				result.add(counts);
+				return result;
+			}
+		});
+	}
 }
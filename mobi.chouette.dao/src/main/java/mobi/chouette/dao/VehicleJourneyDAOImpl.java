@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.List;
 
 import javax.ejb.Stateless;
@@ -12,6 +11,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
 import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.JobMetrics;
 import mobi.chouette.model.VehicleJourney;
 
 import org.hibernate.Session;
@@ -42,30 +42,14 @@ public class VehicleJourneyDAOImpl extends GenericDAOImpl<VehicleJourney> implem
 			@Override
 			public void execute(Connection connection) throws SQLException {
 
-				final String SQL = "DELETE FROM vehicle_journey_at_stops WHERE vehicle_journey_id IN ("
-						+ "SELECT id FROM vehicle_journeys WHERE objectid IN ( %s )"
-						+ ")";
+				// ids bound as a parameter : same statement whatever the line
+				final String SQL = "DELETE FROM vehicle_journey_at_stops s USING vehicle_journeys v, %s"
+						+ " WHERE s.vehicle_journey_id = v.id AND v.objectid = ids.objectid";
 
 				// delete
-				int size = vehicleJourneyObjectIds.size();
-				if (size > 0) {
-					StringBuffer buffer = new StringBuffer();
-					for (int i = 0; i < size; i++) {
-
-						buffer.append('\'');
-						buffer.append(vehicleJourneyObjectIds.get(i));
-						buffer.append('\'');
-						if (i != size - 1) {
-							buffer.append(',');
-						}
-					}
-
-					Statement statement = connection.createStatement();
-					String sql = String.format(SQL, buffer.toString());
-					// System.out.println("execute SQL : " + sql);
-					int count = statement.executeUpdate(sql);
+				int count = new ObjectIdFilter(connection, vehicleJourneyObjectIds).executeUpdate(SQL);
+				if (!vehicleJourneyObjectIds.isEmpty())
 					log.info("[DSU] delete " + count + " objects.");
-				}
 			}
 		});
 	}
@@ -87,7 +71,7 @@ public class VehicleJourneyDAOImpl extends GenericDAOImpl<VehicleJourney> implem
 							.getUnderlyingConnection();
 					org.postgresql.copy.CopyManager manager = pgConnection
 							.getCopyAPI();
-					manager.copyIn(
+					long count = manager.copyIn(
 							"COPY vehicle_journey_at_stops("
 									+ "vehicle_journey_id, stop_point_id, "
 									+ "arrival_time, departure_time, "
@@ -95,9 +79,12 @@ public class VehicleJourneyDAOImpl extends GenericDAOImpl<VehicleJourney> implem
 									// + "arrival_time, departure_time, "
 									// + "elapse_duration, headway_frequency)"
 									+ " FROM STDIN WITH DELIMITER '|'", from);
+					JobMetrics.count(JobMetrics.DB_ROUND_TRIPS, 1);
+					JobMetrics.count(JobMetrics.COPY_ROWS, count);
 
 				} catch (IOException e) {
-					log.error(e);
+					// fail the transaction : line must not look complete
+					throw new SQLException(e);
 				}
 				// log.info(Color.MAGENTA + monitor.stop() + Color.NORMAL);
 			}
@@ -0,0 +1,121 @@
+package mobi.chouette.dao;
+
+import java.io.File;
+
+import javax.ejb.EJB;
+
+import mobi.chouette.common.Constant;
+import mobi.chouette.model.ConnectionLink;
+import mobi.chouette.model.StopArea;
+import mobi.chouette.persistence.hibernate.ContextHolder;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.testng.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ConnectionLinkDaoTest extends Arquillian {
+
+	@EJB
+	ConnectionLinkDAO connectionLinkDao;
+
+	@EJB
+	StopAreaDAO stopAreaDao;
+
+	@Deployment
+	public static WebArchive createDeployment() {
+
+		WebArchive result;
+		File[] files = Maven.resolver().loadPomFromFile("pom.xml").resolve("mobi.chouette:mobi.chouette.dao")
+				.withTransitivity().asFile();
+
+		result = ShrinkWrap.create(WebArchive.class, "test.war").addAsWebInfResource("postgres-ds.xml")
+				.addAsLibraries(files).addAsResource(EmptyAsset.INSTANCE, "beans.xml");
+		return result;
+	}
+
+	@Test
+	public void checkMerge() {
+		ContextHolder.setContext("chouette_gui"); // set tenant schema
+		connectionLinkDao.truncate();
+		stopAreaDao.truncate();
+
+		StringBuilder data = new StringBuilder();
+		for (String name : new String[] { "A", "B", "C" }) {
+			String[] values = new String[24];
+			values[0] = "test:StopArea:" + name;
+			values[2] = "1";
+			values[5] = name;
+			values[7] = "CommercialStopPoint";
+			line(data, values);
+		}
+		stopAreaDao.merge(data.toString());
+
+		// new links, distance computed when missing
+		data.setLength(0);
+		link(data, "test:ConnectionLink:1", "A", "B", "L1", "comment 1", null, "120");
+		link(data, "test:ConnectionLink:2", "B", "C", "L2", "comment 2", "50", "80");
+		MergeResult result = connectionLinkDao.merge(data.toString());
+		Assert.assertEquals(result.getCreated(), 2, "created");
+		Assert.assertEquals(result.getUpdated(), 0, "updated");
+		Assert.assertEquals(result.getUnchanged(), 0, "unchanged");
+
+		ConnectionLink link = connectionLinkDao.findByObjectId("test:ConnectionLink:1");
+		StopArea a = stopAreaDao.findByObjectId("test:StopArea:A");
+		StopArea b = stopAreaDao.findByObjectId("test:StopArea:B");
+		Assert.assertEquals(link.getStartOfLink().getId(), a.getId(), "departure");
+		Assert.assertEquals(link.getEndOfLink().getId(), b.getId(), "arrival");
+		Assert.assertEquals(link.getLinkDistance().intValue(), 120, "computed distance");
+		Assert.assertEquals(connectionLinkDao.findByObjectId("test:ConnectionLink:2").getLinkDistance().intValue(),
+				50, "link distance");
+
+		// identical 1, changed 2, new 3
+		data.setLength(0);
+		link(data, "test:ConnectionLink:1", "A", "B", "L1", "comment 1", null, "120");
+		link(data, "test:ConnectionLink:2", "C", "B", "L2 bis", null, null, "80");
+		link(data, "test:ConnectionLink:3", "A", "C", "L3", null, null, null);
+		result = connectionLinkDao.merge(data.toString());
+		Assert.assertEquals(result.getCreated(), 1, "created");
+		Assert.assertEquals(result.getUpdated(), 1, "updated");
+		Assert.assertEquals(result.getUnchanged(), 1, "unchanged");
+
+		link = connectionLinkDao.findByObjectId("test:ConnectionLink:2");
+		StopArea c = stopAreaDao.findByObjectId("test:StopArea:C");
+		Assert.assertEquals(link.getName(), "L2 bis", "changed value");
+		Assert.assertEquals(link.getComment(), "comment 2", "null value keeps saved one");
+		Assert.assertEquals(link.getLinkDistance().intValue(), 50, "saved distance kept");
+		Assert.assertEquals(link.getStartOfLink().getId(), c.getId(), "changed departure");
+		Assert.assertNull(connectionLinkDao.findByObjectId("test:ConnectionLink:3").getLinkDistance(),
+				"no distance");
+	}
+
+	/**
+	 * COPY line of merged columns, other columns are null
+	 */
+	private void link(StringBuilder data, String objectId, String departure, String arrival, String name,
+			String comment, String linkDistance, String computedDistance) {
+		String[] values = new String[19];
+		values[0] = objectId;
+		values[1] = "test:StopArea:" + departure;
+		values[2] = "test:StopArea:" + arrival;
+		values[3] = "1";
+		values[6] = name;
+		values[7] = comment;
+		values[8] = linkDistance;
+		values[9] = computedDistance;
+		line(data, values);
+	}
+
+	private void line(StringBuilder data, String[] values) {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				data.append(Constant.SEP);
+			data.append(values[i] == null ? Constant.NULL : values[i]);
+		}
+		data.append('\n');
+	}
+}
@@ -0,0 +1,37 @@
+package mobi.chouette.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ObjectIdFilterTest {
+
+	private static final String SQL = "DELETE FROM t USING %s WHERE t.objectid = ids.objectid";
+
+	@Test(groups = { "filter" }, description = "statement text does not depend on id count")
+	public void testFormat() {
+		Assert.assertEquals(ObjectIdFilter.format(SQL, 1), ObjectIdFilter.format(SQL, 5000));
+		Assert.assertEquals(ObjectIdFilter.format(SQL, 1),
+				"DELETE FROM t USING unnest(?::text[]) AS ids(objectid) WHERE t.objectid = ids.objectid");
+		Assert.assertEquals(ObjectIdFilter.format(SQL, ObjectIdFilter.COPY_THRESHOLD - 1),
+				ObjectIdFilter.format(SQL, 1));
+		Assert.assertEquals(ObjectIdFilter.format(SQL, 200000),
+				"DELETE FROM t USING tmp_object_ids ids WHERE t.objectid = ids.objectid");
+	}
+
+	@Test(groups = { "filter" }, description = "ids are escaped for COPY")
+	public void testCopyData() {
+		Assert.assertEquals(ObjectIdFilter.copyData(Arrays.asList("A:B:1", "A:B:'2'", "A\\B\t3\n")),
+				"A:B:1\nA:B:'2'\nA\\\\B\\t3\\n\n");
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 200000; i++) {
+			ids.add("Test:VehicleJourney:" + i);
+		}
+		String data = ObjectIdFilter.copyData(ids);
+		Assert.assertEquals(data.split("\n").length, 200000);
+		Assert.assertTrue(data.endsWith("Test:VehicleJourney:199999\n"));
+	}
+}
@@ -0,0 +1,109 @@
+package mobi.chouette.dao;
+
+import java.io.File;
+
+import javax.ejb.EJB;
+
+import mobi.chouette.common.Constant;
+import mobi.chouette.model.StopArea;
+import mobi.chouette.persistence.hibernate.ContextHolder;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.testng.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class StopAreaDaoTest extends Arquillian {
+
+	@EJB
+	StopAreaDAO stopAreaDao;
+
+	@Deployment
+	public static WebArchive createDeployment() {
+
+		try {
+			WebArchive result;
+			File[] files = Maven.resolver().loadPomFromFile("pom.xml").resolve("mobi.chouette:mobi.chouette.dao")
+					.withTransitivity().asFile();
+
+			result = ShrinkWrap.create(WebArchive.class, "test.war").addAsWebInfResource("postgres-ds.xml")
+					.addAsLibraries(files).addAsResource(EmptyAsset.INSTANCE, "beans.xml");
+			return result;
+		} catch (RuntimeException e) {
+			System.out.println(e.getClass().getName());
+			throw e;
+		}
+
+	}
+
+	@Test
+	public void checkMerge() {
+		ContextHolder.setContext("chouette_gui"); // set tenant schema
+		stopAreaDao.truncate();
+
+		// new stop areas
+		StringBuilder data = new StringBuilder();
+		line(data, "test:StopArea:A", null, "A", "comment A", "StopPlace");
+		line(data, "test:StopArea:B", null, "B", "comment B", "CommercialStopPoint");
+		line(data, "test:StopArea:C", null, "C", "comment C", "CommercialStopPoint");
+		MergeResult result = stopAreaDao.merge(data.toString());
+		Assert.assertEquals(result.getCreated(), 3, "created");
+		Assert.assertEquals(result.getUpdated(), 0, "updated");
+		Assert.assertEquals(result.getUnchanged(), 0, "unchanged");
+		Assert.assertEquals(result.getExisting(), 0, "existing");
+
+		// identical A, changed B and C, new D
+		data.setLength(0);
+		line(data, "test:StopArea:A", null, "A", "comment A", "StopPlace");
+		line(data, "test:StopArea:B", "test:StopArea:A", "B2", null, "CommercialStopPoint");
+		line(data, "test:StopArea:C", null, "C", "comment C", "StopPlace");
+		line(data, "test:StopArea:D", "test:StopArea:A", "D", null, "CommercialStopPoint");
+		result = stopAreaDao.merge(data.toString());
+		Assert.assertEquals(result.getCreated(), 1, "created");
+		Assert.assertEquals(result.getUpdated(), 2, "updated");
+		Assert.assertEquals(result.getUnchanged(), 1, "unchanged");
+		Assert.assertEquals(result.getChanges("parent_id").size(), 1, "parent changes");
+		Assert.assertEquals(result.getChanges("parent_id").get(0), "test:StopArea:B");
+		Assert.assertEquals(result.getChanges("area_type").size(), 1, "area type changes");
+		Assert.assertEquals(result.getChanges("area_type").get(0), "test:StopArea:C");
+
+		StopArea a = stopAreaDao.findByObjectId("test:StopArea:A");
+		StopArea b = stopAreaDao.findByObjectId("test:StopArea:B");
+		StopArea d = stopAreaDao.findByObjectId("test:StopArea:D");
+		Assert.assertEquals(b.getName(), "B2", "changed value");
+		Assert.assertEquals(b.getComment(), "comment B", "null value keeps saved one");
+		Assert.assertEquals(b.getParent().getId(), a.getId(), "saved parent");
+		Assert.assertEquals(d.getParent().getId(), a.getId(), "new stop area parent");
+
+		// parent is removed when missing
+		data.setLength(0);
+		line(data, "test:StopArea:B", null, "B2", "comment B", "CommercialStopPoint");
+		result = stopAreaDao.merge(data.toString());
+		Assert.assertEquals(result.getUpdated(), 1, "updated");
+		Assert.assertNull(stopAreaDao.findByObjectId("test:StopArea:B").getParent(), "parent removed");
+	}
+
+	/**
+	 * COPY line of merged columns, other columns are null
+	 */
+	private void line(StringBuilder data, String objectId, String parentObjectId, String name, String comment,
+			String areaType) {
+		String[] values = new String[24];
+		values[0] = objectId;
+		values[1] = parentObjectId;
+		values[2] = "1";
+		values[5] = name;
+		values[6] = comment;
+		values[7] = areaType;
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				data.append(Constant.SEP);
+			data.append(values[i] == null ? Constant.NULL : values[i]);
+		}
+		data.append('\n');
+	}
+}
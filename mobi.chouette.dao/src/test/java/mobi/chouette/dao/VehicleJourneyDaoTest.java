@@ -0,0 +1,135 @@
+package mobi.chouette.dao;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ejb.EJB;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.UserTransaction;
+
+import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.JobMetrics;
+import mobi.chouette.model.StopPoint;
+import mobi.chouette.model.VehicleJourney;
+import mobi.chouette.persistence.hibernate.ContextHolder;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.testng.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Log4j
+public class VehicleJourneyDaoTest extends Arquillian {
+
+	private static final int JOURNEYS = 200000;
+
+	private static final int SMALL = 1000;
+
+	@EJB
+	VehicleJourneyDAO vehicleJourneyDao;
+
+	@EJB
+	StopPointDAO stopPointDao;
+
+	@PersistenceContext(unitName = "referential")
+	EntityManager em;
+
+	@Inject
+	UserTransaction utx;
+
+	@Deployment
+	public static WebArchive createDeployment() {
+
+		try {
+			WebArchive result;
+			File[] files = Maven.resolver().loadPomFromFile("pom.xml").resolve("mobi.chouette:mobi.chouette.dao")
+					.withTransitivity().asFile();
+
+			result = ShrinkWrap.create(WebArchive.class, "test.war").addAsWebInfResource("postgres-ds.xml")
+					.addAsLibraries(files).addAsResource(EmptyAsset.INSTANCE, "beans.xml");
+			return result;
+		} catch (RuntimeException e) {
+			System.out.println(e.getClass().getName());
+			throw e;
+		}
+
+	}
+
+	@Test
+	public void checkDeleteChildren() throws Exception {
+		ContextHolder.setContext("chouette_gui"); // set tenant schema
+		vehicleJourneyDao.truncate();
+		stopPointDao.truncate();
+		List<String> objectIds = createJourneys();
+		Assert.assertEquals(countChildren(), JOURNEYS, "passing times");
+
+		JobMetrics metrics = new JobMetrics(0L);
+		JobMetrics.setCurrent(metrics);
+		try {
+			// array parameter
+			long start = System.currentTimeMillis();
+			vehicleJourneyDao.deleteChildren(objectIds.subList(0, SMALL));
+			log.info("delete " + SMALL + " journeys children : " + (System.currentTimeMillis() - start) + " ms");
+			Assert.assertEquals(metrics.getCounter(JobMetrics.DB_ROUND_TRIPS), 1L, "single statement");
+			Assert.assertEquals(countChildren(), JOURNEYS - SMALL, "passing times");
+
+			// temporary table
+			long roundTrips = metrics.getCounter(JobMetrics.DB_ROUND_TRIPS);
+			start = System.currentTimeMillis();
+			vehicleJourneyDao.deleteChildren(objectIds);
+			log.info("delete " + JOURNEYS + " journeys children : " + (System.currentTimeMillis() - start) + " ms");
+			Assert.assertEquals(metrics.getCounter(JobMetrics.DB_ROUND_TRIPS) - roundTrips, 5L,
+					"create, copy, analyze, delete and drop");
+			Assert.assertEquals(metrics.getCounter(JobMetrics.COPY_ROWS), (long) JOURNEYS);
+			Assert.assertEquals(countChildren(), 0, "passing times");
+		} finally {
+			JobMetrics.setCurrent(null);
+			vehicleJourneyDao.truncate();
+			stopPointDao.truncate();
+		}
+	}
+
+	/**
+	 * journeys with a passing time each
+	 */
+	private List<String> createJourneys() throws Exception {
+		List<String> objectIds = new ArrayList<>(JOURNEYS);
+		StringBuilder data = new StringBuilder();
+		utx.begin();
+		em.joinTransaction();
+		StopPoint stopPoint = new StopPoint();
+		stopPoint.setObjectId("Test:" + StopPoint.STOPPOINT_KEY + ":1");
+		stopPoint.setPosition(0);
+		stopPointDao.create(stopPoint);
+		for (int i = 0; i < JOURNEYS; i++) {
+			VehicleJourney vehicleJourney = new VehicleJourney();
+			vehicleJourney.setObjectId("Test:" + VehicleJourney.VEHICLEJOURNEY_KEY + ":" + i);
+			vehicleJourneyDao.create(vehicleJourney);
+			if (i % 1000 == 999) {
+				vehicleJourneyDao.flush();
+				vehicleJourneyDao.clear();
+			}
+			objectIds.add(vehicleJourney.getObjectId());
+			data.append(vehicleJourney.getId()).append('|').append(stopPoint.getId())
+					.append("|08:00:00|08:00:00|0|0\n");
+		}
+		vehicleJourneyDao.flush();
+		vehicleJourneyDao.copy(data.toString());
+		utx.commit();
+		return objectIds;
+	}
+
+	private int countChildren() {
+		Number count = (Number) em.createNativeQuery("SELECT count(*) FROM vehicle_journey_at_stops")
+				.getSingleResult();
+		return count.intValue();
+	}
+
+}
@@ -0,0 +1,168 @@
+package mobi.chouette.exchange.geojson;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import lombok.Getter;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.LineString;
+
+/**
+ * streaming FeatureCollection writer
+ * <p>
+ * features are written as soon as they are produced ; a feature is written
+ * as : {@link #startFeature(String)}, one geometry, properties then
+ * {@link #endFeature()}.
+ */
+public class GeojsonWriter implements Closeable {
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	private final JsonGenerator generator;
+
+	/**
+	 * decimal digits kept in coordinates, negative for full precision
+	 */
+	@Getter
+	private final int precision;
+
+	private final double factor;
+
+	private boolean properties = false;
+
+	@Getter
+	private int count = 0;
+
+	/**
+	 * @param file
+	 *            target file
+	 * @param precision
+	 *            decimal digits kept in coordinates, negative for full
+	 *            precision
+	 * @throws IOException
+	 */
+	public GeojsonWriter(File file, int precision) throws IOException {
+		this.precision = precision;
+		this.factor = precision < 0 ? 0 : Math.pow(10, precision);
+		generator = FACTORY.createGenerator(file, JsonEncoding.UTF8);
+		generator.useDefaultPrettyPrinter();
+		generator.writeStartObject();
+		generator.writeStringField("type", "FeatureCollection");
+		generator.writeArrayFieldStart("features");
+	}
+
+	public void startFeature(String id) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("type", "Feature");
+		if (id != null)
+			generator.writeStringField("id", id);
+		properties = false;
+	}
+
+	public void writePoint(double x, double y) throws IOException {
+		startGeometry("Point");
+		generator.writeRawValue(position(new StringBuilder(), x, y).toString());
+		generator.writeEndObject();
+	}
+
+	/**
+	 * @param coordinates
+	 *            line string positions, may be empty
+	 */
+	public void writeLineString(Coordinate... coordinates) throws IOException {
+		startGeometry("LineString");
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < coordinates.length; i++) {
+			if (i > 0)
+				builder.append(", ");
+			position(builder, coordinates[i].x, coordinates[i].y);
+		}
+		generator.writeRawValue(builder.append("]").toString());
+		generator.writeEndObject();
+	}
+
+	public void startMultiLineString() throws IOException {
+		startGeometry("MultiLineString");
+		generator.writeStartArray();
+	}
+
+	/**
+	 * @param coordinates
+	 *            line coordinates from {@link #toCoordinates(LineString)}, or
+	 *            null for a missing line
+	 */
+	public void writeLine(String coordinates) throws IOException {
+		if (coordinates == null)
+			generator.writeNull();
+		else
+			generator.writeRawValue(coordinates);
+	}
+
+	public void endMultiLineString() throws IOException {
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+
+	public void writeProperty(String name, Object value) throws IOException {
+		if (!properties) {
+			generator.writeObjectFieldStart("properties");
+			properties = true;
+		}
+		generator.writeStringField(name, value == null ? "" : value.toString().trim());
+	}
+
+	public void endFeature() throws IOException {
+		if (properties)
+			generator.writeEndObject();
+		generator.writeEndObject();
+		count++;
+	}
+
+	/**
+	 * format line string positions once, to be written by
+	 * {@link #writeLine(String)} for each feature sharing this geometry
+	 *
+	 * @param geometry
+	 * @return coordinates array
+	 */
+	public String toCoordinates(LineString geometry) {
+		CoordinateSequence sequence = geometry.getCoordinateSequence();
+		int size = sequence.size();
+		StringBuilder builder = new StringBuilder(size * 24 + 2).append('[');
+		for (int i = 0; i < size; i++) {
+			if (i > 0)
+				builder.append(", ");
+			position(builder, sequence.getX(i), sequence.getY(i));
+		}
+		return builder.append(']').toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		generator.writeEndArray();
+		generator.writeEndObject();
+		generator.close();
+	}
+
+	private void startGeometry(String type) throws IOException {
+		generator.writeObjectFieldStart("geometry");
+		generator.writeStringField("type", type);
+		generator.writeFieldName("coordinates");
+	}
+
+	private StringBuilder position(StringBuilder builder, double x, double y) {
+		return builder.append("[ ").append(round(x)).append(", ").append(round(y)).append(" ]");
+	}
+
+	private double round(double value) {
+		if (precision < 0 || Double.isNaN(value) || Double.isInfinite(value))
+			return value;
+		return Math.round(value * factor) / factor;
+	}
+}
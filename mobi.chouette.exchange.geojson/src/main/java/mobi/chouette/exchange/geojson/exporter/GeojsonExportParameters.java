@@ -2,9 +2,12 @@ package mobi.chouette.exchange.geojson.exporter;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 import mobi.chouette.exchange.parameters.AbstractExportParameter;
 
@@ -14,4 +17,13 @@ import mobi.chouette.exchange.parameters.AbstractExportParameter;
 @XmlAccessorType(XmlAccessType.FIELD)
 public class GeojsonExportParameters extends AbstractExportParameter {
 
+	public static final int MAX_PRECISION = 15;
+
+	/**
+	 * decimal digits kept in coordinates, full precision when not set
+	 */
+	@Getter @Setter
+	@XmlElement(name = "coordinate_precision", required = false)
+	private Integer coordinatePrecision;
+
 }
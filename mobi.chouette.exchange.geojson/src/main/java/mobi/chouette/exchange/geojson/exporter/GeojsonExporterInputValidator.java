@@ -67,6 +67,12 @@ public class GeojsonExporterInputValidator extends AbstractInputValidator {
 			}
 		}
 
+		Integer precision = parameters.getCoordinatePrecision();
+		if (precision != null && (precision < 0 || precision > GeojsonExportParameters.MAX_PRECISION)) {
+			log.error("invalid coordinate precision " + precision);
+			return false;
+		}
+
 		String type = parameters.getReferencesType();
 		if (type != null && !type.isEmpty()) {
 			if (!Arrays.asList(allowedTypes).contains(type.toLowerCase())) {
@@ -1,12 +1,13 @@
 package mobi.chouette.exchange.geojson.exporter;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,12 +22,7 @@ import mobi.chouette.common.Context;
 import mobi.chouette.common.JobData;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
-import mobi.chouette.exchange.geojson.Feature;
-import mobi.chouette.exchange.geojson.FeatureCollection;
-import mobi.chouette.exchange.geojson.JAXBSerializer;
-import mobi.chouette.exchange.geojson.LineString;
-import mobi.chouette.exchange.geojson.MultiLineString;
-import mobi.chouette.exchange.geojson.Point;
+import mobi.chouette.exchange.geojson.GeojsonWriter;
 import mobi.chouette.exchange.report.ActionReporter;
 import mobi.chouette.exchange.report.IO_TYPE;
 import mobi.chouette.exchange.report.ActionReporter.OBJECT_STATE;
@@ -50,13 +46,59 @@ public class GeojsonLineExporterCommand implements Command, Constant {
 
 	public static final String COMMAND = "GeojsonLineExporterCommand";
 
+	public static final String PHYSICAL_STOPS_FILE = "physical_stop_areas.json";
+	public static final String COMMERCIAL_STOPS_FILE = "commercial_stop_areas.json";
+	public static final String ACCESS_POINTS_FILE = "access_points.json";
+	public static final String ACCESS_LINKS_FILE = "access_links.json";
+	public static final String CONNECTION_LINKS_FILE = "connection_links.json";
+
+	/**
+	 * shared objects already written, with their feature collection writers
+	 * opened on first feature
+	 */
 	@Data
-	class SharedData {
-		Map<String, Feature> physicalStops = new HashMap<String, Feature>();
-		Map<String, Feature> commercialStops = new HashMap<String, Feature>();
-		Map<String, Feature> accessPoints = new HashMap<String, Feature>();
-		Map<String, Feature> connectionLinks = new HashMap<String, Feature>();
-		Map<String, Feature> accessLinks = new HashMap<String, Feature>();
+	static class SharedData implements Closeable {
+		private final Path path;
+		private final int precision;
+		Set<String> physicalStops = new HashSet<String>();
+		Set<String> commercialStops = new HashSet<String>();
+		Set<String> accessPoints = new HashSet<String>();
+		Set<String> connectionLinks = new HashSet<String>();
+		Set<String> accessLinks = new HashSet<String>();
+		Map<String, GeojsonWriter> writers = new LinkedHashMap<String, GeojsonWriter>();
+
+		GeojsonWriter getWriter(String filename) throws IOException {
+			GeojsonWriter writer = writers.get(filename);
+			if (writer == null) {
+				writer = new GeojsonWriter(new File(path.toFile(), filename), precision);
+				writers.put(filename, writer);
+			}
+			return writer;
+		}
+
+		private boolean closed;
+
+		/**
+		 * close opened feature collections, once ; called by shared object
+		 * exporter and again by exporter when export stops before it
+		 */
+		@Override
+		public void close() throws IOException {
+			if (closed)
+				return;
+			closed = true;
+			IOException failure = null;
+			for (GeojsonWriter writer : writers.values()) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					if (failure == null)
+						failure = e;
+				}
+			}
+			if (failure != null)
+				throw failure;
+		}
 	}
 
 	@Data
@@ -79,11 +121,14 @@ public class GeojsonLineExporterCommand implements Command, Constant {
 				return result;
 			}
 
-			// log.info("[DSU] processing  : " + line.getObjectId());
+			JobData jobData = (JobData) context.get(JOB_DATA);
+			Path path = Paths.get(jobData.getPathName(), OUTPUT);
 
 			SharedData shared = (SharedData) context.get(SHARED_DATA);
 			if (shared == null) {
-				shared = new SharedData();
+				GeojsonExportParameters parameters = (GeojsonExportParameters) context.get(CONFIGURATION);
+				Integer precision = parameters == null ? null : parameters.getCoordinatePrecision();
+				shared = new SharedData(path, precision == null ? -1 : precision);
 				context.put(SHARED_DATA, shared);
 			}
 
@@ -92,77 +137,35 @@ public class GeojsonLineExporterCommand implements Command, Constant {
 			reporter.addObjectReport(context, line.getObjectId(), OBJECT_TYPE.LINE, NamingUtil.getName(line),
 					OBJECT_STATE.OK, IO_TYPE.OUTPUT);
 
-			// create route section feature
-			List<Feature> features = new ArrayList<Feature>();
-			List<Route> routes = line.getRoutes();
+			// route section coordinates formatted once per line ; line files
+			// are self-contained, so sections shared between lines are
+			// written in each of them
+			Map<String, String> sections = new HashMap<String, String>();
+
+			// write route section features
+			String filename = "line_" + line.getId() + ".json";
+			File file = new File(path.toFile(), filename);
 			int routeCount = 0;
 			int journeyPatternCount = 0;
-			for (Route route : routes) {
-
-				// log.info("[DSU] processing  : " + route.getObjectId());
-
-				routeCount++;
-
-				List<JourneyPattern> journeyPatterns = route.getJourneyPatterns();
-				for (JourneyPattern journeyPattern : journeyPatterns) {
-					String id = journeyPattern.getObjectId();
-
-					// log.info("[DSU] processing  : "
-					// + journeyPattern.getObjectId());
-
-					journeyPatternCount++;
-
-					Map<String, Object> properties = new HashMap<String, Object>();
-
-					// line
-					properties.put("line_objectid", getProperty(line.getObjectId()));
-					properties.put("line_name", getProperty(line.getName()));
-					properties.put("line_number", getProperty(line.getNumber()));
-					properties.put("line_published_name", getProperty(line.getPublishedName()));
-					properties.put("company_objectid", getProperty(line.getCompany().getObjectId()));
-					properties.put("network_objectid", getProperty(line.getNetwork().getObjectId()));
-					properties.put("transport_mode", getProperty(line.getTransportModeName()));
-					properties.put("color", getProperty(line.getColor()));
-					properties.put("text_color", getProperty(line.getTextColor()));
-
-					// route
-					properties.put("route_wayback_code", getProperty(route.getWayBack()));
-					properties.put("route_objectid", getProperty(route.getObjectId()));
-					properties.put("route_name", getProperty(route.getName()));
-					properties.put("route_published_name", getProperty(route.getPublishedName()));
-					properties.put("route_number", getProperty(route.getNumber()));
-					properties.put("route_direction", getProperty(route.getDirection()));
-
-					// journey pattern
-					properties.put("object_version", getProperty(journeyPattern.getObjectVersion()));
-					properties.put("creation_time", getProperty(journeyPattern.getCreationTime()));
-					properties.put("creator_id", getProperty(journeyPattern.getCreatorId()));
-					properties.put("name", getProperty(journeyPattern.getName()));
-					properties.put("registration_number", getProperty(journeyPattern.getRegistrationNumber()));
-					properties.put("published_name", getProperty(journeyPattern.getPublishedName()));
-
-					List<RouteSection> routeSections = journeyPattern.getRouteSections();
-					double[][][] coordinates = new double[0][0][2];
-
-					if (routeSections != null && !routeSections.isEmpty()) {
-
-						// add filter to remove null entries
-						List<RouteSection> filteredRouteSection = new ArrayList<>();
-						for (RouteSection routeSection : routeSections) {
-							if (routeSection != null)
-								filteredRouteSection.add(routeSection);
-						}
-						if (!filteredRouteSection.isEmpty()) {
-							RouteSection[] array = filteredRouteSection.toArray(new RouteSection[filteredRouteSection.size()]);
-							coordinates = new double[array.length][][];
-							for (int i = 0; i < array.length; i++) {
-								RouteSection routeSection = array[i];
+			try (GeojsonWriter writer = new GeojsonWriter(file, shared.getPrecision())) {
+				for (Route route : line.getRoutes()) {
 
-								// log.info("[DSU] processing  : "
-								// + routeSection.getObjectId());
+					routeCount++;
 
-								StopArea departure = routeSection.getDeparture();
+					for (JourneyPattern journeyPattern : route.getJourneyPatterns()) {
+
+						journeyPatternCount++;
 
+						writer.startFeature(journeyPattern.getObjectId());
+						writer.startMultiLineString();
+						List<RouteSection> routeSections = journeyPattern.getRouteSections();
+						if (routeSections != null) {
+							for (RouteSection routeSection : routeSections) {
+								// filter null entries
+								if (routeSection == null)
+									continue;
+
+								StopArea departure = routeSection.getDeparture();
 								if (departure != null && departure.hasCoordinates()) {
 									createPhysicaStop(shared, keys, departure);
 									MetaData.updateBoundingBox(context, departure.getLongitude().doubleValue(),
@@ -176,16 +179,39 @@ public class GeojsonLineExporterCommand implements Command, Constant {
 											.getLatitude().doubleValue());
 								}
 
-								com.vividsolutions.jts.geom.LineString geometry = (routeSection.getInputGeometry() != null) ? routeSection
-										.getInputGeometry() : routeSection.getProcessedGeometry();
-								if (geometry != null) {
-									coordinates[i] = getCoordinates(geometry);
-								}
+								writer.writeLine(getCoordinates(writer, sections, routeSection));
 							}
 						}
+						writer.endMultiLineString();
+
+						// line
+						writer.writeProperty("line_objectid", line.getObjectId());
+						writer.writeProperty("line_name", line.getName());
+						writer.writeProperty("line_number", line.getNumber());
+						writer.writeProperty("line_published_name", line.getPublishedName());
+						writer.writeProperty("company_objectid", line.getCompany().getObjectId());
+						writer.writeProperty("network_objectid", line.getNetwork().getObjectId());
+						writer.writeProperty("transport_mode", line.getTransportModeName());
+						writer.writeProperty("color", line.getColor());
+						writer.writeProperty("text_color", line.getTextColor());
+
+						// route
+						writer.writeProperty("route_wayback_code", route.getWayBack());
+						writer.writeProperty("route_objectid", route.getObjectId());
+						writer.writeProperty("route_name", route.getName());
+						writer.writeProperty("route_published_name", route.getPublishedName());
+						writer.writeProperty("route_number", route.getNumber());
+						writer.writeProperty("route_direction", route.getDirection());
+
+						// journey pattern
+						writer.writeProperty("object_version", journeyPattern.getObjectVersion());
+						writer.writeProperty("creation_time", journeyPattern.getCreationTime());
+						writer.writeProperty("creator_id", journeyPattern.getCreatorId());
+						writer.writeProperty("name", journeyPattern.getName());
+						writer.writeProperty("registration_number", journeyPattern.getRegistrationNumber());
+						writer.writeProperty("published_name", journeyPattern.getPublishedName());
+						writer.endFeature();
 					}
-					Feature feature = new Feature(id, new MultiLineString(coordinates), properties);
-					features.add(feature);
 				}
 			}
 
@@ -215,13 +241,6 @@ public class GeojsonLineExporterCommand implements Command, Constant {
 			reporter.setStatToObjectReport(context, "merged", OBJECT_TYPE.STOP_AREA, OBJECT_TYPE.STOP_AREA,
 					shared.physicalStops.size()+ shared.commercialStops.size());
 
-			// save feature collection
-			FeatureCollection target = new FeatureCollection(features);
-			JobData jobData = (JobData) context.get(JOB_DATA);
-			Path path = Paths.get(jobData.getPathName(), OUTPUT);
-			String filename = "line_" + line.getId() + ".json";
-			File file = new File(path.toFile(), filename);
-			JAXBSerializer.writeTo(target, file);
 			MetaData.addTableOfContentsEntry(context, file, line);
 			reporter.addFileReport(context, filename, IO_TYPE.OUTPUT);
 
@@ -235,12 +254,10 @@ public class GeojsonLineExporterCommand implements Command, Constant {
 		return result;
 	}
 
-	private void createPhysicaStop(SharedData shared, Keys keys, StopArea stopArea) {
+	private void createPhysicaStop(SharedData shared, Keys keys, StopArea stopArea) throws IOException {
 
-		Map<String, Feature> filter = shared.getPhysicalStops();
-		if (!filter.containsKey(stopArea.getObjectId())) {
-			Feature feature = createFeature(stopArea);
-			filter.put(stopArea.getObjectId(), feature);
+		if (shared.getPhysicalStops().add(stopArea.getObjectId())) {
+			writeFeature(shared.getWriter(PHYSICAL_STOPS_FILE), stopArea);
 		}
 
 		keys.getStopArea().add(stopArea.getObjectId());
@@ -263,12 +280,10 @@ public class GeojsonLineExporterCommand implements Command, Constant {
 
 	}
 
-	private void createCommercialStop(SharedData shared, Keys keys, StopArea stopArea) {
+	private void createCommercialStop(SharedData shared, Keys keys, StopArea stopArea) throws IOException {
 
-		Map<String, Feature> filter = shared.getCommercialStops();
-		if (!filter.containsKey(stopArea.getObjectId())) {
-			Feature feature = createFeature(stopArea);
-			filter.put(stopArea.getObjectId(), feature);
+		if (shared.getCommercialStops().add(stopArea.getObjectId())) {
+			writeFeature(shared.getWriter(COMMERCIAL_STOPS_FILE), stopArea);
 		}
 
 		keys.getStopArea().add(stopArea.getObjectId());
@@ -291,31 +306,28 @@ public class GeojsonLineExporterCommand implements Command, Constant {
 
 	}
 
-	private void createAccessPoint(SharedData shared, Keys keys, AccessPoint accessPoint) {
-
-		Map<String, Feature> filter = shared.getAccessPoints();
-		if (!filter.containsKey(accessPoint.getObjectId())) {
-			Map<String, Object> properties = new HashMap<String, Object>();
-			properties.put("object_version", getProperty(accessPoint.getObjectVersion()));
-			properties.put("creation_time", getProperty(accessPoint.getCreationTime()));
-			properties.put("creator_id", getProperty(accessPoint.getCreatorId()));
-			properties.put("name", getProperty(accessPoint.getName()));
-			properties.put("country_code", getProperty(accessPoint.getCountryCode()));
-			properties.put("street_name", getProperty(accessPoint.getStreetName()));
-			properties.put("access_type", getProperty(accessPoint.getType()));
-			properties.put("mobility_restricted_suitability", getProperty(accessPoint.getMobilityRestrictedSuitable()));
-			properties.put("stairs_availability", getProperty(accessPoint.getStairsAvailable()));
-			properties.put("lift_availability", getProperty(accessPoint.getLiftAvailable()));
-			properties.put("stop_area_objectid", getProperty(accessPoint.getContainedIn().getObjectId()));
-
-			double[] coordinates = new double[2];
+	private void createAccessPoint(SharedData shared, Keys keys, AccessPoint accessPoint) throws IOException {
+
+		if (shared.getAccessPoints().add(accessPoint.getObjectId())) {
+			GeojsonWriter writer = shared.getWriter(ACCESS_POINTS_FILE);
+			writer.startFeature(accessPoint.getObjectId());
 			if (accessPoint.getLongitude() != null && accessPoint.getLatitude() != null) {
-				coordinates[0] = accessPoint.getLongitude().doubleValue();
-				coordinates[1] = accessPoint.getLatitude().doubleValue();
+				writer.writePoint(accessPoint.getLongitude().doubleValue(), accessPoint.getLatitude().doubleValue());
+			} else {
+				writer.writePoint(0, 0);
 			}
-
-			Feature feature = new Feature(accessPoint.getObjectId(), new Point(coordinates), properties);
-			filter.put(accessPoint.getObjectId(), feature);
+			writer.writeProperty("object_version", accessPoint.getObjectVersion());
+			writer.writeProperty("creation_time", accessPoint.getCreationTime());
+			writer.writeProperty("creator_id", accessPoint.getCreatorId());
+			writer.writeProperty("name", accessPoint.getName());
+			writer.writeProperty("country_code", accessPoint.getCountryCode());
+			writer.writeProperty("street_name", accessPoint.getStreetName());
+			writer.writeProperty("access_type", accessPoint.getType());
+			writer.writeProperty("mobility_restricted_suitability", accessPoint.getMobilityRestrictedSuitable());
+			writer.writeProperty("stairs_availability", accessPoint.getStairsAvailable());
+			writer.writeProperty("lift_availability", accessPoint.getLiftAvailable());
+			writer.writeProperty("stop_area_objectid", accessPoint.getContainedIn().getObjectId());
+			writer.endFeature();
 		}
 
 		keys.getAccessPoints().add(accessPoint.getObjectId());
@@ -326,121 +338,117 @@ public class GeojsonLineExporterCommand implements Command, Constant {
 
 	}
 
-	private void createConnectionLink(SharedData shared, Keys keys, ConnectionLink connectionLink) {
-
-		Map<String, Feature> filter = shared.getConnectionLinks();
-		if (!filter.containsKey(connectionLink.getObjectId())) {
-			Map<String, Object> properties = new HashMap<String, Object>();
-			properties.put("object_version", getProperty(connectionLink.getObjectVersion()));
-			properties.put("creation_time", getProperty(connectionLink.getCreationTime()));
-			properties.put("creator_id", getProperty(connectionLink.getCreatorId()));
-			properties.put("name", getProperty(connectionLink.getName()));
-			properties.put("link_distance", getProperty(connectionLink.getLinkDistance()));
-			properties.put("link_distance", getProperty(connectionLink.getLinkType()));
-			properties.put("default_duration", getProperty(connectionLink.getDefaultDuration()));
-			properties.put("frequent_traveller_duration", getProperty(connectionLink.getFrequentTravellerDuration()));
-			properties.put("occasional_traveller_duration",
-					getProperty(connectionLink.getOccasionalTravellerDuration()));
-			properties.put("mobility_restricted_traveller_duration",
-					getProperty(connectionLink.getMobilityRestrictedTravellerDuration()));
-			properties.put("mobility_restricted_suitability",
-					getProperty(connectionLink.getMobilityRestrictedSuitable()));
-			properties.put("stairs_availability", getProperty(connectionLink.getStairsAvailable()));
-			properties.put("lift_availability", getProperty(connectionLink.getLiftAvailable()));
-
-			double[][] coordinates = new double[0][2];
-			if (connectionLink.getStartOfLink() != null && connectionLink.getEndOfLink() != null) {
-				properties.put("departure_objectid", getProperty(connectionLink.getStartOfLink().getObjectId()));
-				properties.put("arrival_objectid", getProperty(connectionLink.getEndOfLink().getObjectId()));
-				coordinates = new double[2][2];
-				coordinates[0][0] = connectionLink.getStartOfLink().getLongitude().doubleValue();
-				coordinates[0][1] = connectionLink.getStartOfLink().getLatitude().doubleValue();
-				coordinates[1][0] = connectionLink.getEndOfLink().getLongitude().doubleValue();
-				coordinates[1][1] = connectionLink.getEndOfLink().getLatitude().doubleValue();
+	private void createConnectionLink(SharedData shared, Keys keys, ConnectionLink connectionLink) throws IOException {
+
+		if (shared.getConnectionLinks().add(connectionLink.getObjectId())) {
+			GeojsonWriter writer = shared.getWriter(CONNECTION_LINKS_FILE);
+			writer.startFeature(connectionLink.getObjectId());
+			StopArea start = connectionLink.getStartOfLink();
+			StopArea end = connectionLink.getEndOfLink();
+			if (start != null && end != null) {
+				writer.writeLineString(
+						new Coordinate(start.getLongitude().doubleValue(), start.getLatitude().doubleValue()),
+						new Coordinate(end.getLongitude().doubleValue(), end.getLatitude().doubleValue()));
+			} else {
+				writer.writeLineString();
 			}
-
-			Feature feature = new Feature(connectionLink.getObjectId(), new LineString(coordinates), properties);
-			filter.put(connectionLink.getObjectId(), feature);
+			writer.writeProperty("object_version", connectionLink.getObjectVersion());
+			writer.writeProperty("creation_time", connectionLink.getCreationTime());
+			writer.writeProperty("creator_id", connectionLink.getCreatorId());
+			writer.writeProperty("name", connectionLink.getName());
+			writer.writeProperty("link_distance", connectionLink.getLinkDistance());
+			writer.writeProperty("link_type", connectionLink.getLinkType());
+			writer.writeProperty("default_duration", connectionLink.getDefaultDuration());
+			writer.writeProperty("frequent_traveller_duration", connectionLink.getFrequentTravellerDuration());
+			writer.writeProperty("occasional_traveller_duration", connectionLink.getOccasionalTravellerDuration());
+			writer.writeProperty("mobility_restricted_traveller_duration",
+					connectionLink.getMobilityRestrictedTravellerDuration());
+			writer.writeProperty("mobility_restricted_suitability", connectionLink.getMobilityRestrictedSuitable());
+			writer.writeProperty("stairs_availability", connectionLink.getStairsAvailable());
+			writer.writeProperty("lift_availability", connectionLink.getLiftAvailable());
+			if (start != null && end != null) {
+				writer.writeProperty("departure_objectid", start.getObjectId());
+				writer.writeProperty("arrival_objectid", end.getObjectId());
+			}
+			writer.endFeature();
 		}
 
 		keys.getConnectionLinks().add(connectionLink.getObjectId());
 	}
 
-	private void createAccessLink(SharedData shared, AccessLink accessLink) {
-
-		Map<String, Feature> filter = shared.getAccessLinks();
-		if (!filter.containsKey(accessLink.getObjectId())) {
-			Map<String, Object> properties = new HashMap<String, Object>();
-			properties.put("object_version", getProperty(accessLink.getObjectVersion()));
-			properties.put("creation_time", getProperty(accessLink.getCreationTime()));
-			properties.put("creator_id", getProperty(accessLink.getCreatorId()));
-			properties.put("name", getProperty(accessLink.getName()));
-			properties.put("link_distance", getProperty(accessLink.getLinkDistance()));
-			properties.put("link_type", getProperty(accessLink.getLinkType()));
-			properties.put("default_duration", getProperty(accessLink.getDefaultDuration()));
-			properties.put("frequent_traveller_duration", getProperty(accessLink.getFrequentTravellerDuration()));
-			properties.put("occasional_traveller_duration", getProperty(accessLink.getOccasionalTravellerDuration()));
-			properties.put("mobility_restricted_traveller_duration",
-					getProperty(accessLink.getMobilityRestrictedTravellerDuration()));
-			properties.put("mobility_restricted_suitability", getProperty(accessLink.getMobilityRestrictedSuitable()));
-			properties.put("stairs_availability", getProperty(accessLink.getStairsAvailable()));
-			properties.put("lift_availability", getProperty(accessLink.getLiftAvailable()));
-			properties.put("link_orientation", getProperty(accessLink.getLinkOrientation()));
-
-			double[][] coordinates = new double[0][];
-			if (accessLink.getAccessPoint() != null && accessLink.getStopArea() != null) {
-				properties.put("access_point_objectid", getProperty(accessLink.getAccessPoint().getObjectId()));
-				properties.put("stop_area_objectid", getProperty(accessLink.getStopArea().getObjectId()));
-
-				coordinates = new double[2][2];
-				coordinates[0][0] = accessLink.getAccessPoint().getLongitude().doubleValue();
-				coordinates[0][1] = accessLink.getAccessPoint().getLatitude().doubleValue();
-				coordinates[1][0] = accessLink.getStopArea().getLongitude().doubleValue();
-				coordinates[1][1] = accessLink.getStopArea().getLatitude().doubleValue();
+	private void createAccessLink(SharedData shared, AccessLink accessLink) throws IOException {
+
+		if (shared.getAccessLinks().add(accessLink.getObjectId())) {
+			GeojsonWriter writer = shared.getWriter(ACCESS_LINKS_FILE);
+			writer.startFeature(accessLink.getObjectId());
+			AccessPoint accessPoint = accessLink.getAccessPoint();
+			StopArea stopArea = accessLink.getStopArea();
+			if (accessPoint != null && stopArea != null) {
+				writer.writeLineString(
+						new Coordinate(accessPoint.getLongitude().doubleValue(), accessPoint.getLatitude()
+								.doubleValue()),
+						new Coordinate(stopArea.getLongitude().doubleValue(), stopArea.getLatitude().doubleValue()));
+			} else {
+				writer.writeLineString();
 			}
-
-			Feature feature = new Feature(accessLink.getObjectId(), new LineString(coordinates), properties);
-			filter.put(accessLink.getObjectId(), feature);
+			writer.writeProperty("object_version", accessLink.getObjectVersion());
+			writer.writeProperty("creation_time", accessLink.getCreationTime());
+			writer.writeProperty("creator_id", accessLink.getCreatorId());
+			writer.writeProperty("name", accessLink.getName());
+			writer.writeProperty("link_distance", accessLink.getLinkDistance());
+			writer.writeProperty("link_type", accessLink.getLinkType());
+			writer.writeProperty("default_duration", accessLink.getDefaultDuration());
+			writer.writeProperty("frequent_traveller_duration", accessLink.getFrequentTravellerDuration());
+			writer.writeProperty("occasional_traveller_duration", accessLink.getOccasionalTravellerDuration());
+			writer.writeProperty("mobility_restricted_traveller_duration",
+					accessLink.getMobilityRestrictedTravellerDuration());
+			writer.writeProperty("mobility_restricted_suitability", accessLink.getMobilityRestrictedSuitable());
+			writer.writeProperty("stairs_availability", accessLink.getStairsAvailable());
+			writer.writeProperty("lift_availability", accessLink.getLiftAvailable());
+			writer.writeProperty("link_orientation", accessLink.getLinkOrientation());
+			if (accessPoint != null && stopArea != null) {
+				writer.writeProperty("access_point_objectid", accessPoint.getObjectId());
+				writer.writeProperty("stop_area_objectid", stopArea.getObjectId());
+			}
+			writer.endFeature();
 		}
 	}
 
-	private Feature createFeature(StopArea stopArea) {
-		Map<String, Object> properties = new HashMap<String, Object>();
-		properties.put("object_version", getProperty(stopArea.getObjectVersion()));
-		properties.put("creation_time", getProperty(stopArea.getCreationTime()));
-		properties.put("creator_id", getProperty(stopArea.getCreatorId()));
-		properties.put("name", getProperty(stopArea.getName()));
-		properties.put("area_type", getProperty(stopArea.getAreaType()));
-		properties.put("registration_number", getProperty(stopArea.getRegistrationNumber()));
-		properties.put("nearest_topic_name", getProperty(stopArea.getNearestTopicName()));
-		properties.put("fare_code", getProperty(stopArea.getFareCode()));
-		properties.put("country_code", getProperty(stopArea.getCountryCode()));
-		properties.put("street_name", getProperty(stopArea.getStreetName()));
-		properties.put("mobility_restricted_suitability", getProperty(stopArea.getMobilityRestrictedSuitable()));
-		properties.put("stairs_availability", getProperty(stopArea.getStairsAvailable()));
-		properties.put("lift_availability", getProperty(stopArea.getLiftAvailable()));
+	private void writeFeature(GeojsonWriter writer, StopArea stopArea) throws IOException {
+		writer.startFeature(stopArea.getObjectId());
+		writer.writePoint(stopArea.getLongitude().doubleValue(), stopArea.getLatitude().doubleValue());
+		writer.writeProperty("object_version", stopArea.getObjectVersion());
+		writer.writeProperty("creation_time", stopArea.getCreationTime());
+		writer.writeProperty("creator_id", stopArea.getCreatorId());
+		writer.writeProperty("name", stopArea.getName());
+		writer.writeProperty("area_type", stopArea.getAreaType());
+		writer.writeProperty("registration_number", stopArea.getRegistrationNumber());
+		writer.writeProperty("nearest_topic_name", stopArea.getNearestTopicName());
+		writer.writeProperty("fare_code", stopArea.getFareCode());
+		writer.writeProperty("country_code", stopArea.getCountryCode());
+		writer.writeProperty("street_name", stopArea.getStreetName());
+		writer.writeProperty("mobility_restricted_suitability", stopArea.getMobilityRestrictedSuitable());
+		writer.writeProperty("stairs_availability", stopArea.getStairsAvailable());
+		writer.writeProperty("lift_availability", stopArea.getLiftAvailable());
 		if (stopArea.getParent() != null)
-			properties.put("parent", getProperty(stopArea.getParent().getObjectId()));
-
-		double[] coordinates = new double[2];
-		coordinates[0] = stopArea.getLongitude().doubleValue();
-		coordinates[1] = stopArea.getLatitude().doubleValue();
-		Feature feature = new Feature(stopArea.getObjectId(), new Point(coordinates), properties);
-		return feature;
-	}
-
-	private double[][] getCoordinates(com.vividsolutions.jts.geom.LineString geometry) {
-		Coordinate[] coordinates = geometry.getCoordinates();
-		double[][] result = new double[coordinates.length][2];
-		for (int i = 0; i < coordinates.length; i++) {
-			result[i][0] = coordinates[i].x;
-			result[i][1] = coordinates[i].y;
-		}
-		return result;
+			writer.writeProperty("parent", stopArea.getParent().getObjectId());
+		writer.endFeature();
 	}
 
-	private static String getProperty(Object object) {
-		return object == null ? "" : object.toString().trim();
+	/**
+	 * @return coordinates of route section geometry, formatted once for all
+	 *         journey patterns sharing the section
+	 */
+	private String getCoordinates(GeojsonWriter writer, Map<String, String> sections, RouteSection routeSection) {
+		String key = routeSection.getObjectId();
+		if (key != null && sections.containsKey(key))
+			return sections.get(key);
+		com.vividsolutions.jts.geom.LineString geometry = (routeSection.getInputGeometry() != null) ? routeSection
+				.getInputGeometry() : routeSection.getProcessedGeometry();
+		String coordinates = geometry == null ? null : writer.toCoordinates(geometry);
+		if (key != null)
+			sections.put(key, coordinates);
+		return coordinates;
 	}
 
 	public static class DefaultCommandFactory extends CommandFactory {
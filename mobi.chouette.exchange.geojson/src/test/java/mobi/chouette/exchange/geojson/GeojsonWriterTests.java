@@ -0,0 +1,91 @@
+package mobi.chouette.exchange.geojson;
+
+import java.io.File;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+
+public class GeojsonWriterTests {
+
+	@Test(groups = { "GeojsonWriter" }, description = "streamed feature collection")
+	public void verifyFeatureCollection() throws Exception {
+		File file = new File("target/writer_test.json");
+		file.getParentFile().mkdirs();
+		LineString section = new GeometryFactory().createLineString(new Coordinate[] {
+				new Coordinate(2.123456789, 48.987654321), new Coordinate(2.2, 48.9) });
+
+		try (GeojsonWriter writer = new GeojsonWriter(file, 5)) {
+			String coordinates = writer.toCoordinates(section);
+			writer.startFeature("jp:1");
+			writer.startMultiLineString();
+			writer.writeLine(coordinates);
+			writer.writeLine(null);
+			writer.endMultiLineString();
+			writer.writeProperty("name", " journey pattern ");
+			writer.writeProperty("color", null);
+			writer.endFeature();
+
+			writer.startFeature("jp:2");
+			writer.startMultiLineString();
+			writer.writeLine(coordinates);
+			writer.endMultiLineString();
+			writer.endFeature();
+
+			writer.startFeature("stop:1");
+			writer.writePoint(2.123456789, 48.987654321);
+			writer.endFeature();
+			Assert.assertEquals(writer.getCount(), 3);
+		}
+
+		JsonNode root = new ObjectMapper().readTree(file);
+		Assert.assertEquals(root.get("type").asText(), "FeatureCollection");
+		JsonNode features = root.get("features");
+		Assert.assertEquals(features.size(), 3);
+
+		JsonNode feature = features.get(0);
+		Assert.assertEquals(feature.get("type").asText(), "Feature");
+		Assert.assertEquals(feature.get("id").asText(), "jp:1");
+		JsonNode geometry = feature.get("geometry");
+		Assert.assertEquals(geometry.get("type").asText(), "MultiLineString");
+		Assert.assertEquals(geometry.get("coordinates").size(), 2);
+		JsonNode first = geometry.get("coordinates").get(0).get(0);
+		Assert.assertEquals(first.get(0).asDouble(), 2.12346);
+		Assert.assertEquals(first.get(1).asDouble(), 48.98765);
+		Assert.assertTrue(geometry.get("coordinates").get(1).isNull(), "missing section geometry");
+		Assert.assertEquals(feature.get("properties").get("name").asText(), "journey pattern");
+		Assert.assertEquals(feature.get("properties").get("color").asText(), "");
+
+		Assert.assertEquals(features.get(1).get("geometry").get("coordinates").get(0),
+				geometry.get("coordinates").get(0), "shared section");
+		Assert.assertNull(features.get(1).get("properties"));
+
+		geometry = features.get(2).get("geometry");
+		Assert.assertEquals(geometry.get("type").asText(), "Point");
+		Assert.assertEquals(geometry.get("coordinates").get(0).asDouble(), 2.12346);
+	}
+
+	@Test(groups = { "GeojsonWriter" }, description = "full precision by default")
+	public void verifyFullPrecision() throws Exception {
+		File file = new File("target/writer_precision_test.json");
+		file.getParentFile().mkdirs();
+		try (GeojsonWriter writer = new GeojsonWriter(file, -1)) {
+			writer.startFeature("link:1");
+			writer.writeLineString(new Coordinate(2.123456789, 48.987654321), new Coordinate(2.2, 48.9));
+			writer.endFeature();
+			writer.startFeature("link:2");
+			writer.writeLineString();
+			writer.endFeature();
+		}
+		JsonNode features = new ObjectMapper().readTree(file).get("features");
+		JsonNode coordinates = features.get(0).get("geometry").get("coordinates");
+		Assert.assertEquals(coordinates.get(0).get(0).asDouble(), 2.123456789);
+		Assert.assertEquals(coordinates.get(1).get(1).asDouble(), 48.9);
+		Assert.assertEquals(features.get(1).get("geometry").get("coordinates").size(), 0);
+	}
+}
@@ -3,6 +3,7 @@ package mobi.chouette.exchange.gtfs.importer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -20,6 +21,11 @@ import mobi.chouette.model.util.Referential;
 @Log4j
 public class CommercialStopGenerator extends AbstractGenerator {
 
+	/**
+	 * meters kept to absorb rounding errors when pairs check is skipped
+	 */
+	private static final double BOUND_MARGIN = 0.001;
+
 	/**
 	 * create and associate commercial stop points for boarding positions
 	 * 
@@ -58,18 +64,16 @@ public class CommercialStopGenerator extends AbstractGenerator {
 			keys.add(key);
 		}
 
+		NameTrie trie = new NameTrie(keys);
 		for (StopArea stop : boardingPositions) {
 
 			String mergeKey = stop.getName();
 			if (stop.getParent() != null) {
 				mergeKey = stop.getParent().getObjectId();
 			} else {
-				for (String key : keys) {
-					if (mergeKey.startsWith(key)) {
-						mergeKey = key;
-						break;
-					}
-				}
+				String key = trie.getFirstPrefix(mergeKey);
+				if (key != null)
+					mergeKey = key;
 			}
 
 			StopArea area = areaMap.get(mergeKey);
@@ -109,12 +113,9 @@ public class CommercialStopGenerator extends AbstractGenerator {
 		for (StopArea stopArea : areas) {
 			String basename = stopArea.getName();
 			for (StopArea boarding : stopArea.getContainedStopAreas()) {
-				String name = boarding.getName();
-				while (!name.contains(basename)) {
-					basename = basename.substring(0, basename.length() - 1);
-					if (basename.isEmpty())
-						break;
-				}
+				if (basename.isEmpty())
+					break;
+				basename = basename.substring(0, longestPrefixIn(basename, boarding.getName()));
 			}
 			if (!basename.isEmpty())
 				stopArea.setName(basename.trim());
@@ -163,11 +164,15 @@ public class CommercialStopGenerator extends AbstractGenerator {
 	 */
 	private void explodeArea(Referential referential, List<StopArea> dividedAreas, StopArea area, int rank,
 			String baseId, double distanceMax) {
-		if (!checkDistance(area, distanceMax)) {
+		List<Position> positions = new ArrayList<>();
+		for (StopArea stop : area.getContainedStopAreas()) {
+			positions.add(new Position(stop));
+		}
+		if (checkDistance(area, positions, distanceMax) != null) {
 			if (rank == 1) {
 				log.warn(area.getName() + " has long distance boarding positions , divided");
 			}
-			List<StopArea> excludedList = excludeLongDistanceStops(area, distanceMax);
+			List<StopArea> excludedList = excludeLongDistanceStops(area, positions, distanceMax);
 
 			StopArea areaExcluded = initArea(referential, excludedList.get(0), baseId + "_" + rank);
 			// patch object id for non confusion
@@ -185,29 +190,19 @@ public class CommercialStopGenerator extends AbstractGenerator {
 	 * 
 	 * @param area
 	 *            the commercial stop point to check
+	 * @param positions
+	 *            area boarding positions, in area order
 	 * @return a list of removed boarding positions
 	 */
-	private List<StopArea> excludeLongDistanceStops(StopArea area, double distanceMax) {
+	private List<StopArea> excludeLongDistanceStops(StopArea area, List<Position> positions, double distanceMax) {
 		List<StopArea> excludedStops = new ArrayList<StopArea>();
 
 		// remove stop most away from area while distance id invalid
-		while (!checkDistance(area, distanceMax)) {
-			double distanceMaxInArea = 0;
-			StopArea excluded = null;
-			List<StopArea> stops = area.getContainedStopAreas();
-			for (StopArea stop : stops) {
-
-				double distance = distance(area.getLongitude().doubleValue(), area.getLatitude().doubleValue(), stop
-						.getLongitude().doubleValue(), stop.getLatitude().doubleValue());
-				if (distance > distanceMaxInArea) {
-					distanceMaxInArea = distance;
-					excluded = stop;
-				}
-			}
-			if (excluded != null) {
-				excluded.setParent(null);
-				excludedStops.add(excluded);
-			}
+		Position excluded;
+		while ((excluded = checkDistance(area, positions, distanceMax)) != null) {
+			positions.remove(excluded);
+			excluded.stop.setParent(null);
+			excludedStops.add(excluded.stop);
 		}
 		return excludedStops;
 	}
@@ -216,47 +211,167 @@ public class CommercialStopGenerator extends AbstractGenerator {
 	 * compute centroid for the commercial stop point's boarding positions
 	 * 
 	 * @param area
+	 * @return centroid longitude and latitude
 	 */
-	private void buildCentroid(StopArea area) {
+	private double[] buildCentroid(StopArea area, List<Position> positions) {
 
 		double sigmaLong = 0;
 		double sigmaLat = 0;
 
-		for (StopArea stop : area.getContainedStopAreas()) {
-			sigmaLong += stop.getLongitude().doubleValue();
-			sigmaLat += stop.getLatitude().doubleValue();
+		for (Position position : positions) {
+			sigmaLong += position.longitude;
+			sigmaLat += position.latitude;
 		}
-		double areaLong = sigmaLong / area.getContainedStopAreas().size();
-		double areaLat = sigmaLat / area.getContainedStopAreas().size();
+		double areaLong = sigmaLong / positions.size();
+		double areaLat = sigmaLat / positions.size();
 		area.setLongitude(new BigDecimal(areaLong));
 		area.setLatitude(new BigDecimal(areaLat));
 		area.setLongLatType(LongLatTypeEnum.WGS84);
+		return new double[] { areaLong, areaLat };
 	}
 
 	/**
 	 * check every pair of stop to see if they are all in the distance
+	 * <p>
+	 * distances to centroid bound the pair distances, and the stop farthest
+	 * from centroid is the likeliest end of a too long pair : all pairs are
+	 * checked only when these are not conclusive
 	 * 
-	 * @return
+	 * @return null if all pairs are in the distance, else the stop farthest
+	 *         from centroid
 	 */
-	private boolean checkDistance(StopArea area, double distanceMax) {
-		buildCentroid(area);
+	private Position checkDistance(StopArea area, List<Position> positions, double distanceMax) {
+		double[] centroid = buildCentroid(area, positions);
+		double radius = 0;
+		Position farthest = null;
+		for (Position position : positions) {
+			double distance = distance(centroid[0], centroid[1], position.longitude, position.latitude);
+			if (distance > radius) {
+				radius = distance;
+				farthest = position;
+			}
+		}
+		// triangle inequality : every pair within twice the radius
+		if (2 * radius + BOUND_MARGIN < distanceMax)
+			return null;
+		if (farthest != null) {
+			for (Position position : positions) {
+				if (distance(farthest.longitude, farthest.latitude, position.longitude, position.latitude) > distanceMax)
+					return farthest;
+			}
+		}
 		//
-		List<StopArea> stops = area.getContainedStopAreas();
-		for (int i = 0; i < stops.size() - 1; i++) {
-			StopArea first = stops.get(i);
-			for (int j = i + 1; j < stops.size(); j++) {
-				StopArea next = stops.get(j);
-				double distance = distance(first.getLongitude().doubleValue(), first.getLatitude().doubleValue(), next
-						.getLongitude().doubleValue(), next.getLatitude().doubleValue());
+		for (int i = 0; i < positions.size() - 1; i++) {
+			Position first = positions.get(i);
+			for (int j = i + 1; j < positions.size(); j++) {
+				Position next = positions.get(j);
+				double distance = distance(first.longitude, first.latitude, next.longitude, next.latitude);
 				if (distance > distanceMax) {
 					// logger.debug("BP : "+first.getName()+" (pos="+first.getLatitude()+","+first.getLongitude());
 					// logger.debug("BP : "+next.getName()+" (pos="+next.getLatitude()+","+next.getLongitude());
 					// logger.debug("distance = "+distance);
-					return false;
+					return farthest;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * boarding position with coordinates converted once
+	 */
+	private static class Position {
+		private final StopArea stop;
+		private final double longitude;
+		private final double latitude;
+
+		private Position(StopArea stop) {
+			this.stop = stop;
+			this.longitude = stop.getLongitude().doubleValue();
+			this.latitude = stop.getLatitude().doubleValue();
+		}
+	}
+
+	/**
+	 * longest prefix of basename found in name, as Z-algorithm on basename
+	 * followed by name
+	 * 
+	 * @return prefix length
+	 */
+	static int longestPrefixIn(String basename, String name) {
+		int length = basename.length();
+		if (name.contains(basename))
+			return length;
+		String text = basename + '\0' + name;
+		int[] z = new int[text.length()];
+		int result = 0;
+		for (int i = 1, left = 0, right = 0; i < text.length(); i++) {
+			if (i < right)
+				z[i] = Math.min(right - i, z[i - left]);
+			while (i + z[i] < text.length() && text.charAt(z[i]) == text.charAt(i + z[i]))
+				z[i]++;
+			if (i + z[i] > right) {
+				left = i;
+				right = i + z[i];
+			}
+			if (i > length)
+				result = Math.max(result, Math.min(z[i], length));
+		}
+		return result;
+	}
+
+	/**
+	 * character trie on merge keys
+	 * <p>
+	 * prefix lookup returns the matching key first met when iterating the
+	 * keys, as a linear scan on keys with startsWith would
+	 */
+	static class NameTrie {
+		private final Node root = new Node();
+
+		NameTrie(Collection<String> keys) {
+			int rank = 0;
+			for (String key : keys) {
+				Node node = root;
+				for (int i = 0; i < key.length(); i++) {
+					Character c = key.charAt(i);
+					Node child = node.children.get(c);
+					if (child == null) {
+						child = new Node();
+						node.children.put(c, child);
+					}
+					node = child;
 				}
+				if (node.rank < 0)
+					node.rank = rank;
+				rank++;
 			}
 		}
-		return true;
+
+		/**
+		 * @return first key in keys order which is a prefix of name, null if
+		 *         none
+		 */
+		String getFirstPrefix(String name) {
+			int rank = Integer.MAX_VALUE;
+			int length = -1;
+			Node node = root;
+			for (int i = 0; node != null; i++) {
+				if (node.rank >= 0 && node.rank < rank) {
+					rank = node.rank;
+					length = i;
+				}
+				if (i == name.length())
+					break;
+				node = node.children.get(name.charAt(i));
+			}
+			return length < 0 ? null : name.substring(0, length);
+		}
+
+		private static class Node {
+			private int rank = -1;
+			private Map<Character, Node> children = new HashMap<>(4);
+		}
 	}
 
 }
@@ -5,6 +5,8 @@ import java.sql.Time;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -48,96 +50,72 @@ public class ConnectionLinkGenerator extends AbstractGenerator {
 		if (distanceMax <= 0)
 			return; // nothing to do
 
-		for (int i = 0; i < commercials.size() - 1; i++) {
-			StopArea source = commercials.get(i);
-			for (int j = i + 1; j < commercials.size(); j++) {
-				StopArea target = commercials.get(j);
-				double distance = distance(source.getLongitude().doubleValue(), source.getLatitude().doubleValue(),
-						target.getLongitude().doubleValue(), target.getLatitude().doubleValue());
+		// index stops on a grid, objectIds tokens computed once
+		List<Stop> stops = new ArrayList<>(commercials.size());
+		double maxLatitude = 0;
+		for (StopArea area : commercials) {
+			if (area.getLongitude() == null || area.getLatitude() == null)
+				continue;
+			Stop stop = new Stop(stops.size(), area);
+			stops.add(stop);
+			maxLatitude = Math.max(maxLatitude, Math.abs(stop.latitude));
+		}
+		StopAreaGrid<Stop> grid = new StopAreaGrid<>(distanceMax, maxLatitude);
+		for (Stop stop : stops) {
+			grid.add(stop.longitude, stop.latitude, stop);
+		}
+		Date now = Calendar.getInstance().getTime();
+
+		List<Stop> targets = new ArrayList<>();
+		for (Stop source : stops) {
+			// pairs are built once, from first stop in list order
+			targets.clear();
+			for (Stop target : grid.getCandidates(source.longitude, source.latitude)) {
+				if (target.index > source.index)
+					targets.add(target);
+			}
+			Collections.sort(targets);
+			for (Stop target : targets) {
+				double distance = distance(source.longitude, source.latitude, target.longitude, target.latitude);
 				if (distance < distanceMax) {
-					boolean ok = true;
-					// eligible, check route
-//					List<String> sourceRoutes = routesForStopArea.get(source.getObjectId());
-//					if (sourceRoutes == null) {
-//						sourceRoutes = computeRoutes(source);
-//						routesForStopArea.put(source.getObjectId(), sourceRoutes);
-//					}
-//					List<String> targetRoutes = routesForStopArea.get(target.getObjectId());
-//					if (targetRoutes == null) {
-//						targetRoutes = computeRoutes(target);
-//						routesForStopArea.put(target.getObjectId(), targetRoutes);
-//					}
-//					
-//					for (String route : targetRoutes) {
-//						if (sourceRoutes.contains(route)) {
-//							ok = false;
-//							break;
-//						}
-//					}
-					if (ok) {
-						// create connectionLink
-						String[] sourceToken = source.getObjectId().split(":");
-						String[] targetToken = target.getObjectId().split(":");
-						String objectId = sourceToken[0] + ":" + ConnectionLink.CONNECTIONLINK_KEY + ":"
-								+ sourceToken[2] + "_" + targetToken[2];
-						String reverseId = sourceToken[0] + ":" + ConnectionLink.CONNECTIONLINK_KEY + ":"
-								+ targetToken[2] + "_" + sourceToken[2];
-
-						if (excludedLinkMap.containsKey(objectId))
-							continue;
-						if (excludedLinkMap.containsKey(reverseId))
-							continue;
-						double durationInMillis = distance * 900; // speed of 4
-						// km/h
-						Time defaultDuration = getTime((long) durationInMillis);
-
-						if (fixedLinkMap.containsKey(objectId) || fixedLinkMap.containsKey(reverseId)) {
-							ConnectionLink link = fixedLinkMap.get(objectId);
-							if (link != null) {
-								if (link.getDefaultDuration() == null)
-									link.setDefaultDuration(defaultDuration);
-								link.setLinkDistance(BigDecimal.valueOf(distance));
-								link.setStartOfLink(source);
-								link.setEndOfLink(target);
-								log.info("ConnectionLink " + link.getName() + " updated");
-							}
-							link = fixedLinkMap.get(reverseId);
-							if (link != null) {
-								if (link.getDefaultDuration() == null)
-									link.setDefaultDuration(defaultDuration);
-								link.setLinkDistance(BigDecimal.valueOf(distance));
-								link.setStartOfLink(source);
-								link.setEndOfLink(target);
-								log.info("ConnectionLink " + link.getName() + " updated");
-
-							}
-						} else {
-
-							ConnectionLink link = ObjectFactory.getConnectionLink(referential, objectId);
-							link.setDefaultDuration(defaultDuration);
-							link.setCreationTime(Calendar.getInstance().getTime());
-							link.setStartOfLink(source);
-							link.setEndOfLink(target);
+					// create connectionLink
+					String objectId = source.prefix + ":" + ConnectionLink.CONNECTIONLINK_KEY + ":" + source.suffix
+							+ "_" + target.suffix;
+					String reverseId = source.prefix + ":" + ConnectionLink.CONNECTIONLINK_KEY + ":" + target.suffix
+							+ "_" + source.suffix;
+
+					if (excludedLinkMap.containsKey(objectId))
+						continue;
+					if (excludedLinkMap.containsKey(reverseId))
+						continue;
+					// speed of 4 km/h
+					Time defaultDuration = getDuration(distance);
+
+					if (fixedLinkMap.containsKey(objectId) || fixedLinkMap.containsKey(reverseId)) {
+						ConnectionLink link = fixedLinkMap.get(objectId);
+						if (link != null) {
+							if (link.getDefaultDuration() == null)
+								link.setDefaultDuration(defaultDuration);
+							link.setLinkDistance(BigDecimal.valueOf(distance));
+							link.setStartOfLink(source.area);
+							link.setEndOfLink(target.area);
+							log.info("ConnectionLink " + link.getName() + " updated");
+						}
+						link = fixedLinkMap.get(reverseId);
+						if (link != null) {
+							if (link.getDefaultDuration() == null)
+								link.setDefaultDuration(defaultDuration);
 							link.setLinkDistance(BigDecimal.valueOf(distance));
-							link.setLinkType(ConnectionLinkTypeEnum.Overground);
-							link.setName("from " + source.getName() + " to " + target.getName());
-							// logger.info("ConnectionLink "+link.getName()+" added");
-							links.add(link);
-
-							objectId = sourceToken[0] + ":" + ConnectionLink.CONNECTIONLINK_KEY + ":" + targetToken[2]
-									+ "_" + sourceToken[2];
-							ConnectionLink reverseLink = ObjectFactory.getConnectionLink(referential, objectId);
-							reverseLink.setDefaultDuration(defaultDuration);
-							reverseLink.setObjectId(objectId);
-							reverseLink.setCreationTime(Calendar.getInstance().getTime());
-							reverseLink.setStartOfLink(target);
-							reverseLink.setEndOfLink(source);
-							reverseLink.setLinkDistance(BigDecimal.valueOf(distance));
-							reverseLink.setLinkType(ConnectionLinkTypeEnum.Overground);
-							reverseLink.setName("from " + target.getName() + " to " + source.getName());
-							// logger.info("ConnectionLink "+reverseLink.getName()+" added");
-							links.add(reverseLink);
+							link.setStartOfLink(source.area);
+							link.setEndOfLink(target.area);
+							log.info("ConnectionLink " + link.getName() + " updated");
+
 						}
+					} else {
+						links.add(createLink(referential, objectId, source.area, target.area, distance,
+								defaultDuration, now));
+						links.add(createLink(referential, reverseId, target.area, source.area, distance,
+								defaultDuration, now));
 					}
 				} else if (distance < minDistanceRejected) {
 					minDistanceRejected = distance;
@@ -147,19 +125,40 @@ public class ConnectionLinkGenerator extends AbstractGenerator {
 		}
 
 		if (links.isEmpty()) {
-			log.info("ConnectionLink : no links builded , minimal distance found = " + minDistanceRejected + " > "
-					+ distanceMax);
+			log.info("ConnectionLink : no links builded , minimal distance found between neighbours = "
+					+ minDistanceRejected + " > " + distanceMax);
 		}
 		return;
 	}
 
-	protected Time getTime(long timeInMillis) {
-		long timeInSec = timeInMillis / 1000;
+	private ConnectionLink createLink(Referential referential, String objectId, StopArea source, StopArea target,
+			double distance, Time defaultDuration, Date creationTime) {
+		ConnectionLink link = ObjectFactory.getConnectionLink(referential, objectId);
+		link.setDefaultDuration(defaultDuration);
+		link.setCreationTime(new Date(creationTime.getTime()));
+		link.setStartOfLink(source);
+		link.setEndOfLink(target);
+		link.setLinkDistance(BigDecimal.valueOf(distance));
+		link.setLinkType(ConnectionLinkTypeEnum.Overground);
+		link.setName("from " + source.getName() + " to " + target.getName());
+		return link;
+	}
+
+	/**
+	 * walking duration at 4 km/h, truncated to the second
+	 *
+	 * @param distance
+	 *            distance in meters
+	 * @return duration as a local time of day, as durations are read and
+	 *         written elsewhere
+	 */
+	protected Time getDuration(double distance) {
+		long timeInSec = ((long) (distance * 900)) / 1000;
 		Calendar c = Calendar.getInstance();
 		int d = c.get(Calendar.DATE);
 		int M = c.get(Calendar.MONTH);
 		int y = c.get(Calendar.YEAR);
-		int s = (int) (timeInSec % 3600);
+		int s = (int) (timeInSec % 60);
 		timeInSec /= 60;
 		int m = (int) (timeInSec % 60);
 		timeInSec /= 60;
@@ -169,4 +168,31 @@ public class ConnectionLinkGenerator extends AbstractGenerator {
 		return time;
 	}
 
+	/**
+	 * commercial stop with its coordinates and objectId tokens
+	 */
+	private static class Stop implements Comparable<Stop> {
+		private final int index;
+		private final StopArea area;
+		private final double longitude;
+		private final double latitude;
+		private final String prefix;
+		private final String suffix;
+
+		private Stop(int index, StopArea area) {
+			this.index = index;
+			this.area = area;
+			this.longitude = area.getLongitude().doubleValue();
+			this.latitude = area.getLatitude().doubleValue();
+			String[] token = area.getObjectId().split(":");
+			this.prefix = token[0];
+			this.suffix = token[2];
+		}
+
+		@Override
+		public int compareTo(Stop other) {
+			return Integer.compare(index, other.index);
+		}
+	}
+
 }
@@ -38,6 +38,7 @@ public class GtfsDisposeImportCommand extends AbstractDisposeImportCommand  impl
 			if (gtfsValidationReporter != null) {
 				gtfsValidationReporter.dispose();
 			}
+			context.remove(GTFS_SHAPE_SEGMENTS);
 
 			result = SUCCESS;
 
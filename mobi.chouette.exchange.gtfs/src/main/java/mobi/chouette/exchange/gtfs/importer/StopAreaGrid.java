@@ -0,0 +1,107 @@
+package mobi.chouette.exchange.gtfs.importer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * uniform longitude/latitude grid for neighbour searches
+ * <p>
+ * cells are sized so that any point nearer than the search distance from a
+ * given point lies in the cell of this point or in one of its 8 neighbour
+ * cells ; longitudes wrap around the antimeridian.
+ *
+ * @param <T>
+ *            indexed values
+ */
+class StopAreaGrid<T> {
+
+	/**
+	 * earth radius used by {@link AbstractGenerator#distance}
+	 */
+	private static final double EARTH_RADIUS = 6378000.;
+
+	/**
+	 * cells are slightly enlarged to absorb rounding errors in distance
+	 * computations
+	 */
+	private static final double MARGIN = 1.01;
+
+	private final double cellLatitude;
+
+	private final double cellLongitude;
+
+	private final int columns;
+
+	private final Map<Long, List<T>> cells = new HashMap<>();
+
+	/**
+	 * @param distance
+	 *            search distance in meters
+	 * @param maxLatitude
+	 *            greatest absolute latitude of indexed points, in degrees
+	 */
+	StopAreaGrid(double distance, double maxLatitude) {
+		double angle = distance * MARGIN / EARTH_RADIUS;
+		cellLatitude = Math.toDegrees(angle);
+		// haversine : sin(d/2R) >= cos(lat) * sin(dLon/2)
+		double cos = Math.cos(Math.toRadians(Math.min(90., Math.abs(maxLatitude))));
+		double ratio = cos > 0 ? Math.sin(angle / 2) / cos : 1.;
+		double longitude = ratio < 1. ? Math.toDegrees(2 * Math.asin(ratio)) : 360.;
+		columns = (int) Math.max(1, Math.floor(360. / longitude));
+		cellLongitude = 360. / columns;
+	}
+
+	void add(double longitude, double latitude, T value) {
+		long key = key(row(latitude), column(longitude));
+		List<T> cell = cells.get(key);
+		if (cell == null) {
+			cell = new ArrayList<>(4);
+			cells.put(key, cell);
+		}
+		cell.add(value);
+	}
+
+	/**
+	 * @return values in point cell and its neighbour cells, to be filtered on
+	 *         real distance
+	 */
+	List<T> getCandidates(double longitude, double latitude) {
+		List<T> result = new ArrayList<>();
+		long row = row(latitude);
+		int column = column(longitude);
+		for (long r = row - 1; r <= row + 1; r++) {
+			for (int c = -1; c <= 1; c++) {
+				// small grids : same column reached twice
+				if (columns < 3 && (c == -1 && columns == 1 || c == 1 && columns <= 2))
+					continue;
+				List<T> cell = cells.get(key(r, modulo(column + c)));
+				if (cell != null)
+					result.addAll(cell);
+			}
+		}
+		return result;
+	}
+
+	int size() {
+		return cells.size();
+	}
+
+	private long row(double latitude) {
+		return (long) Math.floor((latitude + 90.) / cellLatitude);
+	}
+
+	private int column(double longitude) {
+		return modulo((int) Math.floor((longitude + 180.) / cellLongitude));
+	}
+
+	private int modulo(int column) {
+		int result = column % columns;
+		return result < 0 ? result + columns : result;
+	}
+
+	private long key(long row, int column) {
+		return row * columns + column;
+	}
+}
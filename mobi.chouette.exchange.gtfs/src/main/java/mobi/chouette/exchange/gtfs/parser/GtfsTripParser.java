@@ -19,6 +19,7 @@ import java.util.zip.Checksum;
 import org.apache.commons.lang.StringUtils;
 
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.log4j.Log4j;
@@ -710,30 +711,85 @@ public class GtfsTripParser implements Parser, Validator, Constant {
 
 	}
 
-	private void mergeRoutes(Referential referential, List<Route> routeList) {
+	/**
+	 * merge each route into the first larger route including its stop
+	 * sequence, routes being sorted by stop count
+	 * <p>
+	 * stops are indexed by (stop area, boarding, alighting) signature ;
+	 * including candidates are the routes sharing the rarest signature of the
+	 * included route
+	 * 
+	 * @param referential
+	 * @param routeList
+	 */
+	void mergeRoutes(Referential referential, List<Route> routeList) {
 		// Sort routes by stopPointCount desc 
 		orderRouteListByStopPointListSize(routeList);
 
-		for (int i = 0; i < routeList.size(); i++) {
-			Route route1 = routeList.get(i);
-			if (route1.getStopPoints().size() == 0) {
-				continue;
+		int size = routeList.size();
+		Map<StopPointSignature, Integer> signatures = new HashMap<>();
+		List<List<Integer>> routesBySignature = new ArrayList<>();
+		int[][] sequences = new int[size][];
+		for (int i = 0; i < size; i++) {
+			List<StopPoint> points = routeList.get(i).getStopPoints();
+			int[] sequence = new int[points.size()];
+			for (int k = 0; k < sequence.length; k++) {
+				StopPointSignature signature = new StopPointSignature(points.get(k));
+				Integer id = signatures.get(signature);
+				if (id == null) {
+					id = routesBySignature.size();
+					signatures.put(signature, id);
+					routesBySignature.add(new ArrayList<Integer>());
+				}
+				sequence[k] = id;
+				List<Integer> routes = routesBySignature.get(id);
+				if (routes.isEmpty() || routes.get(routes.size() - 1) != i)
+					routes.add(i);
 			}
-			for (int j = i + 1; j < routeList.size(); j++) {
-				Route route2 = routeList.get(j);
+			sequences[i] = sequence;
+		}
 
-				if (route2.getStopPoints().size() == 0) {
-					continue;
-				}
-				if (route1.getStopPoints().size() > route2.getStopPoints().size()) {
-					mergeIfRouteInclude(route2, route1, referential);
-				} else {
+		boolean[] merged = new boolean[size];
+		for (int j = 1; j < size; j++) {
+			int[] sequence = sequences[j];
+			if (sequence.length == 0) {
+				continue;
+			}
+			List<Integer> candidates = null;
+			for (int id : sequence) {
+				List<Integer> routes = routesBySignature.get(id);
+				if (candidates == null || routes.size() < candidates.size())
+					candidates = routes;
+			}
+			Route route2 = routeList.get(j);
+			for (int i : candidates) {
+				if (i >= j)
+					break;
+				if (merged[i] || sequences[i].length <= sequence.length)
 					continue;
-
+				Route route1 = routeList.get(i);
+				if (route2.getWayBack().equals(route1.getWayBack()) && isSubsequence(sequence, sequences[i])) {
+					merged[j] = mergeIfRouteInclude(route2, route1, referential);
+					break;
 				}
-
 			}
 		}
+		signatures.clear();
+	}
+
+	/**
+	 * @return true if included signatures are found in order in including
+	 *         ones
+	 */
+	private boolean isSubsequence(int[] included, int[] including) {
+		int rank = 0;
+		for (int id : included) {
+			while (rank < including.length && including[rank] != id)
+				rank++;
+			if (rank == including.length)
+				return false;
+		}
+		return true;
 	}
 
 	/**
@@ -837,6 +893,22 @@ public class GtfsTripParser implements Parser, Validator, Constant {
 		return match;
 	}
 
+	/**
+	 * stop point key for {@link #checkIfTwoPointAreEquivalent(StopPoint, StopPoint)}
+	 */
+	@EqualsAndHashCode
+	private static class StopPointSignature {
+		private final StopArea stopArea;
+		private final BoardingPossibilityEnum forBoarding;
+		private final AlightingPossibilityEnum forAlighting;
+
+		private StopPointSignature(StopPoint point) {
+			this.stopArea = point.getContainedInStopArea();
+			this.forBoarding = point.getForBoarding();
+			this.forAlighting = point.getForAlighting();
+		}
+	}
+
 	/**
 	 * Check if two gtfs stopPoint are equivalent according to their stopArea
 	 * and pickuptime and dropofftime
@@ -981,7 +1053,7 @@ public class GtfsTripParser implements Parser, Validator, Constant {
 		// Shape -> routeSections
 		if (gtfsShapes != null) {
 			List<RouteSection> sections = createRouteSections(context, referential, configuration, journeyPattern,
-					vehicleJourney, gtfsShapes);
+					vehicleJourney, gtfsTrip.getShapeId(), gtfsShapes);
 			if (!sections.isEmpty()) {
 				journeyPattern.setRouteSections(sections);
 				journeyPattern.setSectionStatus(SectionStatusEnum.Completed);
@@ -1011,96 +1083,75 @@ public class GtfsTripParser implements Parser, Validator, Constant {
 	 * @param configuration
 	 * @param journeyPattern
 	 * @param vehicleJourney
+	 * @param shapeId
 	 * @param gtfsShapes
 	 * @return
 	 */
-	private List<RouteSection> createRouteSections(Context context, Referential referential,
+	List<RouteSection> createRouteSections(Context context, Referential referential,
 			GtfsImportParameters configuration, JourneyPattern journeyPattern, VehicleJourney vehicleJourney,
-			Iterable<GtfsShape> gtfsShapes) {
+			String shapeId, Iterable<GtfsShape> gtfsShapes) {
 		List<RouteSection> sections = new ArrayList<>();
-		GeometryFactory factory = new GeometryFactory(new PrecisionModel(10), 4326);
-		List<OrderedCoordinate> coordinates = new ArrayList<>();
-		List<LineSegment> segments = new ArrayList<>();
-		Coordinate previous = null;
-		String shapeId = null;
-		// Integer lineNumber = null;
-		for (GtfsShape gtfsShape : gtfsShapes) {
-			if (gtfsShape.getShapePtLon() == null || gtfsShape.getShapePtLat() == null) {
-				log.error("line " + gtfsShape.getId() + " missing coordinates for shape " + gtfsShape.getShapeId());
-				return sections;
-			}
-			if (shapeId == null) {
-				shapeId = gtfsShape.getShapeId();
-			}
-			OrderedCoordinate current = new OrderedCoordinate(gtfsShape.getShapePtLon().doubleValue(), gtfsShape
-					.getShapePtLat().doubleValue(), gtfsShape.getShapePtSequence());
-			if (previous != null) {
-				// remove duplicate coords
-				if (Math.abs(current.x - previous.x) < narrow && Math.abs(current.y - previous.y) < narrow) {
-					continue;
-				}
-				coordinates.add(current);
-			} else {
-				coordinates.add(current);
-			}
-			previous = current;
-		}
-		if (coordinates.size() < 2) {
-			log.warn("no segments found");
+		ShapeSegments segments = getShapeSegments(context, shapeId, gtfsShapes);
+		if (segments.size() == 0) {
 			return sections;
 		}
+		String prefix = journeyPattern.objectIdPrefix();
 
-		previous = null;
-		Collections.sort(coordinates, COORDINATE_SORTER);
-		for (OrderedCoordinate current : coordinates) {
-			if (previous != null) {
-				LineSegment segment = new LineSegment(previous, current);
-				segments.add(segment);
+		// same stop sequence already projected on this shape
+		StringBuilder builder = new StringBuilder(prefix);
+		for (StopPoint stop : journeyPattern.getStopPoints()) {
+			builder.append(' ').append(stop.getContainedInStopArea().getObjectId());
+		}
+		String sequenceKey = builder.toString();
+		List<String> sectionIds = segments.getSections(sequenceKey);
+		if (sectionIds != null) {
+			for (String sectionId : sectionIds) {
+				RouteSection section = referential.getRouteSections().get(sectionId);
+				if (section == null || !section.isFilled()) {
+					sections.clear();
+					break;
+				}
+				sections.add(section);
+			}
+			if (sections.size() == sectionIds.size()) {
+				return sections;
 			}
-			previous = current;
 		}
 
+		GeometryFactory factory = new GeometryFactory(new PrecisionModel(10), 4326);
+		Coordinate previous = null;
 		int segmentRank = 0;
-		previous = null;
-		String prefix = journeyPattern.objectIdPrefix();
 		StopArea previousLocation = null;
 		for (StopPoint stop : journeyPattern.getStopPoints()) {
 			// find nearest segment and project point on it
 			StopArea location = stop.getContainedInStopArea();
 			Coordinate point = new Coordinate(location.getLongitude().doubleValue(), location.getLatitude()
 					.doubleValue());
-			double distance_min = Double.MAX_VALUE;
-			int rank = 0;
-			for (int i = segmentRank; i < segments.size(); i++) {
-				double distance = segments.get(i).distance(point);
-				if (distance < distance_min) {
-					distance_min = distance;
-					rank = i;
-				}
-			}
+			int rank = segments.locate(point, segmentRank);
+			LineSegment segment = segments.getSegment(rank);
 			// compose routeSection
 			Coordinate projection = null;
 			boolean lastSegmentIncluded = false;
-			double factor = segments.get(rank).projectionFactor(point);
+			double factor = segment.projectionFactor(point);
 			int intFactor = (int) (factor * 100.);
 			if (factor <= 0.05) {
 				// projection near or before first point
-				projection = segments.get(rank).getCoordinate(0);
+				projection = segment.getCoordinate(0);
 				intFactor = 0;
 			} else if (factor >= 0.95) {
 				// projection near or after last point
-				projection = segments.get(rank).getCoordinate(1);
+				projection = segment.getCoordinate(1);
 				lastSegmentIncluded = true;
 				intFactor = 100;
 			} else {
 				// projection inside segment
-				projection = segments.get(rank).project(point);
+				projection = segment.project(point);
 			}
 			if (previous != null) {
 				List<Coordinate> coords = new ArrayList<>();
 				coords.add(previous);
 				for (int i = segmentRank; i < rank; i++) {
-					coords.add(segments.get(i).getCoordinate(1));
+					coords.add(segments.getEnd(i));
 				}
 				coords.add(projection);
 				if (lastSegmentIncluded)
@@ -1144,9 +1195,63 @@ public class GtfsTripParser implements Parser, Validator, Constant {
 
 		}
 
+		List<String> ids = new ArrayList<>(sections.size());
+		for (RouteSection section : sections) {
+			ids.add(section.getObjectId());
+		}
+		segments.putSections(sequenceKey, ids);
 		return sections;
 	}
 
+	/**
+	 * get shape segments from import cache, build them on first use
+	 * 
+	 * @param context
+	 * @param shapeId
+	 * @param gtfsShapes
+	 * @return shape segments, empty when shape is unusable
+	 */
+	private ShapeSegments getShapeSegments(Context context, String shapeId, Iterable<GtfsShape> gtfsShapes) {
+		ShapeSegments.Cache cache = (ShapeSegments.Cache) context.get(GTFS_SHAPE_SEGMENTS);
+		if (cache == null) {
+			cache = new ShapeSegments.Cache();
+			context.put(GTFS_SHAPE_SEGMENTS, cache);
+		}
+		ShapeSegments segments = cache.get(shapeId);
+		if (segments != null) {
+			return segments;
+		}
+
+		List<OrderedCoordinate> coordinates = new ArrayList<>();
+		Coordinate previous = null;
+		boolean valid = true;
+		for (GtfsShape gtfsShape : gtfsShapes) {
+			if (gtfsShape.getShapePtLon() == null || gtfsShape.getShapePtLat() == null) {
+				log.error("line " + gtfsShape.getId() + " missing coordinates for shape " + gtfsShape.getShapeId());
+				coordinates.clear();
+				valid = false;
+				break;
+			}
+			OrderedCoordinate current = new OrderedCoordinate(gtfsShape.getShapePtLon().doubleValue(), gtfsShape
+					.getShapePtLat().doubleValue(), gtfsShape.getShapePtSequence());
+			if (previous != null) {
+				// remove duplicate coords
+				if (Math.abs(current.x - previous.x) < narrow && Math.abs(current.y - previous.y) < narrow) {
+					continue;
+				}
+			}
+			coordinates.add(current);
+			previous = current;
+		}
+		if (valid && coordinates.size() < 2) {
+			log.warn("no segments found");
+		}
+		Collections.sort(coordinates, COORDINATE_SORTER);
+		segments = new ShapeSegments(coordinates);
+		cache.put(shapeId, segments);
+		return segments;
+	}
+
 	/**
 	 * create route for trip
 	 * 
@@ -1180,17 +1285,14 @@ public class GtfsTripParser implements Parser, Validator, Constant {
 	}
 
 	private String buildStopsKey(VehicleJourney vehicleJourney) {
-		String stopsKey = "";
+		StringBuilder stopsKey = new StringBuilder(vehicleJourney.getVehicleJourneyAtStops().size() * 32);
 		for (VehicleJourneyAtStop vjas : vehicleJourney.getVehicleJourneyAtStops()) {
 			VehicleJourneyAtStopWrapper vjasw = (VehicleJourneyAtStopWrapper) vjas;
-			String stopId = vjasw.stopId;
-
-			stopId += "_" + getPickUpTypeOrdinal(vjasw) + "_" + getDropOffTypeOrdinal(vjasw);
-
-			stopsKey += stopId + " ";
+			stopsKey.append(vjasw.stopId).append('_').append(getPickUpTypeOrdinal(vjasw)).append('_')
+					.append(getDropOffTypeOrdinal(vjasw)).append(' ');
 		}
 		Checksum checksum = new Adler32();
-		byte bytes[] = stopsKey.getBytes();
+		byte bytes[] = stopsKey.toString().getBytes();
 		checksum.update(bytes, 0, bytes.length);
 		return Long.toHexString(checksum.getValue());
 	}
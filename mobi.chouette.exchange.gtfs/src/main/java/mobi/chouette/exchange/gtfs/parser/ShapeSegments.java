@@ -0,0 +1,204 @@
+package mobi.chouette.exchange.gtfs.parser;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vividsolutions.jts.algorithm.CGAlgorithms;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.LineSegment;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * ordered and deduplicated points of a gtfs shape, packed as x,y pairs
+ * <p>
+ * segments are searched in a look-ahead window from the current rank ; an
+ * index on the whole shape is then queried on growing ranges up to the best
+ * window distance, so that the located segment is the one a full scan would
+ * find.
+ */
+class ShapeSegments {
+
+	/**
+	 * segments scanned before querying the index
+	 */
+	static final int WINDOW = 64;
+
+	/**
+	 * first index search range, in degrees
+	 */
+	static final double INITIAL_RANGE = 0.0005;
+
+	private final double[] points;
+
+	private final int size;
+
+	private STRtree index;
+
+	/**
+	 * route section ids by stop sequence key
+	 */
+	private final Map<String, List<String>> sections = new HashMap<>();
+
+	/**
+	 * @param coordinates
+	 *            shape points in shape sequence order
+	 */
+	ShapeSegments(List<? extends Coordinate> coordinates) {
+		points = new double[coordinates.size() * 2];
+		int i = 0;
+		for (Coordinate coordinate : coordinates) {
+			points[i++] = coordinate.x;
+			points[i++] = coordinate.y;
+		}
+		size = Math.max(0, coordinates.size() - 1);
+	}
+
+	/**
+	 * @return segments count
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return points count, for cache accounting
+	 */
+	int getPointCount() {
+		return points.length / 2;
+	}
+
+	LineSegment getSegment(int rank) {
+		return new LineSegment(getStart(rank), getEnd(rank));
+	}
+
+	Coordinate getStart(int rank) {
+		return new Coordinate(points[2 * rank], points[2 * rank + 1]);
+	}
+
+	Coordinate getEnd(int rank) {
+		return new Coordinate(points[2 * rank + 2], points[2 * rank + 3]);
+	}
+
+	/**
+	 * locate nearest segment from a given rank ; first one wins on equal
+	 * distances
+	 *
+	 * @param point
+	 * @param from
+	 *            first segment rank to consider
+	 * @return nearest segment rank, 0 when no segment remains
+	 */
+	int locate(Coordinate point, int from) {
+		Coordinate start = new Coordinate();
+		Coordinate end = new Coordinate();
+		double min = Double.MAX_VALUE;
+		int rank = 0;
+		int last = Math.min(size, from + WINDOW);
+		for (int i = from; i < last; i++) {
+			double distance = distance(point, i, start, end);
+			if (distance < min) {
+				min = distance;
+				rank = i;
+			}
+		}
+		if (last >= size || min == 0.) {
+			return rank;
+		}
+		if (!(min < Double.MAX_VALUE)) {
+			// no usable distance in window : plain scan
+			for (int i = last; i < size; i++) {
+				double distance = distance(point, i, start, end);
+				if (distance < min) {
+					min = distance;
+					rank = i;
+				}
+			}
+			return rank;
+		}
+		// segments nearer than a range have their envelope in range ; range
+		// grows until it holds a candidate or reaches window best distance
+		double bound = min;
+		double range = Math.min(bound, INITIAL_RANGE);
+		while (true) {
+			double margin = range * (1. + 1e-9) + 1e-12;
+			Envelope envelope = new Envelope(point.x - margin, point.x + margin, point.y - margin, point.y + margin);
+			for (Object item : getIndex().query(envelope)) {
+				int i = ((Integer) item).intValue();
+				if (i < last)
+					continue;
+				double distance = distance(point, i, start, end);
+				if (distance < min || (distance == min && i < rank)) {
+					min = distance;
+					rank = i;
+				}
+			}
+			if (min <= range || range >= bound)
+				return rank;
+			range = Math.min(range * 4, bound);
+		}
+	}
+
+	List<String> getSections(String key) {
+		return sections.get(key);
+	}
+
+	void putSections(String key, List<String> ids) {
+		sections.put(key, ids);
+	}
+
+	/**
+	 * same computation as {@link LineSegment#distance(Coordinate)}
+	 */
+	private double distance(Coordinate point, int rank, Coordinate start, Coordinate end) {
+		start.x = points[2 * rank];
+		start.y = points[2 * rank + 1];
+		end.x = points[2 * rank + 2];
+		end.y = points[2 * rank + 3];
+		return CGAlgorithms.distancePointLine(point, start, end);
+	}
+
+	private STRtree getIndex() {
+		if (index == null) {
+			index = new STRtree();
+			for (int i = 0; i < size; i++) {
+				index.insert(new Envelope(points[2 * i], points[2 * i + 2], points[2 * i + 1], points[2 * i + 3]),
+						Integer.valueOf(i));
+			}
+			index.build();
+		}
+		return index;
+	}
+
+	/**
+	 * shapes of an import, least recently used ones dropped beyond a points
+	 * count
+	 */
+	static class Cache {
+
+		static final int MAX_CACHED_POINTS = 2000000;
+
+		private final LinkedHashMap<String, ShapeSegments> shapes = new LinkedHashMap<>(16, 0.75f, true);
+
+		private int pointCount = 0;
+
+		ShapeSegments get(String shapeId) {
+			return shapes.get(shapeId);
+		}
+
+		void put(String shapeId, ShapeSegments segments) {
+			ShapeSegments previous = shapes.put(shapeId, segments);
+			if (previous != null)
+				pointCount -= previous.getPointCount();
+			pointCount += segments.getPointCount();
+			for (Iterator<ShapeSegments> iterator = shapes.values().iterator(); pointCount > MAX_CACHED_POINTS
+					&& shapes.size() > 1;) {
+				pointCount -= iterator.next().getPointCount();
+				iterator.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package mobi.chouette.exchange.gtfs.importer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.Context;
+import mobi.chouette.exchange.gtfs.Constant;
+import mobi.chouette.exchange.gtfs.model.importer.GtfsImporter;
+import mobi.chouette.exchange.gtfs.parser.GtfsStopParser;
+import mobi.chouette.model.StopArea;
+import mobi.chouette.model.type.ChouetteAreaEnum;
+import mobi.chouette.model.type.LongLatTypeEnum;
+import mobi.chouette.model.util.ObjectFactory;
+import mobi.chouette.model.util.Referential;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Log4j
+public class CommercialStopGeneratorTests implements Constant {
+
+	/**
+	 * quays count for synthetic feed parity test
+	 */
+	private static final int SYNTHETIC_QUAYS = 2000;
+
+	/**
+	 * quays count for benchmark ; former generator is quadratic, run with
+	 * -Dcommercial.stop.quays=100000 for a national feed size
+	 */
+	private static final int QUAYS = Integer.getInteger("commercial.stop.quays", 20000);
+
+	/**
+	 * distance, ignore last word, ignored end characters
+	 */
+	private static final Object[][] CONFIGURATIONS = { { 100, false, 0 }, { 300, true, 3 }, { 50, false, 4 },
+			{ 1000, true, 10 } };
+
+	@Test(groups = { "CommercialStopGenerator" }, description = "same stop areas as former generator on test feeds")
+	public void verifyFeeds() throws Exception {
+		File tad = new File("target/test-feeds/tad");
+		unzip(new File("src/test/data/tad.zip"), tad.getParentFile());
+		for (String path : new String[] { "src/test/data/valid", tad.getPath() }) {
+			for (Object[] configuration : CONFIGURATIONS) {
+				String message = path + " " + Arrays.toString(configuration);
+				Context expected = parseFeed(path, configuration);
+				Context actual = parseFeed(path, configuration);
+				try {
+					new LegacyCommercialStopGenerator().createCommercialStopPoints(expected);
+				} catch (RuntimeException e) {
+					// single word names shorter than ignored characters
+					try {
+						new CommercialStopGenerator().createCommercialStopPoints(actual);
+						Assert.fail(message + " expected " + e);
+					} catch (RuntimeException ex) {
+						Assert.assertEquals(ex.getClass(), e.getClass(), message);
+					}
+					continue;
+				}
+				new CommercialStopGenerator().createCommercialStopPoints(actual);
+				assertSameAreas(actual, expected, message);
+			}
+		}
+	}
+
+	@Test(groups = { "CommercialStopGenerator" }, description = "same stop areas as former generator on synthetic feed")
+	public void verifySynthetic() throws Exception {
+		for (Object[] configuration : CONFIGURATIONS) {
+			Context expected = createFeed(SYNTHETIC_QUAYS, configuration);
+			new LegacyCommercialStopGenerator().createCommercialStopPoints(expected);
+			Context actual = createFeed(SYNTHETIC_QUAYS, configuration);
+			new CommercialStopGenerator().createCommercialStopPoints(actual);
+			assertSameAreas(actual, expected, Arrays.toString(configuration));
+		}
+	}
+
+	@Test(groups = { "CommercialStopGenerator" }, description = "national feed size against former generator", enabled = false)
+	public void benchmark() throws Exception {
+		for (Object[] configuration : CONFIGURATIONS) {
+			Context expected = createFeed(QUAYS, configuration);
+			long start = System.currentTimeMillis();
+			new LegacyCommercialStopGenerator().createCommercialStopPoints(expected);
+			long legacy = System.currentTimeMillis() - start;
+			Context actual = createFeed(QUAYS, configuration);
+			start = System.currentTimeMillis();
+			new CommercialStopGenerator().createCommercialStopPoints(actual);
+			long duration = System.currentTimeMillis() - start;
+			log.info("CommercialStopGenerator : " + QUAYS + " quays " + Arrays.toString(configuration)
+					+ " in " + duration + " ms, former in " + legacy + " ms");
+			assertSameAreas(actual, expected, Arrays.toString(configuration));
+		}
+	}
+
+	@Test(groups = { "CommercialStopGenerator" }, description = "first key prefix as a scan on keys")
+	public void verifyTrie() throws Exception {
+		List<String> keys = Arrays.asList("Gare Nord", "Gare", "", "Gare Sud quai", "Mairie");
+		CommercialStopGenerator.NameTrie trie = new CommercialStopGenerator.NameTrie(keys);
+		Assert.assertEquals(trie.getFirstPrefix("Gare Nord A"), "Gare Nord");
+		Assert.assertEquals(trie.getFirstPrefix("Gare Sud quai 2"), "Gare");
+		Assert.assertEquals(trie.getFirstPrefix("Mairie"), "");
+		List<String> names = Arrays.asList("Gare Nord A", "Gare Sud quai 2", "Gare Sud", "Gare S", "Gare", "Mairie",
+				"Mairie annexe", "Mai", "");
+		assertFirstPrefix(trie, keys, names);
+
+		List<String> otherKeys = Arrays.asList("Gare Sud", "Mairie");
+		CommercialStopGenerator.NameTrie other = new CommercialStopGenerator.NameTrie(otherKeys);
+		Assert.assertEquals(other.getFirstPrefix("Mairie"), "Mairie");
+		Assert.assertEquals(other.getFirstPrefix("Gare Sud quai 2"), "Gare Sud");
+		Assert.assertNull(other.getFirstPrefix("Gare"));
+		Assert.assertNull(other.getFirstPrefix(""));
+		assertFirstPrefix(other, otherKeys, names);
+
+		Assert.assertEquals(CommercialStopGenerator.longestPrefixIn("Gare Nord", "Nouvelle Gare Nord A"), 9);
+		Assert.assertEquals(CommercialStopGenerator.longestPrefixIn("Gare Nord", "Gare Sud"), 5);
+		Assert.assertEquals(CommercialStopGenerator.longestPrefixIn("Gare Nord", "La Gare du Nord"), 5);
+		Assert.assertEquals(CommercialStopGenerator.longestPrefixIn("Gare", "Mairie"), 0);
+		Assert.assertEquals(CommercialStopGenerator.longestPrefixIn("aab", "aaab"), 3);
+	}
+
+	/**
+	 * trie result against a scan on keys in order
+	 */
+	private void assertFirstPrefix(CommercialStopGenerator.NameTrie trie, List<String> keys, List<String> names) {
+		for (String name : names) {
+			String expected = null;
+			for (String key : keys) {
+				if (name.startsWith(key)) {
+					expected = key;
+					break;
+				}
+			}
+			Assert.assertEquals(trie.getFirstPrefix(name), expected, "'" + name + "'");
+		}
+	}
+
+	private Context createContext(Object[] configuration) {
+		Context context = new Context();
+		GtfsImportParameters parameters = new GtfsImportParameters();
+		parameters.setObjectIdPrefix("GtfsTest");
+		parameters.setMaxDistanceForCommercial((Integer) configuration[0]);
+		parameters.setIgnoreLastWord((Boolean) configuration[1]);
+		parameters.setIgnoreEndChars((Integer) configuration[2]);
+		context.put(CONFIGURATION, parameters);
+		context.put(REFERENTIAL, new Referential());
+		return context;
+	}
+
+	private Context parseFeed(String path, Object[] configuration) throws Exception {
+		Context context = createContext(configuration);
+		GtfsImporter importer = new GtfsImporter(path);
+		context.put(PARSER, importer);
+		try {
+			new GtfsStopParser().parse(context);
+		} finally {
+			importer.dispose();
+		}
+		return context;
+	}
+
+	/**
+	 * quays by groups of 4 around a station ; station names are reused far
+	 * away and some are prefix of others
+	 */
+	private Context createFeed(int count, Object[] configuration) {
+		Context context = createContext(configuration);
+		Referential referential = (Referential) context.get(REFERENTIAL);
+		Random random = new Random(1);
+		int names = Math.max(1, count / 8);
+		double longitude = 0;
+		double latitude = 0;
+		for (int i = 0; i < count; i++) {
+			int group = i / 4;
+			if (i % 4 == 0) {
+				longitude = 2.0 + random.nextDouble() * 2;
+				latitude = 48.0 + random.nextDouble();
+			}
+			String name = String.format("Station %05d", group % names);
+			if (group % 7 == 0)
+				name += " Nord";
+			if (i % 4 != 0 || group % 3 != 0)
+				name += " quai " + (char) ('A' + i % 4);
+			else
+				name += " Gare";
+			StopArea quay = ObjectFactory.getStopArea(referential, "GtfsTest:StopArea:" + i);
+			quay.setName(name);
+			quay.setAreaType(ChouetteAreaEnum.BoardingPosition);
+			quay.setLongitude(BigDecimal.valueOf(longitude + random.nextGaussian() * 0.0005));
+			quay.setLatitude(BigDecimal.valueOf(latitude + random.nextGaussian() * 0.0003));
+			quay.setLongLatType(LongLatTypeEnum.WGS84);
+		}
+		return context;
+	}
+
+	private void assertSameAreas(Context actual, Context expected, String message) {
+		List<String> actualAreas = dump((Referential) actual.get(REFERENTIAL));
+		List<String> expectedAreas = dump((Referential) expected.get(REFERENTIAL));
+		Assert.assertEquals(actualAreas.size(), expectedAreas.size(), message + " areas count");
+		for (int i = 0; i < expectedAreas.size(); i++) {
+			Assert.assertEquals(actualAreas.get(i), expectedAreas.get(i), message);
+		}
+	}
+
+	private List<String> dump(Referential referential) {
+		List<String> result = new ArrayList<>();
+		for (StopArea area : referential.getSharedStopAreas().values()) {
+			StringBuilder builder = new StringBuilder();
+			builder.append(area.getObjectId()).append(';').append(area.getAreaType()).append(';')
+					.append(area.getName()).append(';').append(area.getLongitude()).append(';')
+					.append(area.getLatitude()).append(';')
+					.append(area.getParent() == null ? null : area.getParent().getObjectId()).append(';');
+			for (StopArea child : area.getContainedStopAreas()) {
+				builder.append(child.getObjectId()).append(',');
+			}
+			result.add(builder.toString());
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private void unzip(File zip, File directory) throws Exception {
+		FileUtils.forceMkdir(directory);
+		try (ZipFile file = new ZipFile(zip)) {
+			for (ZipEntry entry : Collections.list(file.entries())) {
+				File target = new File(directory, entry.getName());
+				if (entry.isDirectory()) {
+					FileUtils.forceMkdir(target);
+					continue;
+				}
+				try (InputStream input = file.getInputStream(entry);
+						FileOutputStream output = new FileOutputStream(target)) {
+					IOUtils.copy(input, output);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package mobi.chouette.exchange.gtfs.importer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.Context;
+import mobi.chouette.exchange.gtfs.Constant;
+import mobi.chouette.model.ConnectionLink;
+import mobi.chouette.model.StopArea;
+import mobi.chouette.model.type.ChouetteAreaEnum;
+import mobi.chouette.model.type.LongLatTypeEnum;
+import mobi.chouette.model.util.ObjectFactory;
+import mobi.chouette.model.util.Referential;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Log4j
+public class ConnectionLinkGeneratorTests implements Constant {
+
+	/**
+	 * stops count for parity test ; all-pairs reference is quadratic, run
+	 * with -Dconnection.link.stops=50000 for a national feed size
+	 */
+	private static final int STOPS = Integer.getInteger("connection.link.stops", 5000);
+
+	private static final int DISTANCE = 100;
+
+	@Test(groups = { "ConnectionLinkGenerator" }, description = "same links as all pairs scan")
+	public void verifyParity() throws Exception {
+		// durations are local times of day, check them out of UTC
+		TimeZone defaultZone = TimeZone.getDefault();
+		TimeZone.setDefault(TimeZone.getTimeZone("Europe/Paris"));
+		try {
+			checkParity();
+		} finally {
+			TimeZone.setDefault(defaultZone);
+		}
+	}
+
+	private void checkParity() throws Exception {
+		Context context = createContext(STOPS, 1L);
+		Referential referential = (Referential) context.get(REFERENTIAL);
+		// a forbidden link and a fixed link
+		List<StopArea> commercials = new ArrayList<>(referential.getSharedStopAreas().values());
+		Map<String, String[]> expected = allPairs(commercials, DISTANCE);
+		Assert.assertTrue(expected.size() > 100, "enough links : " + expected.size());
+		List<String> ids = new ArrayList<>(expected.keySet());
+		String forbidden = ids.get(0);
+		String fixed = ids.get(1);
+		for (int i = 2; fixed.equals(expected.get(forbidden)[3]); i++)
+			fixed = ids.get(i);
+		// reverse links are neither created nor updated
+		List<String> missing = new ArrayList<>();
+		missing.add(expected.get(forbidden)[3]);
+		missing.add(expected.get(fixed)[3]);
+		ObjectFactory.getConnectionLink(referential, forbidden).setName("FORBIDDEN");
+		referential.getConnectionLinks().clear();
+		ObjectFactory.getConnectionLink(referential, fixed).setName("fixed");
+
+		new ConnectionLinkGenerator().createConnectionLinks(context);
+
+		Map<String, ConnectionLink> links = referential.getSharedConnectionLinks();
+		for (Map.Entry<String, String[]> entry : expected.entrySet()) {
+			ConnectionLink link = links.get(entry.getKey());
+			if (missing.contains(entry.getKey())) {
+				Assert.assertNull(link, "reverse link " + entry.getKey());
+				continue;
+			}
+			Assert.assertNotNull(link, "link " + entry.getKey());
+			if (entry.getKey().equals(forbidden)) {
+				Assert.assertNull(link.getStartOfLink(), "forbidden link");
+				continue;
+			}
+			Assert.assertEquals(link.getLinkDistance(), new BigDecimal(entry.getValue()[2]), "distance");
+			if (entry.getKey().equals(fixed)) {
+				Assert.assertEquals(link.getName(), "fixed");
+				continue;
+			}
+			Assert.assertEquals(link.getStartOfLink().getObjectId(), entry.getValue()[0], "start");
+			Assert.assertEquals(link.getEndOfLink().getObjectId(), entry.getValue()[1], "end");
+			long seconds = (long) (Double.parseDouble(entry.getValue()[2]) * 900) / 1000;
+			String duration = String.format("%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+			Assert.assertEquals(link.getDefaultDuration().toString(), duration, "duration");
+		}
+		Assert.assertEquals(links.size(), expected.size() - missing.size());
+	}
+
+	@Test(groups = { "ConnectionLinkGenerator" }, description = "links across antimeridian and near pole")
+	public void verifyWrap() throws Exception {
+		Context context = createContext(0, 1L);
+		Referential referential = (Referential) context.get(REFERENTIAL);
+		addStop(referential, 0, 179.9996, -16.5);
+		addStop(referential, 1, -179.9996, -16.5);
+		addStop(referential, 2, 10.0, 89.9996);
+		addStop(referential, 3, -170.0, 89.9996);
+
+		new ConnectionLinkGenerator().createConnectionLinks(context);
+
+		Assert.assertEquals(referential.getSharedConnectionLinks().size(), 4,
+				"links : " + referential.getSharedConnectionLinks().keySet());
+	}
+
+	/**
+	 * timing based, run on demand
+	 */
+	@Test(groups = { "ConnectionLinkGenerator" }, description = "near linear scaling", enabled = false)
+	public void benchmark() throws Exception {
+		long previous = 0;
+		for (int stops = 12500; stops <= 100000; stops *= 2) {
+			Context context = createContext(stops, 2L);
+			long start = System.nanoTime();
+			new ConnectionLinkGenerator().createConnectionLinks(context);
+			long duration = (System.nanoTime() - start) / 1000000;
+			Referential referential = (Referential) context.get(REFERENTIAL);
+			log.info("ConnectionLinkGenerator : " + stops + " stops, "
+					+ referential.getSharedConnectionLinks().size() + " links in " + duration + " ms");
+			// quadratic scan would take 4 times longer
+			if (previous > 50)
+				Assert.assertTrue(duration < previous * 3, "scaling " + previous + " -> " + duration + " ms");
+			previous = duration;
+		}
+	}
+
+	/**
+	 * commercial stops spread with constant density
+	 */
+	private Context createContext(int count, long seed) {
+		Context context = new Context();
+		Referential referential = new Referential();
+		GtfsImportParameters configuration = new GtfsImportParameters();
+		configuration.setMaxDistanceForConnectionLink(DISTANCE);
+		context.put(REFERENTIAL, referential);
+		context.put(CONFIGURATION, configuration);
+		Random random = new Random(seed);
+		// about 25 stops per km2
+		double side = Math.sqrt(count / 25.) / 111.;
+		for (int i = 0; i < count; i++) {
+			addStop(referential, i, 2.0 + random.nextDouble() * side * 1.5, 48.5 + random.nextDouble() * side);
+		}
+		return context;
+	}
+
+	private void addStop(Referential referential, int index, double longitude, double latitude) {
+		StopArea area = ObjectFactory.getStopArea(referential, "test:StopArea:" + index);
+		area.setName("stop " + index);
+		area.setAreaType(ChouetteAreaEnum.CommercialStopPoint);
+		area.setLongitude(BigDecimal.valueOf(longitude));
+		area.setLatitude(BigDecimal.valueOf(latitude));
+		area.setLongLatType(LongLatTypeEnum.WGS84);
+	}
+
+	/**
+	 * reference links computed as by the former all pairs scan
+	 *
+	 * @return start, end, distance and reverse link by link objectId
+	 */
+	private Map<String, String[]> allPairs(List<StopArea> commercials, double distanceMax) {
+		AbstractGenerator generator = new AbstractGenerator() {
+		};
+		Map<String, String[]> result = new HashMap<>();
+		for (int i = 0; i < commercials.size() - 1; i++) {
+			StopArea source = commercials.get(i);
+			for (int j = i + 1; j < commercials.size(); j++) {
+				StopArea target = commercials.get(j);
+				double distance = generator.distance(source.getLongitude().doubleValue(), source.getLatitude()
+						.doubleValue(), target.getLongitude().doubleValue(), target.getLatitude().doubleValue());
+				if (distance < distanceMax) {
+					String[] sourceToken = source.getObjectId().split(":");
+					String[] targetToken = target.getObjectId().split(":");
+					String objectId = sourceToken[0] + ":" + ConnectionLink.CONNECTIONLINK_KEY + ":" + sourceToken[2]
+							+ "_" + targetToken[2];
+					String reverseId = sourceToken[0] + ":" + ConnectionLink.CONNECTIONLINK_KEY + ":"
+							+ targetToken[2] + "_" + sourceToken[2];
+					String value = BigDecimal.valueOf(distance).toString();
+					result.put(objectId, new String[] { source.getObjectId(), target.getObjectId(), value, reverseId });
+					result.put(reverseId, new String[] { target.getObjectId(), source.getObjectId(), value, objectId });
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -17,6 +17,7 @@ import javax.transaction.UserTransaction;
 import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Color;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.JobMetrics;
 import mobi.chouette.common.chain.CommandFactory;
 import mobi.chouette.dao.LineDAO;
 import mobi.chouette.dao.VehicleJourneyDAO;
@@ -242,6 +243,46 @@ public class GtfsImportTests extends Arquillian implements Constant, ReportConst
 
 	}
 
+	@Test(groups = { "ImportLine" }, description = "Import Plugin should measure job")
+	public void verifyImportMetrics() throws Exception {
+		Context context = initImportContext();
+		GtfsImporterCommand command = (GtfsImporterCommand) CommandFactory.create(initialContext,
+				GtfsImporterCommand.class.getName());
+		GtfsTestsUtils.copyFile("tad.zip");
+		JobDataTest jobData = (JobDataTest) context.get(JOB_DATA);
+		jobData.setInputFilename("tad.zip");
+		GtfsImportParameters configuration = (GtfsImportParameters) context.get(CONFIGURATION);
+		configuration.setNoSave(false);
+		configuration.setCleanRepository(true);
+		// passing times copied as in production
+		context.put(OPTIMIZED, Boolean.TRUE);
+		JobMetrics metrics = new JobMetrics(1L);
+		context.put(METRICS, metrics);
+		JobMetrics.setCurrent(metrics);
+		try {
+			command.execute(context);
+		} catch (Exception ex) {
+			log.error("test failed", ex);
+			throw ex;
+		} finally {
+			JobMetrics.setCurrent(null);
+		}
+		ActionReport report = (ActionReport) context.get(REPORT);
+		Assert.assertEquals(report.getResult(), STATUS_OK, "result");
+		Reporter.log("metrics :" + metrics.toJson(), true);
+
+		Assert.assertEquals(metrics.getCounter(JobMetrics.BYTES_READ), new File("src/test/data/tad.zip").length(),
+				"archive size");
+		Assert.assertEquals(metrics.getCounter(JobMetrics.ENTITIES + "line"), 1L, "line count");
+		Assert.assertTrue(metrics.getCounter(JobMetrics.ENTITIES + "stop_area") > 0, "stop areas counted");
+		long passingTimes = metrics.getCounter(JobMetrics.ENTITIES + "vehicle_journey_at_stop");
+		Assert.assertTrue(passingTimes > 0, "passing times counted");
+		Assert.assertTrue(metrics.getCounter(JobMetrics.COPY_ROWS) >= passingTimes, "passing times copied");
+		Assert.assertTrue(metrics.getCounter(JobMetrics.DB_ROUND_TRIPS) > 0, "round trips counted");
+		Assert.assertEquals(metrics.getPhase("LineRegisterCommand").getCount(), 1L, "line registered once");
+		Assert.assertEquals(metrics.getPhase("CopyCommand.copy").getCount(), 1L, "passing times copied once");
+	}
+
 	private void checkLine(Line line) {
 		for (Route route : line.getRoutes()) {
 			log.info(Color.YELLOW + "routeId = " + route.getObjectId() + " journeyPattern size = "
@@ -0,0 +1,518 @@
+package mobi.chouette.exchange.gtfs.parser;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.Context;
+import mobi.chouette.exchange.gtfs.model.GtfsShape;
+import mobi.chouette.model.JourneyPattern;
+import mobi.chouette.model.Route;
+import mobi.chouette.model.RouteSection;
+import mobi.chouette.model.StopArea;
+import mobi.chouette.model.StopPoint;
+import mobi.chouette.model.VehicleJourney;
+import mobi.chouette.model.VehicleJourneyAtStop;
+import mobi.chouette.model.type.AlightingPossibilityEnum;
+import mobi.chouette.model.type.BoardingPossibilityEnum;
+import mobi.chouette.model.util.ObjectFactory;
+import mobi.chouette.model.util.Referential;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineSegment;
+import com.vividsolutions.jts.geom.PrecisionModel;
+
+@Log4j
+public class GtfsTripParserTests {
+
+	@Test(groups = { "GtfsTripParser" }, description = "routes merged as by former pairwise merge")
+	public void verifyMergeRoutes() throws Exception {
+		for (long seed = 1; seed <= 5; seed++) {
+			Referential expected = new Referential();
+			List<Route> expectedRoutes = createVariants(expected, 120, 25, seed);
+			new LegacyRouteMerger().mergeRoutes(expected, expectedRoutes);
+
+			Referential actual = new Referential();
+			List<Route> actualRoutes = createVariants(actual, 120, 25, seed);
+			new GtfsTripParser().mergeRoutes(actual, actualRoutes);
+
+			Assert.assertEquals(dump(actual, actualRoutes), dump(expected, expectedRoutes), "seed " + seed);
+		}
+	}
+
+	@Test(groups = { "GtfsTripParser" }, description = "merge of 500 route variants", enabled = false)
+	public void benchmark() throws Exception {
+		Referential expected = new Referential();
+		List<Route> expectedRoutes = createVariants(expected, 500, 60, 42L);
+		long start = System.currentTimeMillis();
+		new LegacyRouteMerger().mergeRoutes(expected, expectedRoutes);
+		long legacy = System.currentTimeMillis() - start;
+
+		Referential actual = new Referential();
+		List<Route> actualRoutes = createVariants(actual, 500, 60, 42L);
+		start = System.currentTimeMillis();
+		new GtfsTripParser().mergeRoutes(actual, actualRoutes);
+		long duration = System.currentTimeMillis() - start;
+		log.info("GtfsTripParser.mergeRoutes : 500 variants in " + duration + " ms, former in " + legacy
+				+ " ms");
+		Assert.assertEquals(dump(actual, actualRoutes), dump(expected, expectedRoutes));
+	}
+
+	@Test(groups = { "GtfsTripParser" }, description = "route sections as by former full segments scan")
+	public void verifyRouteSections() throws Exception {
+		for (long seed = 1; seed <= 20; seed++) {
+			Random random = new Random(seed);
+			List<GtfsShape> shapes = createShape("shape" + seed, 200 + random.nextInt(2000), 0.3, true, random);
+			Context context = new Context();
+			for (int variant = 0; variant < 5; variant++) {
+				long stopSeed = seed * 100 + variant;
+				Referential expected = new Referential();
+				JourneyPattern expectedPattern = createStops(expected, shapes, 5 + variant * 10, stopSeed);
+				List<RouteSection> expectedSections = LegacyRouteSections.createRouteSections(expected,
+						expectedPattern, shapes);
+
+				Referential actual = new Referential();
+				JourneyPattern actualPattern = createStops(actual, shapes, 5 + variant * 10, stopSeed);
+				List<RouteSection> actualSections = new GtfsTripParser().createRouteSections(context, actual, null,
+						actualPattern, null, "shape" + seed, shapes);
+
+				Assert.assertFalse(expectedSections.isEmpty(), "seed " + stopSeed);
+				Assert.assertEquals(dump(actualSections), dump(expectedSections), "seed " + stopSeed);
+			}
+		}
+	}
+
+	@Test(groups = { "GtfsTripParser" }, description = "route sections of a known stop sequence reused")
+	public void verifyRouteSectionsReuse() throws Exception {
+		Random random = new Random(7L);
+		List<GtfsShape> shapes = createShape("shape", 500, 0.3, true, random);
+		Context context = new Context();
+		Referential referential = new Referential();
+		JourneyPattern first = createStops(referential, shapes, 20, 7L);
+		List<RouteSection> sections = new GtfsTripParser().createRouteSections(context, referential, null, first,
+				null, "shape", shapes);
+
+		// same stop areas, another pattern
+		JourneyPattern second = ObjectFactory.getJourneyPattern(referential, "test:JourneyPattern:2");
+		for (StopPoint point : first.getStopPoints()) {
+			StopPoint copy = ObjectFactory.getStopPoint(referential, point.getObjectId() + "_2");
+			copy.setContainedInStopArea(point.getContainedInStopArea());
+			second.addStopPoint(copy);
+		}
+		List<RouteSection> reused = new GtfsTripParser().createRouteSections(context, referential, null, second,
+				null, "shape", shapes);
+		Assert.assertEquals(reused.size(), sections.size());
+		for (int i = 0; i < sections.size(); i++) {
+			Assert.assertSame(reused.get(i), sections.get(i));
+		}
+
+		// sections no longer in referential are computed again
+		Referential other = new Referential();
+		JourneyPattern third = createStops(other, shapes, 20, 7L);
+		List<RouteSection> computed = new GtfsTripParser().createRouteSections(context, other, null, third, null,
+				"shape", shapes);
+		Assert.assertEquals(dump(computed), dump(sections));
+		Assert.assertNotSame(computed.get(0), sections.get(0));
+	}
+
+	@Test(groups = { "GtfsTripParser" }, description = "route sections on 10k points shapes", enabled = false)
+	public void benchmarkRouteSections() throws Exception {
+		Random random = new Random(42L);
+		List<List<GtfsShape>> shapes = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			// road like curvature, no loop
+			shapes.add(createShape("shape" + i, 10000, 0.05, false, random));
+		}
+		long legacy = 0;
+		long duration = 0;
+		Context context = new Context();
+		for (int i = 0; i < shapes.size(); i++) {
+			for (int variant = 0; variant < 4; variant++) {
+				Referential expected = new Referential();
+				JourneyPattern expectedPattern = createStops(expected, shapes.get(i), 100, i * 10 + variant);
+				long start = System.nanoTime();
+				List<RouteSection> expectedSections = LegacyRouteSections.createRouteSections(expected,
+						expectedPattern, shapes.get(i));
+				legacy += System.nanoTime() - start;
+
+				Referential actual = new Referential();
+				JourneyPattern actualPattern = createStops(actual, shapes.get(i), 100, i * 10 + variant);
+				start = System.nanoTime();
+				List<RouteSection> actualSections = new GtfsTripParser().createRouteSections(context, actual, null,
+						actualPattern, null, "shape" + i, shapes.get(i));
+				duration += System.nanoTime() - start;
+				Assert.assertEquals(dump(actualSections), dump(expectedSections));
+			}
+		}
+		log.info("GtfsTripParser.createRouteSections : 40 patterns on 10000 points shapes in "
+				+ (duration / 1000000) + " ms, former in " + (legacy / 1000000) + " ms");
+	}
+
+	/**
+	 * meandering shape with loops coming back near former points, shuffled
+	 * sequence order and some duplicate points
+	 * 
+	 * @param curvature
+	 *            heading deviation between points, in radians
+	 * @param loops
+	 *            some points come back near former ones
+	 */
+	private List<GtfsShape> createShape(String shapeId, int count, double curvature, boolean loops,
+			Random random) {
+		List<GtfsShape> result = new ArrayList<>();
+		double x = 2.0 + random.nextDouble();
+		double y = 48.0 + random.nextDouble();
+		double heading = random.nextDouble() * 2 * Math.PI;
+		for (int i = 0; i < count; i++) {
+			if (loops && i > 10 && random.nextInt(200) == 0) {
+				// go back near a former point
+				GtfsShape former = result.get(random.nextInt(result.size()));
+				x = former.getShapePtLon().doubleValue() + random.nextGaussian() * 0.0002;
+				y = former.getShapePtLat().doubleValue() + random.nextGaussian() * 0.0002;
+			} else if (random.nextInt(50) != 0) {
+				heading += random.nextGaussian() * curvature;
+				x += Math.cos(heading) * 0.0005;
+				y += Math.sin(heading) * 0.0005;
+			}
+			result.add(new GtfsShape(shapeId, BigDecimal.valueOf(y), BigDecimal.valueOf(x), i * 2, null));
+		}
+		Collections.shuffle(result.subList(0, count / 2), random);
+		return result;
+	}
+
+	/**
+	 * stops along shape points with some noise, some off the shape
+	 */
+	private JourneyPattern createStops(Referential referential, List<GtfsShape> shapes, int count, long seed) {
+		Random random = new Random(seed);
+		List<GtfsShape> sorted = new ArrayList<>(shapes);
+		Collections.sort(sorted, new Comparator<GtfsShape>() {
+			@Override
+			public int compare(GtfsShape o1, GtfsShape o2) {
+				return o1.getShapePtSequence() - o2.getShapePtSequence();
+			}
+		});
+		JourneyPattern journeyPattern = ObjectFactory.getJourneyPattern(referential, "test:JourneyPattern:1");
+		int step = Math.max(1, sorted.size() / count);
+		for (int i = 0; i < count; i++) {
+			GtfsShape shape = sorted.get(Math.min(sorted.size() - 1, i * step + random.nextInt(step)));
+			double noise = random.nextInt(10) == 0 ? 0.005 : 0.0002;
+			StopArea area = ObjectFactory.getStopArea(referential, "test:StopArea:" + seed + "_" + i);
+			area.setLongitude(BigDecimal.valueOf(shape.getShapePtLon().doubleValue() + random.nextGaussian() * noise));
+			area.setLatitude(BigDecimal.valueOf(shape.getShapePtLat().doubleValue() + random.nextGaussian() * noise));
+			StopPoint point = ObjectFactory.getStopPoint(referential, "test:StopPoint:" + i);
+			point.setContainedInStopArea(area);
+			point.setPosition(i);
+			journeyPattern.addStopPoint(point);
+		}
+		return journeyPattern;
+	}
+
+	private List<String> dump(List<RouteSection> sections) {
+		List<String> result = new ArrayList<>();
+		for (RouteSection section : sections) {
+			StringBuilder builder = new StringBuilder(section.getObjectId()).append(' ')
+					.append(section.getDistance()).append(" :");
+			for (Coordinate coordinate : section.getProcessedGeometry().getCoordinates()) {
+				builder.append(' ').append(coordinate.x).append(',').append(coordinate.y);
+			}
+			result.add(builder.toString());
+		}
+		return result;
+	}
+
+	/**
+	 * trip variants of a gtfs route : random sub sequences of a main stop
+	 * sequence in both directions, some with restricted boarding or extra
+	 * stops
+	 */
+	private List<Route> createVariants(Referential referential, int count, int stops, long seed) {
+		Random random = new Random(seed);
+		List<StopArea> areas = new ArrayList<>();
+		for (int i = 0; i < stops + 5; i++) {
+			areas.add(ObjectFactory.getStopArea(referential, "test:StopArea:" + i));
+		}
+		List<Route> result = new ArrayList<>();
+		for (int r = 0; r < count; r++) {
+			Route route = ObjectFactory.getRoute(referential, "test:Route:" + r);
+			route.setWayBack(random.nextInt(4) == 0 ? "R" : "A");
+			List<StopArea> sequence = new ArrayList<>();
+			double keep = 0.5 + random.nextDouble() / 2;
+			for (int i = 0; i < stops; i++) {
+				if (random.nextDouble() < keep)
+					sequence.add(areas.get(i));
+				if (random.nextInt(40) == 0)
+					sequence.add(areas.get(stops + random.nextInt(5)));
+			}
+			if ("R".equals(route.getWayBack()))
+				Collections.reverse(sequence);
+			JourneyPattern journeyPattern = ObjectFactory.getJourneyPattern(referential, "test:JourneyPattern:" + r);
+			journeyPattern.setRoute(route);
+			VehicleJourney vehicleJourney = ObjectFactory.getVehicleJourney(referential, "test:VehicleJourney:" + r);
+			vehicleJourney.setRoute(route);
+			vehicleJourney.setJourneyPattern(journeyPattern);
+			for (int i = 0; i < sequence.size(); i++) {
+				StopPoint point = ObjectFactory.getStopPoint(referential, "test:StopPoint:" + r + "_" + i);
+				point.setContainedInStopArea(sequence.get(i));
+				point.setForBoarding(random.nextInt(30) == 0 ? BoardingPossibilityEnum.forbidden
+						: BoardingPossibilityEnum.normal);
+				point.setForAlighting(AlightingPossibilityEnum.normal);
+				point.setPosition(i);
+				point.setRoute(route);
+				journeyPattern.addStopPoint(point);
+				VehicleJourneyAtStop vehicleJourneyAtStop = ObjectFactory.getVehicleJourneyAtStop();
+				vehicleJourneyAtStop.setStopPoint(point);
+				vehicleJourneyAtStop.setVehicleJourney(vehicleJourney);
+			}
+			if (!sequence.isEmpty()) {
+				journeyPattern.setDepartureStopPoint(journeyPattern.getStopPoints().get(0));
+				journeyPattern.setArrivalStopPoint(journeyPattern.getStopPoints().get(sequence.size() - 1));
+			}
+			result.add(route);
+		}
+		return result;
+	}
+
+	private List<String> dump(Referential referential, List<Route> routes) {
+		List<String> result = new ArrayList<>();
+		for (Route route : routes) {
+			StringBuilder builder = new StringBuilder(route.getObjectId()).append(" :");
+			for (StopPoint point : route.getStopPoints()) {
+				builder.append(' ').append(point.getObjectId());
+			}
+			for (JourneyPattern journeyPattern : route.getJourneyPatterns()) {
+				builder.append("\n  ").append(journeyPattern.getObjectId()).append(" ")
+						.append(journeyPattern.getDepartureStopPoint().getObjectId()).append(" ")
+						.append(journeyPattern.getArrivalStopPoint().getObjectId()).append(" :");
+				for (StopPoint point : journeyPattern.getStopPoints()) {
+					builder.append(' ').append(point.getObjectId());
+				}
+				for (VehicleJourney vehicleJourney : journeyPattern.getVehicleJourneys()) {
+					builder.append("\n    ").append(vehicleJourney.getObjectId()).append(" ")
+							.append(vehicleJourney.getRoute().getObjectId()).append(" :");
+					for (VehicleJourneyAtStop vehicleJourneyAtStop : vehicleJourney.getVehicleJourneyAtStops()) {
+						builder.append(' ').append(vehicleJourneyAtStop.getStopPoint().getObjectId());
+					}
+				}
+			}
+			result.add(builder.toString());
+		}
+		List<String> points = new ArrayList<>(referential.getStopPoints().keySet());
+		Collections.sort(points);
+		result.add(points.toString());
+		return result;
+	}
+
+	/**
+	 * former projection on all remaining shape segments, reference for
+	 * regression tests
+	 */
+	private static class LegacyRouteSections {
+
+		private static final double narrow = 0.0000001;
+
+		private static List<RouteSection> createRouteSections(Referential referential, JourneyPattern journeyPattern,
+				Iterable<GtfsShape> gtfsShapes) {
+			List<RouteSection> sections = new ArrayList<>();
+			GeometryFactory factory = new GeometryFactory(new PrecisionModel(10), 4326);
+			List<OrderedCoordinate> coordinates = new ArrayList<>();
+			List<LineSegment> segments = new ArrayList<>();
+			Coordinate previous = null;
+			String shapeId = null;
+			for (GtfsShape gtfsShape : gtfsShapes) {
+				if (shapeId == null) {
+					shapeId = gtfsShape.getShapeId();
+				}
+				OrderedCoordinate current = new OrderedCoordinate(gtfsShape.getShapePtLon().doubleValue(), gtfsShape
+						.getShapePtLat().doubleValue(), gtfsShape.getShapePtSequence());
+				if (previous != null) {
+					if (Math.abs(current.x - previous.x) < narrow && Math.abs(current.y - previous.y) < narrow) {
+						continue;
+					}
+				}
+				coordinates.add(current);
+				previous = current;
+			}
+			previous = null;
+			Collections.sort(coordinates, new GtfsTripParser.OrderedCoordinateComparator());
+			for (OrderedCoordinate current : coordinates) {
+				if (previous != null) {
+					segments.add(new LineSegment(previous, current));
+				}
+				previous = current;
+			}
+
+			int segmentRank = 0;
+			previous = null;
+			String prefix = journeyPattern.objectIdPrefix();
+			StopArea previousLocation = null;
+			for (StopPoint stop : journeyPattern.getStopPoints()) {
+				StopArea location = stop.getContainedInStopArea();
+				Coordinate point = new Coordinate(location.getLongitude().doubleValue(), location.getLatitude()
+						.doubleValue());
+				double distance_min = Double.MAX_VALUE;
+				int rank = 0;
+				for (int i = segmentRank; i < segments.size(); i++) {
+					double distance = segments.get(i).distance(point);
+					if (distance < distance_min) {
+						distance_min = distance;
+						rank = i;
+					}
+				}
+				Coordinate projection = null;
+				boolean lastSegmentIncluded = false;
+				double factor = segments.get(rank).projectionFactor(point);
+				int intFactor = (int) (factor * 100.);
+				if (factor <= 0.05) {
+					projection = segments.get(rank).getCoordinate(0);
+					intFactor = 0;
+				} else if (factor >= 0.95) {
+					projection = segments.get(rank).getCoordinate(1);
+					lastSegmentIncluded = true;
+					intFactor = 100;
+				} else {
+					projection = segments.get(rank).project(point);
+				}
+				if (previous != null) {
+					List<Coordinate> coords = new ArrayList<>();
+					coords.add(previous);
+					for (int i = segmentRank; i < rank; i++) {
+						coords.add(segments.get(i).getCoordinate(1));
+					}
+					coords.add(projection);
+					if (lastSegmentIncluded)
+						rank++;
+					String routeSectionId = prefix + ":" + RouteSection.ROUTE_SECTION_KEY + ":" + shapeId + "_"
+							+ previousLocation.objectIdSuffix() + "_" + location.objectIdSuffix() + "_" + intFactor;
+					RouteSection section = ObjectFactory.getRouteSection(referential, routeSectionId);
+					if (!section.isFilled()) {
+						Coordinate[] inputCoords = new Coordinate[2];
+						section.setDeparture(previousLocation);
+						inputCoords[0] = new Coordinate(previousLocation.getLongitude().doubleValue(),
+								previousLocation.getLatitude().doubleValue());
+						section.setArrival(location);
+						inputCoords[1] = new Coordinate(location.getLongitude().doubleValue(), location.getLatitude()
+								.doubleValue());
+						section.setProcessedGeometry(factory.createLineString(coords.toArray(new Coordinate[coords
+								.size()])));
+						section.setInputGeometry(factory.createLineString(inputCoords));
+						section.setNoProcessing(false);
+						try {
+							double distance = section.getProcessedGeometry().getLength();
+							distance *= (Math.PI / 180) * 6378137;
+							section.setDistance(BigDecimal.valueOf(distance));
+						} catch (NumberFormatException e) {
+							sections.clear();
+							return sections;
+						}
+					}
+					section.setFilled(true);
+					sections.add(section);
+				}
+				previous = projection;
+				previousLocation = location;
+				segmentRank = rank;
+			}
+			return sections;
+		}
+	}
+
+	/**
+	 * former pairwise merge, reference for regression tests
+	 */
+	private static class LegacyRouteMerger {
+
+		private void mergeRoutes(Referential referential, List<Route> routeList) {
+			Collections.sort(routeList, new Comparator<Route>() {
+				@Override
+				public int compare(Route r1, Route r2) {
+					Integer n1 = new Integer(r1.getStopPoints().size());
+					Integer n2 = new Integer(r2.getStopPoints().size());
+					return n2.compareTo(n1);
+				}
+			});
+
+			for (int i = 0; i < routeList.size(); i++) {
+				Route route1 = routeList.get(i);
+				if (route1.getStopPoints().size() == 0) {
+					continue;
+				}
+				for (int j = i + 1; j < routeList.size(); j++) {
+					Route route2 = routeList.get(j);
+
+					if (route2.getStopPoints().size() == 0) {
+						continue;
+					}
+					if (route1.getStopPoints().size() > route2.getStopPoints().size()) {
+						mergeIfRouteInclude(route2, route1, referential);
+					}
+				}
+			}
+		}
+
+		private boolean mergeIfRouteInclude(Route routeIncluded, Route routeIncluding, Referential referential) {
+			if (!routeIncluded.getWayBack().equals(routeIncluding.getWayBack()))
+				return false;
+			int rank = 0;
+			Map<StopPoint, StopPoint> includedSPMap = new HashMap<>();
+			List<StopPoint> includingSPList = routeIncluding.getStopPoints();
+			boolean match = true;
+			for (StopPoint includedStop : routeIncluded.getStopPoints()) {
+				while (rank < includingSPList.size()) {
+					if (checkIfTwoPointAreEquivalent(includedStop, includingSPList.get(rank)))
+						break;
+					rank++;
+				}
+				if (rank == includingSPList.size()) {
+					match = false;
+					break;
+				}
+				includedSPMap.put(includedStop, includingSPList.get(rank));
+			}
+			if (match) {
+				for (Iterator<JourneyPattern> iterator = routeIncluded.getJourneyPatterns().iterator(); iterator
+						.hasNext();) {
+					JourneyPattern journeyPattern = iterator.next();
+					iterator.remove();
+					List<StopPoint> points = new ArrayList<>();
+					for (StopPoint stopPoint : journeyPattern.getStopPoints()) {
+						if (includedSPMap.get(stopPoint) != null)
+							points.add(includedSPMap.get(stopPoint));
+					}
+					journeyPattern.setRoute(routeIncluding);
+					journeyPattern.setStopPoints(points);
+					journeyPattern.setDepartureStopPoint(points.get(0));
+					journeyPattern.setArrivalStopPoint(points.get(points.size() - 1));
+					for (VehicleJourney vj : journeyPattern.getVehicleJourneys()) {
+						vj.setRoute(routeIncluding);
+						for (VehicleJourneyAtStop vjas : vj.getVehicleJourneyAtStops()) {
+							vjas.setStopPoint(includedSPMap.get(vjas.getStopPoint()));
+						}
+					}
+				}
+				routeIncluded.getStopPoints().clear();
+				for (StopPoint stopPoint : includedSPMap.keySet()) {
+					referential.getStopPoints().remove(stopPoint.getObjectId());
+				}
+			}
+			return match;
+		}
+
+		private boolean checkIfTwoPointAreEquivalent(StopPoint sp1, StopPoint sp2) {
+			return sp1.getContainedInStopArea().equals(sp2.getContainedInStopArea())
+					&& sp1.getForBoarding().equals(sp2.getForBoarding())
+					&& sp1.getForAlighting().equals(sp2.getForAlighting());
+		}
+	}
+}
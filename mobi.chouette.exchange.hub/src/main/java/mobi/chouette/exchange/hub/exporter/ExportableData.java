@@ -1,7 +1,18 @@
 package mobi.chouette.exchange.hub.exporter;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import lombok.Getter;
 import lombok.Setter;
+import mobi.chouette.model.Company;
+import mobi.chouette.model.ConnectionLink;
+import mobi.chouette.model.GroupOfLine;
+import mobi.chouette.model.Network;
+import mobi.chouette.model.StopArea;
+import mobi.chouette.model.Timetable;
 
 public class ExportableData extends mobi.chouette.exchange.exporter.ExportableData{
 	@Getter
@@ -11,4 +22,55 @@ public class ExportableData extends mobi.chouette.exchange.exporter.ExportableDa
 	@Getter
 	@Setter
 	private int pmrFootenoteId = -1;
+
+	public ExportableData() {
+		// shared data are saved as soon as collected
+		setNetworks(new SharedSet<Network>());
+		setCompanies(new SharedSet<Company>());
+		setGroupOfLines(new SharedSet<GroupOfLine>());
+		setPhysicalStops(new SharedSet<StopArea>());
+		setCommercialStops(new SharedSet<StopArea>());
+		setConnectionLinks(new SharedSet<ConnectionLink>());
+		setTimetables(new SharedSet<Timetable>());
+	}
+
+	/**
+	 * @param set
+	 *            shared data set
+	 * @return objects added since last call
+	 */
+	public static <E> List<E> added(Set<E> set) {
+		if (set instanceof SharedSet)
+			return ((SharedSet<E>) set).drain();
+		return new ArrayList<>(set);
+	}
+
+	/**
+	 * set keeping track of its new elements
+	 */
+	private static class SharedSet<E> extends HashSet<E> {
+		private static final long serialVersionUID = 1L;
+
+		private List<E> added = new ArrayList<>();
+
+		@Override
+		public boolean add(E e) {
+			boolean result = super.add(e);
+			if (result)
+				added.add(e);
+			return result;
+		}
+
+		@Override
+		public void clear() {
+			super.clear();
+			added.clear();
+		}
+
+		private List<E> drain() {
+			List<E> result = added;
+			added = new ArrayList<>();
+			return result;
+		}
+	}
 }
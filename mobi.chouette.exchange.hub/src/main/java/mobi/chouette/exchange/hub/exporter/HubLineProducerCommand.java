@@ -148,6 +148,8 @@ public class HubLineProducerCommand implements Command, Constant {
 		saveItls(context);
 		saveCheminsAndDirections(context);
 		saveCoursesOperationsAndHoraires(context);
+		// stream shared objects first met on this line
+		HubSharedDataProducerCommand.saveAddedData(context);
 
 		ExportableData collection = (ExportableData) context.get(EXPORTABLE_DATA);
 
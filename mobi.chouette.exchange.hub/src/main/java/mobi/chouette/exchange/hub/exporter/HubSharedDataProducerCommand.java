@@ -1,9 +1,6 @@
 package mobi.chouette.exchange.hub.exporter;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 import javax.naming.InitialContext;
@@ -33,10 +30,11 @@ import mobi.chouette.exchange.report.ActionReporter.OBJECT_TYPE;
 import mobi.chouette.model.Company;
 import mobi.chouette.model.ConnectionLink;
 import mobi.chouette.model.GroupOfLine;
-import mobi.chouette.model.NeptuneIdentifiedObject;
 import mobi.chouette.model.Network;
 import mobi.chouette.model.StopArea;
 import mobi.chouette.model.Timetable;
+import mobi.chouette.model.util.Coordinate;
+import mobi.chouette.model.util.NeptuneUtil;
 
 import com.jamonapi.Monitor;
 import com.jamonapi.MonitorFactory;
@@ -84,143 +82,106 @@ public class HubSharedDataProducerCommand implements Command, Constant {
 
 	private void saveData(Context context) throws Exception {
 
-		// save commercial stops
-		saveCommercialStops(context);
+		// save objects not yet saved by lines
+		saveAddedData(context);
 
-		// save physical stops AFTER commercial ones
-		savePhysicalStops(context);
-
-		// save cities AFTER stops
+		// save cities
 		saveCities(context);
 
-		// save connection links
-		saveConnectionLinks(context);
-		
-		// save networks
-		saveNetworks(context);
-		
-		// save companies
-		saveCompanies(context);
-		
-		// save groupOfLines
-		saveGroupOfLines(context);
-		
 		// save transport modes
 		saveTransportModes(context);
-		
-		// save timetables
-		saveTimetables(context);
-		
 
+		// stops, connection links, networks, companies, groupOfLines and
+		// timetables sorted runs are merged by HubTerminateExportCommand
 	}
 
-	private void saveCities(Context context) {
-		HubCommuneProducer producer = (HubCommuneProducer) context.get(HUB_COMMUNE_PRODUCER);
-		if (producer != null) producer.saveAll(context);
-		
-	}
-
-	private void saveNetworks(Context context) {
+	/**
+	 * save shared objects collected since last call ; records are streamed to
+	 * sorted runs
+	 * 
+	 * @param context
+	 */
+	static void saveAddedData(Context context) {
 		ExportableData collection = (ExportableData) context.get(EXPORTABLE_DATA);
-		if (collection.getNetworks().isEmpty())
-			return;
 		HubExporter exporter = (HubExporter) context.get(HUB_EXPORTER);
-		HubReseauProducer producer =  new HubReseauProducer(exporter);
-
-
-		List<Network> neptuneObjects = new ArrayList<>(collection.getNetworks());
-		Collections.sort(neptuneObjects,new ObjectIdSorter());
-		
-		for (Network neptuneObject : neptuneObjects) {
-			producer.save(context, neptuneObject);
-		}
-		
-	}
 
-	private void saveCompanies(Context context) {
-		ExportableData collection = (ExportableData) context.get(EXPORTABLE_DATA);
-		if (collection.getCompanies().isEmpty())
-			return;
-		HubExporter exporter = (HubExporter) context.get(HUB_EXPORTER);
-		HubTransporteurProducer producer =  new HubTransporteurProducer(exporter);
+		// save stops
+		saveStops(context, exporter, ExportableData.added(collection.getCommercialStops()), true);
+		saveStops(context, exporter, ExportableData.added(collection.getPhysicalStops()), false);
 
-		List<Company> neptuneObjects = new ArrayList<>(collection.getCompanies());
-		Collections.sort(neptuneObjects,new ObjectIdSorter());
-		for (Company neptuneObject : neptuneObjects) {
-			producer.save(context,neptuneObject);
+		// save connection links
+		List<ConnectionLink> links = ExportableData.added(collection.getConnectionLinks());
+		if (!links.isEmpty()) {
+			HubCorrespondanceProducer producer = (HubCorrespondanceProducer) context.get(HUB_CORRESPONDANCE_PRODUCER);
+			if (producer == null) {
+				producer = new HubCorrespondanceProducer(exporter);
+				context.put(HUB_CORRESPONDANCE_PRODUCER, producer);
+			}
+			for (ConnectionLink link : links) {
+				producer.save(context, link);
+			}
 		}
-		
-	}
-
-	private void saveGroupOfLines(Context context) {
-		ExportableData collection = (ExportableData) context.get(EXPORTABLE_DATA);
-		if (collection.getGroupOfLines().isEmpty())
-			return;
-		HubExporter exporter = (HubExporter) context.get(HUB_EXPORTER);
-		HubGroupeDeLigneProducer producer =  new HubGroupeDeLigneProducer(exporter);
 
-		List<GroupOfLine> neptuneObjects = new ArrayList<>(collection.getGroupOfLines());
-		Collections.sort(neptuneObjects,new ObjectIdSorter());
-		for (GroupOfLine neptuneObject : neptuneObjects) {
-			producer.save(context,neptuneObject);
+		// save networks
+		List<Network> networks = ExportableData.added(collection.getNetworks());
+		if (!networks.isEmpty()) {
+			HubReseauProducer producer = (HubReseauProducer) context.get(HUB_RESEAU_PRODUCER);
+			if (producer == null) {
+				producer = new HubReseauProducer(exporter);
+				context.put(HUB_RESEAU_PRODUCER, producer);
+			}
+			for (Network neptuneObject : networks) {
+				if (neptuneObject != null)
+					producer.save(context, neptuneObject);
+			}
 		}
-		
-	}
-
-	private void saveTransportModes(Context context) {
-		HubModeTransportProducer producer = (HubModeTransportProducer) context.get(HUB_MODETRANSPORT_PRODUCER);
-		if (producer != null) producer.saveAll(context);
-		
-	}
 
-	private void saveTimetables(Context context) {
-		ExportableData collection = (ExportableData) context.get(EXPORTABLE_DATA);
-		if (collection.getTimetables().isEmpty())
-			return;
-		HubExporter exporter = (HubExporter) context.get(HUB_EXPORTER);
-		HubPeriodeProducer producer =  new HubPeriodeProducer(exporter);
-
-		Metadata metadata = (Metadata) context.get(METADATA);
-
-		List<Timetable> neptuneObjects = new ArrayList<>(collection.getTimetables());
-		Collections.sort(neptuneObjects,new ObjectIdSorter());
-		for (Timetable neptuneObject : neptuneObjects) {
-			producer.save(context,neptuneObject);
-			metadata.getTemporalCoverage().update(neptuneObject.getStartOfPeriod(), neptuneObject.getEndOfPeriod());
+		// save companies
+		List<Company> companies = ExportableData.added(collection.getCompanies());
+		if (!companies.isEmpty()) {
+			HubTransporteurProducer producer = (HubTransporteurProducer) context.get(HUB_TRANSPORTEUR_PRODUCER);
+			if (producer == null) {
+				producer = new HubTransporteurProducer(exporter);
+				context.put(HUB_TRANSPORTEUR_PRODUCER, producer);
+			}
+			for (Company neptuneObject : companies) {
+				producer.save(context, neptuneObject);
+			}
 		}
-		
-	}
 
-	private void savePhysicalStops(Context context) throws Exception {
-		ExportableData collection = (ExportableData) context.get(EXPORTABLE_DATA);
-		if (collection.getPhysicalStops().isEmpty())
-			return;
-		HubExporter exporter = (HubExporter) context.get(HUB_EXPORTER);
-		HubArretProducer producer = (HubArretProducer) context.get(HUB_ARRET_PRODUCER);
-		if (producer == null) {
-			producer = new HubArretProducer(exporter);
-			context.put(HUB_ARRET_PRODUCER, producer);	
+		// save groupOfLines
+		List<GroupOfLine> groupOfLines = ExportableData.added(collection.getGroupOfLines());
+		if (!groupOfLines.isEmpty()) {
+			HubGroupeDeLigneProducer producer = (HubGroupeDeLigneProducer) context.get(HUB_GROUPEDELIGNE_PRODUCER);
+			if (producer == null) {
+				producer = new HubGroupeDeLigneProducer(exporter);
+				context.put(HUB_GROUPEDELIGNE_PRODUCER, producer);
+			}
+			for (GroupOfLine neptuneObject : groupOfLines) {
+				producer.save(context, neptuneObject);
+			}
 		}
-//		HubCommuneProducer communeProducer = (HubCommuneProducer) context.get(HUB_COMMUNE_PRODUCER);
-//		if (communeProducer == null) {
-//			communeProducer = new HubCommuneProducer(exporter);
-//			context.put(HUB_COMMUNE_PRODUCER, communeProducer);	
-//		}
 
-		List<StopArea> stops = new ArrayList<>(collection.getPhysicalStops());
-		Collections.sort(stops,new ObjectIdSorter());
-		for (StopArea stop : stops) {
-			producer.save(context,stop);
-//			communeProducer.addCity(stop);
+		// save timetables
+		List<Timetable> timetables = ExportableData.added(collection.getTimetables());
+		if (!timetables.isEmpty()) {
+			HubPeriodeProducer producer = (HubPeriodeProducer) context.get(HUB_PERIODE_PRODUCER);
+			if (producer == null) {
+				producer = new HubPeriodeProducer(exporter);
+				context.put(HUB_PERIODE_PRODUCER, producer);
+			}
+			Metadata metadata = (Metadata) context.get(METADATA);
+			for (Timetable neptuneObject : timetables) {
+				producer.save(context, neptuneObject);
+				metadata.getTemporalCoverage().update(neptuneObject.getStartOfPeriod(),
+						neptuneObject.getEndOfPeriod());
+			}
 		}
-
 	}
 
-	private void saveCommercialStops(Context context) throws Exception {
-		ExportableData collection = (ExportableData) context.get(EXPORTABLE_DATA);
-		if (collection.getCommercialStops().isEmpty())
+	private static void saveStops(Context context, HubExporter exporter, List<StopArea> stops, boolean commercial) {
+		if (stops.isEmpty())
 			return;
-		HubExporter exporter = (HubExporter) context.get(HUB_EXPORTER);
 		HubArretProducer producer = (HubArretProducer) context.get(HUB_ARRET_PRODUCER);
 		if (producer == null) {
 			producer = new HubArretProducer(exporter);
@@ -229,43 +190,31 @@ public class HubSharedDataProducerCommand implements Command, Constant {
 		HubCommuneProducer communeProducer = (HubCommuneProducer) context.get(HUB_COMMUNE_PRODUCER);
 		if (communeProducer == null) {
 			communeProducer = new HubCommuneProducer(exporter);
-			context.put(HUB_COMMUNE_PRODUCER, communeProducer);	
+			context.put(HUB_COMMUNE_PRODUCER, communeProducer);
+		}
+		if (!commercial) {
+			// x and y of physical stops in one transformation
+			NeptuneUtil.toProjection(stops, Coordinate.LAMBERT);
 		}
-
-		List<StopArea> stops = new ArrayList<>(collection.getCommercialStops());
-		Collections.sort(stops,new ObjectIdSorter());
 		for (StopArea stop : stops) {
-			producer.save(context,stop);
-			communeProducer.addCity(stop);
+			producer.save(context, stop);
+			if (commercial)
+				communeProducer.addCity(stop);
 		}
-
 	}
 
-
-	private void saveConnectionLinks(Context context) throws Exception {
-		ExportableData collection = (ExportableData) context.get(EXPORTABLE_DATA);
-		if (collection.getConnectionLinks().isEmpty())
-			return;
-		HubExporter exporter = (HubExporter) context.get(HUB_EXPORTER);
-		HubCorrespondanceProducer producer =  new HubCorrespondanceProducer(exporter);
-
-		List<ConnectionLink> links = new ArrayList<>(collection.getConnectionLinks());
-		Collections.sort(links,new ObjectIdSorter());
-		for (ConnectionLink link : links) {
-			producer.save(context,link);
-		}
-
+	private void saveCities(Context context) {
+		HubCommuneProducer producer = (HubCommuneProducer) context.get(HUB_COMMUNE_PRODUCER);
+		if (producer != null) producer.saveAll(context);
+		
 	}
 
-	public class ObjectIdSorter implements Comparator<NeptuneIdentifiedObject> {
-		@Override
-		public int compare(NeptuneIdentifiedObject arg0, NeptuneIdentifiedObject arg1) {
-
-			return arg0.objectIdSuffix().compareTo(arg1.objectIdSuffix());
-		}
+	private void saveTransportModes(Context context) {
+		HubModeTransportProducer producer = (HubModeTransportProducer) context.get(HUB_MODETRANSPORT_PRODUCER);
+		if (producer != null) producer.saveAll(context);
+		
 	}
 
-
 	public static class DefaultCommandFactory extends CommandFactory {
 
 		@Override
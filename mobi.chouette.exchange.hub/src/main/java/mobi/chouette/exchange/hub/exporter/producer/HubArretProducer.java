@@ -105,7 +105,10 @@ public class HubArretProducer extends AbstractProducer {
 
 		}
 		try {
-			getExporter().getArretExporter().export(hubObject);
+			// commercial stops before physical ones
+			String key = (neptuneObject.getAreaType().equals(ChouetteAreaEnum.CommercialStopPoint) ? "0" : "1")
+					+ neptuneObject.objectIdSuffix();
+			getExporter().getArretExporter().export(hubObject, key);
 		} catch (IOException e) {
 			log.error("fail to save arret", e);
 			return false;
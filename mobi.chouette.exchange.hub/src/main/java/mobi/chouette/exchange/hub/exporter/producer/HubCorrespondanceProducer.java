@@ -48,7 +48,7 @@ public class HubCorrespondanceProducer extends AbstractProducer {
 		hubObject.setIdentifiant(Integer.valueOf(compteur++));
 
 		try {
-			getExporter().getCorrespondanceExporter().export(hubObject);
+			getExporter().getCorrespondanceExporter().export(hubObject, neptuneObject.objectIdSuffix());
 		} catch (IOException e) {
 			log.error("fail to save correspondance",e);
 			return false;
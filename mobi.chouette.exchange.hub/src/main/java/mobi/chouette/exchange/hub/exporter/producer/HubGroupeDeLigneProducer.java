@@ -49,7 +49,7 @@ public class HubGroupeDeLigneProducer extends AbstractProducer {
 		hubObject.setIdentifiant(toInt(neptuneObject.getRegistrationNumber()));
 
 		try {
-			getExporter().getGroupeDeLigneExporter().export(hubObject);
+			getExporter().getGroupeDeLigneExporter().export(hubObject, neptuneObject.objectIdSuffix());
 		} catch (IOException e) {
 			log.error("fail to save groupe de ligne",e);
 			return false;
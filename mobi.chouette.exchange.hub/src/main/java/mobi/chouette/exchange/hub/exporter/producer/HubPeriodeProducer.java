@@ -53,7 +53,7 @@ public class HubPeriodeProducer extends AbstractProducer {
 		hubObject.setIdentifiant(compteur++);
 
 		try {
-			getExporter().getPeriodeExporter().export(hubObject);
+			getExporter().getPeriodeExporter().export(hubObject, neptuneObject.objectIdSuffix());
 		} catch (IOException e) {
 			log.error("fail to save periode",e);
 			return false;
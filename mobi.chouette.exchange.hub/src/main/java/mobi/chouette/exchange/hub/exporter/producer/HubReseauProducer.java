@@ -49,7 +49,7 @@ public class HubReseauProducer extends AbstractProducer {
 		hubObject.setIdentifiant(toInt(neptuneObject.getRegistrationNumber()));
 
 		try {
-			getExporter().getReseauExporter().export(hubObject);
+			getExporter().getReseauExporter().export(hubObject, neptuneObject.objectIdSuffix());
 		} catch (IOException e) {
 			log.error("fail to save reseau",e);
 			return false;
@@ -49,7 +49,7 @@ public class HubTransporteurProducer extends AbstractProducer {
 		hubObject.setIdentifiant(toInt(neptuneObject.getRegistrationNumber()));
 
 		try {
-			getExporter().getTransporteurExporter().export(hubObject);
+			getExporter().getTransporteurExporter().export(hubObject, neptuneObject.objectIdSuffix());
 		} catch (IOException e) {
 			log.error("fail to save transporteur",e);
 			return false;
@@ -30,6 +30,12 @@ public class CorrespondanceExporter extends ExporterImpl<HubCorrespondance> impl
 		write(CONVERTER.to(_context, bean));
 	}
 
+	@Override
+	protected String merged(String record, int rank) {
+		// identifiant follows sort order
+		return record.substring(0, record.lastIndexOf(DELIMITER) + 1) + rank;
+	}
+
 	public static Converter<String, HubCorrespondance> CONVERTER = new Converter<String, HubCorrespondance>() {
 
 
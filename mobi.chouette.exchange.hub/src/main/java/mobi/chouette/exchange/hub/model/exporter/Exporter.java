@@ -9,6 +9,12 @@ public interface Exporter<T> {
 
 	void export(T bean) throws IOException;
 
+	/**
+	 * export bean in key order : record is kept in sorted runs and written on
+	 * dispose
+	 */
+	void export(T bean, String key) throws IOException;
+
 	void write(String text) throws IOException;
 
 }
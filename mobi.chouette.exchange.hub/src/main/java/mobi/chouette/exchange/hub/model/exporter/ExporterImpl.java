@@ -1,12 +1,17 @@
 package mobi.chouette.exchange.hub.model.exporter;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import mobi.chouette.exchange.report.ActionReporter;
 import mobi.chouette.exchange.report.IO_TYPE;
@@ -16,7 +21,35 @@ public abstract class ExporterImpl<T> implements Exporter<T> {
 
 	public static final char DELIMITER = ';';
 
-	private BufferedWriter _writer;
+	/**
+	 * sorted records kept in memory before spilling a run
+	 */
+	public static final int MAX_SORTED_RECORDS = 20000;
+
+	private static final Charset CHARSET = Charset.forName("Cp1252"); // ISO8859_15 ?
+
+	private static final String EOL = "\r\n";
+
+	private static final int BUFFER_SIZE = 32 * 1024;
+
+	// one encoder per exporting thread, shared by all files
+	private static final ThreadLocal<CharsetEncoder> ENCODER = new ThreadLocal<CharsetEncoder>() {
+		@Override
+		protected CharsetEncoder initialValue() {
+			return CHARSET.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+	};
+
+	private Path _path;
+
+	private FileChannel _channel;
+
+	private ByteBuffer _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private ExternalSorter _sorter;
+
+	private String _key;
 
 	protected HubContext _context;
 
@@ -25,27 +58,94 @@ public abstract class ExporterImpl<T> implements Exporter<T> {
 	public ExporterImpl(String name) throws IOException {
 		_context = new HubContext();
 		_context.put(HubContext.PATH, new File(name).getName());
-		Path path = Paths.get(name);
-		_writer = Files.newBufferedWriter(path, Charset.forName("Cp1252")); // ISO8859_15 ?
+		_path = Paths.get(name);
+		_channel = FileChannel.open(_path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
 		writeHeader();
 		_total = 1;
 	}
 
 	@Override
 	public void write(String text) throws IOException {
-		_writer.write(text);
-		_writer.write("\r\n");
+		if (_key != null) {
+			_sorter.add(_key, text);
+		} else {
+			append(text);
+		}
 		_context.put(HubContext.ID, _total++);
 	}
 
+	@Override
+	public void export(T bean, String key) throws IOException {
+		if (_sorter == null) {
+			_sorter = new ExternalSorter(_path.getParent(), _path.getFileName().toString(), MAX_SORTED_RECORDS);
+		}
+		_key = key;
+		try {
+			export(bean);
+		} finally {
+			_key = null;
+		}
+	}
+
 	@Override
 	public void dispose(mobi.chouette.common.Context context) throws IOException {
-		_writer.close();
+		try {
+			if (_sorter != null) {
+				int rank = 1;
+				for (String record = _sorter.next(); record != null; record = _sorter.next()) {
+					append(merged(record, rank++));
+				}
+			}
+			flush();
+		} finally {
+			if (_sorter != null)
+				_sorter.close();
+			_channel.close();
+		}
 		// add file info
 		ActionReporter reporter = ActionReporter.Factory.getInstance();
 		reporter.addFileReport(context, Paths.get((String) _context.get(HubContext.PATH)).getFileName().toString(), IO_TYPE.OUTPUT);
 	}
 
+	/**
+	 * hook for sorted records depending on their final position
+	 *
+	 * @param record
+	 *            sorted record
+	 * @param rank
+	 *            record rank in sort order, starting at 1
+	 * @return record to write
+	 */
+	protected String merged(String record, int rank) {
+		return record;
+	}
+
+	private void append(String text) throws IOException {
+		CharsetEncoder encoder = ENCODER.get();
+		encoder.reset();
+		encode(encoder, CharBuffer.wrap(text), false);
+		encode(encoder, CharBuffer.wrap(EOL), true);
+		while (encoder.flush(_buffer).isOverflow())
+			flush();
+	}
+
+	private void encode(CharsetEncoder encoder, CharBuffer input, boolean endOfInput) throws IOException {
+		while (true) {
+			CoderResult result = encoder.encode(input, _buffer, endOfInput);
+			if (!result.isOverflow())
+				break;
+			flush();
+		}
+	}
+
+	private void flush() throws IOException {
+		_buffer.flip();
+		while (_buffer.hasRemaining())
+			_channel.write(_buffer);
+		_buffer.clear();
+	}
+
 	@SuppressWarnings("rawtypes")
 	void write(Enum[] values) throws IOException {
 		StringBuilder builder = new StringBuilder();
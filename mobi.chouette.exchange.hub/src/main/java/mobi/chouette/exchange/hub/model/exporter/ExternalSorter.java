@@ -0,0 +1,241 @@
+package mobi.chouette.exchange.hub.model.exporter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import lombok.extern.log4j.Log4j;
+
+/**
+ * bounded memory sort of keyed records
+ * <p>
+ * records are buffered until the buffer limit is reached, then written sorted
+ * to a run file ; runs and last buffer are merged on read. Records with equal
+ * keys keep their insertion order.
+ */
+@Log4j
+public class ExternalSorter implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final Comparator<Entry> COMPARATOR = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry arg0, Entry arg1) {
+			int result = arg0.key.compareTo(arg1.key);
+			if (result == 0)
+				result = Long.compare(arg0.rank, arg1.rank);
+			return result;
+		}
+	};
+
+	private final Path directory;
+
+	private final String prefix;
+
+	private final int maxRecords;
+
+	private List<Entry> buffer = new ArrayList<>();
+
+	private List<Path> runs = new ArrayList<>();
+
+	private List<Run> readers = new ArrayList<>();
+
+	private PriorityQueue<Run> queue;
+
+	private long count = 0;
+
+	/**
+	 * @param directory
+	 *            run files directory
+	 * @param prefix
+	 *            run files name prefix
+	 * @param maxRecords
+	 *            records kept in memory before spilling a run
+	 */
+	public ExternalSorter(Path directory, String prefix, int maxRecords) {
+		this.directory = directory;
+		this.prefix = prefix;
+		this.maxRecords = Math.max(1, maxRecords);
+	}
+
+	/**
+	 * @return added records count
+	 */
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * @return spilled runs count
+	 */
+	public int getRunCount() {
+		return runs.size();
+	}
+
+	public void add(String key, String record) throws IOException {
+		if (queue != null)
+			throw new IllegalStateException("sorter already read");
+		buffer.add(new Entry(key, count++, record));
+		if (buffer.size() >= maxRecords)
+			spill();
+	}
+
+	/**
+	 * merge runs ; no record can be added afterwards
+	 *
+	 * @return next record in key order, null at end
+	 * @throws IOException
+	 */
+	public String next() throws IOException {
+		if (queue == null)
+			open();
+		Run run = queue.poll();
+		if (run == null)
+			return null;
+		String record = run.head.record;
+		if (run.advance())
+			queue.add(run);
+		return record;
+	}
+
+	/**
+	 * delete run files
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Run run : readers)
+			run.close();
+		readers.clear();
+		for (Path path : runs)
+			Files.deleteIfExists(path);
+		runs.clear();
+		buffer.clear();
+	}
+
+	private void spill() throws IOException {
+		Collections.sort(buffer, COMPARATOR);
+		Path path = Files.createTempFile(directory, prefix + ".", ".run");
+		runs.add(path);
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path),
+				BUFFER_SIZE))) {
+			for (Entry entry : buffer) {
+				write(output, entry.key);
+				output.writeLong(entry.rank);
+				write(output, entry.record);
+			}
+		}
+		log.debug("run " + path.getFileName() + " : " + buffer.size() + " records");
+		buffer.clear();
+	}
+
+	private void open() throws IOException {
+		queue = new PriorityQueue<>(runs.size() + 1, new Comparator<Run>() {
+			@Override
+			public int compare(Run arg0, Run arg1) {
+				return COMPARATOR.compare(arg0.head, arg1.head);
+			}
+		});
+		for (Path path : runs) {
+			Run run = new FileRun(path);
+			readers.add(run);
+			if (run.advance())
+				queue.add(run);
+		}
+		Collections.sort(buffer, COMPARATOR);
+		Run run = new BufferRun(buffer.iterator());
+		if (run.advance())
+			queue.add(run);
+	}
+
+	private static void write(DataOutputStream output, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static String read(DataInputStream input) throws IOException {
+		byte[] bytes = new byte[input.readInt()];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static class Entry {
+		private final String key;
+		private final long rank;
+		private final String record;
+
+		private Entry(String key, long rank, String record) {
+			this.key = key;
+			this.rank = rank;
+			this.record = record;
+		}
+	}
+
+	private static abstract class Run implements Closeable {
+		protected Entry head;
+
+		/**
+		 * @return false when run is exhausted
+		 */
+		abstract boolean advance() throws IOException;
+
+		@Override
+		public void close() throws IOException {
+		}
+	}
+
+	private static class BufferRun extends Run {
+		private final Iterator<Entry> iterator;
+
+		private BufferRun(Iterator<Entry> iterator) {
+			this.iterator = iterator;
+		}
+
+		@Override
+		boolean advance() {
+			head = iterator.hasNext() ? iterator.next() : null;
+			return head != null;
+		}
+	}
+
+	private static class FileRun extends Run {
+		private final DataInputStream input;
+
+		private FileRun(Path path) throws IOException {
+			input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+		}
+
+		@Override
+		boolean advance() throws IOException {
+			String key;
+			try {
+				key = read(input);
+			} catch (EOFException e) {
+				head = null;
+				close();
+				return false;
+			}
+			long rank = input.readLong();
+			head = new Entry(key, rank, read(input));
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			input.close();
+		}
+	}
+}
@@ -29,6 +29,12 @@ public class PeriodeExporter extends ExporterImpl<HubPeriode> implements
 		write(CONVERTER.to(_context, bean));
 	}
 
+	@Override
+	protected String merged(String record, int rank) {
+		// identifiant follows sort order
+		return record.substring(0, record.lastIndexOf(DELIMITER) + 1) + rank;
+	}
+
 	public static Converter<String, HubPeriode> CONVERTER = new Converter<String, HubPeriode>() {
 
 
@@ -0,0 +1,53 @@
+package mobi.chouette.exchange.hub.model.exporter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ExternalSorterTests {
+
+	@Test(groups = { "ExternalSorter" }, description = "records merged from runs in key order")
+	public void verifySortedRuns() throws Exception {
+		Path directory = Paths.get("target/sorter");
+		FileUtils.deleteQuietly(directory.toFile());
+		Files.createDirectories(directory);
+
+		List<String> expected = new ArrayList<>();
+		ExternalSorter sorter = new ExternalSorter(directory, "ARRET.TXT", 7);
+		Random random = new Random(1);
+		for (int i = 0; i < 100; i++) {
+			// duplicate keys keep insertion order
+			String key = String.format("key%02d", random.nextInt(30));
+			String record = key + ";" + (i < 10 ? "0" : "") + i + ";éœ";
+			sorter.add(key, record);
+			expected.add(record);
+		}
+		Collections.sort(expected);
+		Assert.assertEquals(sorter.size(), 100);
+		Assert.assertEquals(sorter.getRunCount(), 14, "spilled runs");
+
+		List<String> records = new ArrayList<>();
+		for (String record = sorter.next(); record != null; record = sorter.next())
+			records.add(record);
+		Assert.assertEquals(records, expected);
+		Assert.assertNull(sorter.next());
+
+		sorter.close();
+		Assert.assertEquals(directory.toFile().list().length, 0, "runs deleted");
+	}
+
+	@Test(groups = { "ExternalSorter" }, description = "no record")
+	public void verifyEmpty() throws Exception {
+		ExternalSorter sorter = new ExternalSorter(Paths.get("target"), "EMPTY.TXT", 10);
+		Assert.assertNull(sorter.next());
+		sorter.close();
+	}
+}
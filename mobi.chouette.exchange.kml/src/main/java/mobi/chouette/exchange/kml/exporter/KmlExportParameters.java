@@ -2,9 +2,13 @@ package mobi.chouette.exchange.kml.exporter;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
 
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 import mobi.chouette.exchange.parameters.AbstractExportParameter;
 
@@ -12,7 +16,24 @@ import mobi.chouette.exchange.parameters.AbstractExportParameter;
 @NoArgsConstructor
 @ToString(callSuper = true)
 @XmlAccessorType(XmlAccessType.FIELD)
-// @XmlType(propOrder={})
+@XmlType(propOrder={"coordinatePrecision","simplificationTolerance"})
 public class KmlExportParameters extends AbstractExportParameter {
 
+	public static final int MAX_PRECISION = 15;
+
+	/**
+	 * decimal digits kept in coordinates, full precision when not set
+	 */
+	@Getter @Setter
+	@XmlElement(name = "coordinate_precision", required = false)
+	private Integer coordinatePrecision;
+
+	/**
+	 * Douglas-Peucker tolerance in meters applied to route sections, no
+	 * simplification when not set or 0
+	 */
+	@Getter @Setter
+	@XmlElement(name = "simplification_tolerance", required = false)
+	private Double simplificationTolerance;
+
 }
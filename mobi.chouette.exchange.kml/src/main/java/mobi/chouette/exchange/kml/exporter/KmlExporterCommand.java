@@ -19,6 +19,7 @@ import mobi.chouette.exchange.ProcessingCommands;
 import mobi.chouette.exchange.ProcessingCommandsFactory;
 import mobi.chouette.exchange.ProgressionCommand;
 import mobi.chouette.exchange.exporter.AbstractExporterCommand;
+import mobi.chouette.exchange.kml.exporter.KmlLineProducerCommand.SharedData;
 import mobi.chouette.exchange.report.ActionReporter;
 import mobi.chouette.exchange.report.ReportConstant;
 import mobi.chouette.exchange.report.ActionReporter.ERROR_CODE;
@@ -81,6 +82,15 @@ public class KmlExporterCommand extends AbstractExporterCommand implements Comma
 			reporter.setActionError(context, ERROR_CODE.INTERNAL_ERROR,"Fatal :" + e);
 			log.error(e.getMessage(), e);
 		} finally {
+			// shared documents left open by a failed export
+			SharedData shared = (SharedData) context.remove(SHARED_DATA);
+			if (shared != null) {
+				try {
+					shared.close();
+				} catch (IOException e) {
+					log.warn("fail to close shared kml files", e);
+				}
+			}
 			progression.dispose(context);
 			log.info(Color.YELLOW + monitor.stop() + Color.NORMAL);
 		}
@@ -58,6 +58,18 @@ public class KmlExporterInputValidator extends AbstractInputValidator {
 			}
 		}
 
+		Integer precision = parameters.getCoordinatePrecision();
+		if (precision != null && (precision < 0 || precision > KmlExportParameters.MAX_PRECISION)) {
+			log.error("invalid coordinate precision " + precision);
+			return false;
+		}
+
+		Double tolerance = parameters.getSimplificationTolerance();
+		if (tolerance != null && (tolerance < 0 || tolerance.isNaN() || tolerance.isInfinite())) {
+			log.error("invalid simplification tolerance " + tolerance);
+			return false;
+		}
+
 		String type = parameters.getReferencesType();
 		if (type != null && !type.isEmpty()) {
 			if (!Arrays.asList(allowedTypes).contains(type.toLowerCase())) {
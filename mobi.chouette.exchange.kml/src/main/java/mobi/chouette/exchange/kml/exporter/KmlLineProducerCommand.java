@@ -1,18 +1,19 @@
 package mobi.chouette.exchange.kml.exporter;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Date;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.naming.InitialContext;
-import javax.xml.datatype.DatatypeConfigurationException;
-
 import lombok.Data;
 import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Color;
@@ -22,6 +23,7 @@ import mobi.chouette.common.JobData;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
 import mobi.chouette.exchange.kml.exporter.KmlData.KmlItem;
+import mobi.chouette.exchange.kml.exporter.writer.KmlDataWriter;
 import mobi.chouette.exchange.metadata.Metadata;
 import mobi.chouette.exchange.metadata.NeptuneObjectPresenter;
 import mobi.chouette.exchange.report.ActionReporter;
@@ -40,19 +42,97 @@ import mobi.chouette.model.util.NamingUtil;
 
 import com.jamonapi.Monitor;
 import com.jamonapi.MonitorFactory;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.simplify.DouglasPeuckerSimplifier;
 
 @Log4j
 public class KmlLineProducerCommand implements Command, Constant {
 	public static final String COMMAND = "KmlLineProducerCommand";
 
+	/**
+	 * approximate meters in one degree, used to convert simplification
+	 * tolerance
+	 */
+	private static final double METERS_PER_DEGREE = 111320.0;
+
+	/**
+	 * stop placemarks kept for next journey patterns and lines
+	 */
+	private static final int MAX_CACHED_PLACEMARKS = 20000;
+
+	/**
+	 * shared objects already written, with their documents opened on first
+	 * placemark
+	 */
 	@Data
-	class SharedData {
-		KmlData physicalStops = new KmlData("Arrêts");
-		KmlData commercialStops = new KmlData("Arrêts commerciaux");
-		KmlData stopPlaces = new KmlData("Pôles d'échange");
-		KmlData accessPoints = new KmlData("Accès");
-		KmlData connectionLinks = new KmlData("Correspondances");
-		KmlData accessLinks = new KmlData("Liens d'accès");
+	static class SharedData implements Closeable {
+		private final Path directory;
+		private final int precision;
+		private final double tolerance;
+		SharedFile physicalStops = new SharedFile("physical_stop_areas.kml", "Arrêts");
+		SharedFile commercialStops = new SharedFile("commercial_stop_areas.kml", "Arrêts commerciaux");
+		SharedFile stopPlaces = new SharedFile("stop_places.kml", "Pôles d'échange");
+		SharedFile connectionLinks = new SharedFile("connection_links.kml", "Correspondances");
+		SharedFile accessPoints = new SharedFile("access_points.kml", "Accès");
+		Map<String, String[]> stopPlacemarks = new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+				return size() > MAX_CACHED_PLACEMARKS;
+			}
+		};
+
+		SharedFile[] getFiles() {
+			return new SharedFile[] { physicalStops, commercialStops, stopPlaces, connectionLinks, accessPoints };
+		}
+
+		/**
+		 * write placemark if object not yet written
+		 */
+		void write(SharedFile file, String objectId, KmlItem item) throws IOException {
+			if (!file.ids.add(objectId))
+				return;
+			if (file.writer == null)
+				file.writer = new KmlDataWriter(new File(directory.toFile(), file.filename), new KmlData(file.name),
+						precision);
+			file.writer.write(item);
+		}
+
+		private boolean closed;
+
+		/**
+		 * close opened documents, once ; called by shared data producer and
+		 * again by exporter when export stops before it
+		 */
+		@Override
+		public void close() throws IOException {
+			if (closed)
+				return;
+			closed = true;
+			IOException failure = null;
+			for (SharedFile file : getFiles()) {
+				if (file.writer == null)
+					continue;
+				try {
+					file.writer.close();
+				} catch (IOException e) {
+					if (failure == null)
+						failure = e;
+				}
+			}
+			if (failure != null)
+				throw failure;
+		}
+	}
+
+	@Data
+	static class SharedFile {
+		private final String filename;
+		private final String name;
+		private Set<String> ids = new HashSet<String>();
+		private KmlDataWriter writer;
 	}
 
 	@Override
@@ -77,7 +157,11 @@ public class KmlLineProducerCommand implements Command, Constant {
 			}
 			SharedData shared = (SharedData) context.get(SHARED_DATA);
 			if (shared == null) {
-				shared = new SharedData();
+				JobData jobData = (JobData) context.get(JOB_DATA);
+				Integer precision = configuration.getCoordinatePrecision();
+				Double tolerance = configuration.getSimplificationTolerance();
+				shared = new SharedData(Paths.get(jobData.getPathName(), OUTPUT), precision == null ? -1 : precision,
+						tolerance == null ? 0 : tolerance / METERS_PER_DEGREE);
 				context.put(SHARED_DATA, shared);
 			}
 			Date startDate = null;
@@ -108,7 +192,7 @@ public class KmlLineProducerCommand implements Command, Constant {
 			if (cont) {
 				// context.put(EXPORTABLE_DATA, collection);
 
-				saveLine(context, line, collection);
+				saveLine(context, line, collection, shared);
 
 				saveSharedData(context, collection, shared);
 
@@ -128,51 +212,52 @@ public class KmlLineProducerCommand implements Command, Constant {
 		return result;
 	}
 
-	private void saveSharedData(Context context, ExportableData collection, SharedData shared) {
+	private void saveSharedData(Context context, ExportableData collection, SharedData shared) throws IOException {
 		Metadata metadata = (Metadata) context.get(METADATA);
 		for (StopArea area : collection.getBoardingPositions()) {
-			shared.getPhysicalStops().addStopArea(area);
-			if (metadata != null && area.hasCoordinates())
-				metadata.getSpatialCoverage().update(area.getLongitude().doubleValue(),
-						area.getLatitude().doubleValue());
+			saveStopArea(metadata, shared, shared.getPhysicalStops(), area);
 		}
 		for (StopArea area : collection.getQuays()) {
-			shared.getPhysicalStops().addStopArea(area);
-			if (metadata != null && area.hasCoordinates())
-				metadata.getSpatialCoverage().update(area.getLongitude().doubleValue(),
-						area.getLatitude().doubleValue());
+			saveStopArea(metadata, shared, shared.getPhysicalStops(), area);
 		}
 		for (StopArea area : collection.getCommercialStops()) {
-			shared.getCommercialStops().addStopArea(area);
-			if (metadata != null && area.hasCoordinates())
-				metadata.getSpatialCoverage().update(area.getLongitude().doubleValue(),
-						area.getLatitude().doubleValue());
+			saveStopArea(metadata, shared, shared.getCommercialStops(), area);
 		}
 		for (StopArea area : collection.getStopPlaces()) {
-			if (metadata != null && area.hasCoordinates())
-				metadata.getSpatialCoverage().update(area.getLongitude().doubleValue(),
-						area.getLatitude().doubleValue());
-			shared.getStopPlaces().addStopArea(area);
+			saveStopArea(metadata, shared, shared.getStopPlaces(), area);
 		}
 		for (ConnectionLink link : collection.getConnectionLinks()) {
-			shared.getConnectionLinks().addConnectionLink(link);
+			if (!shared.getConnectionLinks().getIds().contains(link.getObjectId()))
+				shared.write(shared.getConnectionLinks(), link.getObjectId(),
+						new KmlData(null).addConnectionLink(link));
 		}
 		for (AccessPoint point : collection.getAccessPoints()) {
-			shared.getAccessPoints().addAccessPoint(point);
+			if (!shared.getAccessPoints().getIds().contains(point.getObjectId()))
+				shared.write(shared.getAccessPoints(), point.getObjectId(), new KmlData(null).addAccessPoint(point));
 		}
 	}
 
+	private void saveStopArea(Metadata metadata, SharedData shared, SharedFile file, StopArea area)
+			throws IOException {
+		if (metadata != null && area.hasCoordinates())
+			metadata.getSpatialCoverage().update(area.getLongitude().doubleValue(), area.getLatitude().doubleValue());
+		if (!file.getIds().contains(area.getObjectId()))
+			shared.write(file, area.getObjectId(), new KmlData(null).addStopArea(area));
+	}
+
 	private boolean isEmpty(String value) {
 		return value == null || value.trim().isEmpty();
 	}
 
-	private void saveLine(Context context, Line line, ExportableData collection) throws IOException,
-			DatatypeConfigurationException {
+	private void saveLine(Context context, Line line, ExportableData collection, SharedData shared)
+			throws IOException {
 		ActionReporter reporter = ActionReporter.Factory.getInstance();
 		JobData jobData = (JobData) context.get(JOB_DATA);
 		String rootDirectory = jobData.getPathName();
 		Path dir = Paths.get(rootDirectory, OUTPUT);
-		KmlFileWriter writer = new KmlFileWriter();
+		KmlFileWriter writer = new KmlFileWriter(shared.getPrecision());
+		// simplified route sections shared by journey patterns
+		Map<String, LineString> geometries = new HashMap<>();
 		// prepare data for line
 		KmlData lineData = new KmlData("ligne : " + line.getName());
 		KmlItem lineItem = lineData.addNewItem(line.getObjectId());
@@ -245,40 +330,41 @@ public class KmlLineProducerCommand implements Command, Constant {
 					List<RouteSection> routeSections = jp.getRouteSections();
 
 					boolean sections = false;
-					if (routeSections != null && !routeSections.isEmpty()) {
-						// add filter to remove null entries
-						List<RouteSection> filteredRouteSection = new ArrayList<>();
+					if (routeSections != null) {
 						for (RouteSection routeSection : routeSections) {
-							if (routeSection != null)
-								filteredRouteSection.add(routeSection);
-						}
-						if (!filteredRouteSection.isEmpty()) {
-							for (RouteSection routeSection : filteredRouteSection) {
-								com.vividsolutions.jts.geom.LineString geometry = (routeSection.getInputGeometry() != null) ? routeSection
-										.getInputGeometry() : routeSection.getProcessedGeometry();
-								if (geometry != null) {
-									jpItem.addLineString(geometry);
-									sections = true;
-								}
+							// filter null entries
+							if (routeSection == null)
+								continue;
+							LineString geometry = getGeometry(routeSection, shared.getTolerance(), geometries);
+							if (geometry != null) {
+								jpItem.addLineString(geometry);
+								sections = true;
 							}
 						}
 					}
-
-					for (StopPoint point : route.getStopPoints()) {
-						if (point == null)
-							continue;
-						if (point.getContainedInStopArea().hasCoordinates()) {
-							KmlItem pointItem = jpData.addStopPoint(point);
-							pointItem.addExtraData("stop", Boolean.valueOf(jp.getStopPoints().contains(point)));
-							if (!sections)
+					if (!sections) {
+						for (StopPoint point : route.getStopPoints()) {
+							if (point != null && point.getContainedInStopArea().hasCoordinates())
 								jpItem.addPoint(point.getContainedInStopArea());
 						}
 					}
+
 					// save jp
 					String fileName = "line_" + line.getId() + "_route_" + route.getId() + "_journey_pattern_"
 							+ jp.getId() + ".kml";
 					File file = new File(dir.toFile(), fileName);
-					writer.writeXmlFile(jpData, file);
+					try (KmlDataWriter jpWriter = new KmlDataWriter(file, jpData, shared.getPrecision())) {
+						jpWriter.write(jpItem);
+						Set<String> points = new HashSet<>();
+						for (StopPoint point : route.getStopPoints()) {
+							if (point == null || !points.add(point.getObjectId()))
+								continue;
+							if (point.getContainedInStopArea().hasCoordinates()) {
+								jpWriter.writeStopPoint(point, jp.getStopPoints().contains(point),
+										shared.getStopPlacemarks());
+							}
+						}
+					}
 					reporter.addFileReport(context, fileName, IO_TYPE.OUTPUT);
 				}
 
@@ -305,6 +391,26 @@ public class KmlLineProducerCommand implements Command, Constant {
 
 	}
 
+	/**
+	 * @return route section geometry, simplified once per line when a
+	 *         tolerance is given
+	 */
+	private LineString getGeometry(RouteSection routeSection, double tolerance, Map<String, LineString> geometries) {
+		String key = routeSection.getObjectId();
+		if (key != null && geometries.containsKey(key))
+			return geometries.get(key);
+		LineString geometry = (routeSection.getInputGeometry() != null) ? routeSection.getInputGeometry()
+				: routeSection.getProcessedGeometry();
+		if (geometry != null && tolerance > 0) {
+			Geometry simplified = DouglasPeuckerSimplifier.simplify(geometry, tolerance);
+			if (simplified instanceof LineString && !simplified.isEmpty())
+				geometry = (LineString) simplified;
+		}
+		if (key != null)
+			geometries.put(key, geometry);
+		return geometry;
+	}
+
 	public static class DefaultCommandFactory extends CommandFactory {
 
 		@Override
@@ -1,9 +1,6 @@
 package mobi.chouette.exchange.kml.exporter;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 
 import javax.naming.InitialContext;
 
@@ -11,10 +8,10 @@ import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Color;
 import mobi.chouette.common.Constant;
 import mobi.chouette.common.Context;
-import mobi.chouette.common.JobData;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
 import mobi.chouette.exchange.kml.exporter.KmlLineProducerCommand.SharedData;
+import mobi.chouette.exchange.kml.exporter.KmlLineProducerCommand.SharedFile;
 import mobi.chouette.exchange.report.ActionReporter;
 import mobi.chouette.exchange.report.IO_TYPE;
 import mobi.chouette.exchange.report.ActionReporter.OBJECT_STATE;
@@ -27,8 +24,6 @@ import com.jamonapi.MonitorFactory;
 public class KmlSharedDataProducerCommand implements Command, Constant {
 	public static final String COMMAND = "KmlSharedDataProducerCommand";
 
-	private KmlFileWriter writer = new KmlFileWriter();
-
 	@Override
 	public boolean execute(Context context) throws Exception {
 		boolean result = ERROR;
@@ -50,11 +45,12 @@ public class KmlSharedDataProducerCommand implements Command, Constant {
 			reporter.addObjectReport(context, "merged", OBJECT_TYPE.STOP_AREA, "stop areas",
 					OBJECT_STATE.OK, IO_TYPE.OUTPUT);
 			reporter.setStatToObjectReport(context, "merged", OBJECT_TYPE.CONNECTION_LINK, OBJECT_TYPE.CONNECTION_LINK,
-					shared.connectionLinks.getItems().size());
+					shared.getConnectionLinks().getIds().size());
 			reporter.setStatToObjectReport(context, "merged", OBJECT_TYPE.ACCESS_POINT, OBJECT_TYPE.ACCESS_POINT,
-					shared.accessPoints.getItems().size());
+					shared.getAccessPoints().getIds().size());
 			reporter.setStatToObjectReport(context, "merged", OBJECT_TYPE.STOP_AREA, OBJECT_TYPE.STOP_AREA,
-					shared.physicalStops.getItems().size()+ shared.commercialStops.getItems().size()+shared.getStopPlaces().getItems().size());
+					shared.getPhysicalStops().getIds().size() + shared.getCommercialStops().getIds().size()
+							+ shared.getStopPlaces().getIds().size());
 			result = SUCCESS;
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
@@ -64,113 +60,17 @@ public class KmlSharedDataProducerCommand implements Command, Constant {
 		return result;
 	}
 
+	/**
+	 * close shared files, their placemarks are written by line producers
+	 */
 	private void saveData(Context context) throws Exception {
-
-		// save physical stops
-		savePhysicalStops(context);
-
-		// save commercial stops
-		saveCommercialStops(context);
-
-		// save stop places
-		saveStopPlaces(context);
-
-		// save connection links
-		saveConnectionLinks(context);
-
-		// save access points
-		saveAccessPoints(context);
-
-		// save access links
-		saveAccessLinks(context);
-	}
-
-	private void savePhysicalStops(Context context) throws Exception {
-		SharedData collection = (SharedData) context.get(SHARED_DATA);
-		if (collection.getPhysicalStops().getItems().isEmpty())
-			return;
-		JobData jobData = (JobData) context.get(JOB_DATA);
-		String rootDirectory = jobData.getPathName();
-		Path dir = Paths.get(rootDirectory, OUTPUT);
-		KmlData data = collection.getPhysicalStops();
-		String fileName = "physical_stop_areas.kml";
-		// TODO add metadata?
-		File file = new File(dir.toFile(), fileName);
-		writer.writeXmlFile(data, file);
-		ActionReporter reporter = ActionReporter.Factory.getInstance();
-		reporter.addFileReport(context, fileName, IO_TYPE.OUTPUT);
-
-	}
-
-	private void saveCommercialStops(Context context) throws Exception {
-		SharedData collection = (SharedData) context.get(SHARED_DATA);
-		if (collection.getCommercialStops().getItems().isEmpty())
-			return;
-		JobData jobData = (JobData) context.get(JOB_DATA);
-		String rootDirectory = jobData.getPathName();
-		Path dir = Paths.get(rootDirectory, OUTPUT);
-		KmlData data = collection.getCommercialStops();
-		String fileName = "commercial_stop_areas.kml";
-		// TODO add metadata?
-		File file = new File(dir.toFile(), fileName);
-		writer.writeXmlFile(data, file);
-		ActionReporter reporter = ActionReporter.Factory.getInstance();
-		reporter.addFileReport(context, fileName, IO_TYPE.OUTPUT);
-
-	}
-
-	private void saveStopPlaces(Context context) throws Exception {
-		SharedData collection = (SharedData) context.get(SHARED_DATA);
-		if (collection.getStopPlaces().getItems().isEmpty())
-			return;
-		JobData jobData = (JobData) context.get(JOB_DATA);
-		String rootDirectory = jobData.getPathName();
-		Path dir = Paths.get(rootDirectory, OUTPUT);
-		KmlData data = collection.getStopPlaces();
-		String fileName = "stop_places.kml";
-		// TODO add metadata?
-		File file = new File(dir.toFile(), fileName);
-		writer.writeXmlFile(data, file);
-		ActionReporter reporter = ActionReporter.Factory.getInstance();
-		reporter.addFileReport(context, fileName, IO_TYPE.OUTPUT);
-
-	}
-
-	private void saveConnectionLinks(Context context) throws Exception {
-		SharedData collection = (SharedData) context.get(SHARED_DATA);
-		if (collection.getConnectionLinks().getItems().isEmpty())
-			return;
-		JobData jobData = (JobData) context.get(JOB_DATA);
-		String rootDirectory = jobData.getPathName();
-		Path dir = Paths.get(rootDirectory, OUTPUT);
-		KmlData data = collection.getConnectionLinks();
-		String fileName = "connection_links.kml";
-		File file = new File(dir.toFile(), fileName);
-		writer.writeXmlFile(data, file);
+		SharedData shared = (SharedData) context.get(SHARED_DATA);
+		shared.close();
 		ActionReporter reporter = ActionReporter.Factory.getInstance();
-		reporter.addFileReport(context, fileName, IO_TYPE.OUTPUT);
-
-	}
-
-	private void saveAccessPoints(Context context) throws Exception {
-		SharedData collection = (SharedData) context.get(SHARED_DATA);
-		if (collection.getAccessPoints().getItems().isEmpty())
-			return;
-		JobData jobData = (JobData) context.get(JOB_DATA);
-		String rootDirectory = jobData.getPathName();
-		Path dir = Paths.get(rootDirectory, OUTPUT);
-		KmlData data = collection.getAccessPoints();
-		String fileName = "access_points.kml";
-		// TODO add metadata?
-		File file = new File(dir.toFile(), fileName);
-		writer.writeXmlFile(data, file);
-		ActionReporter reporter = ActionReporter.Factory.getInstance();
-		reporter.addFileReport(context, fileName, IO_TYPE.OUTPUT);
-
-	}
-
-	private void saveAccessLinks(Context context) throws Exception {
-
+		for (SharedFile file : shared.getFiles()) {
+			if (file.getWriter() != null)
+				reporter.addFileReport(context, file.getFilename(), IO_TYPE.OUTPUT);
+		}
 	}
 
 	public static class DefaultCommandFactory extends CommandFactory {
@@ -1,13 +1,46 @@
 package mobi.chouette.exchange.kml.exporter.writer;
 
+import java.io.IOException;
+
 
 public class AbstractWriter {
 
 	public static String toXml(Object source) {
 		if (source == null)
 			return "";
-		// return StringEscapeUtils.escapeXml(source.toString());
-		return source.toString().replaceAll("&", "&amp;").replaceAll("<", "&lt;").replaceAll(">", "&gt;");
+		StringBuilder builder = new StringBuilder();
+		try {
+			appendXml(builder, source);
+		} catch (IOException e) {
+			// not thrown by StringBuilder
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * append escaped text without intermediate strings
+	 */
+	public static void appendXml(Appendable output, Object source) throws IOException {
+		if (source == null)
+			return;
+		String value = source.toString();
+		final int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				output.append("&amp;");
+				break;
+			case '<':
+				output.append("&lt;");
+				break;
+			case '>':
+				output.append("&gt;");
+				break;
+			default:
+				output.append(c);
+			}
+		}
 	}
 	
 	public static boolean nonEmpty(String data)
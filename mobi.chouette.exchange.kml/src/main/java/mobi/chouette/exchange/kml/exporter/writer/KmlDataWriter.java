@@ -1,80 +1,225 @@
 package mobi.chouette.exchange.kml.exporter.writer;
 
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
-import javax.xml.datatype.DatatypeConfigurationException;
-
+import lombok.Getter;
 import mobi.chouette.exchange.kml.exporter.KmlData;
 import mobi.chouette.exchange.kml.exporter.KmlData.KmlItem;
 import mobi.chouette.exchange.kml.exporter.KmlData.KmlPoint;
+import mobi.chouette.model.StopPoint;
+
+import org.apache.commons.collections.map.ListOrderedMap;
+
+/**
+ * streaming KML document writer
+ * <p>
+ * placemarks are written as soon as they are produced ; coordinates are
+ * rounded to the requested precision.
+ */
+public class KmlDataWriter extends AbstractWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 32 * 1024;
+
+	private final BufferedWriter writer;
+
+	/**
+	 * decimal digits kept in coordinates, negative for full precision
+	 */
+	@Getter
+	private final int precision;
 
-public class KmlDataWriter extends AbstractWriter {
+	@Getter
+	private int count = 0;
 
-	public static void write(Writer writer, KmlData data) throws IOException, DatatypeConfigurationException {
+	/**
+	 * open document and write its header
+	 *
+	 * @param file
+	 *            target file
+	 * @param header
+	 *            document name and extended data
+	 * @param precision
+	 *            decimal digits kept in coordinates, negative for full
+	 *            precision
+	 * @throws IOException
+	 */
+	public KmlDataWriter(File file, KmlData header, int precision) throws IOException {
+		this.precision = precision;
+		writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()),
+				StandardCharsets.UTF_8), BUFFER_SIZE);
 		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
 		writer.write("<kml  xmlns=\"http://www.opengis.net/kml/2.2\">\n");
 		writer.write("  <Document>\n");
-		if (nonEmpty(data.getName()))
-			writer.write("    <name>" + toXml(data.getName()) + "</name>\n");
-		if (!data.getExtraData().isEmpty()) {
+		if (nonEmpty(header.getName())) {
+			writer.write("    <name>");
+			appendXml(writer, header.getName());
+			writer.write("</name>\n");
+		}
+		if (!header.getExtraData().isEmpty()) {
 			writer.write("        <ExtendedData>\n");
-			for (Object extra : data.getExtraData().keyList()) {
-				writer.write("          <Data name=\"" + extra + "\">\n");
-				writer.write("            <value>" + toXml(data.getExtraData().get(extra)) + "</value>\n");
-				writer.write("          </Data>\n");
-			}
+			writeData(writer, header.getExtraData());
 			writer.write("        </ExtendedData>\n");
 		}
-		for (KmlItem item : data.getItems().values()) {
-			writer.write("        <Placemark id=\"" + item.getId() + "\" >\n");
-			for (Object attribute : item.getAttributes().keyList()) {
-				writer.write("            <" + attribute + ">" + toXml(item.getAttributes().get(attribute)) + "</"
-						+ attribute + ">\n");
-			}
-			if (!item.getExtraData().isEmpty()) {
-				writer.write("        <ExtendedData>\n");
-				for (Object extra : item.getExtraData().keyList()) {
-					writer.write("          <Data name=\"" + extra + "\">\n");
-					writer.write("            <value>" + toXml(item.getExtraData().get(extra)) + "</value>\n");
-					writer.write("          </Data>\n");
-				}
-				writer.write("        </ExtendedData>\n");
-			}
-			if (item.getPoint() != null) {
-				writer.write("        <Point>\n");
-				writer.write("          <coordinates>" + item.getPoint().longitude + "," + item.getPoint().latitude
-						+ "</coordinates>\n");
-				writer.write("        </Point>\n");
+	}
+
+	/**
+	 * write whole document
+	 */
+	public static void write(File file, KmlData data, int precision) throws IOException {
+		try (KmlDataWriter writer = new KmlDataWriter(file, data, precision)) {
+			writer.write(data.getItems().values());
+		}
+	}
+
+	public void write(Collection<KmlItem> items) throws IOException {
+		for (KmlItem item : items) {
+			write(item);
+		}
+	}
+
+	public void write(KmlItem item) throws IOException {
+		startPlacemark(item.getId());
+		writeHead(writer, item);
+		if (!item.getExtraData().isEmpty())
+			writer.write("        </ExtendedData>\n");
+		writeGeometry(writer, item);
+		writer.write("        </Placemark>\n");
+		count++;
+	}
+
+	/**
+	 * write stop point placemark ; the stop area part is rendered once and
+	 * kept in cache for other journey patterns and lines
+	 *
+	 * @param point
+	 *            stop point with localized stop area
+	 * @param stop
+	 *            stop point served by journey pattern
+	 * @param cache
+	 *            rendered stop area parts by stop area objectId
+	 */
+	public void writeStopPoint(StopPoint point, boolean stop, Map<String, String[]> cache) throws IOException {
+		String key = point.getContainedInStopArea().getObjectId();
+		String[] parts = cache.get(key);
+		if (parts == null) {
+			KmlItem item = new KmlData(null).addStopPoint(point);
+			StringBuilder head = new StringBuilder();
+			writeHead(head, item);
+			StringBuilder tail = new StringBuilder("        </ExtendedData>\n");
+			writeGeometry(tail, item);
+			parts = new String[] { head.toString(), tail.toString() };
+			cache.put(key, parts);
+		}
+		startPlacemark(point.getObjectId());
+		writer.write(parts[0]);
+		writeData(writer, "stop", Boolean.toString(stop));
+		writer.write(parts[1]);
+		writer.write("        </Placemark>\n");
+		count++;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			writer.write("    </Document>\n");
+			writer.write("  </kml>\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void startPlacemark(String id) throws IOException {
+		writer.write("        <Placemark id=\"");
+		writer.write(id);
+		writer.write("\" >\n");
+	}
+
+	/**
+	 * attributes and opened extended data
+	 */
+	private void writeHead(Appendable output, KmlItem item) throws IOException {
+		ListOrderedMap attributes = item.getAttributes();
+		for (Object attribute : attributes.keyList()) {
+			output.append("            <").append(attribute.toString()).append('>');
+			appendXml(output, attributes.get(attribute));
+			output.append("</").append(attribute.toString()).append(">\n");
+		}
+		if (!item.getExtraData().isEmpty()) {
+			output.append("        <ExtendedData>\n");
+			writeData(output, item.getExtraData());
+		}
+	}
+
+	private void writeGeometry(Appendable output, KmlItem item) throws IOException {
+		if (item.getPoint() != null) {
+			output.append("        <Point>\n");
+			output.append("          <coordinates>");
+			appendPoint(output, item.getPoint());
+			output.append("</coordinates>\n");
+			output.append("        </Point>\n");
+		}
+		if (item.getLineString() != null) {
+			output.append("        <LineString>\n");
+			output.append("          <coordinates>\n");
+			for (KmlPoint point : item.getLineString()) {
+				output.append("            ");
+				appendPoint(output, point);
+				output.append('\n');
 			}
-			if (item.getLineString() != null) {
-				writer.write("        <LineString>\n");
-				writer.write("          <coordinates>\n");
-				for (KmlPoint point : item.getLineString()) {
-					writer.write("            " + point.longitude + "," + point.latitude + "\n");
+			output.append("         </coordinates>\n");
+			output.append("        </LineString>\n");
+		}
+		if (item.getMultiLineString() != null) {
+			output.append("        <MultiGeometry>\n");
+			for (List<KmlPoint> line : item.getMultiLineString()) {
+				output.append("          <LineString>\n");
+				output.append("            <coordinates>\n");
+				for (KmlPoint point : line) {
+					output.append("              ");
+					appendPoint(output, point);
+					output.append('\n');
 				}
-				writer.write("         </coordinates>\n");
-				writer.write("        </LineString>\n");
+				output.append("           </coordinates>\n");
+				output.append("          </LineString>\n");
 			}
-			if (item.getMultiLineString() != null) {
-				writer.write("        <MultiGeometry>\n");
-				for (List<KmlPoint> line : item.getMultiLineString()) {
-					writer.write("          <LineString>\n");
-					writer.write("            <coordinates>\n");
-					for (KmlPoint point : line) {
-						writer.write("              " + point.longitude + "," + point.latitude + "\n");
-					}
-					writer.write("           </coordinates>\n");
-					writer.write("          </LineString>\n");
-				}
-				writer.write("        </MultiGeometry>\n");
+			output.append("        </MultiGeometry>\n");
+		}
+	}
 
-			}
-			writer.write("        </Placemark>\n");
+	private static void writeData(Appendable output, ListOrderedMap data) throws IOException {
+		for (Object extra : data.keyList()) {
+			writeData(output, extra.toString(), data.get(extra));
 		}
-		writer.write("    </Document>\n");
-		writer.write("  </kml>\n");
+	}
+
+	private static void writeData(Appendable output, String name, Object value) throws IOException {
+		output.append("          <Data name=\"").append(name).append("\">\n");
+		output.append("            <value>");
+		appendXml(output, value);
+		output.append("</value>\n");
+		output.append("          </Data>\n");
+	}
+
+	private void appendPoint(Appendable output, KmlPoint point) throws IOException {
+		output.append(format(point.longitude)).append(',').append(format(point.latitude));
+	}
+
+	private String format(double value) {
+		if (precision < 0 || Double.isNaN(value) || Double.isInfinite(value))
+			return Double.toString(value);
+		return BigDecimal.valueOf(value).setScale(precision, RoundingMode.HALF_UP).stripTrailingZeros()
+				.toPlainString();
 	}
 
 }
@@ -0,0 +1,87 @@
+package mobi.chouette.exchange.kml.exporter.writer;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import mobi.chouette.exchange.kml.exporter.KmlData;
+import mobi.chouette.exchange.kml.exporter.KmlData.KmlItem;
+import mobi.chouette.model.StopArea;
+import mobi.chouette.model.StopPoint;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class KmlDataWriterTests {
+
+	@Test(groups = { "KmlDataWriter" }, description = "coordinates precision and escaping")
+	public void verifyPrecision() throws Exception {
+		File file = File.createTempFile("kml", ".kml");
+		file.deleteOnExit();
+		KmlData data = new KmlData("ligne <1> & co");
+		KmlItem item = data.addStopArea(createArea("test:StopArea:1", "2.3522219", "48.856614"));
+
+		try (KmlDataWriter writer = new KmlDataWriter(file, data, 5)) {
+			writer.write(item);
+			Assert.assertEquals(writer.getCount(), 1);
+		}
+		String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		Assert.assertTrue(text.contains("<name>ligne &lt;1&gt; &amp; co</name>"), "escaped name");
+		Assert.assertTrue(text.contains("<coordinates>2.35222,48.85661</coordinates>"), "rounded coordinates");
+		Assert.assertTrue(text.trim().endsWith("</kml>"), "closed document");
+
+		KmlDataWriter.write(file, data, -1);
+		text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		Assert.assertTrue(text.contains("<coordinates>2.3522219,48.856614</coordinates>"), "full precision");
+	}
+
+	@Test(groups = { "KmlDataWriter" }, description = "stop placemarks reused across documents")
+	public void verifyStopPointCache() throws Exception {
+		StopArea area = createArea("test:StopArea:1", "2.35", "48.85");
+		StopPoint first = createPoint("test:StopPoint:1", area);
+		StopPoint second = createPoint("test:StopPoint:2", area);
+		Map<String, String[]> cache = new HashMap<>();
+
+		File file = File.createTempFile("kml", ".kml");
+		file.deleteOnExit();
+		try (KmlDataWriter writer = new KmlDataWriter(file, new KmlData("mission"), -1)) {
+			writer.writeStopPoint(first, true, cache);
+		}
+		String expected = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		Assert.assertEquals(cache.size(), 1);
+
+		// cached parts are used even if stop area changed since
+		area.setName("renamed");
+		File other = File.createTempFile("kml", ".kml");
+		other.deleteOnExit();
+		try (KmlDataWriter writer = new KmlDataWriter(other, new KmlData("mission"), -1)) {
+			writer.writeStopPoint(second, false, cache);
+		}
+		String text = new String(Files.readAllBytes(other.toPath()), StandardCharsets.UTF_8);
+		Assert.assertFalse(text.contains("renamed"), "cached placemark");
+		Assert.assertTrue(text.contains("<Data name=\"stop\">\n            <value>false</value>"), "not served");
+		Assert.assertEquals(
+				text.replace("test:StopPoint:2", "test:StopPoint:1").replace(
+						"<Data name=\"stop\">\n            <value>false", "<Data name=\"stop\">\n            <value>true"),
+				expected, "same placemark as first document");
+	}
+
+	private StopArea createArea(String objectId, String longitude, String latitude) {
+		StopArea area = new StopArea();
+		area.setObjectId(objectId);
+		area.setName("arrêt");
+		area.setLongitude(new BigDecimal(longitude));
+		area.setLatitude(new BigDecimal(latitude));
+		return area;
+	}
+
+	private StopPoint createPoint(String objectId, StopArea area) {
+		StopPoint point = new StopPoint();
+		point.setObjectId(objectId);
+		point.setContainedInStopArea(area);
+		return point;
+	}
+}
@@ -1,8 +1,10 @@
 package mobi.chouette.exchange.neptune.exporter;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 import mobi.chouette.common.Constant;
@@ -10,7 +12,6 @@ import mobi.chouette.common.Context;
 import mobi.chouette.common.JobData;
 import mobi.chouette.exchange.metadata.Metadata;
 import mobi.chouette.exchange.metadata.NeptuneObjectPresenter;
-import mobi.chouette.exchange.neptune.exporter.producer.AbstractJaxbNeptuneProducer;
 import mobi.chouette.exchange.neptune.exporter.producer.AccessLinkProducer;
 import mobi.chouette.exchange.neptune.exporter.producer.AccessPointProducer;
 import mobi.chouette.exchange.neptune.exporter.producer.AreaCentroidProducer;
@@ -30,6 +31,7 @@ import mobi.chouette.exchange.neptune.exporter.producer.TimetableProducer;
 import mobi.chouette.exchange.neptune.exporter.producer.VehicleJourneyProducer;
 import mobi.chouette.exchange.neptune.exporter.util.NeptuneObjectUtil;
 import mobi.chouette.exchange.neptune.jaxb.JaxbNeptuneFileConverter;
+import mobi.chouette.exchange.neptune.jaxb.NeptuneStreamWriter;
 import mobi.chouette.exchange.neptune.model.PTLink;
 import mobi.chouette.exchange.neptune.model.TimeSlot;
 import mobi.chouette.exchange.report.ActionReporter;
@@ -48,8 +50,8 @@ import mobi.chouette.model.Timeband;
 import mobi.chouette.model.Timetable;
 import mobi.chouette.model.VehicleJourney;
 import mobi.chouette.model.type.ChouetteAreaEnum;
+import mobi.chouette.model.util.NeptuneUtil;
 
-import org.trident.schema.trident.ChouettePTNetworkType;
 import org.trident.schema.trident.ChouettePTNetworkType.ChouetteArea;
 import org.trident.schema.trident.ChouettePTNetworkType.ChouetteLineDescription;
 import org.trident.schema.trident.ChouettePTNetworkType.ChouetteLineDescription.ChouetteRoute;
@@ -84,6 +86,27 @@ public class ChouettePTNetworkProducer implements Constant {
 	//	private static FacilityProducer facilityProducer = new FacilityProducer();
 	private static TimeSlotProducer timeSlotProducer = new TimeSlotProducer();
 
+	// element names
+	private static final String PTNETWORK = "PTNetwork";
+	private static final String GROUP_OF_LINE = "GroupOfLine";
+	private static final String COMPANY = "Company";
+	private static final String CHOUETTE_AREA = "ChouetteArea";
+	private static final String STOP_AREA = "StopArea";
+	private static final String AREA_CENTROID = "AreaCentroid";
+	private static final String CONNECTION_LINK = "ConnectionLink";
+	private static final String TIMETABLE = "Timetable";
+	private static final String TIME_SLOT = "TimeSlot";
+	private static final String CHOUETTE_LINE_DESCRIPTION = "ChouetteLineDescription";
+	private static final String LINE = "Line";
+	private static final String CHOUETTE_ROUTE = "ChouetteRoute";
+	private static final String STOP_POINT = "StopPoint";
+	private static final String ITL = "ITL";
+	private static final String PT_LINK = "PtLink";
+	private static final String JOURNEY_PATTERN = "JourneyPattern";
+	private static final String VEHICLE_JOURNEY = "VehicleJourney";
+	private static final String ACCESS_POINT = "AccessPoint";
+	private static final String ACCESS_LINK = "AccessLink";
+
 	public void produce(Context context) throws Exception
 	{
 		ExportableData collection = (ExportableData) context.get(EXPORTABLE_DATA);
@@ -100,192 +123,198 @@ public class ChouettePTNetworkProducer implements Constant {
 		}
 		Metadata metadata = (Metadata) context.get(METADATA); 
 
-		ChouettePTNetworkType rootObject = AbstractJaxbNeptuneProducer.tridentFactory.createChouettePTNetworkType();
-        if (collection.getLine().getNetwork() != null)
-		    rootObject.setPTNetwork(networkProducer.produce(collection.getLine().getNetwork(),addExtension));
-		for (GroupOfLine group : collection.getGroupOfLines())
+		// elements are written as soon as produced, in schema order
+		JaxbNeptuneFileConverter converter = JaxbNeptuneFileConverter.getInstance();
+		Path dir = Paths.get(rootDirectory,OUTPUT);
+		String fileName = collection.getLine().getObjectId().replaceAll(":", "-")+".xml";
+		File file = new File(dir.toFile(),fileName);
+		try (NeptuneStreamWriter writer = converter.createStreamWriter(new FileOutputStream(file)))
 		{
-			GroupOfLineType jaxbObj = groupOfLineProducer.produce(group,addExtension);
-			jaxbObj.getLineId().add(collection.getLine().getObjectId());
-			rootObject.getGroupOfLine().add(jaxbObj);
-		}
+			writer.writeStartDocument();
+			if (collection.getLine().getNetwork() != null)
+				writer.write(PTNETWORK, networkProducer.produce(collection.getLine().getNetwork(),addExtension));
+			for (GroupOfLine group : collection.getGroupOfLines())
+			{
+				GroupOfLineType jaxbObj = groupOfLineProducer.produce(group,addExtension);
+				jaxbObj.getLineId().add(collection.getLine().getObjectId());
+				writer.write(GROUP_OF_LINE, jaxbObj);
+			}
 
-		for (Company company : collection.getCompanies())
-		{
-			CompanyType jaxbObj = companyProducer.produce(company,addExtension);
-			rootObject.getCompany().add(jaxbObj);
-		}
+			for (Company company : collection.getCompanies())
+			{
+				CompanyType jaxbObj = companyProducer.produce(company,addExtension);
+				writer.write(COMPANY, jaxbObj);
+			}
 
-		ChouetteArea chouetteArea = new ChouetteArea();
-		for (StopArea stopArea : collection.getStopAreas())
-		{
-			stopArea.toProjection(projectionType);
-			ChouetteArea.StopArea jaxbStopArea = stopAreaProducer.produce(stopArea,addExtension);
-			// add children reference only for exported ones
-			if (stopArea.getAreaType().equals(ChouetteAreaEnum.ITL))
+			writer.writeStartElement(CHOUETTE_AREA);
+			NeptuneUtil.toProjection(collection.getStopAreas(), projectionType);
+			for (StopArea stopArea : collection.getStopAreas())
 			{
-				for (StopArea child : stopArea.getRoutingConstraintAreas())
+				ChouetteArea.StopArea jaxbStopArea = stopAreaProducer.produce(stopArea,addExtension);
+				// add children reference only for exported ones
+				if (stopArea.getAreaType().equals(ChouetteAreaEnum.ITL))
 				{
-					if (collection.getStopAreas().contains(child))
+					for (StopArea child : stopArea.getRoutingConstraintAreas())
 					{
-						jaxbStopArea.getContains().add(child.getObjectId());
+						if (collection.getStopAreas().contains(child))
+						{
+							jaxbStopArea.getContains().add(child.getObjectId());
+						}
 					}
-				}
-			} else
-			{
-				for (StopArea child : stopArea.getContainedStopAreas())
+				} else
 				{
-					if (collection.getStopAreas().contains(child))
+					for (StopArea child : stopArea.getContainedStopAreas())
 					{
-						jaxbStopArea.getContains().add(child.getObjectId());
+						if (collection.getStopAreas().contains(child))
+						{
+							jaxbStopArea.getContains().add(child.getObjectId());
+						}
 					}
-				}
-				for (StopPoint child : stopArea.getContainedStopPoints())
-				{
-					if (collection.getStopPoints().contains(child))
+					for (StopPoint child : stopArea.getContainedStopPoints())
 					{
-						jaxbStopArea.getContains().add(child.getObjectId());
+						if (collection.getStopPoints().contains(child))
+						{
+							jaxbStopArea.getContains().add(child.getObjectId());
+						}
 					}
 				}
+				if (metadata != null && stopArea.hasCoordinates())
+					metadata.getSpatialCoverage().update(stopArea.getLongitude().doubleValue(), stopArea.getLatitude().doubleValue());
+				if (hasCentroid(stopArea))
+				{
+					jaxbStopArea.setCentroidOfArea(areaCentroidProducer.buildObjectId(stopArea));
+				}
+				writer.write(STOP_AREA, jaxbStopArea);
 			}
-			if (metadata != null && stopArea.hasCoordinates())
-				metadata.getSpatialCoverage().update(stopArea.getLongitude().doubleValue(), stopArea.getLatitude().doubleValue());
-			if (stopArea.hasAddress() || stopArea.hasCoordinates() || stopArea.hasProjection())
+			// centroids follow all stop areas
+			for (StopArea stopArea : collection.getStopAreas())
 			{
-				ChouetteArea.AreaCentroid centroid = areaCentroidProducer.produce(stopArea,addExtension);
-				chouetteArea.getAreaCentroid().add(centroid);
-				jaxbStopArea.setCentroidOfArea(centroid.getObjectId());
+				if (hasCentroid(stopArea))
+				{
+					writer.write(AREA_CENTROID, areaCentroidProducer.produce(stopArea,addExtension));
+				}
 			}
-			chouetteArea.getStopArea().add(jaxbStopArea);
-		}
-		rootObject.setChouetteArea(chouetteArea); 
+			writer.writeEndElement();
 
-		for (ConnectionLink connectionLink : collection.getConnectionLinks())
-		{
-			rootObject.getConnectionLink().add(connectionLinkProducer.produce(connectionLink,addExtension));
-		}
+			for (ConnectionLink connectionLink : collection.getConnectionLinks())
+			{
+				writer.write(CONNECTION_LINK, connectionLinkProducer.produce(connectionLink,addExtension));
+			}
 
-		for (Timetable timetable : collection.getTimetables())
-		{
-			timetable.computeLimitOfPeriods();
+			for (Timetable timetable : collection.getTimetables())
+			{
+				timetable.computeLimitOfPeriods();
 
-			TimetableType jaxbObj = timetableProducer.produce(timetable,addExtension);
-			rootObject.getTimetable().add(jaxbObj);
-			// add vehiclejourney only for exported ones
-			for (VehicleJourney vehicleJourney : collection.getVehicleJourneys()) {
-				if (vehicleJourney.getTimetables().contains(timetable))
-				{
-					jaxbObj.getVehicleJourneyId().add(vehicleJourney.getObjectId());					
+				TimetableType jaxbObj = timetableProducer.produce(timetable,addExtension);
+				// add vehiclejourney only for exported ones
+				for (VehicleJourney vehicleJourney : collection.getVehicleJourneys()) {
+					if (vehicleJourney.getTimetables().contains(timetable))
+					{
+						jaxbObj.getVehicleJourneyId().add(vehicleJourney.getObjectId());					
+					}
 				}
+				writer.write(TIMETABLE, jaxbObj);
+				if (metadata != null)
+					metadata.getTemporalCoverage().update(timetable.getStartOfPeriod(), timetable.getEndOfPeriod());
 			}
-			if (metadata != null)
-				metadata.getTemporalCoverage().update(timetable.getStartOfPeriod(), timetable.getEndOfPeriod());
-		}
-
-		ChouetteLineDescription chouetteLineDescription = new ChouetteLineDescription();
-		ChouetteLineDescription.Line jaxbLine = lineProducer.produce(collection.getLine(),collection.getRoutes(),addExtension);
-		chouetteLineDescription.setLine(jaxbLine);
-		rootObject.setChouetteLineDescription(chouetteLineDescription);
 
-		if (collection.getLine().getRoutingConstraints() != null)
-		{
-			for (StopArea routingConstraint : collection.getLine().getRoutingConstraints())
+			// time slots precede line description where their vehicle journeys are
+			for (VehicleJourney vehicleJourney : collection.getVehicleJourneys())
 			{
-				ITLType jaxbITL = routingConstraintProducer.produceITL(collection.getLine(), routingConstraint,addExtension);
-				chouetteLineDescription.getITL().add(jaxbITL);
+				List<JourneyFrequency> journeyFrequencies = vehicleJourney.getJourneyFrequencies();
+				if (journeyFrequencies != null && !journeyFrequencies.isEmpty()) {
+					int count = 0;
+					for (JourneyFrequency journeyFrequency : journeyFrequencies) {
+						TimeSlot timeSlot = buildTimeSlot(vehicleJourney, journeyFrequency, count);
+						TimeSlotType jaxbTSObj = timeSlotProducer.produce(timeSlot, addExtension);
+						writer.write(TIME_SLOT, jaxbTSObj);
+						count++;
+					}
+				}
 			}
-		}
 
-		for (Route route : collection.getRoutes())
-		{
-			ChouetteRoute jaxbObj = routeProducer.produce(route,collection.getRoutes(),addExtension);
-			// reduce journeyPatternId at exported ones
-			jaxbObj.getJourneyPatternId().clear();
-			for (JourneyPattern jp : route.getJourneyPatterns())
+			writer.writeStartElement(CHOUETTE_LINE_DESCRIPTION);
+			ChouetteLineDescription.Line jaxbLine = lineProducer.produce(collection.getLine(),collection.getRoutes(),addExtension);
+			writer.write(LINE, jaxbLine);
+
+			List<PTLink> linePtLinks = new ArrayList<>();
+			for (Route route : collection.getRoutes())
 			{
-				if (collection.getJourneyPatterns().contains(jp))
+				ChouetteRoute jaxbObj = routeProducer.produce(route,collection.getRoutes(),addExtension);
+				// reduce journeyPatternId at exported ones
+				jaxbObj.getJourneyPatternId().clear();
+				for (JourneyPattern jp : route.getJourneyPatterns())
 				{
-					jaxbObj.getJourneyPatternId().add(jp.getObjectId());
+					if (collection.getJourneyPatterns().contains(jp))
+					{
+						jaxbObj.getJourneyPatternId().add(jp.getObjectId());
+					}
 				}
+				// add ptLinks 
+				List<PTLink> ptLinks = NeptuneObjectUtil.getPtLinks(route);
+				jaxbObj.getPtLinkId().addAll(NeptuneObjectUtil.extractObjectIds(ptLinks));
+				linePtLinks.addAll(ptLinks);
+				writer.write(CHOUETTE_ROUTE, jaxbObj);
 			}
-			// add ptLinks 
-			List<PTLink> ptLinks = NeptuneObjectUtil.getPtLinks(route);
-			jaxbObj.getPtLinkId().addAll(NeptuneObjectUtil.extractObjectIds(ptLinks));
-			for (PTLink ptLink : ptLinks) 
+			for (StopPoint stopPoint : collection.getStopPoints())
+			{
+				org.trident.schema.trident.ChouettePTNetworkType.ChouetteLineDescription.StopPoint jaxbObj = stopPointProducer.produce(stopPoint,addExtension);
+				writer.write(STOP_POINT, jaxbObj);
+			}
+			if (collection.getLine().getRoutingConstraints() != null)
+			{
+				for (StopArea routingConstraint : collection.getLine().getRoutingConstraints())
+				{
+					ITLType jaxbITL = routingConstraintProducer.produceITL(collection.getLine(), routingConstraint,addExtension);
+					writer.write(ITL, jaxbITL);
+				}
+			}
+			for (PTLink ptLink : linePtLinks) 
 			{
 				PTLinkType jaxbLink = ptLinkProducer.produce(ptLink, addExtension);
-				chouetteLineDescription.getPtLink().add(jaxbLink);
+				writer.write(PT_LINK, jaxbLink);
 			}
-			chouetteLineDescription.getChouetteRoute().add(jaxbObj);
-		}
-		for (JourneyPattern journeyPattern : collection.getJourneyPatterns())
-		{
-			JourneyPatternType jaxbObj = journeyPatternProducer.produce(journeyPattern,addExtension);
-			chouetteLineDescription.getJourneyPattern().add(jaxbObj);
-		}
-		for (StopPoint stopPoint : collection.getStopPoints())
-		{
-			org.trident.schema.trident.ChouettePTNetworkType.ChouetteLineDescription.StopPoint jaxbObj = stopPointProducer.produce(stopPoint,addExtension);
-			chouetteLineDescription.getStopPoint().add(jaxbObj);
-		}
-		for (VehicleJourney vehicleJourney : collection.getVehicleJourneys())
-		{
-			
-			List<JourneyFrequency> journeyFrequencies = vehicleJourney.getJourneyFrequencies();
-			if (journeyFrequencies != null && !journeyFrequencies.isEmpty()) {
-				int count = 0;
-				for (JourneyFrequency journeyFrequency : journeyFrequencies) {
-					Timeband timeband = journeyFrequency.getTimeband();
-					TimeSlot timeSlot = new TimeSlot();
-					if (timeband != null) {
-						timeSlot.setBeginningSlotTime(timeband.getStartTime());
-						timeSlot.setEndSlotTime(timeband.getEndTime());
-						timeSlot.setObjectVersion(timeband.getObjectVersion());
-						timeSlot.setCreationTime(timeband.getCreationTime());
-						timeSlot.setCreatorId(timeband.getCreatorId());
-					}
-					else {
-						timeSlot.setBeginningSlotTime(journeyFrequency.getFirstDepartureTime());
-						timeSlot.setEndSlotTime(journeyFrequency.getLastDepartureTime());
-					}
-					timeSlot.setFirstDepartureTimeInSlot(journeyFrequency.getFirstDepartureTime());
-					timeSlot.setLastDepartureTimeInSlot(journeyFrequency.getLastDepartureTime());
-					
+			linePtLinks.clear();
+			for (JourneyPattern journeyPattern : collection.getJourneyPatterns())
+			{
+				JourneyPatternType jaxbObj = journeyPatternProducer.produce(journeyPattern,addExtension);
+				writer.write(JOURNEY_PATTERN, jaxbObj);
+			}
+			for (VehicleJourney vehicleJourney : collection.getVehicleJourneys())
+			{
+				List<JourneyFrequency> journeyFrequencies = vehicleJourney.getJourneyFrequencies();
+				if (journeyFrequencies != null && !journeyFrequencies.isEmpty()) {
+					for (int count = 0; count < journeyFrequencies.size(); count++) {
 						VehicleJourneyType jaxbObj = vehicleJourneyProducer.produce(vehicleJourney, addExtension, count);
-						timeSlot.setObjectId(jaxbObj.getObjectId().replaceAll("VehicleJourney", "TimeSlot"));
-						jaxbObj.setTimeSlotId(timeSlot.getObjectId());
-						chouetteLineDescription.getVehicleJourney().add(jaxbObj);
-					
-					TimeSlotType jaxbTSObj = timeSlotProducer.produce(timeSlot, addExtension);
-					rootObject.getTimeSlot().add(jaxbTSObj);
-					count++;
+						jaxbObj.setTimeSlotId(buildTimeSlotId(vehicleJourney, count));
+						writer.write(VEHICLE_JOURNEY, jaxbObj);
+					}
+				} else {
+					VehicleJourneyType jaxbObj = vehicleJourneyProducer.produce(vehicleJourney, addExtension);
+					writer.write(VEHICLE_JOURNEY, jaxbObj);
 				}
-			} else {
-				VehicleJourneyType jaxbObj = vehicleJourneyProducer.produce(vehicleJourney, addExtension);
-				chouetteLineDescription.getVehicleJourney().add(jaxbObj);
 			}
-		}
+			writer.writeEndElement();
 
-		for (AccessLink accessLink : collection.getAccessLinks())
-		{
-			if (collection.getStopAreas().contains(accessLink.getStopArea()) && 
-					collection.getAccessPoints().contains(accessLink.getAccessPoint())	)
+			for (AccessPoint accessPoint : collection.getAccessPoints())
 			{
-				rootObject.getAccessLink().add(accessLinkProducer.produce(accessLink,addExtension));
+				writer.write(ACCESS_POINT, accessPointProducer.produce(accessPoint,addExtension));
 			}
-		}
 
-		for (AccessPoint accessPoint : collection.getAccessPoints())
-		{
-			rootObject.getAccessPoint().add(accessPointProducer.produce(accessPoint,addExtension));
+			for (AccessLink accessLink : collection.getAccessLinks())
+			{
+				if (collection.getStopAreas().contains(accessLink.getStopArea()) && 
+						collection.getAccessPoints().contains(accessLink.getAccessPoint())	)
+				{
+					writer.write(ACCESS_LINK, accessLinkProducer.produce(accessLink,addExtension));
+				}
+			}
+			writer.writeEndDocument();
 		}
 
-		// sauvegarde
-		JaxbNeptuneFileConverter writer = JaxbNeptuneFileConverter.getInstance();
-		Path dir = Paths.get(rootDirectory,OUTPUT);
-		String fileName = collection.getLine().getObjectId().replaceAll(":", "-")+".xml";
-		File file = new File(dir.toFile(),fileName);
-		writer.write(AbstractJaxbNeptuneProducer.tridentFactory.createChouettePTNetwork(rootObject), file );
+		// schema is checked again by validation after export
+		if (!parameters.isValidateAfterExport())
+			converter.validate(file);
 
 		ActionReporter reporter = ActionReporter.Factory.getInstance();
 		reporter.addFileReport(context, fileName, IO_TYPE.OUTPUT);
@@ -296,5 +325,38 @@ public class ChouettePTNetworkProducer implements Constant {
 					NeptuneObjectPresenter.getName(collection.getLine())));
 	}
 
+	private boolean hasCentroid(StopArea stopArea)
+	{
+		return stopArea.hasAddress() || stopArea.hasCoordinates() || stopArea.hasProjection();
+	}
+
+	private String buildTimeSlotId(VehicleJourney vehicleJourney, int count)
+	{
+		String objectId = vehicleJourney.getObjectId();
+		if (count > 0)
+			objectId += "-" + count;
+		return objectId.replaceAll("VehicleJourney", "TimeSlot");
+	}
+
+	private TimeSlot buildTimeSlot(VehicleJourney vehicleJourney, JourneyFrequency journeyFrequency, int count)
+	{
+		Timeband timeband = journeyFrequency.getTimeband();
+		TimeSlot timeSlot = new TimeSlot();
+		if (timeband != null) {
+			timeSlot.setBeginningSlotTime(timeband.getStartTime());
+			timeSlot.setEndSlotTime(timeband.getEndTime());
+			timeSlot.setObjectVersion(timeband.getObjectVersion());
+			timeSlot.setCreationTime(timeband.getCreationTime());
+			timeSlot.setCreatorId(timeband.getCreatorId());
+		}
+		else {
+			timeSlot.setBeginningSlotTime(journeyFrequency.getFirstDepartureTime());
+			timeSlot.setEndSlotTime(journeyFrequency.getLastDepartureTime());
+		}
+		timeSlot.setFirstDepartureTimeInSlot(journeyFrequency.getFirstDepartureTime());
+		timeSlot.setLastDepartureTimeInSlot(journeyFrequency.getLastDepartureTime());
+		timeSlot.setObjectId(buildTimeSlotId(vehicleJourney, count));
+		return timeSlot;
+	}
 
 }
@@ -16,6 +16,15 @@ public class AreaCentroidProducer extends
       AbstractJaxbNeptuneProducer<ChouetteArea.AreaCentroid, StopArea>
 {
 
+   /**
+    * @param area
+    * @return objectId of centroid produced for area
+    */
+   public String buildObjectId(StopArea area)
+   {
+      return area.objectIdPrefix()+":AreaCentroid:"+area.objectIdSuffix();
+   }
+
    //@Override
    public ChouetteArea.AreaCentroid produce(StopArea area, boolean addExtension)
    {
@@ -25,7 +34,7 @@ public class AreaCentroidProducer extends
       //
       populateFromModel(jaxbAreaCentroid, area);
 
-      jaxbAreaCentroid.setObjectId(area.objectIdPrefix()+":AreaCentroid:"+area.objectIdSuffix());
+      jaxbAreaCentroid.setObjectId(buildObjectId(area));
       jaxbAreaCentroid.setComment(getNotEmptyString(area.getComment()));
       jaxbAreaCentroid.setName(area.getName());
 
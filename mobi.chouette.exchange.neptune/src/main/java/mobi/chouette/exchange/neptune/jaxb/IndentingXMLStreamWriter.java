@@ -0,0 +1,300 @@
+/**
+ * Projet CHOUETTE
+ *
+ * ce projet est sous license libre
+ * voir LICENSE.txt pour plus de details
+ *
+ */
+package mobi.chouette.exchange.neptune.jaxb;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * XMLStreamWriter decorator reproducing JAXB formatted output
+ * <p>
+ * each start tag goes on a new line indented by 4 spaces per level, end tags
+ * of elements with children are indented the same way, elements without
+ * content are written as empty tags; namespaces declared on the root element
+ * are not declared again on descendants.
+ */
+class IndentingXMLStreamWriter implements XMLStreamWriter {
+
+	private static final String INDENT = "    ";
+
+	private final XMLStreamWriter delegate;
+
+	private final Map<String, String> rootNamespaces = new LinkedHashMap<>();
+
+	private int depth = 0;
+
+	private boolean didText = false;
+
+	/**
+	 * start tag waiting for its content to know if it is empty : element
+	 * name followed by namespace and attribute declarations
+	 */
+	private List<String[]> pending = null;
+
+	IndentingXMLStreamWriter(XMLStreamWriter delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @return namespaces declared on root element, by prefix
+	 */
+	Map<String, String> getRootNamespaces() {
+		return rootNamespaces;
+	}
+
+	@Override
+	public void writeStartElement(String localName) throws XMLStreamException {
+		writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, localName, XMLConstants.NULL_NS_URI);
+	}
+
+	@Override
+	public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+		writeStartElement(delegate.getPrefix(namespaceURI), localName, namespaceURI);
+	}
+
+	@Override
+	public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+		flushPending(false);
+		if (!didText)
+			indent();
+		depth++;
+		didText = false;
+		pending = new ArrayList<>();
+		pending.add(new String[] { prefix, localName, namespaceURI });
+	}
+
+	@Override
+	public void writeEmptyElement(String localName) throws XMLStreamException {
+		writeStartElement(localName);
+		writeEndElement();
+	}
+
+	@Override
+	public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+		writeStartElement(namespaceURI, localName);
+		writeEndElement();
+	}
+
+	@Override
+	public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+		writeStartElement(prefix, localName, namespaceURI);
+		writeEndElement();
+	}
+
+	@Override
+	public void writeEndElement() throws XMLStreamException {
+		depth--;
+		if (pending != null) {
+			flushPending(true);
+		} else {
+			if (!didText)
+				indent();
+			delegate.writeEndElement();
+		}
+		didText = false;
+	}
+
+	@Override
+	public void writeEndDocument() throws XMLStreamException {
+		flushPending(false);
+		delegate.writeCharacters("\n");
+		delegate.writeEndDocument();
+	}
+
+	@Override
+	public void close() throws XMLStreamException {
+		delegate.close();
+	}
+
+	@Override
+	public void flush() throws XMLStreamException {
+		delegate.flush();
+	}
+
+	@Override
+	public void writeAttribute(String localName, String value) throws XMLStreamException {
+		attribute(new String[] { null, null, null, localName, value });
+	}
+
+	@Override
+	public void writeAttribute(String prefix, String namespaceURI, String localName, String value)
+			throws XMLStreamException {
+		attribute(new String[] { null, prefix, namespaceURI, localName, value });
+	}
+
+	@Override
+	public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+		attribute(new String[] { null, delegate.getPrefix(namespaceURI), namespaceURI, localName, value });
+	}
+
+	@Override
+	public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+		if (prefix == null || prefix.isEmpty() || XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+			writeDefaultNamespace(namespaceURI);
+			return;
+		}
+		namespace(prefix, namespaceURI);
+	}
+
+	@Override
+	public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+		namespace(XMLConstants.DEFAULT_NS_PREFIX, namespaceURI);
+	}
+
+	@Override
+	public void writeComment(String data) throws XMLStreamException {
+		flushPending(false);
+		delegate.writeComment(data);
+	}
+
+	@Override
+	public void writeProcessingInstruction(String target) throws XMLStreamException {
+		flushPending(false);
+		delegate.writeProcessingInstruction(target);
+	}
+
+	@Override
+	public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+		flushPending(false);
+		delegate.writeProcessingInstruction(target, data);
+	}
+
+	@Override
+	public void writeCData(String data) throws XMLStreamException {
+		flushPending(false);
+		didText = true;
+		delegate.writeCData(data);
+	}
+
+	@Override
+	public void writeDTD(String dtd) throws XMLStreamException {
+		delegate.writeDTD(dtd);
+	}
+
+	@Override
+	public void writeEntityRef(String name) throws XMLStreamException {
+		flushPending(false);
+		didText = true;
+		delegate.writeEntityRef(name);
+	}
+
+	@Override
+	public void writeStartDocument() throws XMLStreamException {
+		delegate.writeStartDocument();
+	}
+
+	@Override
+	public void writeStartDocument(String version) throws XMLStreamException {
+		delegate.writeStartDocument(version);
+	}
+
+	@Override
+	public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+		delegate.writeStartDocument(encoding, version);
+	}
+
+	@Override
+	public void writeCharacters(String text) throws XMLStreamException {
+		flushPending(false);
+		didText = true;
+		delegate.writeCharacters(text);
+	}
+
+	@Override
+	public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+		flushPending(false);
+		didText = true;
+		delegate.writeCharacters(text, start, len);
+	}
+
+	@Override
+	public String getPrefix(String uri) throws XMLStreamException {
+		return delegate.getPrefix(uri);
+	}
+
+	@Override
+	public void setPrefix(String prefix, String uri) throws XMLStreamException {
+		delegate.setPrefix(prefix, uri);
+	}
+
+	@Override
+	public void setDefaultNamespace(String uri) throws XMLStreamException {
+		delegate.setDefaultNamespace(uri);
+	}
+
+	@Override
+	public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+		delegate.setNamespaceContext(context);
+	}
+
+	@Override
+	public NamespaceContext getNamespaceContext() {
+		return delegate.getNamespaceContext();
+	}
+
+	@Override
+	public Object getProperty(String name) throws IllegalArgumentException {
+		return delegate.getProperty(name);
+	}
+
+	private void namespace(String prefix, String namespaceURI) throws XMLStreamException {
+		if (depth == 1)
+			rootNamespaces.put(prefix, namespaceURI);
+		else if (namespaceURI.equals(rootNamespaces.get(prefix)))
+			return;
+		if (pending == null)
+			throw new XMLStreamException("namespace declaration outside of a start tag");
+		pending.add(new String[] { prefix, namespaceURI });
+	}
+
+	private void attribute(String[] attribute) throws XMLStreamException {
+		if (pending == null)
+			throw new XMLStreamException("attribute outside of a start tag");
+		pending.add(attribute);
+	}
+
+	private void flushPending(boolean empty) throws XMLStreamException {
+		if (pending == null)
+			return;
+		String[] element = pending.get(0);
+		if (empty)
+			delegate.writeEmptyElement(element[0], element[1], element[2]);
+		else
+			delegate.writeStartElement(element[0], element[1], element[2]);
+		for (int i = 1; i < pending.size(); i++) {
+			String[] declaration = pending.get(i);
+			if (declaration.length == 2) {
+				if (declaration[0].isEmpty())
+					delegate.writeDefaultNamespace(declaration[1]);
+				else
+					delegate.writeNamespace(declaration[0], declaration[1]);
+			} else if (declaration[2] == null) {
+				delegate.writeAttribute(declaration[3], declaration[4]);
+			} else {
+				delegate.writeAttribute(declaration[1], declaration[2], declaration[3], declaration[4]);
+			}
+		}
+		pending = null;
+	}
+
+	private void indent() throws XMLStreamException {
+		StringBuilder builder = new StringBuilder(1 + depth * INDENT.length());
+		builder.append('\n');
+		for (int i = 0; i < depth; i++)
+			builder.append(INDENT);
+		delegate.writeCharacters(builder.toString());
+	}
+
+}
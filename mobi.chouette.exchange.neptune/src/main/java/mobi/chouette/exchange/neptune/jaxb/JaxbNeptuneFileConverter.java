@@ -20,19 +20,28 @@ import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.ValidationEvent;
 import javax.xml.bind.ValidationEventHandler;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
 
 import lombok.extern.log4j.Log4j;
 
 import org.trident.schema.trident.ChouettePTNetworkType;
+import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 import com.sun.xml.bind.marshaller.NamespacePrefixMapper;
 
 /**
  * Reader tool to extract XML Neptune Schema Objects (jaxb) from a file or a
  * stream
+ * <p>
+ * writing a whole tree validates it while marshalling ; large files should be
+ * written with {@link #createStreamWriter(OutputStream)} then validated with
+ * {@link #validate(File)} when needed
  */
 @Log4j
 public class JaxbNeptuneFileConverter {
@@ -70,19 +79,53 @@ public class JaxbNeptuneFileConverter {
 	public void write(JAXBElement<ChouettePTNetworkType> network, OutputStream stream) throws JAXBException,
 			IOException {
 		try {
-			Marshaller marshaller = context.createMarshaller();
+			Marshaller marshaller = createMarshaller();
 			marshaller.setSchema(schema);
-			marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_ENCODING, "UTF-8"); // NOI18N
 			marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
 			marshaller.setEventHandler(new NeptuneValidationEventHandler());
-			NamespacePrefixMapper mapper = new NeptuneNamespacePrefixMapper();
-			marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", mapper);
 			marshaller.marshal(network, stream);
 		} finally {
 			stream.close();
 		}
 	}
 
+	/**
+	 * open a streaming writer, the caller produces elements in schema order
+	 * 
+	 * @param stream
+	 *            closed with writer
+	 * @return writer
+	 * @throws JAXBException
+	 * @throws XMLStreamException
+	 * @throws IOException
+	 */
+	public NeptuneStreamWriter createStreamWriter(OutputStream stream) throws JAXBException, XMLStreamException,
+			IOException {
+		return new NeptuneStreamWriter(createMarshaller(), stream);
+	}
+
+	/**
+	 * validate a file against Neptune schema without loading it
+	 * 
+	 * @param file
+	 * @throws SAXException
+	 *             on first error
+	 * @throws IOException
+	 */
+	public void validate(File file) throws SAXException, IOException {
+		Validator validator = schema.newValidator();
+		validator.setErrorHandler(new NeptuneErrorHandler());
+		validator.validate(new StreamSource(file));
+	}
+
+	private Marshaller createMarshaller() throws JAXBException {
+		Marshaller marshaller = context.createMarshaller();
+		marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_ENCODING, "UTF-8"); // NOI18N
+		NamespacePrefixMapper mapper = new NeptuneNamespacePrefixMapper();
+		marshaller.setProperty("com.sun.xml.bind.namespacePrefixMapper", mapper);
+		return marshaller;
+	}
+
 	/**
 	 * Prefix mapper to have pretty namespace in xml instead of ns1,ns2,...
 	 * 
@@ -127,4 +170,22 @@ public class JaxbNeptuneFileConverter {
 		}
 	}
 
+	private class NeptuneErrorHandler implements ErrorHandler {
+
+		@Override
+		public void warning(SAXParseException exception) throws SAXException {
+			log.warn(exception.getMessage());
+		}
+
+		@Override
+		public void error(SAXParseException exception) throws SAXException {
+			throw exception;
+		}
+
+		@Override
+		public void fatalError(SAXParseException exception) throws SAXException {
+			throw exception;
+		}
+	}
+
 }
@@ -0,0 +1,133 @@
+/**
+ * Projet CHOUETTE
+ *
+ * ce projet est sous license libre
+ * voir LICENSE.txt pour plus de details
+ *
+ */
+package mobi.chouette.exchange.neptune.jaxb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+
+import org.trident.schema.trident.ChouettePTNetworkType;
+
+/**
+ * Streaming writer for Neptune files
+ * <p>
+ * root and wrapper elements (ChouetteArea, ChouetteLineDescription) are
+ * written with a StAX writer, every other element is marshalled as a JAXB
+ * fragment as soon as it is produced, so the whole
+ * {@link ChouettePTNetworkType} tree is never held in memory. Elements must be
+ * written in schema order ; output is the same as the formatted output of
+ * {@link JaxbNeptuneFileConverter#write(JAXBElement, OutputStream)}.
+ * <p>
+ * no schema validation is done while writing, see
+ * {@link JaxbNeptuneFileConverter#validate(java.io.File)}
+ */
+public class NeptuneStreamWriter implements Closeable {
+
+	private static final String NAMESPACE = "http://www.trident.org/schema/trident";
+
+	private static final QName ROOT = new QName(NAMESPACE, "ChouettePTNetwork");
+
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+	private static final XMLOutputFactory factory = XMLOutputFactory.newInstance();
+
+	private final OutputStream stream;
+
+	private final Marshaller marshaller;
+
+	private final IndentingXMLStreamWriter writer;
+
+	NeptuneStreamWriter(Marshaller marshaller, OutputStream stream) throws JAXBException, XMLStreamException,
+			IOException {
+		this.stream = stream;
+		this.marshaller = marshaller;
+		marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+		stream.write(HEADER.getBytes(StandardCharsets.UTF_8));
+		writer = new IndentingXMLStreamWriter(factory.createXMLStreamWriter(stream, StandardCharsets.UTF_8.name()));
+	}
+
+	/**
+	 * write ChouettePTNetwork start tag with the namespace declarations JAXB
+	 * puts on a whole document
+	 */
+	public void writeStartDocument() throws JAXBException, XMLStreamException {
+		IndentingXMLStreamWriter root = new IndentingXMLStreamWriter(factory.createXMLStreamWriter(new StringWriter()));
+		marshaller.marshal(new JAXBElement<ChouettePTNetworkType>(ROOT, ChouettePTNetworkType.class,
+				new ChouettePTNetworkType()), root);
+
+		// JAXB declares namespaces in reverse order on a StAX writer
+		List<Map.Entry<String, String>> namespaces = new ArrayList<>(root.getRootNamespaces().entrySet());
+		Collections.reverse(namespaces);
+		writer.writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, ROOT.getLocalPart(), NAMESPACE);
+		for (Map.Entry<String, String> entry : namespaces) {
+			writer.writeNamespace(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * open a wrapper element
+	 *
+	 * @param name
+	 *            local name in trident namespace
+	 */
+	public void writeStartElement(String name) throws XMLStreamException {
+		writer.writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, name, NAMESPACE);
+	}
+
+	public void writeEndElement() throws XMLStreamException {
+		writer.writeEndElement();
+	}
+
+	/**
+	 * marshal a produced JAXB object
+	 *
+	 * @param name
+	 *            local name in trident namespace
+	 * @param value
+	 *            JAXB object
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void write(String name, Object value) throws JAXBException {
+		marshaller.marshal(new JAXBElement(new QName(NAMESPACE, name), value.getClass(), value), writer);
+	}
+
+	/**
+	 * close ChouettePTNetwork and flush
+	 */
+	public void writeEndDocument() throws XMLStreamException {
+		writer.writeEndElement();
+		writer.writeEndDocument();
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			writer.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			stream.close();
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+package mobi.chouette.exchange.neptune.exporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+
+import mobi.chouette.exchange.neptune.jaxb.JaxbNeptuneFileConverter;
+import mobi.chouette.exchange.neptune.jaxb.NeptuneStreamWriter;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.trident.schema.trident.AddressType;
+import org.trident.schema.trident.ChouetteFacilityType;
+import org.trident.schema.trident.ChouettePTNetworkType;
+import org.trident.schema.trident.ChouettePTNetworkType.ChouetteArea;
+import org.trident.schema.trident.ChouettePTNetworkType.ChouetteLineDescription;
+import org.trident.schema.trident.CompanyType;
+import org.trident.schema.trident.GroupOfLineType;
+import org.trident.schema.trident.ITLType;
+import org.trident.schema.trident.JourneyPatternType;
+import org.trident.schema.trident.PTAccessPointType;
+import org.trident.schema.trident.PTLinkType;
+import org.trident.schema.trident.TimeSlotType;
+import org.trident.schema.trident.TimetableType;
+import org.trident.schema.trident.VehicleJourneyType;
+
+public class NeptuneStreamWriterTests {
+
+	private static final String path = "src/test/data";
+
+	@Test(groups = { "StreamWriter" }, description = "streamed file is the same as marshalled tree")
+	public void verifySameOutput() throws Exception {
+		for (String name : new String[] { "C_NEPTUNE_1.xml", "1000252_ref.xml", "Neptune_With_Frequencies.xml" }) {
+			JAXBElement<ChouettePTNetworkType> network = read(name);
+
+			Assert.assertEquals(stream(network.getValue()), marshal(network), "streamed output of " + name);
+		}
+	}
+
+	@Test(groups = { "StreamWriter" }, description = "empty elements, escaped and non ascii characters")
+	public void verifyCharacters() throws Exception {
+		JAXBElement<ChouettePTNetworkType> network = read("C_NEPTUNE_1.xml");
+		network.getValue().getPTNetwork().setName("Réseau <A> & \"B\"");
+		network.getValue().getPTNetwork().setComment("");
+		network.getValue().getCompany().get(0).setName("É > à");
+		network.getValue().getChouetteArea().getAreaCentroid().get(0).setAddress(new AddressType());
+
+		String expected = new String(marshal(network), StandardCharsets.UTF_8);
+		Assert.assertTrue(expected.contains("<comment></comment>"), "empty comment");
+		Assert.assertTrue(expected.contains("<address/>"), "empty address");
+		Assert.assertEquals(new String(stream(network.getValue()), StandardCharsets.UTF_8), expected);
+	}
+
+	@SuppressWarnings("unchecked")
+	private JAXBElement<ChouettePTNetworkType> read(String name) throws Exception {
+		JAXBContext context = JAXBContext.newInstance(ChouettePTNetworkType.class);
+		return (JAXBElement<ChouettePTNetworkType>) context.createUnmarshaller().unmarshal(new File(path, name));
+	}
+
+	private byte[] marshal(JAXBElement<ChouettePTNetworkType> network) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JaxbNeptuneFileConverter.getInstance().write(network, out);
+		return out.toByteArray();
+	}
+
+	private byte[] stream(ChouettePTNetworkType network) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (NeptuneStreamWriter writer = JaxbNeptuneFileConverter.getInstance().createStreamWriter(out)) {
+			writer.writeStartDocument();
+			if (network.getPTNetwork() != null)
+				writer.write("PTNetwork", network.getPTNetwork());
+			for (GroupOfLineType item : network.getGroupOfLine())
+				writer.write("GroupOfLine", item);
+			for (CompanyType item : network.getCompany())
+				writer.write("Company", item);
+			ChouetteArea area = network.getChouetteArea();
+			if (area != null) {
+				writer.writeStartElement("ChouetteArea");
+				for (ChouetteArea.StopArea item : area.getStopArea())
+					writer.write("StopArea", item);
+				for (ChouetteArea.AreaCentroid item : area.getAreaCentroid())
+					writer.write("AreaCentroid", item);
+				writer.writeEndElement();
+			}
+			for (ChouettePTNetworkType.ConnectionLink item : network.getConnectionLink())
+				writer.write("ConnectionLink", item);
+			for (TimetableType item : network.getTimetable())
+				writer.write("Timetable", item);
+			for (TimeSlotType item : network.getTimeSlot())
+				writer.write("TimeSlot", item);
+			ChouetteLineDescription description = network.getChouetteLineDescription();
+			if (description != null) {
+				writer.writeStartElement("ChouetteLineDescription");
+				writer.write("Line", description.getLine());
+				for (ChouetteLineDescription.ChouetteRoute item : description.getChouetteRoute())
+					writer.write("ChouetteRoute", item);
+				for (ChouetteLineDescription.StopPoint item : description.getStopPoint())
+					writer.write("StopPoint", item);
+				for (ITLType item : description.getITL())
+					writer.write("ITL", item);
+				for (PTLinkType item : description.getPtLink())
+					writer.write("PtLink", item);
+				for (JourneyPatternType item : description.getJourneyPattern())
+					writer.write("JourneyPattern", item);
+				for (VehicleJourneyType item : description.getVehicleJourney())
+					writer.write("VehicleJourney", item);
+				writer.writeEndElement();
+			}
+			for (ChouetteFacilityType item : network.getFacility())
+				writer.write("Facility", item);
+			for (PTAccessPointType item : network.getAccessPoint())
+				writer.write("AccessPoint", item);
+			for (ChouettePTNetworkType.AccessLink item : network.getAccessLink())
+				writer.write("AccessLink", item);
+			writer.writeEndDocument();
+		}
+		return out.toByteArray();
+	}
+}
@@ -1,8 +1,11 @@
 package mobi.chouette.exchange.netex.exporter;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 
@@ -10,10 +13,11 @@ import lombok.extern.log4j.Log4j;
 import mobi.chouette.exchange.netex.Constant;
 import mobi.chouette.exchange.netex.exporter.writer.DeliveryWriter;
 
-import org.apache.commons.io.output.FileWriterWithEncoding;
-
 @Log4j
 public class NetexFileWriter implements Constant {
+
+	private static final int BUFFER_SIZE = 65536;
+
 //	private static VelocityEngine velocityEngine = null;
 	// Prepare the model for velocity
 //	private Map<String, Object> model = new HashMap<String, Object>();
@@ -78,6 +82,16 @@ public class NetexFileWriter implements Constant {
 //	}
 
 	public File writeXmlFile(ExportableData collection, File file) throws IOException, DatatypeConfigurationException {
+		return writeXmlFile(collection, file, null);
+	}
+
+	/**
+	 * @param executor
+	 *            container managed executor rendering frames concurrently,
+	 *            null to render them on calling thread
+	 */
+	public File writeXmlFile(ExportableData collection, File file, ExecutorService executor) throws IOException,
+			DatatypeConfigurationException {
 		// Prepare the model for velocity
 //		 prepareModel(collection);
 //		Monitor monitor = MonitorFactory.start("NetexFileWriter.writeXmlFile");
@@ -86,9 +100,9 @@ public class NetexFileWriter implements Constant {
 //		VelocityContext velocityContext = new VelocityContext(model);
 //		velocityContext.put("esc", new EscapeTool());
 //		
-		Writer output = new FileWriterWithEncoding(file, "UTF-8");
-		DeliveryWriter.write(output, collection);
-		output.close();
+		try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+			DeliveryWriter.write(output, collection, executor);
+		}
 //
 //		velocityEngine.mergeTemplate("templates/line.vm", "UTF-8", velocityContext, output);
 //
@@ -3,6 +3,10 @@ package mobi.chouette.exchange.netex.exporter;
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 
 import mobi.chouette.common.Context;
 import mobi.chouette.common.JobData;
@@ -11,7 +15,7 @@ import mobi.chouette.exchange.metadata.NeptuneObjectPresenter;
 import mobi.chouette.exchange.netex.Constant;
 import mobi.chouette.exchange.report.ActionReporter;
 import mobi.chouette.exchange.report.IO_TYPE;
-import mobi.chouette.model.StopArea;
+import mobi.chouette.model.util.NeptuneUtil;
 
 public class NetexLineProducer implements Constant {
 
@@ -28,9 +32,7 @@ public class NetexLineProducer implements Constant {
 			if (!projectionType.toUpperCase().startsWith("EPSG:"))
 				projectionType = "EPSG:" + projectionType;
 		}
-		for (StopArea stopArea : collection.getStopAreas()) {
-			stopArea.toProjection(projectionType);
-		}
+		NeptuneUtil.toProjection(collection.getStopAreas(), projectionType);
 		Metadata metadata = (Metadata) context.get(METADATA);
 
 		Path dir = Paths.get(rootDirectory, OUTPUT);
@@ -38,7 +40,7 @@ public class NetexLineProducer implements Constant {
 		File file = new File(dir.toFile(), fileName);
 
 		NetexFileWriter writer = new NetexFileWriter();
-		writer.writeXmlFile(collection, file);
+		writer.writeXmlFile(collection, file, getExecutor(context));
 
 		reporter.addFileReport(context, fileName, IO_TYPE.OUTPUT);
 
@@ -50,4 +52,20 @@ public class NetexLineProducer implements Constant {
 
 	}
 
+	/**
+	 * @return container managed executor, null out of container : frames are
+	 *         then rendered on job thread
+	 */
+	private ExecutorService getExecutor(Context context) {
+		InitialContext initialContext = (InitialContext) context.get(INITIAL_CONTEXT);
+		if (initialContext != null) {
+			try {
+				return (ExecutorService) initialContext.lookup("java:comp/DefaultManagedExecutorService");
+			} catch (NamingException | ClassCastException e) {
+				// not in a container : command line mode or test context
+			}
+		}
+		return null;
+	}
+
 }
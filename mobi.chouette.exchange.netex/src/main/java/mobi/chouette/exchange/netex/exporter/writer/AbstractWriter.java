@@ -2,8 +2,6 @@ package mobi.chouette.exchange.netex.exporter.writer;
 
 import java.util.Collection;
 
-import org.apache.commons.lang.StringEscapeUtils;
-
 public class AbstractWriter {
 
 
@@ -22,10 +20,58 @@ public class AbstractWriter {
 
 	}
 
+	/**
+	 * escape value as {@link org.apache.commons.lang.StringEscapeUtils#escapeXml(String)}
+	 * does : 5 XML entities and numeric references for non ASCII characters
+	 * <p>
+	 * values without characters to escape are returned as is, without
+	 * allocation
+	 * 
+	 * @param source
+	 * @return escaped value, empty for null
+	 */
 	public static String toXml(Object source) {
 		if (source == null)
 			return "";
-		return StringEscapeUtils.escapeXml(source.toString());
+		String value = source.toString();
+		int length = value.length();
+		int i = 0;
+		while (i < length && !needsEscape(value.charAt(i)))
+			i++;
+		if (i == length)
+			return value;
+		StringBuilder builder = new StringBuilder(length + 16);
+		builder.append(value, 0, i);
+		for (; i < length; i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				builder.append("&quot;");
+				break;
+			case '&':
+				builder.append("&amp;");
+				break;
+			case '<':
+				builder.append("&lt;");
+				break;
+			case '>':
+				builder.append("&gt;");
+				break;
+			case '\'':
+				builder.append("&apos;");
+				break;
+			default:
+				if (c > 0x7F)
+					builder.append("&#").append((int) c).append(';');
+				else
+					builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+
+	private static boolean needsEscape(char c) {
+		return c > 0x7F || c == '"' || c == '&' || c == '<' || c == '>' || c == '\'';
 	}
 	
 	public static boolean nonEmpty(Collection<?> list)
@@ -1,55 +1,141 @@
 package mobi.chouette.exchange.netex.exporter.writer;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 
 import mobi.chouette.exchange.netex.exporter.ExportableData;
+import mobi.chouette.model.AccessLink;
+import mobi.chouette.model.AccessPoint;
+import mobi.chouette.model.ConnectionLink;
+import mobi.chouette.model.GroupOfLine;
+import mobi.chouette.model.JourneyPattern;
 import mobi.chouette.model.Line;
+import mobi.chouette.model.Route;
+import mobi.chouette.model.StopArea;
+import mobi.chouette.model.StopPoint;
+import mobi.chouette.model.Timetable;
+import mobi.chouette.model.VehicleJourney;
+import mobi.chouette.model.VehicleJourneyAtStop;
 
 public class DeliveryWriter extends AbstractWriter{
 	
-	public static void write(Writer writer, ExportableData data ) throws IOException, DatatypeConfigurationException 
+	private static final int FRAME_BUFFER_SIZE = 65536;
+
+	private static final byte[] DESCRIPTION = FrameBuffer.encode(""
+			+ "<!-- \n" //
+			+ "This mapping involves :\n" //
+			+ "    ResourceFrame\n" //
+			+ "	* organisations\n" //
+			+ "	\n" //
+			+ "	ServiceFrame\n" //
+			+ "	* Network\n" //
+			+ "	* directions\n" //
+			+ "	* routePoints\n" //
+			+ "	* routeLinks\n" //
+			+ "	* routes\n" //
+			+ "	* lines\n" //
+			+ "	* scheduledStopPoints\n" //
+			+ "	* servicePatterns\n" //
+			+ "	* tariffZones\n" //
+			+ "	* stopAssignments\n" //
+			+ "	\n" //
+			+ "	SiteFrame\n" //
+			+ "	* stopPlaces\n" //
+			+ "	\n" //
+			+ "	ServiceCalendarFrame\n" //
+			+ "	* dayTypes\n" //
+			+ "	* dayTypeAssignments\n" //
+			+ "	\n" //
+			+ "	TimetableFrame\n" //
+			+ "	* vehicleJourneys\n" //
+			+ "	\n" //
+			+ "This higly commented XML file is 2111 lines long and 87 Ko, where the uncommented original NEPTUNE file is 1165 lines and 42 Ko.\n" //
+			+ "When compressed the NeTEx file is 8 Ko and NEPTUNE 4 Ko\n" //
+			+ "So the NeTEx File will probably be something like 50% bigger with the same level of comment.\n" //
+			+ "\n" //
+			+ "-->\n");
+
+	private static final byte[] END = FrameBuffer.encode(""
+			+ "      </frames>\n" //
+			+ "    </CompositeFrame>\n" //
+			+ "  </dataObjects>\n" //
+			+ "</PublicationDelivery>\n");
+
+	/**
+	 * write delivery, frames being rendered one at a time on calling thread
+	 * 
+	 * @param stream
+	 * @param data
+	 */
+	public static void write(OutputStream stream, ExportableData data) throws IOException,
+			DatatypeConfigurationException {
+		write(stream, data, null);
+	}
+
+	/**
+	 * write delivery
+	 * 
+	 * @param stream
+	 * @param data
+	 * @param executor
+	 *            container managed executor rendering frames concurrently in
+	 *            their own buffer, copied in order ; null to render them on
+	 *            calling thread
+	 */
+	public static void write(OutputStream stream, ExportableData data, ExecutorService executor)
+			throws IOException, DatatypeConfigurationException {
+		List<Frame> frames = frames(data);
+		List<Future<FrameBuffer>> results = new ArrayList<>();
+		try {
+			if (executor != null) {
+				prefetch(data);
+				for (Frame frame : frames) {
+					results.add(executor.submit(frame));
+				}
+			}
+			FrameBuffer header = new FrameBuffer();
+			writeHeader(header, data);
+			header.writeTo(stream);
+			for (int i = 0; i < frames.size(); i++) {
+				FrameBuffer buffer;
+				if (executor != null) {
+					buffer = get(results.get(i));
+				} else {
+					try {
+						buffer = frames.get(i).call();
+					} catch (Exception e) {
+						throw rethrow(e);
+					}
+				}
+				buffer.writeTo(stream);
+			}
+			stream.write(END);
+		} finally {
+			for (Future<FrameBuffer> result : results) {
+				result.cancel(true);
+			}
+		}
+	}
+
+	private static void writeHeader(FrameBuffer writer, ExportableData data ) throws IOException 
 	{
 		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
 		Line line = data.getLine();
 		Calendar now = Calendar.getInstance();
 		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-		writer.write("<!-- \n");
-		writer.write("This mapping involves :\n");
-		writer.write("    ResourceFrame\n");
-		writer.write("	* organisations\n");
-		writer.write("	\n");
-		writer.write("	ServiceFrame\n");
-		writer.write("	* Network\n");
-		writer.write("	* directions\n");
-		writer.write("	* routePoints\n");
-		writer.write("	* routeLinks\n");
-		writer.write("	* routes\n");
-		writer.write("	* lines\n");
-		writer.write("	* scheduledStopPoints\n");
-		writer.write("	* servicePatterns\n");
-		writer.write("	* tariffZones\n");
-		writer.write("	* stopAssignments\n");
-		writer.write("	\n");
-		writer.write("	SiteFrame\n");
-		writer.write("	* stopPlaces\n");
-		writer.write("	\n");
-		writer.write("	ServiceCalendarFrame\n");
-		writer.write("	* dayTypes\n");
-		writer.write("	* dayTypeAssignments\n");
-		writer.write("	\n");
-		writer.write("	TimetableFrame\n");
-		writer.write("	* vehicleJourneys\n");
-		writer.write("	\n");
-		writer.write("This higly commented XML file is 2111 lines long and 87 Ko, where the uncommented original NEPTUNE file is 1165 lines and 42 Ko.\n");
-		writer.write("When compressed the NeTEx file is 8 Ko and NEPTUNE 4 Ko\n");
-		writer.write("So the NeTEx File will probably be something like 50% bigger with the same level of comment.\n");
-		writer.write("\n");
-		writer.write("-->\n");
+		writer.write(DESCRIPTION);
 		writer.write("<PublicationDelivery version=\"1.0\" xmlns=\"http://www.netex.org.uk/netex\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"  " +
 				"xsi:schemaLocation=\"http://www.netex.org.uk/netex ../../../xsd/NeTEx_publication.xsd\" xmlns:acsb=\"http://www.ifopt.org.uk/acsb\" " +
 				"xmlns:ifopt=\"http://www.ifopt.org.uk/ifopt\" xmlns:gml=\"http://www.opengis.net/gml/3.2\" xmlns:siri=\"http://www.siri.org.uk/siri\"  >\n");
@@ -87,21 +173,179 @@ public class DeliveryWriter extends AbstractWriter{
 		writer.write("        <DefaultLocationSystem>EPSG:4326</DefaultLocationSystem>\n");
 		writer.write("      </FrameDefaults>\n");
 		writer.write("      <frames>\n");
-//		        #parse( "templates/resource_frame.vm" )
-		ResourceFrameWriter.write(writer, data);
-//		        #parse( "templates/service_frame.vm" )
-		ServiceFrameWriter.write(writer, data);
-//		        #parse( "templates/site_frame.vm" )
-		SiteFrameWriter.write(writer, data);
-//		        #parse( "templates/service_calendar_frame.vm" )
-		ServiceCalendarFrameWriter.write(writer, data);
-//		        #parse( "templates/time_table_frame.vm" )
-		TimeTableFrameWriter.write(writer, data);
-		writer.write("      </frames>\n");
-		writer.write("    </CompositeFrame>\n");
-		writer.write("  </dataObjects>\n");
-		writer.write("</PublicationDelivery>\n");
+	}
+
+	/**
+	 * render frames in their own buffer
+	 */
+	private static List<Frame> frames(final ExportableData data) {
+		List<Frame> frames = new ArrayList<>();
+		frames.add(new Frame() {
+			@Override
+			protected void write(Writer writer) throws Exception {
+				// #parse( "templates/resource_frame.vm" )
+				ResourceFrameWriter.write(writer, data);
+			}
+		});
+		frames.add(new Frame() {
+			@Override
+			protected void write(Writer writer) throws Exception {
+				// #parse( "templates/service_frame.vm" )
+				ServiceFrameWriter.write(writer, data);
+			}
+		});
+		frames.add(new Frame() {
+			@Override
+			protected void write(Writer writer) throws Exception {
+				// #parse( "templates/site_frame.vm" )
+				SiteFrameWriter.write(writer, data);
+			}
+		});
+		frames.add(new Frame() {
+			@Override
+			protected void write(Writer writer) throws Exception {
+				// #parse( "templates/service_calendar_frame.vm" )
+				ServiceCalendarFrameWriter.write(writer, data);
+			}
+		});
+		frames.add(new Frame() {
+			@Override
+			protected void write(Writer writer) throws Exception {
+				// #parse( "templates/time_table_frame.vm" )
+				TimeTableFrameWriter.write(writer, data);
+			}
+		});
+		return frames;
+	}
+
+	/**
+	 * resolve every association read by frame writers, rendering threads
+	 * must not use persistence session ; to be kept in line with frame
+	 * writers
+	 */
+	private static void prefetch(ExportableData data) {
+		Line line = data.getLine();
+		// resource and service frames
+		line.getNetwork().getObjectVersion();
+		if (line.getCompany() != null)
+			line.getCompany().getObjectVersion();
+		for (GroupOfLine groupOfLine : line.getGroupOfLines()) {
+			groupOfLine.getObjectVersion();
+		}
+		for (StopArea routingConstraint : line.getRoutingConstraints()) {
+			for (StopArea routingConstraintArea : routingConstraint.getRoutingConstraintAreas()) {
+				routingConstraintArea.getObjectVersion();
+			}
+			for (Line routingConstraintLine : routingConstraint.getRoutingConstraintLines()) {
+				routingConstraintLine.getObjectVersion();
+			}
+		}
+		for (Route route : line.getRoutes()) {
+			if (route.getOppositeRoute() != null)
+				route.getOppositeRoute().getObjectVersion();
+			for (StopPoint stopPoint : route.getStopPoints()) {
+				if (stopPoint != null && stopPoint.getContainedInStopArea() != null)
+					prefetch(stopPoint.getContainedInStopArea());
+			}
+			for (JourneyPattern journeyPattern : route.getJourneyPatterns()) {
+				for (StopPoint stopPoint : journeyPattern.getStopPoints()) {
+					stopPoint.getObjectVersion();
+				}
+			}
+		}
+		for (ConnectionLink connectionLink : data.getConnectionLinks()) {
+			if (connectionLink.getStartOfLink() != null)
+				connectionLink.getStartOfLink().getObjectVersion();
+			if (connectionLink.getEndOfLink() != null)
+				connectionLink.getEndOfLink().getObjectVersion();
+		}
+		// site frame
+		for (StopArea stopArea : data.getStopAreas()) {
+			prefetch(stopArea);
+		}
+		for (StopArea stopArea : data.getStopPlaces()) {
+			prefetch(stopArea);
+		}
+		for (StopArea stopArea : data.getCommercialStops()) {
+			prefetch(stopArea);
+		}
+		for (AccessLink accessLink : data.getAccessLinks()) {
+			if (accessLink.getStopArea() != null)
+				accessLink.getStopArea().getObjectVersion();
+			AccessPoint accessPoint = accessLink.getAccessPoint();
+			if (accessPoint != null) {
+				accessPoint.getObjectVersion();
+				if (accessPoint.getContainedIn() != null)
+					accessPoint.getContainedIn().getObjectVersion();
+			}
+		}
+		// service calendar and timetable frames
+		for (Timetable timetable : data.getTimetables()) {
+			timetable.getPeriods().size();
+			timetable.getCalendarDays().size();
+		}
+		for (VehicleJourney vehicleJourney : data.getVehicleJourneys()) {
+			for (Timetable timetable : vehicleJourney.getTimetables()) {
+				timetable.getObjectVersion();
+			}
+			vehicleJourney.getRoute().getObjectVersion();
+			vehicleJourney.getJourneyPattern().getObjectVersion();
+			if (vehicleJourney.getCompany() != null)
+				vehicleJourney.getCompany().getObjectVersion();
+			for (VehicleJourneyAtStop vehicleJourneyAtStop : vehicleJourney.getVehicleJourneyAtStops()) {
+				vehicleJourneyAtStop.getStopPoint().getObjectVersion();
+			}
+		}
+	}
+
+	/**
+	 * stop area with its parent, quays and entrances
+	 */
+	private static void prefetch(StopArea stopArea) {
+		stopArea.getObjectVersion();
+		if (stopArea.getParent() != null)
+			stopArea.getParent().getObjectVersion();
+		for (StopArea quay : stopArea.getContainedStopAreas()) {
+			quay.getObjectVersion();
+		}
+		for (AccessPoint accessPoint : stopArea.getAccessPoints()) {
+			accessPoint.getObjectVersion();
+		}
+	}
+
+	private static FrameBuffer get(Future<FrameBuffer> future) throws IOException, DatatypeConfigurationException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("frame rendering interrupted");
+		} catch (ExecutionException e) {
+			throw rethrow(e.getCause());
+		}
+	}
+
+	private static IOException rethrow(Throwable cause) throws DatatypeConfigurationException {
+		if (cause instanceof IOException)
+			return (IOException) cause;
+		if (cause instanceof DatatypeConfigurationException)
+			throw (DatatypeConfigurationException) cause;
+		if (cause instanceof RuntimeException)
+			throw (RuntimeException) cause;
+		if (cause instanceof Error)
+			throw (Error) cause;
+		return new IOException(cause);
+	}
+
+	private abstract static class Frame implements Callable<FrameBuffer> {
+
+		@Override
+		public FrameBuffer call() throws Exception {
+			FrameBuffer buffer = new FrameBuffer(FRAME_BUFFER_SIZE);
+			write(buffer);
+			return buffer;
+		}
 
+		protected abstract void write(Writer writer) throws Exception;
 	}
 
 }
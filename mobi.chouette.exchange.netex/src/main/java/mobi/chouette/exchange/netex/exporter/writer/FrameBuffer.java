@@ -0,0 +1,143 @@
+package mobi.chouette.exchange.netex.exporter.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writer encoding directly to an in memory UTF-8 byte buffer
+ * <p>
+ * each frame is rendered in its own buffer, buffers are then copied to file
+ * in frame order ; not thread safe.
+ */
+public class FrameBuffer extends Writer {
+
+	private byte[] bytes;
+
+	private int count = 0;
+
+	private char highSurrogate = 0;
+
+	public FrameBuffer() {
+		this(8192);
+	}
+
+	public FrameBuffer(int capacity) {
+		bytes = new byte[capacity];
+	}
+
+	/**
+	 * encode constant text once for {@link #write(byte[])}
+	 *
+	 * @param text
+	 * @return UTF-8 bytes
+	 */
+	public static byte[] encode(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * append already encoded UTF-8 text
+	 *
+	 * @param encoded
+	 */
+	public void write(byte[] encoded) {
+		ensureCapacity(count + encoded.length);
+		System.arraycopy(encoded, 0, bytes, count, encoded.length);
+		count += encoded.length;
+	}
+
+	@Override
+	public void write(int c) {
+		ensureCapacity(count + 4);
+		encode((char) c);
+	}
+
+	@Override
+	public void write(String text, int offset, int length) {
+		ensureCapacity(count + length);
+		for (int i = offset; i < offset + length; i++) {
+			encode(text.charAt(i));
+		}
+	}
+
+	@Override
+	public void write(char[] text, int offset, int length) {
+		ensureCapacity(count + length);
+		for (int i = offset; i < offset + length; i++) {
+			encode(text[i]);
+		}
+	}
+
+	/**
+	 * @return encoded size
+	 */
+	public int size() {
+		return count;
+	}
+
+	public void writeTo(OutputStream stream) throws IOException {
+		stream.write(bytes, 0, count);
+	}
+
+	@Override
+	public String toString() {
+		return new String(bytes, 0, count, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+
+	private void encode(char c) {
+		if (highSurrogate != 0) {
+			char high = highSurrogate;
+			highSurrogate = 0;
+			if (Character.isLowSurrogate(c)) {
+				int codePoint = Character.toCodePoint(high, c);
+				ensureCapacity(count + 4);
+				bytes[count++] = (byte) (0xF0 | (codePoint >> 18));
+				bytes[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				bytes[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				bytes[count++] = (byte) (0x80 | (codePoint & 0x3F));
+				return;
+			}
+			// unpaired surrogate, replaced as java encoders do
+			append((byte) '?');
+		}
+		if (c < 0x80) {
+			append((byte) c);
+		} else if (c < 0x800) {
+			ensureCapacity(count + 2);
+			bytes[count++] = (byte) (0xC0 | (c >> 6));
+			bytes[count++] = (byte) (0x80 | (c & 0x3F));
+		} else if (Character.isHighSurrogate(c)) {
+			highSurrogate = c;
+		} else if (Character.isLowSurrogate(c)) {
+			append((byte) '?');
+		} else {
+			ensureCapacity(count + 3);
+			bytes[count++] = (byte) (0xE0 | (c >> 12));
+			bytes[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			bytes[count++] = (byte) (0x80 | (c & 0x3F));
+		}
+	}
+
+	private void append(byte b) {
+		ensureCapacity(count + 1);
+		bytes[count++] = b;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+		}
+	}
+
+}
@@ -0,0 +1,249 @@
+package mobi.chouette.exchange.netex.importer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j;
+
+import org.apache.commons.io.input.BOMInputStream;
+
+/**
+ * streaming pre-pass splitting a NeTEx delivery with many lines
+ * <p>
+ * ResourceFrame, SiteFrame and ServiceCalendarFrame are copied in a shared
+ * file to be parsed once ; each ServiceFrame starts a line slice which also
+ * receives the TimetableFrames following it. Slices keep the start tags of the
+ * original frame ancestors so that they are read by the usual parser ; only
+ * the current event is held in memory.
+ */
+@Log4j
+public class NetexFrameSplitter {
+
+	public static final String SHARED_SUFFIX = "_shared.xml";
+
+	public static final String LINE_SUFFIX = "_line_";
+
+	private static final String FRAMES = "frames";
+
+	private static final String SERVICE_FRAME = "ServiceFrame";
+
+	private static final String TIMETABLE_FRAME = "TimetableFrame";
+
+	private static final List<String> SHARED_FRAMES = Arrays.asList("ResourceFrame", "SiteFrame",
+			"ServiceCalendarFrame");
+
+	private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+	private static final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+	static {
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	/**
+	 * shared frames file, null if delivery has no shared frame
+	 */
+	@Getter
+	private Path sharedFile;
+
+	/**
+	 * line slices in document order
+	 */
+	@Getter
+	private List<Path> lineFiles = new ArrayList<>();
+
+	/**
+	 * split file in directory
+	 *
+	 * @param file
+	 *            NeTEx delivery
+	 * @param directory
+	 *            directory for shared and line files
+	 * @return false when file has at most one ServiceFrame : no file is kept
+	 *         and the delivery should be parsed as is ; on failure, partial
+	 *         files are deleted
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	public boolean split(Path file, Path directory) throws IOException, XMLStreamException {
+		String name = file.getFileName().toString().replaceFirst("\\.xml$", "");
+		Files.createDirectories(directory);
+		sharedFile = null;
+		lineFiles.clear();
+
+		Deque<StartElement> ancestors = new ArrayDeque<>();
+		Slice shared = null;
+		Slice line = null;
+		boolean lineHasServiceFrame = false;
+		int serviceFrames = 0;
+		boolean done = false;
+		try (InputStream input = new BOMInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			XMLEventReader reader = inputFactory.createXMLEventReader(input);
+			try {
+				while (reader.hasNext()) {
+					XMLEvent event = reader.nextEvent();
+					if (event.isStartElement()) {
+						StartElement start = event.asStartElement();
+						String frame = start.getName().getLocalPart();
+						if (!ancestors.isEmpty() && FRAMES.equals(ancestors.peek().getName().getLocalPart())) {
+							if (SERVICE_FRAME.equals(frame) || TIMETABLE_FRAME.equals(frame)) {
+								if (line == null || (SERVICE_FRAME.equals(frame) && lineHasServiceFrame)) {
+									if (line != null)
+										line.close();
+									line = new Slice(directory.resolve(name + LINE_SUFFIX + (lineFiles.size() + 1)
+											+ ".xml"), ancestors);
+									lineFiles.add(line.path);
+									lineHasServiceFrame = false;
+								}
+								if (SERVICE_FRAME.equals(frame)) {
+									lineHasServiceFrame = true;
+									serviceFrames++;
+								}
+								line.copy(start, reader);
+								continue;
+							} else if (SHARED_FRAMES.contains(frame)) {
+								if (shared == null) {
+									shared = new Slice(directory.resolve(name + SHARED_SUFFIX), ancestors);
+									sharedFile = shared.path;
+								}
+								shared.copy(start, reader);
+								continue;
+							}
+						}
+						ancestors.push(start);
+					} else if (event.isEndElement()) {
+						ancestors.pop();
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			done = true;
+		} finally {
+			close(shared, done);
+			close(line, done);
+			if (!done)
+				deleteQuietly();
+		}
+
+		if (serviceFrames <= 1) {
+			delete();
+			return false;
+		}
+		log.info(file.getFileName() + " split in " + lineFiles.size() + " line slices");
+		return true;
+	}
+
+	private void close(Slice slice, boolean done) throws IOException, XMLStreamException {
+		if (slice == null)
+			return;
+		if (done) {
+			slice.close();
+			return;
+		}
+		try {
+			slice.close();
+		} catch (IOException | XMLStreamException e) {
+			log.warn("unable to close " + slice.path + " : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * remove partial files of a failed split
+	 */
+	private void deleteQuietly() {
+		try {
+			delete();
+		} catch (IOException e) {
+			log.warn("unable to delete split files : " + e.getMessage());
+		}
+	}
+
+	private void delete() throws IOException {
+		if (sharedFile != null)
+			Files.deleteIfExists(sharedFile);
+		for (Path lineFile : lineFiles) {
+			Files.deleteIfExists(lineFile);
+		}
+		sharedFile = null;
+		lineFiles.clear();
+	}
+
+	/**
+	 * output file with the frame ancestors start tags
+	 */
+	private static class Slice {
+
+		private final Path path;
+
+		private final OutputStream stream;
+
+		private final XMLEventWriter writer;
+
+		private final List<StartElement> ancestors = new ArrayList<>();
+
+		private Slice(Path path, Deque<StartElement> ancestors) throws IOException, XMLStreamException {
+			this.path = path;
+			stream = new BufferedOutputStream(Files.newOutputStream(path));
+			writer = outputFactory.createXMLEventWriter(stream, "UTF-8");
+			writer.add(eventFactory.createStartDocument("UTF-8", "1.0"));
+			for (Iterator<StartElement> it = ancestors.descendingIterator(); it.hasNext();) {
+				StartElement ancestor = it.next();
+				this.ancestors.add(ancestor);
+				writer.add(ancestor);
+			}
+		}
+
+		/**
+		 * copy frame subtree
+		 */
+		private void copy(StartElement start, XMLEventReader reader) throws XMLStreamException {
+			writer.add(start);
+			int depth = 1;
+			while (depth > 0) {
+				XMLEvent event = reader.nextEvent();
+				if (event.isStartElement())
+					depth++;
+				else if (event.isEndElement())
+					depth--;
+				writer.add(event);
+			}
+		}
+
+		private void close() throws IOException, XMLStreamException {
+			try {
+				for (int i = ancestors.size() - 1; i >= 0; i--) {
+					writer.add(eventFactory.createEndElement(ancestors.get(i).getName(), null));
+				}
+				writer.add(eventFactory.createEndDocument());
+				writer.close();
+			} finally {
+				stream.close();
+			}
+		}
+	}
+}
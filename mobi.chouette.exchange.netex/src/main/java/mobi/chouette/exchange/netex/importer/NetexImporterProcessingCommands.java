@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.naming.InitialContext;
@@ -31,6 +32,11 @@ import mobi.chouette.exchange.validation.SharedDataValidatorCommand;
 @Log4j
 public class NetexImporterProcessingCommands implements ProcessingCommands, Constant {
 
+	/**
+	 * directory for frame slices of deliveries with many lines
+	 */
+	private static final String SPLIT_DIRECTORY = "split";
+
 	public static class DefaultFactory extends ProcessingCommandsFactory {
 
 		@Override
@@ -75,40 +81,29 @@ public class NetexImporterProcessingCommands implements ProcessingCommands, Cons
 		try {
 			List<Path> stream = FileUtil.listFiles(path, "*.xml", "*metadata*");
 			for (Path file : stream) {
-				Chain chain = (Chain) CommandFactory.create(initialContext, ChainCommand.class.getName());
-				commands.add(chain);
-				String url = file.toUri().toURL().toExternalForm();
-				// validation schema
-				// NetexSAXParserCommand schema = (NetexSAXParserCommand)
-				// CommandFactory.create(initialContext,
-				// NetexSAXParserCommand.class.getName());
-				// schema.setFileURL(url);
-				// chain.add(schema);
-
-				// parser
-				NetexParserCommand parser = (NetexParserCommand) CommandFactory.create(initialContext,
-						NetexParserCommand.class.getName());
-				parser.setFileURL(url);
-				chain.add(parser);
-
-				// validation
-				Command validation = CommandFactory.create(initialContext, NetexValidationCommand.class.getName());
-				chain.add(validation);
-
-				if (withDao && !parameters.isNoSave()) {
-
-					// register
-					Command register = CommandFactory.create(initialContext, LineRegisterCommand.class.getName());
-					chain.add(register);
-
-					Command copy = CommandFactory.create(initialContext, CopyCommand.class.getName());
-					chain.add(copy);
+				List<Path> lineFiles = Collections.singletonList(file);
+				NetexFrameSplitter splitter = new NetexFrameSplitter();
+				try {
+					if (splitter.split(file, Paths.get(jobData.getPathName(), SPLIT_DIRECTORY))) {
+						if (splitter.getSharedFile() != null) {
+							// shared frames are parsed once and kept as shared
+							// objects of referential
+							Chain chain = (Chain) CommandFactory.create(initialContext, ChainCommand.class.getName());
+							NetexParserCommand parser = (NetexParserCommand) CommandFactory.create(initialContext,
+									NetexParserCommand.class.getName());
+							parser.setFileURL(splitter.getSharedFile().toUri().toURL().toExternalForm());
+							parser.setFileName(file.getFileName().toString());
+							chain.add(parser);
+							commands.add(chain);
+						}
+						lineFiles = splitter.getLineFiles();
+					}
+				} catch (Exception e) {
+					log.warn("unable to split " + file.getFileName() + ", parsed as a whole : " + e.getMessage());
 				}
-				if (level3validation) {
-					// add validation
-					Command validate = CommandFactory.create(initialContext,
-							ImportedLineValidatorCommand.class.getName());
-					chain.add(validate);
+				for (Path lineFile : lineFiles) {
+					commands.add(createLineChain(initialContext, lineFile, file.getFileName().toString(), parameters,
+							withDao, level3validation));
 				}
 			}
 
@@ -119,6 +114,45 @@ public class NetexImporterProcessingCommands implements ProcessingCommands, Cons
 		return commands;
 	}
 
+	private Chain createLineChain(InitialContext initialContext, Path file, String fileName,
+			NetexImportParameters parameters, boolean withDao, boolean level3validation) throws Exception {
+		Chain chain = (Chain) CommandFactory.create(initialContext, ChainCommand.class.getName());
+		String url = file.toUri().toURL().toExternalForm();
+		// validation schema
+		// NetexSAXParserCommand schema = (NetexSAXParserCommand)
+		// CommandFactory.create(initialContext,
+		// NetexSAXParserCommand.class.getName());
+		// schema.setFileURL(url);
+		// chain.add(schema);
+
+		// parser
+		NetexParserCommand parser = (NetexParserCommand) CommandFactory.create(initialContext,
+				NetexParserCommand.class.getName());
+		parser.setFileURL(url);
+		parser.setFileName(fileName);
+		chain.add(parser);
+
+		// validation
+		Command validation = CommandFactory.create(initialContext, NetexValidationCommand.class.getName());
+		chain.add(validation);
+
+		if (withDao && !parameters.isNoSave()) {
+
+			// register
+			Command register = CommandFactory.create(initialContext, LineRegisterCommand.class.getName());
+			chain.add(register);
+
+			Command copy = CommandFactory.create(initialContext, CopyCommand.class.getName());
+			chain.add(copy);
+		}
+		if (level3validation) {
+			// add validation
+			Command validate = CommandFactory.create(initialContext, ImportedLineValidatorCommand.class.getName());
+			chain.add(validate);
+		}
+		return chain;
+	}
+
 	@Override
 	public List<? extends Command> getPostProcessingCommands(Context context,boolean withDao) {
 		InitialContext initialContext = (InitialContext) context.get(INITIAL_CONTEXT);
@@ -41,6 +41,14 @@ public class NetexParserCommand implements Command, Constant {
 	@Setter
 	private String fileURL;
 
+	/**
+	 * reported file name, defaults to the name of the parsed file ; set to the
+	 * original delivery name when parsing one of its split slices
+	 */
+	@Getter
+	@Setter
+	private String fileName;
+
 	@Override
 	public boolean execute(Context context) throws Exception {
 		boolean result = ERROR;
@@ -50,7 +58,7 @@ public class NetexParserCommand implements Command, Constant {
 
 		// report service
 		ActionReporter reporter = ActionReporter.Factory.getInstance();
-		String fileName = new File(new URL(fileURL).toURI()).getName();
+		String fileName = this.fileName != null ? this.fileName : new File(new URL(fileURL).toURI()).getName();
 		reporter.addFileReport(context, fileName, IO_TYPE.INPUT);
 		context.put(FILE_NAME, fileName);
 
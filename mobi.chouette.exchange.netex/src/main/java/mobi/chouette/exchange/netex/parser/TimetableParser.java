@@ -51,6 +51,7 @@ public class TimetableParser implements Parser, Constant {
 		}
 
 		referential.getTimetables().put(timetable.getObjectId(), timetable);
+		referential.getSharedTimetables().put(timetable.getObjectId(), timetable);
 
 		log.debug("[DSU] " + "ServiceCalendarFrame" + "\t"
 				+ timetable.getObjectId());
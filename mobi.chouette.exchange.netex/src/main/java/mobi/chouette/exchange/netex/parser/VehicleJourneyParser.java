@@ -121,8 +121,11 @@ public class VehicleJourneyParser implements Parser, Constant {
 		while (xpp.nextTag() == XmlPullParser.START_TAG) {
 			if (xpp.getName().equals("DayTypeRef")) {
 				String ref = xpp.getAttributeValue(null, REF);
-				Timetable timetable = referential.getTimetables().get(ref);
+				// calendar frames may have been parsed with a previous line
+				Timetable timetable = referential.getSharedTimetables().get(ref);
 				if (timetable != null) {
+					if (!referential.getTimetables().containsKey(ref))
+						referential.getTimetables().put(ref, timetable);
 					vehicleJourney.getTimetables().add(timetable);
 					// timetable.addVehicleJourney(vehicleJourney);
 				}
@@ -0,0 +1,172 @@
+package mobi.chouette.exchange.netex.exporter;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Time;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import mobi.chouette.exchange.netex.exporter.writer.AbstractWriter;
+import mobi.chouette.exchange.netex.exporter.writer.DeliveryWriter;
+import mobi.chouette.model.Company;
+import mobi.chouette.model.JourneyPattern;
+import mobi.chouette.model.Line;
+import mobi.chouette.model.Network;
+import mobi.chouette.model.Period;
+import mobi.chouette.model.Route;
+import mobi.chouette.model.StopArea;
+import mobi.chouette.model.StopPoint;
+import mobi.chouette.model.Timetable;
+import mobi.chouette.model.VehicleJourney;
+import mobi.chouette.model.VehicleJourneyAtStop;
+import mobi.chouette.model.type.ChouetteAreaEnum;
+import mobi.chouette.model.type.DayTypeEnum;
+import mobi.chouette.model.type.LongLatTypeEnum;
+import mobi.chouette.model.type.TransportModeNameEnum;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.testng.Assert;
+import org.testng.Reporter;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+public class DeliveryWriterTests {
+
+	private static final String PREFIX = "TEST";
+
+	private static final int STOP_COUNT = 20;
+
+	private static final int JOURNEY_COUNT = 10000;
+
+	private ExecutorService executor = Executors.newFixedThreadPool(5);
+
+	@AfterClass
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test(groups = { "DeliveryWriter" }, description = "escaping is the same as commons-lang")
+	public void verifyEscape() {
+		String[] values = { "", "plain text", "<a href=\"x\">A & B's</a>", "Gare de l'Est", "Châtelet – Les Halles",
+				"éàü", "🚌 bus", "tab\tand\nline" };
+		for (String value : values) {
+			Assert.assertEquals(AbstractWriter.toXml(value), StringEscapeUtils.escapeXml(value), value);
+		}
+		String plain = "no escape";
+		Assert.assertSame(AbstractWriter.toXml(plain), plain, "unchanged value is not copied");
+		Assert.assertEquals(AbstractWriter.toXml(null), "");
+	}
+
+	@Test(groups = { "DeliveryWriter" }, description = "parallel frames give the same file as sequential frames")
+	public void verifyParallelOutput() throws Exception {
+		ExportableData data = collect(10);
+
+		Assert.assertEquals(write(data, true), write(data, false));
+	}
+
+	@Test(groups = { "DeliveryWriter" }, description = "line with many vehicle journeys")
+	public void verifyLargeLine() throws Exception {
+		ExportableData data = collect(JOURNEY_COUNT);
+
+		// warm up
+		write(data, false);
+		write(data, true);
+
+		long start = System.nanoTime();
+		String sequential = write(data, false);
+		long sequentialTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		String parallel = write(data, true);
+		long parallelTime = System.nanoTime() - start;
+
+		Assert.assertEquals(parallel, sequential);
+		Assert.assertTrue(parallel.contains(":VehicleJourney:" + (JOURNEY_COUNT - 1) + "\""), "all journeys are written");
+		Reporter.log("netex " + data.getVehicleJourneys().size() + " vehicle journeys, " + parallel.length()
+				+ " chars : sequential " + sequentialTime / 1000000 + " ms, parallel " + parallelTime / 1000000
+				+ " ms", true);
+	}
+
+	private ExportableData collect(int journeys) throws Exception {
+		Network network = new Network();
+		network.setObjectId(PREFIX + ":GroupOfLine:1");
+		network.setName("Réseau <test>");
+		network.setVersionDate(new Date(0));
+		Company company = new Company();
+		company.setObjectId(PREFIX + ":Company:1");
+		company.setName("Transports & Co");
+		Line line = new Line();
+		line.setObjectId(PREFIX + ":Line:1");
+		line.setName("Ligne 1");
+		line.setNumber("1");
+		line.setTransportModeName(TransportModeNameEnum.Bus);
+		line.setNetwork(network);
+		line.setCompany(company);
+
+		Timetable timetable = new Timetable();
+		timetable.setObjectId(PREFIX + ":Timetable:1");
+		timetable.setComment("semaine");
+		timetable.addDayType(DayTypeEnum.Monday);
+		timetable.addPeriod(new Period(Date.valueOf("2026-01-01"), Date.valueOf("2026-12-31")));
+
+		Route route = new Route();
+		route.setObjectId(PREFIX + ":Route:1");
+		route.setName("aller");
+		route.setLine(line);
+		JourneyPattern journeyPattern = new JourneyPattern();
+		journeyPattern.setObjectId(PREFIX + ":JourneyPattern:1");
+		journeyPattern.setRoute(route);
+		for (int i = 0; i < STOP_COUNT; i++) {
+			StopArea commercialStop = stopArea("C" + i, ChouetteAreaEnum.CommercialStopPoint, i);
+			StopArea boardingPosition = stopArea("B" + i, ChouetteAreaEnum.BoardingPosition, i);
+			boardingPosition.setParent(commercialStop);
+			StopPoint stopPoint = new StopPoint();
+			stopPoint.setObjectId(PREFIX + ":StopPoint:" + i);
+			stopPoint.setPosition(i);
+			stopPoint.setContainedInStopArea(boardingPosition);
+			stopPoint.setRoute(route);
+			journeyPattern.addStopPoint(stopPoint);
+		}
+
+		for (int i = 0; i < journeys; i++) {
+			VehicleJourney journey = new VehicleJourney();
+			journey.setObjectId(PREFIX + ":VehicleJourney:" + i);
+			journey.setNumber(Long.valueOf(i));
+			journey.setPublishedJourneyName("course " + i);
+			journey.setRoute(route);
+			journey.setJourneyPattern(journeyPattern);
+			journey.getTimetables().add(timetable);
+			for (StopPoint stopPoint : journeyPattern.getStopPoints()) {
+				VehicleJourneyAtStop atStop = new VehicleJourneyAtStop();
+				Time time = new Time((i * 60 + stopPoint.getPosition() * 120) * 1000L);
+				atStop.setArrivalTime(time);
+				atStop.setDepartureTime(time);
+				atStop.setStopPoint(stopPoint);
+				atStop.setVehicleJourney(journey);
+			}
+		}
+
+		ExportableData data = new ExportableData();
+		Assert.assertTrue(new NetexDataCollector().collect(data, line, null, null), "line collected");
+		return data;
+	}
+
+	private StopArea stopArea(String id, ChouetteAreaEnum type, int index) {
+		StopArea stopArea = new StopArea();
+		stopArea.setObjectId(PREFIX + ":StopArea:" + id);
+		stopArea.setName("Arrêt " + index + " d'" + id);
+		stopArea.setAreaType(type);
+		stopArea.setLongLatType(LongLatTypeEnum.WGS84);
+		stopArea.setLongitude(BigDecimal.valueOf(2.3 + index / 1000.0));
+		stopArea.setLatitude(BigDecimal.valueOf(48.8 + index / 1000.0));
+		return stopArea;
+	}
+
+	private String write(ExportableData data, boolean parallel) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeliveryWriter.write(out, data, parallel ? executor : null);
+		// timestamps differ between runs
+		return new String(out.toByteArray(), StandardCharsets.UTF_8).replaceAll("Timestamp>[^<]*<", "Timestamp><");
+	}
+}
@@ -0,0 +1,143 @@
+package mobi.chouette.exchange.netex.importer;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.naming.InitialContext;
+import javax.xml.stream.XMLStreamException;
+
+import mobi.chouette.common.Context;
+import mobi.chouette.common.chain.CommandFactory;
+import mobi.chouette.exchange.netex.Constant;
+import mobi.chouette.exchange.netex.JobDataTest;
+import mobi.chouette.exchange.report.ActionReport;
+import mobi.chouette.exchange.validation.report.ValidationReport;
+import mobi.chouette.model.Line;
+import mobi.chouette.model.Timetable;
+import mobi.chouette.model.VehicleJourney;
+import mobi.chouette.model.util.Referential;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class NetexFrameSplitterTests implements Constant {
+
+	private static final String path = "src/test/data/valid/line_test.xml";
+
+	private static final Path directory = Paths.get("target/referential/split");
+
+	@Test(groups = { "FrameSplitter" }, description = "single line delivery is not split")
+	public void verifySingleLine() throws Exception {
+		FileUtils.deleteQuietly(directory.toFile());
+		NetexFrameSplitter splitter = new NetexFrameSplitter();
+
+		Assert.assertFalse(splitter.split(Paths.get(path), directory));
+		Assert.assertNull(splitter.getSharedFile());
+		Assert.assertTrue(splitter.getLineFiles().isEmpty());
+		Assert.assertEquals(directory.toFile().list().length, 0, "no file kept");
+	}
+
+	@Test(groups = { "FrameSplitter" }, description = "shared frames parsed once, lines parsed from slices")
+	public void verifyManyLines() throws Exception {
+		FileUtils.deleteQuietly(directory.toFile());
+		Referential whole = parse(new Referential(), Paths.get(path));
+		Line line = whole.getLines().values().iterator().next();
+		Set<String> usedTimetables = new HashSet<>();
+		for (VehicleJourney vehicleJourney : whole.getVehicleJourneys().values()) {
+			for (Timetable timetable : vehicleJourney.getTimetables())
+				usedTimetables.add(timetable.getObjectId());
+		}
+		Assert.assertFalse(usedTimetables.isEmpty());
+
+		Path delivery = Files.createDirectories(Paths.get("target/referential")).resolve("lines_test.xml");
+		String content = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+		String serviceFrame = content.substring(content.indexOf("<ServiceFrame "),
+				content.indexOf("</ServiceFrame>") + "</ServiceFrame>".length());
+		String timetableFrame = content.substring(content.indexOf("<TimetableFrame "),
+				content.indexOf("</TimetableFrame>") + "</TimetableFrame>".length());
+		String second = (serviceFrame + timetableFrame).replace(line.getObjectId(), line.getObjectId() + "2");
+		content = content.replace("</frames>", second + "</frames>");
+		Files.write(delivery, content.getBytes(StandardCharsets.UTF_8));
+
+		NetexFrameSplitter splitter = new NetexFrameSplitter();
+		Assert.assertTrue(splitter.split(delivery, directory));
+		Assert.assertEquals(splitter.getSharedFile(), directory.resolve("lines_test" + NetexFrameSplitter.SHARED_SUFFIX));
+		Assert.assertEquals(splitter.getLineFiles().size(), 2);
+
+		ActionReport report = new ActionReport();
+		Referential referential = parse(new Referential(), splitter.getSharedFile(), "lines_test.xml", report);
+		Assert.assertTrue(referential.getLines().isEmpty(), "no line in shared frames");
+		Assert.assertEquals(referential.getSharedStopAreas().keySet(), whole.getSharedStopAreas().keySet());
+		Assert.assertEquals(referential.getSharedCompanies().keySet(), whole.getSharedCompanies().keySet());
+		Assert.assertEquals(referential.getSharedTimetables().keySet(), whole.getSharedTimetables().keySet());
+
+		String[] lineIds = { line.getObjectId(), line.getObjectId() + "2" };
+		for (int i = 0; i < lineIds.length; i++) {
+			parse(referential, splitter.getLineFiles().get(i), "lines_test.xml", report);
+			Assert.assertEquals(referential.getLines().keySet().iterator().next(), lineIds[i]);
+			Assert.assertEquals(referential.getRoutes().keySet(), whole.getRoutes().keySet());
+			Assert.assertEquals(referential.getVehicleJourneys().keySet(), whole.getVehicleJourneys().keySet());
+			Assert.assertEquals(referential.getTimetables().keySet(), usedTimetables, "timetables of line");
+		}
+		Assert.assertEquals(referential.getSharedStopAreas().keySet(), whole.getSharedStopAreas().keySet(),
+				"shared frames are not parsed again");
+		Assert.assertEquals(report.getFiles().size(), 1, "slices reported as the original file");
+		Assert.assertEquals(report.getFiles().get(0).getName(), "lines_test.xml");
+	}
+
+	@Test(groups = { "FrameSplitter" }, description = "partial files removed when split fails")
+	public void verifyFailedSplit() throws Exception {
+		FileUtils.deleteQuietly(directory.toFile());
+		Path delivery = Files.createDirectories(Paths.get("target/referential")).resolve("broken_test.xml");
+		String content = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+		String serviceFrame = content.substring(content.indexOf("<ServiceFrame "),
+				content.indexOf("</ServiceFrame>") + "</ServiceFrame>".length());
+		// truncated in the second ServiceFrame
+		content = content.replace("</frames>", serviceFrame + "</frames>");
+		content = content.substring(0, content.lastIndexOf("</ServiceFrame>"));
+		Files.write(delivery, content.getBytes(StandardCharsets.UTF_8));
+
+		NetexFrameSplitter splitter = new NetexFrameSplitter();
+		try {
+			splitter.split(delivery, directory);
+			Assert.fail("split of truncated file should fail");
+		} catch (XMLStreamException e) {
+			// expected
+		}
+		Assert.assertEquals(directory.toFile().list().length, 0, "no partial file kept");
+		Assert.assertNull(splitter.getSharedFile());
+		Assert.assertTrue(splitter.getLineFiles().isEmpty());
+	}
+
+	private Referential parse(Referential referential, Path file) throws Exception {
+		return parse(referential, file, null, new ActionReport());
+	}
+
+	private Referential parse(Referential referential, Path file, String fileName, ActionReport report)
+			throws Exception {
+		InitialContext initialContext = new InitialContext();
+		Context context = new Context();
+		context.put(INITIAL_CONTEXT, initialContext);
+		NetexParserCommand command = (NetexParserCommand) CommandFactory.create(initialContext,
+				NetexParserCommand.class.getName());
+		JobDataTest job = new JobDataTest();
+		context.put(JOB_DATA, job);
+		job.setAction("importer");
+		job.setType("netex");
+		job.setPathName("target/referential/test");
+		job.setReferential("chouette_gui");
+		command.setFileURL("file://" + new File(file.toString()).getAbsolutePath());
+		command.setFileName(fileName);
+		context.put(REPORT, report);
+		context.put(REFERENTIAL, referential);
+		context.put(VALIDATION_REPORT, new ValidationReport());
+		Assert.assertTrue(command.execute(context), "parsing " + file);
+		return referential;
+	}
+}
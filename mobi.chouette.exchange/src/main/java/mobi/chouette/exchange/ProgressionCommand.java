@@ -1,9 +1,6 @@
 package mobi.chouette.exchange;
 
 import java.io.IOException;
-import java.io.PrintStream;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Date;
 
 import javax.naming.InitialContext;
@@ -12,13 +9,13 @@ import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Color;
 import mobi.chouette.common.Constant;
 import mobi.chouette.common.Context;
-import mobi.chouette.common.JobData;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
 import mobi.chouette.exchange.parameters.AbstractParameter;
 import mobi.chouette.exchange.report.ProgressionReport;
 import mobi.chouette.exchange.report.Report;
 import mobi.chouette.exchange.report.ReportConstant;
+import mobi.chouette.exchange.report.ReportWriter;
 import mobi.chouette.exchange.report.StepProgression;
 import mobi.chouette.exchange.report.StepProgression.STEP;
 
@@ -35,7 +32,6 @@ public class ProgressionCommand implements Command, Constant, ReportConstant {
 		report.getProgression().setCurrentStep(STEP.INITIALISATION.ordinal() + 1);
 		report.getProgression().getSteps().get(STEP.INITIALISATION.ordinal()).setTotal(stepCount);
 		saveReport(context, true);
-		saveMainValidationReport(context, true);
 	}
 
 	public void start(Context context, int stepCount) {
@@ -43,7 +39,6 @@ public class ProgressionCommand implements Command, Constant, ReportConstant {
 		report.getProgression().setCurrentStep(STEP.PROCESSING.ordinal() + 1);
 		report.getProgression().getSteps().get(STEP.PROCESSING.ordinal()).setTotal(stepCount);
 		saveReport(context, true);
-		saveMainValidationReport(context, true);
 	}
 
 	public void terminate(Context context, int stepCount) {
@@ -51,13 +46,15 @@ public class ProgressionCommand implements Command, Constant, ReportConstant {
 		report.getProgression().setCurrentStep(STEP.FINALISATION.ordinal() + 1);
 		report.getProgression().getSteps().get(STEP.FINALISATION.ordinal()).setTotal(stepCount);
 		saveReport(context, true);
-		saveMainValidationReport(context, true);
 	}
 
 	public void dispose(Context context) {
-		saveReport(context, true);
-		saveMainValidationReport(context, true);
-		
+		if (!context.containsKey("testng")) {
+			ReportWriter.getInstance(context).saveFinal((Report) context.get(REPORT),
+					(Report) context.get(VALIDATION_REPORT));
+			context.remove(REPORT_WRITER);
+		}
+
 		Monitor monitor = MonitorFactory.getTimeMonitor("ActionReport");
 		if (monitor != null)
 			log.info(Color.LIGHT_GREEN + monitor.toString() + Color.NORMAL);
@@ -67,57 +64,27 @@ public class ProgressionCommand implements Command, Constant, ReportConstant {
 		
 	}
 
-
-	public void saveReport(Context context, boolean force) {
-		if (context.containsKey("testng"))
-			return;
-		Report report = (Report) context.get(REPORT);
-		Date date = new Date();
-		Date delay = new Date(date.getTime() - 8000);
-		if (force || report.getDate().before(delay)) {
-			report.setDate(date);
-			Monitor monitor = MonitorFactory.start("ActionReport");
-			JobData jobData = (JobData) context.get(JOB_DATA);
-			Path path = Paths.get(jobData.getPathName(), REPORT_FILE);
-			// pseudo pretty print
-			try {
-				PrintStream stream = new PrintStream(path.toFile(), "UTF-8");
-				report.print(stream);
-				stream.close();
-			} catch (Exception e) {
-				log.error("failed to save report", e);
-			}
-			monitor.stop();
-		}
-
-	}
-
 	/**
+	 * save progression of action and validation reports
+	 * <p>
+	 * only summaries are written and new validation errors spooled, complete
+	 * reports are written on dispose
+	 * 
 	 * @param context
+	 * @param force
+	 *            save now on job thread, otherwise save asynchronously if last
+	 *            save is older than 8 seconds
 	 */
-	public void saveMainValidationReport(Context context, boolean force) {
+	public void saveReport(Context context, boolean force) {
 		if (context.containsKey("testng"))
 			return;
-		Report report = (Report) context.get(VALIDATION_REPORT);
-		// ne pas sauver un rapport null ou vide
-		if (report == null || report.isEmpty())
-			return;
+		Report report = (Report) context.get(REPORT);
 		Date date = new Date();
 		Date delay = new Date(date.getTime() - 8000);
 		if (force || report.getDate().before(delay)) {
 			report.setDate(date);
-			Monitor monitor = MonitorFactory.start("ValidationReport");
-			JobData jobData = (JobData) context.get(JOB_DATA);
-			Path path = Paths.get(jobData.getPathName(), VALIDATION_FILE);
-
-			try {
-				PrintStream stream = new PrintStream(path.toFile(), "UTF-8");
-				report.print(stream);
-				stream.close();
-			} catch (Exception e) {
-				log.error("failed to save validation report", e);
-			}
-			monitor.stop();
+			Report validationReport = (Report) context.get(VALIDATION_REPORT);
+			ReportWriter.getInstance(context).saveProgress(report, validationReport, force);
 		}
 
 	}
@@ -131,9 +98,6 @@ public class ProgressionCommand implements Command, Constant, ReportConstant {
 		step.setRealized(step.getRealized() + 1);
 		boolean force = report.getProgression().getCurrentStep() != STEP.PROCESSING.ordinal() + 1;
 		saveReport(context, force);
-		if (force && context.containsKey(VALIDATION_REPORT)) {
-			saveMainValidationReport(context, force);
-		}
 		if (context.containsKey(CANCEL_ASKED) || Thread.currentThread().isInterrupted()) {
 			log.info("Command cancelled");
 			throw new CommandCancelledException(COMMAND_CANCELLED);
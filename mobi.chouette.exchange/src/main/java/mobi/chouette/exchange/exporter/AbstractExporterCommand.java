@@ -8,6 +8,7 @@ import javax.ejb.EJB;
 
 import mobi.chouette.common.Constant;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.JobMetrics;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.exchange.DaoReader;
 import mobi.chouette.exchange.ProcessingCommands;
@@ -33,7 +34,7 @@ public class AbstractExporterCommand implements Constant {
 		List<? extends Command> preProcessingCommands = commands.getPreProcessingCommands(context, true);
 		progression.initialize(context, preProcessingCommands.size() + (mode.equals(Mode.line) ? 1 : 0));
 		for (Command exportCommand : preProcessingCommands) {
-			result = exportCommand.execute(context);
+			result = JobMetrics.execute(exportCommand, context);
 			if (!result) {
 				reporter.setActionError(context, ActionReporter.ERROR_CODE.NO_DATA_FOUND, "no data selected");
 				progression.execute(context);
@@ -75,7 +76,7 @@ public class AbstractExporterCommand implements Constant {
 				context.put(LINE_ID, line);
 				boolean exportFailed = false;
 				for (Command exportCommand : lineProcessingCommands) {
-					result = exportCommand.execute(context);
+					result = JobMetrics.execute(exportCommand, context);
 					if (!result) {
 						exportFailed = true;
 						break;
@@ -102,7 +103,7 @@ public class AbstractExporterCommand implements Constant {
 			List<? extends Command> stopProcessingCommands = commands.getStopAreaProcessingCommands(context, true);
 			progression.start(context, stopProcessingCommands.size());
 			for (Command command : stopProcessingCommands) {
-				result = command.execute(context);
+				result = JobMetrics.execute(command, context);
 				if (!result) {
 					return ERROR;
 				}
@@ -114,7 +115,7 @@ public class AbstractExporterCommand implements Constant {
 		List<? extends Command> postProcessingCommands = commands.getPostProcessingCommands(context, true);
 		progression.terminate(context, postProcessingCommands.size());
 		for (Command exportCommand : postProcessingCommands) {
-			result = exportCommand.execute(context);
+			result = JobMetrics.execute(exportCommand, context);
 			if (!result) {
 				if (!reporter.hasActionError(context))
 					reporter.setActionError(context, ActionReporter.ERROR_CODE.NO_DATA_PROCEEDED, "no data exported");
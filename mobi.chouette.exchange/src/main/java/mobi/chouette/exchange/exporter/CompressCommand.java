@@ -11,6 +11,7 @@ import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Color;
 import mobi.chouette.common.Constant;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.JobMetrics;
 import mobi.chouette.common.FileUtil;
 import mobi.chouette.common.JobData;
 import mobi.chouette.common.chain.Command;
@@ -42,6 +43,7 @@ public class CompressCommand implements Command, Constant {
 			File outputFile = filename.toFile();
 			if (outputFile.exists()) outputFile.delete();
 			FileUtil.compress(target.toString(), filename.toString());
+			JobMetrics.count(context, JobMetrics.BYTES_WRITTEN, outputFile.length());
 			result = SUCCESS;
 			try {
 				FileUtils.deleteDirectory(target.toFile());
@@ -9,6 +9,7 @@ import javax.naming.InitialContext;
 import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Constant;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.JobMetrics;
 import mobi.chouette.common.chain.ChainCommand;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
@@ -34,11 +35,15 @@ public class AbstractImporterCommand implements Constant {
 		ActionReporter reporter = ActionReporter.Factory.getInstance();
 
 		try {
+			// steps done by a previous run of the job are skipped
+			if (ImportCheckpoint.get(context) == null)
+				ImportCheckpoint.init(context);
+
 			// Initialization
 			List<? extends Command> preProcessingCommands = commands.getPreProcessingCommands(context, true);
 			progression.initialize(context, preProcessingCommands.size() + 1);
 			for (Command importCommand : preProcessingCommands) {
-				result = importCommand.execute(context);
+				result = JobMetrics.execute(importCommand, context);
 				if (!result) {
 					if (!reporter.hasActionError(context))
 					   reporter.setActionError(context, ActionReporter.ERROR_CODE.NO_DATA_FOUND, "no data to import");
@@ -93,7 +98,7 @@ public class AbstractImporterCommand implements Constant {
 				List<? extends Command> stopProcessingCommands = commands.getStopAreaProcessingCommands(context, true);
 				progression.start(context, stopProcessingCommands.size());
 				for (Command command : stopProcessingCommands) {
-					result = command.execute(context);
+					result = JobMetrics.execute(command, context);
 					if (!result) {
 						return ERROR;
 					}
@@ -109,7 +114,7 @@ public class AbstractImporterCommand implements Constant {
 			} else {
 				progression.terminate(context, postProcessingCommands.size());
 				for (Command command : postProcessingCommands) {
-					result = command.execute(context);
+					result = JobMetrics.execute(command, context);
 					if (!result) {
 						return ERROR;
 					}
@@ -126,7 +131,7 @@ public class AbstractImporterCommand implements Constant {
 			try {
 				List<? extends Command> disposeCommands = commands.getDisposeCommands(context, true);
 				for (Command command : disposeCommands) {
-					disposeResult = command.execute(context);
+					disposeResult = JobMetrics.execute(command, context);
 					if (!disposeResult) {
 						break;
 					}
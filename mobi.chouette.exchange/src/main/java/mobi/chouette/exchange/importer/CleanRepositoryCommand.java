@@ -2,12 +2,14 @@ package mobi.chouette.exchange.importer;
 
 import java.io.IOException;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import com.jamonapi.Monitor;
 import com.jamonapi.MonitorFactory;
@@ -92,6 +94,9 @@ public class CleanRepositoryCommand implements Command {
 	@EJB
 	private VehicleJourneyAtStopDAO vehicleJourneyAtStopDAO;
 
+	@Resource
+	private TransactionSynchronizationRegistry registry;
+
 	@Override
 	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
 	public boolean execute(Context context) throws Exception {
@@ -99,6 +104,13 @@ public class CleanRepositoryCommand implements Command {
 		boolean result = ERROR;
 		Monitor monitor = MonitorFactory.start(COMMAND);
 
+		ImportCheckpoint checkpoint = ImportCheckpoint.get(context);
+		if (checkpoint != null && checkpoint.isDone(ImportCheckpoint.CLEANED)) {
+			// lines committed since must be kept
+			log.info("repository already cleaned");
+			return SUCCESS;
+		}
+
 		try {
 
 			// accessLinkDAO.truncate();
@@ -119,6 +131,8 @@ public class CleanRepositoryCommand implements Command {
 			// vehicleJourneyDAO.truncate();
 			// vehicleJourneyAtStopDAO.truncate();
 
+			if (checkpoint != null)
+				checkpoint.doneOnCommit(registry, ImportCheckpoint.CLEANED);
 			result = SUCCESS;
 		} catch (Exception e) {
 			log.error(e);
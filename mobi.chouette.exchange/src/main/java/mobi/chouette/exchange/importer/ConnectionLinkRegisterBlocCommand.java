@@ -1,6 +1,7 @@
 package mobi.chouette.exchange.importer;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -13,16 +14,24 @@ import javax.naming.InitialContext;
 import javax.naming.NamingException;
 
 import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.ContenerChecker;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.PropertyNames;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
 import mobi.chouette.dao.ConnectionLinkDAO;
+import mobi.chouette.dao.MergeResult;
 import mobi.chouette.dao.StopAreaDAO;
 import mobi.chouette.exchange.importer.updater.ConnectionLinkUpdater;
 import mobi.chouette.exchange.importer.updater.Updater;
 import mobi.chouette.exchange.importer.updater.UpdaterUtils;
+import mobi.chouette.exchange.report.ActionReporter;
+import mobi.chouette.exchange.report.ActionReporter.MERGE_STATE;
+import mobi.chouette.exchange.report.ActionReporter.OBJECT_TYPE;
+import mobi.chouette.exchange.validation.checkpoint.AbstractValidation;
 import mobi.chouette.model.ConnectionLink;
 import mobi.chouette.model.StopArea;
+import mobi.chouette.model.util.NamingUtil;
 import mobi.chouette.model.util.ObjectFactory;
 import mobi.chouette.model.util.Referential;
 
@@ -35,6 +44,9 @@ public class ConnectionLinkRegisterBlocCommand implements Command {
 	@EJB
 	private StopAreaDAO stopAreaDAO;
 
+	@EJB
+	private ContenerChecker checker;
+
 	@EJB
 	private ConnectionLinkDAO connectionLinkDAO;
 
@@ -50,11 +62,17 @@ public class ConnectionLinkRegisterBlocCommand implements Command {
 		// Monitor monitor = MonitorFactory.start(COMMAND);
 
 		try {
-			Boolean optimized = Boolean.TRUE;
+			if (!context.containsKey(OPTIMIZED)) {
+				context.put(OPTIMIZED, Boolean.TRUE);
+			}
+			Boolean optimized = (Boolean) context.get(OPTIMIZED);
 
 			// Monitor monitorInit = MonitorFactory.start(COMMAND+".init");
-			context.put(OPTIMIZED, optimized);
 			Collection<ConnectionLink> connectionLinks = (Collection<ConnectionLink>) context.get(CONNECTION_LINK_BLOC);
+			if (optimized && isBulkMerge()) {
+				copy(context, connectionLinks);
+				return SUCCESS;
+			}
 			Referential cache = new Referential();
 			context.put(CACHE, cache);
 			initializeStopArea(cache, connectionLinks);
@@ -82,6 +100,57 @@ public class ConnectionLinkRegisterBlocCommand implements Command {
 
 	}
 
+	/**
+	 * save connection links with COPY ; the fields to synchronize with
+	 * ConnectionLinkUpdater.update(Context context, ConnectionLink oldValue,
+	 * ConnectionLink newValue)
+	 * 
+	 * @param context
+	 * @param connectionLinks
+	 */
+	private void copy(Context context, Collection<ConnectionLink> connectionLinks) {
+		CopyWriter buffer = new CopyWriter();
+		for (ConnectionLink link : connectionLinks) {
+			if (link.isSaved())
+				continue;
+			if (link.getName() == null) {
+				NamingUtil.setDefaultName(link);
+			}
+			StopArea start = link.getStartOfLink();
+			StopArea end = link.getEndOfLink();
+			buffer.add(link.getObjectId());
+			buffer.add(start == null ? null : start.getObjectId()).add(end == null ? null : end.getObjectId());
+			buffer.add(link.getObjectVersion()).add(link.getCreationTime()).add(link.getCreatorId());
+			buffer.add(link.getName()).add(link.getComment()).add(link.getLinkDistance());
+			buffer.add(getDistance(start, end)).add(link.getLinkType()).add(link.getDefaultDuration());
+			buffer.add(link.getFrequentTravellerDuration()).add(link.getOccasionalTravellerDuration());
+			buffer.add(link.getMobilityRestrictedTravellerDuration()).add(link.getMobilityRestrictedSuitable());
+			buffer.add(link.getStairsAvailable()).add(link.getLiftAvailable()).add(link.getIntUserNeeds());
+			buffer.endLine();
+		}
+		if (buffer.getLines() == 0)
+			return;
+		MergeResult result = connectionLinkDAO.merge(buffer.toString());
+		for (ConnectionLink link : connectionLinks) {
+			link.setSaved(true);
+		}
+		ActionReporter reporter = ActionReporter.Factory.getInstance();
+		reporter.addMergeStatToObjectReport(context, "merged", OBJECT_TYPE.CONNECTION_LINK, MERGE_STATE.CREATED,
+				result.getCreated());
+		reporter.addMergeStatToObjectReport(context, "merged", OBJECT_TYPE.CONNECTION_LINK, MERGE_STATE.UPDATED,
+				result.getUpdated());
+		reporter.addMergeStatToObjectReport(context, "merged", OBJECT_TYPE.CONNECTION_LINK, MERGE_STATE.UNCHANGED,
+				result.getUnchanged());
+	}
+
+	private BigDecimal getDistance(StopArea start, StopArea end) {
+		if (start == null || end == null || !start.hasCoordinates() || !end.hasCoordinates())
+			return null;
+		double dist = AbstractValidation.quickDistanceFromCoordinates(start.getLatitude().doubleValue(), end
+				.getLatitude().doubleValue(), start.getLongitude().doubleValue(), end.getLongitude().doubleValue());
+		return BigDecimal.valueOf((double) ((int) dist)); // rounded
+	}
+
 	private void initializeStopArea(Referential cache, Collection<ConnectionLink> list) {
 		Collection<String> objectIds = new HashSet<>();
 		for (ConnectionLink connectionLink : list) {
@@ -112,6 +181,14 @@ public class ConnectionLinkRegisterBlocCommand implements Command {
 		}
 	}
 
+	/**
+	 * COPY and merge statement may be disabled by the bulk.merge property, then
+	 * blocs are saved by the updaters as for non optimized imports
+	 */
+	private boolean isBulkMerge() {
+		return Boolean.parseBoolean(System.getProperty(checker.getContext() + PropertyNames.BULK_MERGE, "true"));
+	}
+
 	public static class DefaultCommandFactory extends CommandFactory {
 
 		@Override
@@ -20,10 +20,14 @@ import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Color;
 import mobi.chouette.common.ContenerChecker;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.JobMetrics;
 import mobi.chouette.common.PropertyNames;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
+import mobi.chouette.dao.LineDAO;
 import mobi.chouette.dao.VehicleJourneyDAO;
+import mobi.chouette.model.Line;
+import mobi.chouette.model.util.Referential;
 import mobi.chouette.persistence.hibernate.ContextHolder;
 
 import com.jamonapi.Monitor;
@@ -37,6 +41,9 @@ public class CopyCommand implements Command {
 
 	@EJB 
 	private VehicleJourneyDAO vehicleJourneyDAO;
+
+	@EJB
+	private LineDAO lineDAO;
 	
 	@EJB 
 	private ContenerChecker checker;
@@ -56,7 +63,9 @@ public class CopyCommand implements Command {
 		try {
 
 			Boolean optimized = (Boolean) context.get(OPTIMIZED);
-			if (optimized) {
+			// no buffer for lines skipped as unchanged
+			String buffer = (String) context.remove(BUFFER);
+			if (optimized && buffer != null) {
 				List<Future<Void>> futures = (List<Future<Void>>) context.get(COPY_IN_PROGRESS);
 				if (futures == null) {
 					futures = new ArrayList<>();
@@ -83,8 +92,18 @@ public class CopyCommand implements Command {
 					}
 				}
 				CommandCallable callable = new CommandCallable();
-				callable.buffer = (String) context.remove(BUFFER);
+				callable.buffer = buffer;
 				callable.schema = ContextHolder.getContext();
+				callable.metrics = JobMetrics.get(context);
+				callable.checkpoint = ImportCheckpoint.get(context);
+				Referential referential = (Referential) context.get(REFERENTIAL);
+				if (referential != null && !referential.getLines().isEmpty()) {
+					Line line = referential.getLines().values().iterator().next();
+					if (callable.checkpoint != null)
+						callable.step = ImportCheckpoint.lineStep(line.getObjectId());
+					callable.lineObjectId = line.getObjectId();
+					callable.contentHash = line.getContentHash();
+				}
 				Future<Void> future = executor.submit(callable);
 				futures.add(future);
 			}
@@ -101,13 +120,32 @@ public class CopyCommand implements Command {
 	private class CommandCallable implements Callable<Void> {
 		private String buffer;
 		private String schema;
+		private JobMetrics metrics;
+		private ImportCheckpoint checkpoint;
+		private String step;
+		private String lineObjectId;
+		private String contentHash;
 
 		@Override
 		@TransactionAttribute(TransactionAttributeType.REQUIRED)
 		public Void call() throws Exception {
 			Monitor monitor = MonitorFactory.start(COMMAND);
 			ContextHolder.setContext(schema);
-			vehicleJourneyDAO.copy(buffer);
+			// copy runs on executor thread : bind job metrics to it
+			JobMetrics.setCurrent(metrics);
+			JobMetrics.Sample sample = metrics == null ? null : metrics.start(COMMAND + ".copy");
+			try {
+				vehicleJourneyDAO.copy(buffer);
+				// copy transaction is committed : line is complete
+				if (contentHash != null)
+					lineDAO.updateContentHash(lineObjectId, contentHash);
+				if (step != null)
+					checkpoint.done(step);
+			} finally {
+				if (sample != null)
+					metrics.stop(sample);
+				JobMetrics.setCurrent(null);
+			}
 			log.info(Color.MAGENTA + monitor.stop() + Color.NORMAL);
 			ContextHolder.setContext(null);
 			return null;
@@ -0,0 +1,109 @@
+package mobi.chouette.exchange.importer;
+
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import mobi.chouette.common.Constant;
+
+/**
+ * builds data for PostgreSQL COPY in text format with {@link Constant#SEP}
+ * delimiter
+ */
+public class CopyWriter implements Constant {
+
+	private final StringBuilder buffer = new StringBuilder(1024);
+
+	private final DateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+	private final DateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+
+	private boolean first = true;
+
+	private int lines = 0;
+
+	public CopyWriter add(String value) {
+		separate();
+		if (value == null) {
+			buffer.append(NULL);
+			return this;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\':
+				buffer.append("\\\\");
+				break;
+			case SEP:
+				buffer.append('\\').append(SEP);
+				break;
+			case '\n':
+				buffer.append("\\n");
+				break;
+			case '\r':
+				buffer.append("\\r");
+				break;
+			default:
+				buffer.append(c);
+			}
+		}
+		return this;
+	}
+
+	public CopyWriter add(Enum<?> value) {
+		return add(value == null ? null : value.name());
+	}
+
+	public CopyWriter add(Number value) {
+		separate();
+		if (value == null)
+			buffer.append(NULL);
+		else if (value instanceof BigDecimal)
+			buffer.append(((BigDecimal) value).toPlainString());
+		else
+			buffer.append(value.toString());
+		return this;
+	}
+
+	public CopyWriter add(Boolean value) {
+		separate();
+		buffer.append(value == null ? NULL : value.toString());
+		return this;
+	}
+
+	public CopyWriter add(Date value) {
+		separate();
+		if (value == null)
+			buffer.append(NULL);
+		else if (value instanceof Time)
+			buffer.append(timeFormat.format(value));
+		else
+			buffer.append(timestampFormat.format(value));
+		return this;
+	}
+
+	public CopyWriter endLine() {
+		buffer.append('\n');
+		first = true;
+		lines++;
+		return this;
+	}
+
+	public int getLines() {
+		return lines;
+	}
+
+	@Override
+	public String toString() {
+		return buffer.toString();
+	}
+
+	private void separate() {
+		if (first)
+			first = false;
+		else
+			buffer.append(SEP);
+	}
+}
@@ -0,0 +1,151 @@
+package mobi.chouette.exchange.importer;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.Constant;
+import mobi.chouette.common.Context;
+import mobi.chouette.common.JobData;
+
+/**
+ * durable progress of an import, to resume it after a failure
+ * <p>
+ * completed steps are appended to {@link Constant#CHECKPOINT_FILE} of the job
+ * directory, one per line, and synced to disk : repository cleaning, input
+ * extraction and each line whose registration and passing times copy are
+ * committed. A resumed import finds the file and skips these steps ; a line
+ * being written when the job stopped is ignored.
+ */
+@Log4j
+public class ImportCheckpoint {
+
+	public static final String CLEANED = "cleaned";
+	public static final String UNCOMPRESSED = "uncompressed";
+	private static final String LINE_PREFIX = "line:";
+
+	@Getter
+	private final Path file;
+
+	private final Set<String> steps = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private ImportCheckpoint(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * read checkpoint of a job directory, empty if none
+	 */
+	public static ImportCheckpoint load(Path directory) throws IOException {
+		ImportCheckpoint checkpoint = new ImportCheckpoint(directory.resolve(Constant.CHECKPOINT_FILE));
+		if (Files.exists(checkpoint.file)) {
+			String content = new String(Files.readAllBytes(checkpoint.file), StandardCharsets.UTF_8);
+			// last record is complete only when followed by end of line
+			int end = content.lastIndexOf('\n');
+			if (end > 0) {
+				for (String step : content.substring(0, end).split("\n")) {
+					if (!step.isEmpty())
+						checkpoint.steps.add(step);
+				}
+			}
+			if (end != content.length() - 1) {
+				// drop incomplete record before appending new ones
+				Files.write(checkpoint.file, content.substring(0, end + 1).getBytes(StandardCharsets.UTF_8));
+			}
+			log.info("resume import from checkpoint : " + checkpoint.steps.size() + " steps done");
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * load checkpoint of the import job in context
+	 *
+	 * @return checkpoint, null when the job has no directory
+	 */
+	public static ImportCheckpoint init(Context context) throws IOException {
+		JobData jobData = (JobData) context.get(Constant.JOB_DATA);
+		if (jobData == null || jobData.getPathName() == null)
+			return null;
+		ImportCheckpoint checkpoint = load(Paths.get(jobData.getPathName()));
+		context.put(Constant.CHECKPOINT, checkpoint);
+		return checkpoint;
+	}
+
+	/**
+	 * @return checkpoint of the import, null if not an import job
+	 */
+	public static ImportCheckpoint get(Context context) {
+		return (ImportCheckpoint) context.get(Constant.CHECKPOINT);
+	}
+
+	public static String lineStep(String lineObjectId) {
+		return LINE_PREFIX + lineObjectId;
+	}
+
+	public boolean isDone(String step) {
+		return steps.contains(step);
+	}
+
+	/**
+	 * @return count of committed lines
+	 */
+	public int getLineCount() {
+		int count = 0;
+		for (String step : steps) {
+			if (step.startsWith(LINE_PREFIX))
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * record a completed step
+	 */
+	public synchronized void done(String step) throws IOException {
+		if (!steps.add(step))
+			return;
+		try (FileOutputStream out = new FileOutputStream(file.toFile(), true)) {
+			out.write((step + '\n').getBytes(StandardCharsets.UTF_8));
+			out.getFD().sync();
+		}
+	}
+
+	/**
+	 * record a step once the current transaction is committed, at once
+	 * without transaction
+	 */
+	public void doneOnCommit(TransactionSynchronizationRegistry registry, final String step) throws IOException {
+		if (registry == null || registry.getTransactionKey() == null) {
+			done(step);
+			return;
+		}
+		registry.registerInterposedSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status != Status.STATUS_COMMITTED)
+					return;
+				try {
+					done(step);
+				} catch (IOException e) {
+					log.warn("cannot save checkpoint " + step + " : " + e.getMessage());
+				}
+			}
+		});
+	}
+}
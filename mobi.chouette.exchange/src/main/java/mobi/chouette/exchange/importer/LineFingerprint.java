@@ -0,0 +1,254 @@
+package mobi.chouette.exchange.importer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.Embeddable;
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToMany;
+import javax.persistence.Transient;
+
+import mobi.chouette.model.NeptuneIdentifiedObject;
+import mobi.chouette.model.NeptuneObject;
+import mobi.chouette.model.util.Referential;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * 128 bits fingerprint of the persistent content of a line referential
+ * <p>
+ * every object of the line maps and every object they reference is digested
+ * on its persistent fields ; identified objects are referenced by objectId,
+ * other objects (passing times, frequencies, footnotes, periods ...) are
+ * digested with their owner. Collections are sorted so that the fingerprint
+ * does not depend on parsing order. Technical fields (database id, creation
+ * timestamps) and identified objects of inverse collections (digested on their
+ * own with a reference to their owner) are ignored.
+ */
+public class LineFingerprint {
+
+	private static final Set<String> EXCLUDED = new HashSet<>(Arrays.asList("id", "creationTime", "createdAt",
+			"updatedAt", "contentHash"));
+
+	private static final ConcurrentMap<Class<?>, List<Field>> fields = new ConcurrentHashMap<>();
+
+	private final MessageDigest digest;
+
+	private final StringBuilder buffer = new StringBuilder(256);
+
+	private final Deque<NeptuneIdentifiedObject> queue = new ArrayDeque<>();
+
+	private final Map<String, byte[]> digests = new TreeMap<>();
+
+	private LineFingerprint() {
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * compute fingerprint of a line referential, as parsed
+	 *
+	 * @param referential
+	 * @return fingerprint as 32 hexadecimal characters
+	 */
+	public static String compute(Referential referential) {
+		LineFingerprint fingerprint = new LineFingerprint();
+		fingerprint.addAll(referential.getLines().values());
+		fingerprint.addAll(referential.getPtNetworks().values());
+		fingerprint.addAll(referential.getCompanies().values());
+		fingerprint.addAll(referential.getGroupOfLines().values());
+		fingerprint.addAll(referential.getRoutes().values());
+		fingerprint.addAll(referential.getStopPoints().values());
+		fingerprint.addAll(referential.getJourneyPatterns().values());
+		fingerprint.addAll(referential.getRouteSections().values());
+		fingerprint.addAll(referential.getVehicleJourneys().values());
+		fingerprint.addAll(referential.getTimetables().values());
+		fingerprint.addAll(referential.getTimebands().values());
+		fingerprint.addAll(referential.getStopAreas().values());
+		fingerprint.addAll(referential.getConnectionLinks().values());
+		fingerprint.addAll(referential.getAccessPoints().values());
+		fingerprint.addAll(referential.getAccessLinks().values());
+		return fingerprint.complete();
+	}
+
+	private void addAll(Collection<? extends NeptuneIdentifiedObject> objects) {
+		queue.addAll(objects);
+	}
+
+	private String complete() {
+		while (!queue.isEmpty()) {
+			NeptuneIdentifiedObject object = queue.poll();
+			String key = object.getClass().getSimpleName() + ':' + object.getObjectId();
+			if (digests.containsKey(key))
+				continue;
+			buffer.setLength(0);
+			appendFields(object);
+			digests.put(key, digest.digest(buffer.toString().getBytes(StandardCharsets.UTF_8)));
+		}
+		for (Entry<String, byte[]> entry : digests.entrySet()) {
+			digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+			digest.update(entry.getValue());
+		}
+		byte[] result = digest.digest();
+		StringBuilder hex = new StringBuilder(32);
+		for (byte b : result) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	private void appendFields(Object object) {
+		for (Field field : getFields(object.getClass())) {
+			Object value;
+			try {
+				value = field.get(object);
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+			buffer.append(field.getName()).append('=');
+			if (value instanceof Collection) {
+				appendCollection((Collection<?>) value, isInverse(field));
+			} else {
+				appendValue(value);
+			}
+			buffer.append(';');
+		}
+	}
+
+	/**
+	 * elements are canonized apart then sorted
+	 */
+	private void appendCollection(Collection<?> values, boolean inverse) {
+		StringBuilder owner = new StringBuilder(buffer);
+		List<String> items = new ArrayList<>(values.size());
+		for (Object value : values) {
+			if (inverse && value instanceof NeptuneIdentifiedObject)
+				continue;
+			buffer.setLength(0);
+			appendValue(value);
+			items.add(buffer.toString());
+		}
+		Collections.sort(items);
+		buffer.setLength(0);
+		buffer.append(owner).append('[');
+		for (String item : items) {
+			buffer.append(item).append(',');
+		}
+		buffer.append(']');
+	}
+
+	private void appendValue(Object value) {
+		if (value == null) {
+			buffer.append('~');
+		} else if (value instanceof NeptuneIdentifiedObject) {
+			NeptuneIdentifiedObject object = (NeptuneIdentifiedObject) value;
+			queue.add(object);
+			buffer.append('@');
+			appendString(object.getObjectId());
+		} else if (value instanceof String) {
+			appendString((String) value);
+		} else if (value instanceof Enum) {
+			buffer.append(((Enum<?>) value).name());
+		} else if (value instanceof java.sql.Time || value instanceof java.sql.Date) {
+			buffer.append(value.toString());
+		} else if (value instanceof java.util.Date) {
+			buffer.append(((java.util.Date) value).getTime());
+		} else if (value instanceof Geometry) {
+			appendString(((Geometry) value).toText());
+		} else if (value instanceof Map) {
+			List<String> items = new ArrayList<>();
+			StringBuilder owner = new StringBuilder(buffer);
+			for (Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				buffer.setLength(0);
+				appendValue(entry.getKey());
+				buffer.append(':');
+				appendValue(entry.getValue());
+				items.add(buffer.toString());
+			}
+			Collections.sort(items);
+			buffer.setLength(0);
+			buffer.append(owner).append('{');
+			for (String item : items) {
+				buffer.append(item).append(',');
+			}
+			buffer.append('}');
+		} else if (value instanceof NeptuneObject || value.getClass().isAnnotationPresent(Embeddable.class)) {
+			buffer.append('(');
+			appendFields(value);
+			buffer.append(')');
+		} else {
+			appendString(value.toString());
+		}
+	}
+
+	private void appendString(String value) {
+		// length prefix keeps separators inside values unambiguous
+		buffer.append(value.length()).append('"').append(value);
+	}
+
+	/**
+	 * @return true when relation is held by elements, as one to many relations
+	 *         and inverse many to many ones
+	 */
+	private static boolean isInverse(Field field) {
+		if (field.isAnnotationPresent(OneToMany.class))
+			return true;
+		ManyToMany manyToMany = field.getAnnotation(ManyToMany.class);
+		return manyToMany != null && !manyToMany.mappedBy().isEmpty();
+	}
+
+	/**
+	 * @return persistent fields of a class and its ancestors, sorted by name
+	 */
+	private static List<Field> getFields(Class<?> type) {
+		List<Field> result = fields.get(type);
+		if (result == null) {
+			result = new ArrayList<>();
+			for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+							|| field.isAnnotationPresent(Transient.class) || EXCLUDED.contains(field.getName())
+							|| field.isSynthetic())
+						continue;
+					field.setAccessible(true);
+					result.add(field);
+				}
+			}
+			Collections.sort(result, new Comparator<Field>() {
+				@Override
+				public int compare(Field o1, Field o2) {
+					int compare = o1.getName().compareTo(o2.getName());
+					return compare != 0 ? compare : o1.getDeclaringClass().getName()
+							.compareTo(o2.getDeclaringClass().getName());
+				}
+			});
+			result = Collections.unmodifiableList(result);
+			List<Field> previous = fields.putIfAbsent(type, result);
+			if (previous != null)
+				result = previous;
+		}
+		return result;
+	}
+}
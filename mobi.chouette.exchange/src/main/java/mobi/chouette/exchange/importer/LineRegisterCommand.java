@@ -9,16 +9,19 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Color;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.JobMetrics;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
 import mobi.chouette.dao.LineDAO;
@@ -65,6 +68,9 @@ public class LineRegisterCommand implements Command {
 	@EJB(beanName = LineUpdater.BEAN_NAME)
 	private Updater<Line> lineUpdater;
 
+	@Resource
+	private TransactionSynchronizationRegistry registry;
+
 	@Override
 	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
 	public boolean execute(Context context) throws Exception {
@@ -89,8 +95,39 @@ public class LineRegisterCommand implements Command {
 
 			log.info("register line : " + newValue.getObjectId() + " " + newValue.getName()
 					+ " vehicleJourney count = " + referential.getVehicleJourneys().size());
+			ImportCheckpoint checkpoint = ImportCheckpoint.get(context);
+			String step = ImportCheckpoint.lineStep(newValue.getObjectId());
 			try {
 
+				if (checkpoint != null && checkpoint.isDone(step)) {
+					log.info("skipping line committed before resume : " + newValue.getObjectId());
+					ActionReporter reporter = ActionReporter.Factory.getInstance();
+					reporter.addObjectReport(context, newValue.getObjectId(), OBJECT_TYPE.LINE,
+							NamingUtil.getName(newValue), OBJECT_STATE.OK, IO_TYPE.INPUT);
+					return SUCCESS;
+				}
+
+				if (importParameter.isSkipUnchangedLines()) {
+					Monitor fMonitor = MonitorFactory.start("LineFingerprint");
+					String contentHash = LineFingerprint.compute(referential);
+					fMonitor.stop();
+					Line savedLine = lineDAO.findByObjectId(newValue.getObjectId());
+					if (savedLine != null && contentHash.equals(savedLine.getContentHash())) {
+						log.info("skipping unchanged line : " + newValue.getObjectId());
+						ActionReporter reporter = ActionReporter.Factory.getInstance();
+						reporter.addObjectReport(context, newValue.getObjectId(), OBJECT_TYPE.LINE,
+								NamingUtil.getName(newValue), OBJECT_STATE.OK, IO_TYPE.INPUT);
+						reporter.setObjectUnchanged(context, newValue.getObjectId(), OBJECT_TYPE.LINE);
+						if (checkpoint != null)
+							checkpoint.done(step);
+						return SUCCESS;
+					}
+					newValue.setContentHash(contentHash);
+				} else {
+					// content may change without fingerprint update
+					newValue.setContentHash(null);
+				}
+
 				optimiser.initialize(cache, referential);
 				if (importParameter.isRouteMergeable()) {
 					checkMergedRoutes(context);
@@ -98,8 +135,14 @@ public class LineRegisterCommand implements Command {
 
 				Line oldValue = cache.getLines().get(newValue.getObjectId());
 				lineUpdater.update(context, oldValue, newValue);
+				if (optimized) {
+					// passing times are copied later in another transaction :
+					// fingerprint is saved by copy once they are committed
+					oldValue.setContentHash(null);
+				}
 				lineDAO.create(oldValue);
 				lineDAO.flush(); // to prevent SQL error outside method
+				countEntities(context, referential);
 
 				if (optimized) {
 					Monitor wMonitor = MonitorFactory.start("prepareCopy");
@@ -135,6 +178,9 @@ public class LineRegisterCommand implements Command {
 					vehicleJourneyDAO.deleteChildren(list);
 					context.put(BUFFER, buffer.toString());
 					wMonitor.stop();
+				} else if (checkpoint != null) {
+					// otherwise line is committed with its passing times copy
+					checkpoint.doneOnCommit(registry, step);
 				}
 
 				result = SUCCESS;
@@ -232,6 +278,26 @@ public class LineRegisterCommand implements Command {
 		return result;
 	}
 
+	/**
+	 * count registered entities in job metrics
+	 */
+	private void countEntities(Context context, Referential referential) {
+		JobMetrics metrics = JobMetrics.get(context);
+		if (metrics == null)
+			return;
+		metrics.addEntities("line", referential.getLines().size());
+		metrics.addEntities("route", referential.getRoutes().size());
+		metrics.addEntities("stop_point", referential.getStopPoints().size());
+		metrics.addEntities("journey_pattern", referential.getJourneyPatterns().size());
+		metrics.addEntities("vehicle_journey", referential.getVehicleJourneys().size());
+		metrics.addEntities("timetable", referential.getTimetables().size());
+		long count = 0;
+		for (VehicleJourney vehicleJourney : referential.getVehicleJourneys().values()) {
+			count += vehicleJourney.getVehicleJourneyAtStops().size();
+		}
+		metrics.addEntities("vehicle_journey_at_stop", count);
+	}
+
 	private boolean isLineIsValidInFuture(Line line) {
 
 		Date now = new Date();
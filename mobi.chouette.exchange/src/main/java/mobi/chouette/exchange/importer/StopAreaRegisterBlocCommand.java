@@ -2,7 +2,9 @@ package mobi.chouette.exchange.importer;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
@@ -12,15 +14,23 @@ import javax.naming.InitialContext;
 import javax.naming.NamingException;
 
 import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.ContenerChecker;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.PropertyNames;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
 import mobi.chouette.dao.AccessLinkDAO;
 import mobi.chouette.dao.AccessPointDAO;
+import mobi.chouette.dao.MergeResult;
 import mobi.chouette.dao.StopAreaDAO;
 import mobi.chouette.exchange.importer.updater.StopAreaUpdater;
 import mobi.chouette.exchange.importer.updater.Updater;
 import mobi.chouette.exchange.importer.updater.UpdaterUtils;
+import mobi.chouette.exchange.report.ActionReporter;
+import mobi.chouette.exchange.report.ActionReporter.MERGE_STATE;
+import mobi.chouette.exchange.report.ActionReporter.OBJECT_TYPE;
+import mobi.chouette.exchange.validation.ValidationData;
+import mobi.chouette.exchange.validation.report.ValidationReporter;
 import mobi.chouette.model.AccessLink;
 import mobi.chouette.model.AccessPoint;
 import mobi.chouette.model.StopArea;
@@ -36,6 +46,9 @@ public class StopAreaRegisterBlocCommand implements Command {
 	@EJB
 	private StopAreaDAO stopAreaDAO;
 
+	@EJB
+	private ContenerChecker checker;
+
 	@EJB
 	private AccessLinkDAO accessLinkDAO;
 
@@ -54,14 +67,23 @@ public class StopAreaRegisterBlocCommand implements Command {
 		// Monitor monitor = MonitorFactory.start(COMMAND);
 
 		try {
-			Boolean optimized = Boolean.TRUE;
+			if (!context.containsKey(OPTIMIZED)) {
+				context.put(OPTIMIZED, Boolean.TRUE);
+			}
+			Boolean optimized = (Boolean) context.get(OPTIMIZED);
 
 			// Monitor monitorInit = MonitorFactory.start(COMMAND + ".init");
-			context.put(OPTIMIZED, optimized);
 			Collection<StopArea> areas = (Collection<StopArea>) context.get(AREA_BLOC);
+			Referential referential = (Referential) context.get(REFERENTIAL);
+			if (optimized && isBulkMerge()) {
+				Map<String, StopArea> copied = getCopyableStopAreas(referential, areas);
+				if (copied != null) {
+					copy(context, copied.values());
+					return SUCCESS;
+				}
+			}
 			Referential cache = new Referential();
 			context.put(CACHE, cache);
-			Referential referential = (Referential) context.get(REFERENTIAL);
 
 			initializeStopArea(cache, areas);
 			initializeAccessLink(cache, referential.getAccessLinks().values());
@@ -90,6 +112,91 @@ public class StopAreaRegisterBlocCommand implements Command {
 
 	}
 
+	/**
+	 * stop areas to save with their unsaved parents, null when some need
+	 * entity update (access points, access links, routing constraints)
+	 * 
+	 * @param referential
+	 * @param areas
+	 * @return
+	 */
+	private Map<String, StopArea> getCopyableStopAreas(Referential referential, Collection<StopArea> areas) {
+		if (!referential.getAccessPoints().isEmpty() || !referential.getAccessLinks().isEmpty())
+			return null;
+		Map<String, StopArea> result = new LinkedHashMap<>();
+		for (StopArea area : areas) {
+			for (StopArea item = area; item != null && !item.isSaved(); item = item.getParent()) {
+				if (!item.getRoutingConstraintAreas().isEmpty())
+					return null;
+				if (result.put(item.getObjectId(), item) != null)
+					break;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * save stop areas with COPY ; the fields to synchronize with
+	 * StopAreaUpdater.update(Context context, StopArea oldValue, StopArea
+	 * newValue)
+	 * 
+	 * @param context
+	 * @param areas
+	 */
+	private void copy(Context context, Collection<StopArea> areas) {
+		CopyWriter buffer = new CopyWriter();
+		for (StopArea area : areas) {
+			if (area.getAreaType() == null) {
+				log.error("stoparea without mandatory areatype " + area.getObjectId());
+				throw new IllegalArgumentException("area type null");
+			}
+			buffer.add(area.getObjectId());
+			buffer.add(area.getParent() == null ? null : area.getParent().getObjectId());
+			buffer.add(area.getObjectVersion()).add(area.getCreationTime()).add(area.getCreatorId());
+			buffer.add(area.getName()).add(area.getComment()).add(area.getAreaType());
+			buffer.add(area.getRegistrationNumber()).add(area.getNearestTopicName()).add(area.getFareCode());
+			buffer.add(area.getLongitude()).add(area.getLatitude()).add(area.getLongLatType());
+			buffer.add(area.getCountryCode()).add(area.getStreetName()).add(area.getMobilityRestrictedSuitable());
+			buffer.add(area.getStairsAvailable()).add(area.getLiftAvailable()).add(area.getIntUserNeeds());
+			buffer.add(area.getZipCode()).add(area.getCityName()).add(area.getUrl()).add(area.getTimeZone());
+			buffer.endLine();
+		}
+		if (buffer.getLines() == 0)
+			return;
+		MergeResult result = stopAreaDAO.merge(buffer.toString());
+		for (StopArea area : areas) {
+			area.setSaved(true);
+		}
+		ActionReporter reporter = ActionReporter.Factory.getInstance();
+		reporter.addMergeStatToObjectReport(context, "merged", OBJECT_TYPE.STOP_AREA, MERGE_STATE.CREATED,
+				result.getCreated());
+		reporter.addMergeStatToObjectReport(context, "merged", OBJECT_TYPE.STOP_AREA, MERGE_STATE.UPDATED,
+				result.getUpdated());
+		reporter.addMergeStatToObjectReport(context, "merged", OBJECT_TYPE.STOP_AREA, MERGE_STATE.UNCHANGED,
+				result.getUnchanged());
+
+		// Database tests
+		ValidationReporter validationReporter = ValidationReporter.Factory.getInstance();
+		validationReporter.addItemToValidationReport(context, "2-DATABASE-", "StopArea", 2, "W", "E");
+		validationReporter.addItemToValidationReport(context, Updater.DATABASE_ACCESS_POINT_1, "E");
+		ValidationData data = (ValidationData) context.get(VALIDATION_DATA);
+		if (data == null || result.getExisting() == 0)
+			return; // cannot test
+		reportChanges(validationReporter, context, Updater.DATABASE_STOP_AREA_1, result.getChanges("parent_id"), data);
+		reportChanges(validationReporter, context, Updater.DATABASE_STOP_AREA_2, result.getChanges("area_type"), data);
+	}
+
+	private void reportChanges(ValidationReporter validationReporter, Context context, String checkPoint,
+			List<String> objectIds, ValidationData data) {
+		if (objectIds.isEmpty()) {
+			validationReporter.reportSuccess(context, checkPoint);
+			return;
+		}
+		for (String objectId : objectIds) {
+			validationReporter.addCheckPointReportError(context, checkPoint, data.getDataLocations().get(objectId));
+		}
+	}
+
 	private void initializeStopArea(Referential cache, Collection<StopArea> list) {
 		// Collection<String> objectIds = UpdaterUtils.getObjectIds(list);
 		List<StopArea> objects = stopAreaDAO.findAll();// ByObjectId(objectIds);
@@ -151,6 +258,14 @@ public class StopAreaRegisterBlocCommand implements Command {
 		}
 	}
 
+	/**
+	 * COPY and merge statement may be disabled by the bulk.merge property, then
+	 * blocs are saved by the updaters as for non optimized imports
+	 */
+	private boolean isBulkMerge() {
+		return Boolean.parseBoolean(System.getProperty(checker.getContext() + PropertyNames.BULK_MERGE, "true"));
+	}
+
 	public static class DefaultCommandFactory extends CommandFactory {
 
 		@Override
@@ -10,6 +10,7 @@ import javax.naming.InitialContext;
 import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Color;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.JobMetrics;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
 import mobi.chouette.exchange.report.ActionReporter;
@@ -57,20 +58,22 @@ public class StopAreaRegisterCommand implements Command {
 			for (List<StopArea> areas : iterator) {
 				count += areas.size();
 				context.put(AREA_BLOC, areas);
-				command.execute(context);
+				JobMetrics.execute(command, context);
 				// executeBloc( context, areas);
 				log.info("Areas proceded :" + count + "/" + orderedAreas.size());
 			}
+			JobMetrics.count(context, JobMetrics.ENTITIES + "stop_area", count);
 			Collection<ConnectionLink> orderedlinks = referential.getConnectionLinks().values();
 			Iterable<List<ConnectionLink>> iterator2 = Iterables.partition(orderedlinks, batchSizeC);
 			count = 0;
 			for (List<ConnectionLink> links : iterator2) {
 				count += links.size();
 				context.put(CONNECTION_LINK_BLOC, links);
-				commandLink.execute(context);
+				JobMetrics.execute(commandLink, context);
 				// executeBloc( context, areas);
 				log.info("ConnectionLinks proceded :" + count + "/" + orderedlinks.size());
 			}
+			JobMetrics.count(context, JobMetrics.ENTITIES + "connection_link", count);
 		} catch (Exception ex) {
 			log.error("unable to save stops and connection links "+ex.getMessage(),ex);
 			ActionReporter reporter = ActionReporter.Factory.getInstance();
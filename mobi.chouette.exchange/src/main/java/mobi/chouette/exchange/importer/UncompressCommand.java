@@ -12,6 +12,7 @@ import mobi.chouette.common.Color;
 import mobi.chouette.common.Context;
 import mobi.chouette.common.FileUtil;
 import mobi.chouette.common.JobData;
+import mobi.chouette.common.JobMetrics;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
 import mobi.chouette.exchange.report.ActionReporter;
@@ -55,6 +56,16 @@ public class UncompressCommand implements Command, ReportConstant {
 		}
 		Path filename = Paths.get(path, file);
 		Path target = Paths.get(path, INPUT);
+		if (Files.exists(filename))
+			JobMetrics.count(context, JobMetrics.BYTES_READ, Files.size(filename));
+		ImportCheckpoint checkpoint = ImportCheckpoint.get(context);
+		if (checkpoint != null && checkpoint.isDone(ImportCheckpoint.UNCOMPRESSED) && Files.exists(target)) {
+			log.info("input already extracted");
+			if (FilenameUtils.getExtension(filename.toString()).equalsIgnoreCase("zip"))
+				reporter.addZipReport(context, file, IO_TYPE.INPUT);
+			log.info(Color.MAGENTA + monitor.stop() + Color.NORMAL);
+			return SUCCESS;
+		}
 		if (!Files.exists(target)) {
 			Files.createDirectories(target);
 		}
@@ -76,6 +87,8 @@ public class UncompressCommand implements Command, ReportConstant {
 			result = SUCCESS;
 		}
 
+		if (result == SUCCESS && checkpoint != null)
+			checkpoint.done(ImportCheckpoint.UNCOMPRESSED);
 		log.info(Color.MAGENTA + monitor.stop() + Color.NORMAL);
 		return result;
 	}
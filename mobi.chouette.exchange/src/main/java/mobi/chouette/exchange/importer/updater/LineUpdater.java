@@ -159,6 +159,8 @@ public class LineUpdater implements Updater<Line> {
 				oldValue.setTextColor(newValue.getTextColor());
 			}
 		}
+		// fingerprint of imported content, cleared when not computed
+		oldValue.setContentHash(newValue.getContentHash());
 		
 		// PTNetwork
 		
@@ -15,7 +15,7 @@ import org.apache.log4j.Logger;
 @NoArgsConstructor
 @ToString
 @XmlAccessorType(XmlAccessType.FIELD)
-@XmlType(propOrder = { "noSave", "cleanRepository" ,"keepObsoleteLines"}, name = "actionImportParameter")
+@XmlType(propOrder = { "noSave", "cleanRepository" ,"keepObsoleteLines", "skipUnchangedLines"}, name = "actionImportParameter")
 public abstract class AbstractImportParameter extends AbstractParameter {
 
 	@XmlElement(name = "no_save", defaultValue = "false")
@@ -33,6 +33,11 @@ public abstract class AbstractImportParameter extends AbstractParameter {
 	@Setter
 	private boolean keepObsoleteLines = true;
 
+	@XmlElement(name = "skip_unchanged_lines", defaultValue = "false")
+	@Getter
+	@Setter
+	private boolean skipUnchangedLines = false;
+
 	public boolean isValid(Logger log) {
 		return super.isValid(log);
 	}
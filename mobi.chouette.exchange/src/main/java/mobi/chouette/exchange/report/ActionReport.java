@@ -248,4 +248,20 @@ public class ActionReport extends AbstractReport implements Constant, Progressio
 		print(stream, new StringBuilder(), 1, true);
 
 	}
+
+	@Override
+	public void printSummary(PrintStream out) {
+		StringBuilder ret = new StringBuilder();
+		int level = 0;
+		boolean first = true;
+		out.print("{\"action_report\": {");
+		if (progression != null) {
+			printObject(out, ret, level + 1, "progression", progression, first);
+			first = false;
+		}
+		out.print(toJsonString(ret, level + 1, "result", result, first));
+		if (failure != null)
+			printObject(out, ret, level + 1, "failure", failure, false);
+		out.println("\n}}");
+	}
 }
@@ -42,6 +42,13 @@ public interface ActionReporter {
 		ERROR
 	};
 	
+	public enum MERGE_STATE
+	{
+		CREATED,
+		UPDATED,
+		UNCHANGED
+	};
+	
 	public enum FILE_ERROR_CODE 
 	{
 		FILE_NOT_FOUND,
@@ -144,6 +151,22 @@ public interface ActionReporter {
 	 * @param count value to set
 	 */
 	void setStatToObjectReport(Context context, String objectId, OBJECT_TYPE type, OBJECT_TYPE statType, int count);
+	/**
+	 * add count of objects merged into database with given state
+	 * @param context
+	 * @param objectId
+	 * @param type
+	 * @param state
+	 * @param count value to add
+	 */
+	void addMergeStatToObjectReport(Context context, String objectId, OBJECT_TYPE type, MERGE_STATE state, int count);
+	/**
+	 * mark object as identical to the saved one, hence not registered again
+	 * @param context
+	 * @param objectId
+	 * @param type
+	 */
+	void setObjectUnchanged(Context context, String objectId, OBJECT_TYPE type);
 	/**
 	 * @param context
 	 * @param line
@@ -165,6 +165,35 @@ public class ActionReporterImpl implements ActionReporter, Constant {
 		}
 	}
 
+	@Override
+	public void addMergeStatToObjectReport(Context context, String objectId, OBJECT_TYPE type, MERGE_STATE state,
+			int count) {
+		ActionReport actionReport = (ActionReport) context.get(REPORT);
+		if (actionReport != null) {
+			if (actionReport.findObjectReport(objectId, type) == null) {
+				addObjectReport(context, objectId, type, "", OBJECT_STATE.OK, IO_TYPE.INPUT);
+			}
+			ObjectReport object = actionReport.findObjectReport(objectId, type);
+			if (object != null) {
+				object.addMergeStat(state, count);
+			}
+		}
+	}
+
+	@Override
+	public void setObjectUnchanged(Context context, String objectId, OBJECT_TYPE type) {
+		ActionReport actionReport = (ActionReport) context.get(REPORT);
+		if (actionReport != null) {
+			if (actionReport.findObjectReport(objectId, type) == null) {
+				addObjectReport(context, objectId, type, "", OBJECT_STATE.OK, IO_TYPE.INPUT);
+			}
+			ObjectReport objectReport = actionReport.findObjectReport(objectId, type);
+			if (objectReport != null) {
+				objectReport.setUnchanged(true);
+			}
+		}
+	}
+
 	@Override
 	public boolean hasInfo(Context context, OBJECT_TYPE type) {
 		ActionReport actionReport = (ActionReport) context.get(REPORT);
@@ -7,9 +7,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import mobi.chouette.exchange.report.ActionReporter.MERGE_STATE;
 import mobi.chouette.exchange.report.ActionReporter.OBJECT_STATE;
 import mobi.chouette.exchange.report.ActionReporter.OBJECT_TYPE;
 import mobi.chouette.exchange.validation.report.CheckPointReport.SEVERITY;
@@ -34,6 +36,12 @@ public class ObjectReport extends AbstractReport {
 	@Getter
 	private Map<OBJECT_TYPE, Integer> stats = new HashMap<OBJECT_TYPE, Integer>();
 
+	/**
+	 * objects merged into database by state
+	 */
+	@Getter
+	private Map<MERGE_STATE, Integer> mergeStats = new HashMap<MERGE_STATE, Integer>();
+
 	@Getter
 	private IO_TYPE ioType;
 
@@ -55,6 +63,13 @@ public class ObjectReport extends AbstractReport {
 	@Getter
 	private String objectId;
 
+	/**
+	 * object found identical to the saved one and not registered again
+	 */
+	@Getter
+	@Setter(AccessLevel.PROTECTED)
+	private boolean unchanged = false;
+
 	protected ObjectReport(String objectId, OBJECT_TYPE type, String description, OBJECT_STATE status, IO_TYPE ioType) {
 		this.objectId = objectId;
 		this.type = type;
@@ -140,6 +155,17 @@ public class ObjectReport extends AbstractReport {
 
 	}
 
+	/**
+	 * Add merged objects count
+	 * 
+	 * @param state
+	 * @param count
+	 */
+	protected void addMergeStat(MERGE_STATE state, int count) {
+		Integer value = mergeStats.get(state);
+		mergeStats.put(state, value == null ? count : value.intValue() + count);
+	}
+
 	public JSONObject toJson() throws JSONException {
 		JSONObject object = new JSONObject();
 		object.put("type", type.toString().toLowerCase());
@@ -149,6 +175,9 @@ public class ObjectReport extends AbstractReport {
 		if (ioType != null) {
 			object.put("io_type", ioType);
 		}
+		if (unchanged) {
+			object.put("unchanged", unchanged);
+		}
 		if (!stats.isEmpty()) {
 			JSONObject map = new JSONObject();
 			object.put("stats", map);
@@ -157,6 +186,13 @@ public class ObjectReport extends AbstractReport {
 				map.put(entry.getKey().toString().toLowerCase(), entry.getValue());
 			}
 		}
+		if (!mergeStats.isEmpty()) {
+			JSONObject map = new JSONObject();
+			object.put("merge_stats", map);
+			for (Entry<MERGE_STATE, Integer> entry : mergeStats.entrySet()) {
+				map.put(entry.getKey().toString().toLowerCase(), entry.getValue());
+			}
+		}
 
 		if (!errors.isEmpty()) {
 			JSONArray array = new JSONArray();
@@ -189,9 +225,14 @@ public class ObjectReport extends AbstractReport {
 		out.print(toJsonString(ret, level + 1, "status", status, false));
 		if (ioType != null)
 			out.print(toJsonString(ret, level + 1, "io_type", ioType, false));
+		if (unchanged)
+			out.print(toJsonString(ret, level + 1, "unchanged", unchanged, false));
 		if (!stats.isEmpty()) {
 			printMap(out, ret, level + 1, "stats", stats, false);
 		}
+		if (!mergeStats.isEmpty()) {
+			printMap(out, ret, level + 1, "merge_stats", mergeStats, false);
+		}
 		if (!errors.isEmpty()) {
 			printArray(out, ret, level + 1, "errors", errors, false);
 		}
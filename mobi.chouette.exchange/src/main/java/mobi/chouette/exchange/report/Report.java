@@ -8,6 +8,14 @@ public interface Report {
 	boolean isEmpty();
 
 	void print(PrintStream stream);
+
+	/**
+	 * print a small version of the report without its bulky sections, used for
+	 * progression documents saved while the job is running
+	 * 
+	 * @param stream
+	 */
+	void printSummary(PrintStream stream);
 	
 	void setDate(Date date);
 	Date getDate();
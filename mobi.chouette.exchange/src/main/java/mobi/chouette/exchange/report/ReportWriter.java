@@ -0,0 +1,318 @@
+package mobi.chouette.exchange.report;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.Constant;
+import mobi.chouette.common.Context;
+import mobi.chouette.common.JobData;
+import mobi.chouette.exchange.validation.report.ValidationReport;
+
+import com.jamonapi.Monitor;
+import com.jamonapi.MonitorFactory;
+
+/**
+ * Job scoped writer for action and validation reports
+ * <p>
+ * While the job is running, only small progression documents (see
+ * {@link Report#printSummary(PrintStream)}) are saved; new validation errors
+ * are appended to a spool file. Periodic saves are performed off the job
+ * thread. The complete reports are written once by
+ * {@link #saveFinal(Report, Report)}.
+ */
+@Log4j
+public class ReportWriter implements Constant {
+
+	public static final String SPOOL_FILE = "validation_errors.spool";
+
+	private static ExecutorService defaultExecutor;
+
+	private final Path directory;
+
+	private final ExecutorService executor;
+
+	// pending documents, filled by job thread and consumed by flush
+	private byte[] actionSummary;
+
+	private byte[] validationSummary;
+
+	private ByteArrayOutputStream spoolBuffer = new ByteArrayOutputStream();
+
+	private boolean truncateSpool = false;
+
+	// spool state, only touched by job thread
+	private ValidationReport spooledReport;
+
+	private int spooledErrors = 0;
+
+	private int spooledGeneration = 0;
+
+	private Future<?> pending;
+
+	private final StringBuilder ret = new StringBuilder();
+
+	public ReportWriter(String pathName, ExecutorService executor) {
+		this.directory = Paths.get(pathName);
+		this.executor = executor;
+	}
+
+	/**
+	 * get or create the job report writer
+	 *
+	 * @param context
+	 * @return
+	 */
+	public static ReportWriter getInstance(Context context) {
+		ReportWriter writer = (ReportWriter) context.get(REPORT_WRITER);
+		if (writer == null) {
+			JobData jobData = (JobData) context.get(JOB_DATA);
+			writer = new ReportWriter(jobData.getPathName(), getExecutor(context));
+			context.put(REPORT_WRITER, writer);
+		}
+		return writer;
+	}
+
+	/**
+	 * save progression documents
+	 *
+	 * @param report
+	 *            action report
+	 * @param validationReport
+	 *            validation report, may be null
+	 * @param wait
+	 *            save on caller thread and wait for completion
+	 */
+	public void saveProgress(Report report, Report validationReport, boolean wait) {
+		prepare(report, validationReport);
+		if (wait) {
+			waitPending();
+			flush();
+		} else if (pending == null || pending.isDone()) {
+			// a running flush will be followed by next periodic save
+			pending = executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			});
+		}
+	}
+
+	/**
+	 * write complete reports and remove spool file
+	 *
+	 * @param report
+	 *            action report
+	 * @param validationReport
+	 *            validation report, may be null
+	 */
+	public void saveFinal(Report report, Report validationReport) {
+		if (validationReport != null && !validationReport.isEmpty())
+			prepare(null, validationReport);
+		waitPending();
+		synchronized (this) {
+			// complete reports replace progression documents
+			actionSummary = null;
+			validationSummary = null;
+		}
+		flush();
+
+		Monitor monitor = MonitorFactory.start("ActionReport");
+		try {
+			Path temp = Files.createTempFile(directory, REPORT_FILE, ".tmp");
+			try (PrintStream stream = new PrintStream(temp.toFile(), "UTF-8")) {
+				report.print(stream);
+			}
+			move(temp, directory.resolve(REPORT_FILE));
+		} catch (Exception e) {
+			log.error("failed to save report", e);
+		}
+		monitor.stop();
+
+		Path spool = directory.resolve(SPOOL_FILE);
+		if (validationReport != null && !validationReport.isEmpty()) {
+			monitor = MonitorFactory.start("ValidationReport");
+			try {
+				Path temp = Files.createTempFile(directory, VALIDATION_FILE, ".tmp");
+				try (PrintStream stream = new PrintStream(temp.toFile(), "UTF-8")) {
+					if (validationReport == spooledReport)
+						spooledReport.print(stream, spool, spooledErrors);
+					else
+						validationReport.print(stream);
+				}
+				move(temp, directory.resolve(VALIDATION_FILE));
+			} catch (Exception e) {
+				log.error("failed to save validation report", e);
+			}
+			monitor.stop();
+		}
+		try {
+			Files.deleteIfExists(spool);
+		} catch (IOException e) {
+			log.warn("cannot remove " + spool, e);
+		}
+		spooledReport = null;
+		spooledErrors = 0;
+		spooledGeneration = 0;
+	}
+
+	/**
+	 * serialize small documents and new errors on job thread
+	 */
+	private void prepare(Report report, Report validationReport) {
+		byte[] action = null;
+		if (report != null)
+			action = summary(report);
+		byte[] validation = null;
+		ByteArrayOutputStream errors = null;
+		if (validationReport instanceof ValidationReport && !validationReport.isEmpty()) {
+			ValidationReport current = (ValidationReport) validationReport;
+			validation = summary(current);
+			errors = new ByteArrayOutputStream();
+			boolean reset = current != spooledReport || current.getGeneration() != spooledGeneration;
+			if (reset) {
+				// report replaced or cleared : restart spool
+				spooledReport = current;
+				spooledGeneration = current.getGeneration();
+				spooledErrors = 0;
+			}
+			int size = current.getCheckPointErrors().size();
+			if (size > spooledErrors) {
+				PrintStream stream = utf8Stream(errors);
+				current.printErrors(stream, ret, spooledErrors);
+				stream.flush();
+				spooledErrors = size;
+			}
+			synchronized (this) {
+				if (reset) {
+					spoolBuffer = new ByteArrayOutputStream();
+					truncateSpool = true;
+				}
+				byte[] bytes = errors.toByteArray();
+				spoolBuffer.write(bytes, 0, bytes.length);
+			}
+		}
+		synchronized (this) {
+			if (action != null)
+				actionSummary = action;
+			if (validation != null)
+				validationSummary = validation;
+		}
+	}
+
+	/**
+	 * write pending documents ; may run off job thread
+	 */
+	private void flush() {
+		byte[] action;
+		byte[] validation;
+		byte[] errors;
+		boolean truncate;
+		synchronized (this) {
+			action = actionSummary;
+			validation = validationSummary;
+			errors = spoolBuffer.toByteArray();
+			truncate = truncateSpool;
+			actionSummary = null;
+			validationSummary = null;
+			spoolBuffer.reset();
+			truncateSpool = false;
+		}
+		try {
+			if (truncate || errors.length > 0) {
+				try (OutputStream out = Files.newOutputStream(directory.resolve(SPOOL_FILE),
+						StandardOpenOption.CREATE, StandardOpenOption.WRITE, truncate ? StandardOpenOption.TRUNCATE_EXISTING
+								: StandardOpenOption.APPEND)) {
+					out.write(errors);
+				}
+			}
+			if (action != null)
+				write(action, REPORT_FILE);
+			if (validation != null)
+				write(validation, VALIDATION_FILE);
+		} catch (Exception e) {
+			log.error("failed to save reports", e);
+		}
+	}
+
+	private void waitPending() {
+		if (pending != null) {
+			try {
+				pending.get();
+			} catch (Exception e) {
+				log.warn("report save failed", e);
+			}
+			pending = null;
+		}
+	}
+
+	private void write(byte[] content, String fileName) throws IOException {
+		Path temp = Files.createTempFile(directory, fileName, ".tmp");
+		Files.write(temp, content);
+		move(temp, directory.resolve(fileName));
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		// readers never see a partially written report
+		Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static byte[] summary(Report report) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		PrintStream stream = utf8Stream(buffer);
+		report.printSummary(stream);
+		stream.flush();
+		return buffer.toByteArray();
+	}
+
+	private static PrintStream utf8Stream(OutputStream out) {
+		try {
+			return new PrintStream(out, false, "UTF-8");
+		} catch (IOException e) {
+			// UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static ExecutorService getExecutor(Context context) {
+		InitialContext initialContext = (InitialContext) context.get(INITIAL_CONTEXT);
+		if (initialContext != null) {
+			try {
+				return (ExecutorService) initialContext.lookup("java:comp/DefaultManagedExecutorService");
+			} catch (NamingException | ClassCastException e) {
+				// not in a container : command line mode or test context
+			}
+		}
+		return getDefaultExecutor();
+	}
+
+	private static synchronized ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			defaultExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "report-writer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return defaultExecutor;
+	}
+
+}
@@ -16,6 +16,7 @@ import mobi.chouette.model.ConnectionLink;
 import mobi.chouette.model.GroupOfLine;
 import mobi.chouette.model.JourneyPattern;
 import mobi.chouette.model.Line;
+import mobi.chouette.model.NeptuneIdentifiedObject;
 import mobi.chouette.model.Network;
 import mobi.chouette.model.Route;
 import mobi.chouette.model.StopArea;
@@ -51,6 +52,8 @@ public class ValidationData {
 	private Line currentLine;
 	private Map<String,DataLocation> dataLocations = new HashMap<>();
 	private Map<String,Set<String>> linesOfStopAreas = new HashMap<>();
+	// compact copies of shared objects by type and objectId, see ValidationDataCollector
+	private Map<Class<?>,Map<String,NeptuneIdentifiedObject>> sharedObjects = new HashMap<>();
 
 	public void clear() {
 		vehicleJourneys.clear();
@@ -84,5 +87,6 @@ public class ValidationData {
 		timetableIds.clear();
 		dataLocations.clear();
 		linesOfStopAreas.clear();
+		sharedObjects.clear();
 	}
 }
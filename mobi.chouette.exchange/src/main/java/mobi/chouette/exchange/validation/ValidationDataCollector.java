@@ -1,6 +1,7 @@
 package mobi.chouette.exchange.validation;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -8,6 +9,7 @@ import java.util.Set;
 import lombok.extern.log4j.Log4j;
 import mobi.chouette.model.AccessLink;
 import mobi.chouette.model.AccessPoint;
+import mobi.chouette.model.Company;
 import mobi.chouette.model.ConnectionLink;
 import mobi.chouette.model.GroupOfLine;
 import mobi.chouette.model.JourneyPattern;
@@ -59,13 +61,15 @@ public class ValidationDataCollector {
 		collection.getLineIds().add(line.getObjectId());
 		if (line.getNetwork() != null) {
 			updateId(line.getNetwork(), cache.getPtNetworks());
-			collection.getNetworkIds().add(line.getNetwork().getObjectId());
-			collection.getNetworks().add(line.getNetwork());
+			if (collection.getNetworkIds().add(line.getNetwork().getObjectId()))
+				collection.getNetworks().add(cloneNetwork(collection, line.getNetwork()));
 		}
 		if (line.getCompany() != null) {
 			updateId(line.getCompany(), cache.getCompanies());
 			collection.getCompanyIds().add(line.getCompany().getObjectId());
-			collection.getCompanies().add(line.getCompany());
+			Company company = findShared(collection, Company.class, line.getCompany().getObjectId());
+			if (company == null)
+				collection.getCompanies().add(cloneCompany(collection, line.getCompany()));
 		}
 		if (line.getGroupOfLines() != null) {
 			addAllGroupOfLines(collection, line.getGroupOfLines(), cache);
@@ -73,7 +77,7 @@ public class ValidationDataCollector {
 		if (!line.getRoutingConstraints().isEmpty()) {
 			addAllRoutingConstraints(collection, line.getRoutingConstraints(), cache);
 		}
-		collection.getLines().add(cloneLine(line));
+		collection.getLines().add(cloneLine(collection, line));
 		return;
 	}
 
@@ -89,7 +93,7 @@ public class ValidationDataCollector {
 			return;
 		updateId(stopArea, cache.getStopAreas());
 		collection.getStopAreaIds().add(stopArea.getObjectId());
-		collection.getStopAreas().add(stopArea);
+		collection.getStopAreas().add(cloneStopArea(collection, stopArea));
 		addAllConnectionLinks(collection, stopArea.getConnectionStartLinks(), cache);
 		addAllConnectionLinks(collection, stopArea.getConnectionEndLinks(), cache);
 		addAllAccessPoints(collection, stopArea.getAccessPoints(), cache);
@@ -100,26 +104,32 @@ public class ValidationDataCollector {
 
 	private void addAllTimeTables(ValidationData collection, Collection<Timetable> data, Referential cache) {
 		for (Timetable object : data) {
+			if (collection.getTimetableIds().contains(object.getObjectId()))
+				continue;
 			updateId(object, cache.getTimetables());
 			collection.getTimetableIds().add(object.getObjectId());
-			collection.getTimetables().add(object);
+			collection.getTimetables().add(cloneTimetable(object));
 		}
 	}
 
 	private void addAllGroupOfLines(ValidationData collection, Collection<GroupOfLine> data, Referential cache) {
 		for (GroupOfLine object : data) {
+			if (collection.getGroupOfLineIds().contains(object.getObjectId()))
+				continue;
 			updateId(object, cache.getGroupOfLines());
 			collection.getGroupOfLineIds().add(object.getObjectId());
-			collection.getGroupOfLines().add(object);
+			collection.getGroupOfLines().add(cloneGroupOfLine(object));
 		}
 
 	}
 
 	private void addAllRoutingConstraints(ValidationData collection, Collection<StopArea> data, Referential cache) {
 		for (StopArea object : data) {
+			if (collection.getStopAreaIds().contains(object.getObjectId()))
+				continue;
 			updateId(object, cache.getStopAreas());
 			collection.getStopAreaIds().add(object.getObjectId());
-			collection.getStopAreas().add(object);
+			collection.getStopAreas().add(cloneStopArea(collection, object));
 		}
 
 	}
@@ -139,31 +149,38 @@ public class ValidationDataCollector {
 
 	private void addAllConnectionLinks(ValidationData collection, Collection<ConnectionLink> data, Referential cache) {
 		for (ConnectionLink object : data) {
+			if (collection.getConnectionLinkIds().contains(object.getObjectId()))
+				continue;
 			updateId(object, cache.getConnectionLinks());
 			collection.getConnectionLinkIds().add(object.getObjectId());
-			collection.getConnectionLinks().add(object);
-			if (object.getEndOfLink() != null)
-				collection.getDummyStopAreas().add(object.getEndOfLink());
-			if (object.getStartOfLink() != null)
-				collection.getDummyStopAreas().add(object.getStartOfLink());
+			ConnectionLink link = cloneConnectionLink(collection, object);
+			collection.getConnectionLinks().add(link);
+			if (link.getEndOfLink() != null)
+				collection.getDummyStopAreas().add(link.getEndOfLink());
+			if (link.getStartOfLink() != null)
+				collection.getDummyStopAreas().add(link.getStartOfLink());
 		}
 
 	}
 
 	private void addAllAccessPoints(ValidationData collection, Collection<AccessPoint> data, Referential cache) {
 		for (AccessPoint object : data) {
+			if (collection.getAccessPointIds().contains(object.getObjectId()))
+				continue;
 			updateId(object, cache.getAccessPoints());
 			collection.getAccessPointIds().add(object.getObjectId());
-			collection.getAccessPoints().add(object);
+			collection.getAccessPoints().add(cloneAccessPoint(collection, object));
 		}
 
 	}
 
 	private void addAllAccessLinks(ValidationData collection, Collection<AccessLink> data, Referential cache) {
 		for (AccessLink object : data) {
+			if (collection.getAccessLinkIds().contains(object.getObjectId()))
+				continue;
 			updateId(object, cache.getAccessLinks());
 			collection.getAccessLinkIds().add(object.getObjectId());
-			collection.getAccessLinks().add(object);
+			collection.getAccessLinks().add(cloneAccessLink(collection, object));
 		}
 
 	}
@@ -176,7 +193,7 @@ public class ValidationDataCollector {
 		}
 	}
 
-	private Line cloneLine(Line source) {
+	private Line cloneLine(ValidationData collection, Line source) {
 		// clone line to prepare tests on shared lines
 		Line target = new Line();
 		target.setId(source.getId());
@@ -196,20 +213,210 @@ public class ValidationDataCollector {
 		target.setUrl(source.getUrl());
 
 		// clone used dependencies
-		target.setNetwork(cloneNetwork(source.getNetwork()));
+		target.setNetwork(source.getNetwork() == null ? null : cloneNetwork(collection, source.getNetwork()));
 
 		return target;
 	}
 
-	private Network cloneNetwork(Network source) {
-		if (source == null)
-			return null;
-		Network target = new Network();
+	// compact copies of shared objects : only attributes and references used
+	// by shared data checkpoints are kept, so that imported lines are
+	// released once validated
+
+	private Network cloneNetwork(ValidationData collection, Network source) {
+		Network target = findShared(collection, Network.class, source.getObjectId());
+		if (target != null) {
+			if (target.getId() == null)
+				target.setId(source.getId()); // id found after first copy
+			return target;
+		}
+		target = new Network();
+		target.setId(source.getId());
+		target.setObjectId(source.getObjectId());
+		target.setObjectVersion(source.getObjectVersion());
+		target.setCreationTime(source.getCreationTime());
+		target.setCreatorId(source.getCreatorId());
+		target.setName(source.getName());
+		target.setComment(source.getComment());
+		target.setVersionDate(source.getVersionDate());
+		target.setDescription(source.getDescription());
+		target.setRegistrationNumber(source.getRegistrationNumber());
+		target.setSourceType(source.getSourceType());
+		target.setSourceName(source.getSourceName());
+		target.setSourceIdentifier(source.getSourceIdentifier());
+		return addShared(collection, target.getClass(), target);
+	}
+
+	private Company cloneCompany(ValidationData collection, Company source) {
+		Company target = new Company();
+		target.setId(source.getId());
+		target.setObjectId(source.getObjectId());
+		target.setObjectVersion(source.getObjectVersion());
+		target.setCreationTime(source.getCreationTime());
+		target.setCreatorId(source.getCreatorId());
+		target.setName(source.getName());
+		target.setShortName(source.getShortName());
+		target.setOrganisationalUnit(source.getOrganisationalUnit());
+		target.setOperatingDepartmentName(source.getOperatingDepartmentName());
+		target.setCode(source.getCode());
+		target.setPhone(source.getPhone());
+		target.setFax(source.getFax());
+		target.setEmail(source.getEmail());
+		target.setRegistrationNumber(source.getRegistrationNumber());
+		target.setUrl(source.getUrl());
+		target.setTimeZone(source.getTimeZone());
+		return addShared(collection, target.getClass(), target);
+	}
+
+	private GroupOfLine cloneGroupOfLine(GroupOfLine source) {
+		GroupOfLine target = new GroupOfLine();
+		target.setId(source.getId());
+		target.setObjectId(source.getObjectId());
+		target.setObjectVersion(source.getObjectVersion());
+		target.setCreationTime(source.getCreationTime());
+		target.setCreatorId(source.getCreatorId());
+		target.setName(source.getName());
+		target.setComment(source.getComment());
+		target.setRegistrationNumber(source.getRegistrationNumber());
+		return target;
+	}
+
+	private Timetable cloneTimetable(Timetable source) {
+		Timetable target = new Timetable();
+		target.setId(source.getId());
+		target.setObjectId(source.getObjectId());
+		target.setObjectVersion(source.getObjectVersion());
+		target.setCreationTime(source.getCreationTime());
+		target.setCreatorId(source.getCreatorId());
+		target.setComment(source.getComment());
+		target.setVersion(source.getVersion());
+		target.setIntDayTypes(source.getIntDayTypes());
+		target.setStartOfPeriod(source.getStartOfPeriod());
+		target.setEndOfPeriod(source.getEndOfPeriod());
+		return target;
+	}
+
+	private StopArea cloneStopArea(ValidationData collection, StopArea source) {
+		StopArea target = findShared(collection, StopArea.class, source.getObjectId());
+		if (target != null) {
+			if (target.getId() == null)
+				target.setId(source.getId()); // id found after first copy
+			return target;
+		}
+		target = new StopArea();
+		target.copyAttributes(source);
+		target.setId(source.getId());
+		target.setCreatorId(source.getCreatorId());
+		// register before parent to stop on cyclic parents
+		addShared(collection, StopArea.class, target);
+		if (source.getParent() != null)
+			target.forceParent(cloneStopArea(collection, source.getParent()));
+		return target;
+	}
+
+	private ConnectionLink cloneConnectionLink(ValidationData collection, ConnectionLink source) {
+		ConnectionLink target = new ConnectionLink();
+		target.setId(source.getId());
+		target.setObjectId(source.getObjectId());
+		target.setObjectVersion(source.getObjectVersion());
+		target.setCreationTime(source.getCreationTime());
+		target.setCreatorId(source.getCreatorId());
+		target.setName(source.getName());
+		target.setComment(source.getComment());
+		target.setLinkDistance(source.getLinkDistance());
+		target.setLiftAvailable(source.getLiftAvailable());
+		target.setMobilityRestrictedSuitable(source.getMobilityRestrictedSuitable());
+		target.setStairsAvailable(source.getStairsAvailable());
+		target.setDefaultDuration(source.getDefaultDuration());
+		target.setFrequentTravellerDuration(source.getFrequentTravellerDuration());
+		target.setOccasionalTravellerDuration(source.getOccasionalTravellerDuration());
+		target.setMobilityRestrictedTravellerDuration(source.getMobilityRestrictedTravellerDuration());
+		target.setLinkType(source.getLinkType());
+		target.setIntUserNeeds(source.getIntUserNeeds());
+		if (source.getStartOfLink() != null)
+			target.forceStartOfLink(cloneStopArea(collection, source.getStartOfLink()));
+		if (source.getEndOfLink() != null)
+			target.forceEndOfLink(cloneStopArea(collection, source.getEndOfLink()));
+		return target;
+	}
+
+	private AccessPoint cloneAccessPoint(ValidationData collection, AccessPoint source) {
+		AccessPoint target = findShared(collection, AccessPoint.class, source.getObjectId());
+		if (target != null) {
+			if (target.getId() == null)
+				target.setId(source.getId()); // id found after first copy
+			return target;
+		}
+		target = new AccessPoint();
 		target.setId(source.getId());
 		target.setObjectId(source.getObjectId());
 		target.setObjectVersion(source.getObjectVersion());
+		target.setCreationTime(source.getCreationTime());
+		target.setCreatorId(source.getCreatorId());
+		target.setLongitude(source.getLongitude());
+		target.setLatitude(source.getLatitude());
+		target.setLongLatType(source.getLongLatType());
+		target.setX(source.getX());
+		target.setY(source.getY());
+		target.setProjectionType(source.getProjectionType());
+		target.setCountryCode(source.getCountryCode());
+		target.setZipCode(source.getZipCode());
+		target.setCityName(source.getCityName());
+		target.setStreetName(source.getStreetName());
 		target.setName(source.getName());
+		target.setComment(source.getComment());
+		target.setOpeningTime(source.getOpeningTime());
+		target.setClosingTime(source.getClosingTime());
+		target.setType(source.getType());
+		target.setLiftAvailable(source.getLiftAvailable());
+		target.setMobilityRestrictedSuitable(source.getMobilityRestrictedSuitable());
+		target.setStairsAvailable(source.getStairsAvailable());
+		if (source.getContainedIn() != null)
+			target.setContainedIn(cloneStopArea(collection, source.getContainedIn()));
+		return addShared(collection, target.getClass(), target);
+	}
+
+	private AccessLink cloneAccessLink(ValidationData collection, AccessLink source) {
+		AccessLink target = new AccessLink();
+		target.setId(source.getId());
+		target.setObjectId(source.getObjectId());
+		target.setObjectVersion(source.getObjectVersion());
+		target.setCreationTime(source.getCreationTime());
+		target.setCreatorId(source.getCreatorId());
+		target.setName(source.getName());
+		target.setComment(source.getComment());
+		target.setLinkDistance(source.getLinkDistance());
+		target.setLiftAvailable(source.getLiftAvailable());
+		target.setMobilityRestrictedSuitable(source.getMobilityRestrictedSuitable());
+		target.setStairsAvailable(source.getStairsAvailable());
+		target.setDefaultDuration(source.getDefaultDuration());
+		target.setFrequentTravellerDuration(source.getFrequentTravellerDuration());
+		target.setOccasionalTravellerDuration(source.getOccasionalTravellerDuration());
+		target.setMobilityRestrictedTravellerDuration(source.getMobilityRestrictedTravellerDuration());
+		target.setLinkType(source.getLinkType());
+		target.setIntUserNeeds(source.getIntUserNeeds());
+		target.setLinkOrientation(source.getLinkOrientation());
+		if (source.getAccessPoint() != null)
+			target.setAccessPoint(cloneAccessPoint(collection, source.getAccessPoint()));
+		if (source.getStopArea() != null)
+			target.setStopArea(cloneStopArea(collection, source.getStopArea()));
 		return target;
 	}
 
+	private <T extends NeptuneIdentifiedObject> T findShared(ValidationData collection, Class<T> type, String objectId) {
+		Map<String, NeptuneIdentifiedObject> objects = collection.getSharedObjects().get(type);
+		if (objects == null)
+			return null;
+		return type.cast(objects.get(objectId));
+	}
+
+	private <T extends NeptuneIdentifiedObject> T addShared(ValidationData collection, Class<?> type, T object) {
+		Map<String, NeptuneIdentifiedObject> objects = collection.getSharedObjects().get(type);
+		if (objects == null) {
+			objects = new HashMap<>();
+			collection.getSharedObjects().put(type, objects);
+		}
+		objects.put(object.getObjectId(), object);
+		return object;
+	}
+
 }
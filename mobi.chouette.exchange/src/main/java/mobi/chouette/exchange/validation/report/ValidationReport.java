@@ -1,6 +1,9 @@
 package mobi.chouette.exchange.validation.report;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -26,9 +29,15 @@ public class ValidationReport extends AbstractReport implements Report {
 	private List<CheckPointReport> checkPoints = new ArrayList<CheckPointReport>();
 
 	@Getter
-	@Setter
 	private List<CheckPointErrorReport> checkPointErrors = new ArrayList<CheckPointErrorReport>();
 
+	/**
+	 * incremented each time errors are cleared or replaced, lets the report
+	 * writer restart its spool
+	 */
+	@Getter
+	private int generation = 0;
+
 	@Getter
 	@Setter
 	private boolean maxByFile = true;
@@ -38,6 +47,19 @@ public class ValidationReport extends AbstractReport implements Report {
 	private Date date = new Date(0);
 
 
+	public void setCheckPointErrors(List<CheckPointErrorReport> checkPointErrors) {
+		this.checkPointErrors = checkPointErrors;
+		generation++;
+	}
+
+	/**
+	 * remove all errors
+	 */
+	public void clearCheckPointErrors() {
+		checkPointErrors.clear();
+		generation++;
+	}
+
 	public CheckPointReport findCheckPointReportByName(String name) {
 		for (CheckPointReport checkPoint : checkPoints) {
 			if (checkPoint.getName().equals(name))
@@ -91,15 +113,79 @@ public class ValidationReport extends AbstractReport implements Report {
 
 	@Override
 	public void print(PrintStream out, StringBuilder ret , int level, boolean first) {
+		printHeader(out, ret);
+		if (!checkPointErrors.isEmpty()) {
+			printErrorsStart(out, ret);
+			printErrors(out, ret, 0);
+			printErrorsEnd(out, ret);
+		}
+		out.println("\n}}");
+	}
+
+	@Override
+	public void printSummary(PrintStream out) {
+		printHeader(out, new StringBuilder());
+		out.println("\n}}");
+	}
+
+	/**
+	 * print the report, errors section being read from a spool file filled
+	 * with {@link #printErrors(PrintStream, StringBuilder, int)}
+	 * 
+	 * @param out
+	 * @param spool
+	 * @param spooledErrors
+	 *            number of errors in spool file
+	 * @throws IOException
+	 */
+	public void print(PrintStream out, Path spool, int spooledErrors) throws IOException {
+		StringBuilder ret = new StringBuilder();
+		printHeader(out, ret);
+		if (spooledErrors > 0) {
+			printErrorsStart(out, ret);
+			out.flush();
+			Files.copy(spool, out);
+			printErrorsEnd(out, ret);
+		}
+		out.println("\n}}");
+	}
+
+	/**
+	 * print errors from index fromIndex as items of errors array
+	 * 
+	 * @param out
+	 * @param ret
+	 * @param fromIndex
+	 */
+	public void printErrors(PrintStream out, StringBuilder ret, int fromIndex) {
+		for (int i = fromIndex; i < checkPointErrors.size(); i++) {
+			ret.setLength(0);
+			if (i > 0)
+				ret.append(',');
+			out.print(ret.append('\n'));
+			checkPointErrors.get(i).print(out, ret, 3, i == 0);
+		}
 		ret.setLength(0);
-		level = 1;
+	}
+
+	private void printHeader(PrintStream out, StringBuilder ret) {
+		ret.setLength(0);
+		int level = 1;
 		out.print("{\"validation_report\": {");
 		out.print(toJsonString(ret, level, "result", result, true));
 		if (!checkPoints.isEmpty())
 			printArray(out, ret, level + 1, "check_points", checkPoints, false);
-		if (!checkPointErrors.isEmpty())
-			printArray(out, ret, level + 1, "errors", checkPointErrors, false);
-		out.println("\n}}");
+	}
+
+	private void printErrorsStart(PrintStream out, StringBuilder ret) {
+		ret.setLength(0);
+		out.print(addLevel(ret.append(",\n"), 2).append("\"errors\": ["));
+	}
+
+	private void printErrorsEnd(PrintStream out, StringBuilder ret) {
+		ret.setLength(0);
+		out.print(addLevel(ret.append('\n'), 2).append(']'));
+		ret.setLength(0);
 	}
 
 	@Override
@@ -257,7 +257,7 @@ public class ValidationReporterImpl implements ValidationReporter, Constant {
 		ValidationReport validationReport = (ValidationReport) context.get(VALIDATION_REPORT);
 		validationReport.setResult(VALIDATION_RESULT.NO_PROCESSING);
 		validationReport.getCheckPoints().clear();
-		validationReport.getCheckPointErrors().clear();
+		validationReport.clearCheckPointErrors();
 	}
 
 	@Override
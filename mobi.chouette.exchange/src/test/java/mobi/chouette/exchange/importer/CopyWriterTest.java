@@ -0,0 +1,26 @@
+package mobi.chouette.exchange.importer;
+
+import java.math.BigDecimal;
+import java.sql.Time;
+
+import mobi.chouette.common.Constant;
+import mobi.chouette.model.type.ChouetteAreaEnum;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CopyWriterTest implements Constant {
+
+	@SuppressWarnings("deprecation")
+	@Test(groups = { "write" }, description = "copy text format")
+	public void testCopyWriter() throws Exception {
+		CopyWriter buffer = new CopyWriter();
+		buffer.add("a|b\\c\nd").add((String) null).add(ChouetteAreaEnum.Quay).add(new BigDecimal("1.50"));
+		buffer.add(Boolean.TRUE).add(new Time(10, 5, 0)).endLine();
+		buffer.add(3).endLine();
+
+		Assert.assertEquals(buffer.toString(), "a\\|b\\\\c\\nd|\\N|Quay|1.50|true|10:05:00\n3\n",
+				"buffer content must be escaped");
+		Assert.assertEquals(buffer.getLines(), 2, "line count");
+	}
+}
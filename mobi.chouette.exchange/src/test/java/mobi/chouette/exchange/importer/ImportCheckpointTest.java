@@ -0,0 +1,139 @@
+package mobi.chouette.exchange.importer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import mobi.chouette.common.Constant;
+import mobi.chouette.common.Context;
+import mobi.chouette.common.chain.ChainCommand;
+import mobi.chouette.common.chain.Command;
+import mobi.chouette.exchange.JobDataTest;
+import mobi.chouette.exchange.parameters.AbstractImportParameter;
+import mobi.chouette.exchange.report.ActionReport;
+import mobi.chouette.model.Line;
+import mobi.chouette.model.util.ObjectFactory;
+import mobi.chouette.model.util.Referential;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ImportCheckpointTest implements Constant {
+
+	private static final int LINES = 100;
+
+	@Test(groups = { "checkpoint" }, description = "incomplete record is dropped")
+	public void testLoad() throws Exception {
+		Path directory = Files.createTempDirectory("checkpoint");
+		try {
+			Path file = directory.resolve(CHECKPOINT_FILE);
+			Files.write(file, "uncompressed\nline:A\nline:B".getBytes(StandardCharsets.UTF_8));
+			ImportCheckpoint checkpoint = ImportCheckpoint.load(directory);
+			Assert.assertTrue(checkpoint.isDone(ImportCheckpoint.UNCOMPRESSED));
+			Assert.assertTrue(checkpoint.isDone(ImportCheckpoint.lineStep("A")));
+			Assert.assertFalse(checkpoint.isDone(ImportCheckpoint.lineStep("B")), "incomplete record");
+
+			checkpoint.done(ImportCheckpoint.lineStep("C"));
+			checkpoint.done(ImportCheckpoint.lineStep("C"));
+			Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8),
+					"uncompressed\nline:A\nline:C\n");
+			Assert.assertEquals(ImportCheckpoint.load(directory).getLineCount(), 2);
+		} finally {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	@Test(groups = { "checkpoint" }, description = "import failing at line 40 resumes with remaining lines")
+	public void testResume() throws Exception {
+		// reference : import without failure
+		LineDatabase reference = new LineDatabase();
+		Path referenceDirectory = createJobDirectory();
+		try {
+			Assert.assertEquals(runImport(referenceDirectory, reference), SUCCESS);
+		} finally {
+			FileUtils.deleteDirectory(referenceDirectory.toFile());
+		}
+		Assert.assertEquals(reference.lines.size(), LINES);
+
+		Path directory = createJobDirectory();
+		try {
+			LineDatabase database = new LineDatabase();
+			database.failingLine = "TEST:Line:40";
+			try {
+				runImport(directory, database);
+				Assert.fail("import must fail");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			Assert.assertEquals(database.lines.size(), 39, "lines committed before failure");
+			Assert.assertEquals(ImportCheckpoint.load(directory).getLineCount(), 39);
+
+			// resumed job must not extract input again
+			Files.delete(directory.resolve("lines.txt"));
+			database.failingLine = null;
+			database.calls.clear();
+			Assert.assertEquals(runImport(directory, database), SUCCESS, "resumed import must succeed");
+
+			Assert.assertEquals(database.count("create"), LINES - 39, "only remaining lines are registered");
+			Assert.assertEquals(database.count("update"), LINES - 39, "committed lines are not updated");
+			Assert.assertEquals(database.getNames(), reference.getNames(), "same final state");
+			Assert.assertEquals(ImportCheckpoint.load(directory).getLineCount(), LINES);
+		} finally {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	private Path createJobDirectory() throws Exception {
+		Path directory = Files.createTempDirectory("import");
+		Files.write(directory.resolve("lines.txt"), "lines".getBytes(StandardCharsets.UTF_8));
+		return directory;
+	}
+
+	/**
+	 * same sequence as {@link AbstractImporterCommand} : input extraction,
+	 * then a chain parsing and registering each line
+	 */
+	private boolean runImport(Path directory, LineDatabase database) throws Exception {
+		final Context context = new Context();
+		JobDataTest jobData = new JobDataTest();
+		jobData.setPathName(directory.toString());
+		jobData.setInputFilename("lines.txt");
+		context.put(JOB_DATA, jobData);
+		context.put(REPORT, new ActionReport());
+		context.put(OPTIMIZED, Boolean.FALSE);
+		AbstractImportParameter configuration = new AbstractImportParameter() {
+			@Override
+			public boolean isRouteMergeable() {
+				return false;
+			}
+		};
+		configuration.setKeepObsoleteLines(true);
+		context.put(CONFIGURATION, configuration);
+		ImportCheckpoint.init(context);
+
+		if (!new UncompressCommand().execute(context))
+			return ERROR;
+		Assert.assertTrue(Files.exists(directory.resolve(INPUT).resolve("lines.txt")), "input must be extracted");
+
+		ChainCommand master = new ChainCommand();
+		LineRegisterCommand register = database.createLineRegisterCommand();
+		for (int i = 1; i <= LINES; i++) {
+			final int rank = i;
+			ChainCommand chain = new ChainCommand();
+			chain.add(new Command() {
+				@Override
+				public boolean execute(Context context) throws Exception {
+					Referential referential = new Referential();
+					Line line = ObjectFactory.getLine(referential, "TEST:Line:" + rank);
+					line.setName("line " + rank);
+					context.put(REFERENTIAL, referential);
+					return SUCCESS;
+				}
+			});
+			chain.add(register);
+			master.add(chain);
+		}
+		return master.execute(context);
+	}
+}
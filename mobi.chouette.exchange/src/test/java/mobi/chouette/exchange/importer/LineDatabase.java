@@ -0,0 +1,160 @@
+package mobi.chouette.exchange.importer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import javax.enterprise.concurrent.ManagedExecutorService;
+
+import mobi.chouette.common.ContenerChecker;
+import mobi.chouette.dao.LineDAO;
+import mobi.chouette.dao.VehicleJourneyDAO;
+import mobi.chouette.exchange.importer.updater.LineOptimiser;
+import mobi.chouette.exchange.importer.updater.Updater;
+import mobi.chouette.model.Line;
+import mobi.chouette.model.util.ObjectFactory;
+import mobi.chouette.model.util.Referential;
+
+/**
+ * line daos and updater fake for register and copy commands : records calls
+ * and keeps lines saved by committed registrations
+ */
+class LineDatabase implements InvocationHandler {
+
+	final List<String> calls = new ArrayList<>();
+
+	final Map<String, Line> lines = new TreeMap<>();
+
+	// name of failing method
+	String failing;
+
+	// object id of line failing on update
+	String failingLine;
+
+	LineDatabase(Line... savedLines) {
+		for (Line line : savedLines) {
+			lines.put(line.getObjectId(), line);
+		}
+	}
+
+	/**
+	 * @return calls count of a method
+	 */
+	int count(String method) {
+		return Collections.frequency(calls, method);
+	}
+
+	/**
+	 * @return saved line names by object id
+	 */
+	Map<String, String> getNames() {
+		Map<String, String> result = new TreeMap<>();
+		for (Line line : lines.values()) {
+			result.put(line.getObjectId(), line.getName());
+		}
+		return result;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class)
+			return method.invoke(this, args);
+		calls.add(method.getName());
+		if (method.getName().equals(failing))
+			throw new IllegalStateException("database failure");
+		switch (method.getName()) {
+		case "findByObjectId":
+			return args[0] instanceof String ? lines.get(args[0]) : null;
+		case "update":
+			Line oldValue = (Line) args[1];
+			Line newValue = (Line) args[2];
+			if (newValue.getObjectId().equals(failingLine))
+				throw new IllegalStateException("database failure");
+			oldValue.setName(newValue.getName());
+			return null;
+		case "create":
+			if (args[0] instanceof Line)
+				lines.put(((Line) args[0]).getObjectId(), (Line) args[0]);
+			return null;
+		case "updateContentHash":
+			Line line = lines.get(args[0]);
+			if (line != null)
+				line.setContentHash((String) args[1]);
+			return null;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * register command on this database ; optimiser loads saved lines in
+	 * cache
+	 */
+	@SuppressWarnings("unchecked")
+	LineRegisterCommand createLineRegisterCommand() throws Exception {
+		LineRegisterCommand command = new LineRegisterCommand();
+		inject(command, "lineDAO", proxy(LineDAO.class, this));
+		inject(command, "vehicleJourneyDAO", proxy(VehicleJourneyDAO.class, this));
+		inject(command, "lineUpdater", (Updater<Line>) proxy(Updater.class, this));
+		inject(command, "optimiser", new LineOptimiser() {
+			@Override
+			public void initialize(Referential cache, Referential referential) {
+				calls.add("initialize");
+				for (Line line : referential.getLines().values()) {
+					Line savedLine = lines.get(line.getObjectId());
+					if (savedLine != null)
+						cache.getLines().put(savedLine.getObjectId(), savedLine);
+					else
+						ObjectFactory.getLine(cache, line.getObjectId());
+				}
+			}
+		});
+		return command;
+	}
+
+	/**
+	 * copy command on this database, running its copies on calling thread
+	 */
+	CopyCommand createCopyCommand() throws Exception {
+		CopyCommand command = new CopyCommand();
+		inject(command, "lineDAO", proxy(LineDAO.class, this));
+		inject(command, "vehicleJourneyDAO", proxy(VehicleJourneyDAO.class, this));
+		inject(command, "checker", proxy(ContenerChecker.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return method.getName().equals("getContext") ? "test" : null;
+			}
+		}));
+		inject(command, "executor", proxy(ManagedExecutorService.class, new InvocationHandler() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (!method.getName().equals("submit") || !(args[0] instanceof Callable))
+					throw new UnsupportedOperationException(method.getName());
+				FutureTask<Object> task = new FutureTask<>((Callable<Object>) args[0]);
+				task.run();
+				return task;
+			}
+		}));
+		return command;
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(LineDatabase.class.getClassLoader(), new Class<?>[] { type },
+				handler));
+	}
+
+	static void inject(Object target, String name, Object value) throws Exception {
+		Field field = target.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+}
@@ -2,14 +2,32 @@ package mobi.chouette.exchange.importer;
 
 import java.io.StringWriter;
 import java.sql.Time;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.naming.InitialContext;
 
 import mobi.chouette.common.Constant;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.JobMetrics;
+import mobi.chouette.common.chain.ChainCommand;
+import mobi.chouette.exchange.parameters.AbstractImportParameter;
+import mobi.chouette.exchange.report.ActionReport;
+import mobi.chouette.exchange.report.ActionReporter.OBJECT_TYPE;
+import mobi.chouette.exchange.report.ObjectReport;
+import mobi.chouette.model.JourneyPattern;
+import mobi.chouette.model.Line;
+import mobi.chouette.model.Period;
+import mobi.chouette.model.Route;
+import mobi.chouette.model.StopArea;
 import mobi.chouette.model.StopPoint;
+import mobi.chouette.model.Timetable;
 import mobi.chouette.model.VehicleJourney;
 import mobi.chouette.model.VehicleJourneyAtStop;
+import mobi.chouette.model.util.ObjectFactory;
+import mobi.chouette.model.util.Referential;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -54,4 +72,185 @@ public class LineRegisterCommandTest implements Constant {
 	
 		
 	}
+
+	@SuppressWarnings("deprecation")
+	@Test(groups = { "fingerprint" }, description = "fingerprint does not depend on parsing order")
+	public void testFingerprint() throws Exception {
+		String hash = LineFingerprint.compute(createLine(false, new Time(8, 0, 0)));
+		Assert.assertEquals(hash.length(), 32, "128 bits hexadecimal fingerprint");
+		Assert.assertEquals(LineFingerprint.compute(createLine(true, new Time(8, 0, 0))), hash,
+				"same content must give same fingerprint");
+		Assert.assertNotEquals(LineFingerprint.compute(createLine(false, new Time(8, 1, 0))), hash,
+				"changed passing time must change fingerprint");
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test(groups = { "write" }, description = "unchanged line is not registered again")
+	public void testLineRegisterUnchanged() throws Exception {
+		Line savedLine = new Line();
+		savedLine.setObjectId("TEST:Line:1");
+		savedLine.setContentHash(LineFingerprint.compute(createLine(false, new Time(8, 0, 0))));
+		LineDatabase database = new LineDatabase(savedLine);
+		Context context = createContext(createLine(true, new Time(8, 0, 0)));
+
+		Assert.assertEquals(database.createLineRegisterCommand().execute(context), SUCCESS, "command must succeed");
+
+		Assert.assertEquals(database.calls.toString(), "[findByObjectId]", "only saved line must be read");
+		Assert.assertFalse(context.containsKey(BUFFER), "no passing times to copy");
+		ObjectReport report = ((ActionReport) context.get(REPORT)).findObjectReport("TEST:Line:1", OBJECT_TYPE.LINE);
+		Assert.assertNotNull(report, "line must be reported");
+		Assert.assertTrue(report.isUnchanged(), "line must be reported unchanged");
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test(groups = { "write" }, description = "line with changed journey is registered")
+	public void testLineRegisterChanged() throws Exception {
+		Line savedLine = new Line();
+		savedLine.setObjectId("TEST:Line:1");
+		savedLine.setContentHash(LineFingerprint.compute(createLine(false, new Time(8, 0, 0))));
+		LineDatabase database = new LineDatabase(savedLine);
+		Referential referential = createLine(true, new Time(8, 5, 0));
+		Context context = createContext(referential);
+
+		Assert.assertEquals(database.createLineRegisterCommand().execute(context), SUCCESS, "command must succeed");
+
+		Assert.assertEquals(database.calls.toString(),
+				"[findByObjectId, initialize, update, create, flush, deleteChildren]", "line must be registered");
+		Assert.assertTrue(context.containsKey(BUFFER), "passing times must be copied");
+		String hash = referential.getLines().get("TEST:Line:1").getContentHash();
+		Assert.assertEquals(hash, LineFingerprint.compute(createLine(false, new Time(8, 5, 0))),
+				"new fingerprint must be saved");
+		ObjectReport report = ((ActionReport) context.get(REPORT)).findObjectReport("TEST:Line:1", OBJECT_TYPE.LINE);
+		Assert.assertTrue(report == null || !report.isUnchanged(), "line must not be reported unchanged");
+	}
+
+	@SuppressWarnings({ "deprecation", "unchecked" })
+	@Test(groups = { "write" }, description = "fingerprint is saved once passing times are copied")
+	public void testLineRegisterFailedCopy() throws Exception {
+		Line savedLine = new Line();
+		savedLine.setObjectId("TEST:Line:1");
+		savedLine.setContentHash(LineFingerprint.compute(createLine(false, new Time(8, 0, 0))));
+		LineDatabase database = new LineDatabase(savedLine);
+		database.failing = "copy";
+		Context context = createContext(createLine(true, new Time(8, 5, 0)));
+
+		Assert.assertEquals(database.createLineRegisterCommand().execute(context), SUCCESS, "command must succeed");
+		Assert.assertNull(savedLine.getContentHash(), "fingerprint must not be saved with line");
+		Assert.assertEquals(database.createCopyCommand().execute(context), SUCCESS, "copy must be submitted");
+		List<Future<Void>> futures = (List<Future<Void>>) context.get(COPY_IN_PROGRESS);
+		try {
+			futures.get(0).get();
+			Assert.fail("copy must fail");
+		} catch (ExecutionException e) {
+			// expected
+		}
+		Assert.assertFalse(database.calls.contains("updateContentHash"), "fingerprint must not be saved");
+		Assert.assertNull(savedLine.getContentHash(), "line must be registered again by next import");
+
+		// next import copies passing times
+		database.failing = null;
+		context = createContext(createLine(true, new Time(8, 5, 0)));
+		Assert.assertEquals(database.createLineRegisterCommand().execute(context), SUCCESS, "command must succeed");
+		Assert.assertEquals(database.createCopyCommand().execute(context), SUCCESS, "copy must be submitted");
+		futures = (List<Future<Void>>) context.get(COPY_IN_PROGRESS);
+		futures.get(0).get();
+		Assert.assertEquals(savedLine.getContentHash(), LineFingerprint.compute(createLine(false, new Time(8, 5, 0))),
+				"fingerprint must be saved after copy");
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test(groups = { "metrics" }, description = "registered line is measured")
+	public void testLineRegisterMetrics() throws Exception {
+		Line savedLine = new Line();
+		savedLine.setObjectId("TEST:Line:1");
+		LineDatabase database = new LineDatabase(savedLine);
+		Context context = createContext(createLine(false, new Time(8, 0, 0)));
+		JobMetrics metrics = new JobMetrics(1L);
+		context.put(METRICS, metrics);
+		ChainCommand chain = new ChainCommand();
+		chain.add(database.createLineRegisterCommand());
+
+		Assert.assertEquals(chain.execute(context), SUCCESS, "command must succeed");
+
+		Assert.assertEquals(metrics.getCounter(JobMetrics.ENTITIES + "line"), 1L);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.ENTITIES + "route"), 1L);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.ENTITIES + "journey_pattern"), 1L);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.ENTITIES + "stop_point"), 3L);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.ENTITIES + "vehicle_journey"), 1L);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.ENTITIES + "vehicle_journey_at_stop"), 3L);
+		Assert.assertEquals(metrics.getCounter(JobMetrics.ENTITIES + "timetable"), 1L);
+		Assert.assertEquals(metrics.getPhase("LineRegisterCommand").getCount(), 1L, "command must be timed");
+
+		// unchanged line adds nothing
+		savedLine.setContentHash(LineFingerprint.compute(createLine(true, new Time(8, 0, 0))));
+		context = createContext(createLine(false, new Time(8, 0, 0)));
+		context.put(METRICS, metrics);
+		chain = new ChainCommand();
+		chain.add(database.createLineRegisterCommand());
+		Assert.assertEquals(chain.execute(context), SUCCESS, "command must succeed");
+		Assert.assertEquals(metrics.getCounter(JobMetrics.ENTITIES + "line"), 1L);
+		Assert.assertEquals(metrics.getPhase("LineRegisterCommand").getCount(), 2L, "command must be timed");
+	}
+
+	private Context createContext(Referential referential) {
+		Context context = new Context();
+		AbstractImportParameter configuration = new AbstractImportParameter() {
+			@Override
+			public boolean isRouteMergeable() {
+				return false;
+			}
+		};
+		configuration.setSkipUnchangedLines(true);
+		context.put(CONFIGURATION, configuration);
+		context.put(REFERENTIAL, referential);
+		context.put(REPORT, new ActionReport());
+		return context;
+	}
+
+	/**
+	 * builds a parsed line with one journey, objects being created in given
+	 * or reverse order
+	 */
+	@SuppressWarnings("deprecation")
+	private static Referential createLine(boolean reverse, Time departure) {
+		Referential referential = new Referential();
+		Line line = ObjectFactory.getLine(referential, "TEST:Line:1");
+		line.setName("line 1");
+		line.setNumber("1");
+		Route route = ObjectFactory.getRoute(referential, "TEST:Route:1");
+		route.setName("route 1");
+		route.setLine(line);
+		JourneyPattern journeyPattern = ObjectFactory.getJourneyPattern(referential, "TEST:JourneyPattern:1");
+		journeyPattern.setRoute(route);
+		VehicleJourney vehicleJourney = ObjectFactory.getVehicleJourney(referential, "TEST:VehicleJourney:1");
+		vehicleJourney.setRoute(route);
+		vehicleJourney.setJourneyPattern(journeyPattern);
+		Timetable timetable = ObjectFactory.getTimetable(referential, "TEST:Timetable:1");
+		timetable.setComment("week days");
+		timetable.setIntDayTypes(Integer.valueOf(31 << 2));
+		timetable.addPeriod(new Period(java.sql.Date.valueOf("2016-01-01"), java.sql.Date.valueOf("2016-12-31")));
+		timetable.addVehicleJourney(vehicleJourney);
+		List<StopPoint> stopPoints = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			int rank = reverse ? 2 - i : i;
+			StopArea stopArea = ObjectFactory.getStopArea(referential, "TEST:StopArea:" + rank);
+			stopArea.setName("stop " + rank);
+			StopPoint stopPoint = ObjectFactory.getStopPoint(referential, "TEST:StopPoint:" + rank);
+			stopPoint.setPosition(Integer.valueOf(rank));
+			stopPoint.setContainedInStopArea(stopArea);
+			stopPoint.setRoute(route);
+			stopPoints.add(stopPoint);
+		}
+		for (StopPoint stopPoint : stopPoints) {
+			journeyPattern.addStopPoint(stopPoint);
+			VehicleJourneyAtStop vehicleJourneyAtStop = new VehicleJourneyAtStop();
+			vehicleJourneyAtStop.setStopPoint(stopPoint);
+			int minutes = stopPoint.getPosition().intValue() * 10;
+			Time time = new Time(departure.getHours(), departure.getMinutes() + minutes, 0);
+			vehicleJourneyAtStop.setArrivalTime(time);
+			vehicleJourneyAtStop.setDepartureTime(time);
+			vehicleJourneyAtStop.setVehicleJourney(vehicleJourney);
+		}
+		return referential;
+	}
 }
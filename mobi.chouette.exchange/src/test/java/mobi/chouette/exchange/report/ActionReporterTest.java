@@ -61,4 +61,23 @@ public class ActionReporterTest implements Constant{
 		
 		Assert.assertEquals(actionReport.getFiles().size(), 1);
 	}
+
+	@Test(groups = { "Object" }, description = "verify merge stats add" ,priority=105 )
+	public void verifyMergeStatsAdd() throws Exception {
+		Context context = new Context();
+		context.put(REPORT, new ActionReport());
+		ActionReporter actionReporter = ActionReporter.Factory.getInstance();
+		actionReporter.addObjectReport(context, "merged", ActionReporter.OBJECT_TYPE.STOP_AREA, "stop areas", ActionReporter.OBJECT_STATE.OK, IO_TYPE.INPUT);
+		actionReporter.addMergeStatToObjectReport(context, "merged", ActionReporter.OBJECT_TYPE.STOP_AREA, ActionReporter.MERGE_STATE.CREATED, 3);
+		actionReporter.addMergeStatToObjectReport(context, "merged", ActionReporter.OBJECT_TYPE.STOP_AREA, ActionReporter.MERGE_STATE.CREATED, 1);
+		actionReporter.addMergeStatToObjectReport(context, "merged", ActionReporter.OBJECT_TYPE.STOP_AREA, ActionReporter.MERGE_STATE.UNCHANGED, 2);
+		ActionReport actionReport = (ActionReport) context.get(REPORT);
+		
+		ObjectReport objectReport = actionReport.findObjectReport("merged", ActionReporter.OBJECT_TYPE.STOP_AREA);
+		Assert.assertEquals(objectReport.getDescription(), "stop areas");
+		Assert.assertEquals(objectReport.getMergeStats().get(ActionReporter.MERGE_STATE.CREATED), Integer.valueOf(4));
+		Assert.assertEquals(objectReport.getMergeStats().get(ActionReporter.MERGE_STATE.UNCHANGED), Integer.valueOf(2));
+		Assert.assertNull(objectReport.getMergeStats().get(ActionReporter.MERGE_STATE.UPDATED));
+		Assert.assertEquals(objectReport.toJson().getJSONObject("merge_stats").getInt("created"), 4);
+	}
 }
@@ -0,0 +1,116 @@
+package mobi.chouette.exchange.report;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+
+import mobi.chouette.common.Constant;
+import mobi.chouette.common.Context;
+import mobi.chouette.exchange.validation.report.DataLocation;
+import mobi.chouette.exchange.validation.report.ValidationReport;
+import mobi.chouette.exchange.validation.report.ValidationReporter;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.codehaus.jettison.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ReportWriterTest implements Constant {
+
+	@Test(groups = { "reportWriter" }, description = "spooled validation report equals full print")
+	public void verifySpooledValidationReport() throws Exception {
+		File d = new File("target/referential/reportWriter");
+		if (d.exists())
+			FileUtils.deleteDirectory(d);
+		d.mkdirs();
+
+		Context context = new Context();
+		ActionReport report = new ActionReport();
+		ValidationReport validationReport = new ValidationReport();
+		context.put(REPORT, report);
+		context.put(VALIDATION_REPORT, validationReport);
+		ValidationReporter reporter = ValidationReporter.Factory.getInstance();
+		reporter.addItemToValidationReport(context, "Neptune-", "Checkpoint", 2, "W", "E");
+
+		ReportWriter writer = new ReportWriter(d.getPath(), Executors.newSingleThreadExecutor());
+		reporter.addCheckPointReportError(context, "Neptune-Checkpoint-1", new DataLocation("file1", 3, 1, "1"),
+				"first");
+		writer.saveProgress(report, validationReport, true);
+		Assert.assertTrue(new File(d, ReportWriter.SPOOL_FILE).exists(), "spool file should exists");
+		JSONObject summary = new JSONObject(FileUtils.readFileToString(new File(d, VALIDATION_FILE), "UTF-8"));
+		Assert.assertFalse(summary.getJSONObject("validation_report").has("errors"),
+				"progression document should not contain errors");
+
+		reporter.addCheckPointReportError(context, "Neptune-Checkpoint-2", new DataLocation("file2", 4, 2, "2"),
+				"second");
+		reporter.addCheckPointReportError(context, "Neptune-Checkpoint-2", new DataLocation("file2", 5, 2, "3"),
+				"third");
+		writer.saveProgress(report, validationReport, false);
+		writer.saveFinal(report, validationReport);
+
+		ByteArrayOutputStream oStream = new ByteArrayOutputStream();
+		PrintStream stream = new PrintStream(oStream, false, "UTF-8");
+		validationReport.print(stream);
+		stream.close();
+		Assert.assertEquals(Files.readAllBytes(new File(d, VALIDATION_FILE).toPath()), oStream.toByteArray(),
+				"final validation report should be identical to full print");
+		Assert.assertFalse(new File(d, ReportWriter.SPOOL_FILE).exists(), "spool file should be removed");
+		JSONObject action = new JSONObject(FileUtils.readFileToString(new File(d, REPORT_FILE), "UTF-8"));
+		Assert.assertTrue(action.has("action_report"), "action report should be saved");
+	}
+
+	@Test(groups = { "reportWriter" }, description = "spool restarts when validation report is cleared")
+	public void verifyClearedValidationReport() throws Exception {
+		File d = new File("target/referential/reportWriterClear");
+		if (d.exists())
+			FileUtils.deleteDirectory(d);
+		d.mkdirs();
+
+		Context context = new Context();
+		ActionReport report = new ActionReport();
+		ValidationReport validationReport = new ValidationReport();
+		context.put(REPORT, report);
+		context.put(VALIDATION_REPORT, validationReport);
+		ValidationReporter reporter = ValidationReporter.Factory.getInstance();
+		reporter.addItemToValidationReport(context, "Neptune-", "Checkpoint", 2, "W", "E");
+
+		ReportWriter writer = new ReportWriter(d.getPath(), Executors.newSingleThreadExecutor());
+		reporter.addCheckPointReportError(context, "Neptune-Checkpoint-1", new DataLocation("file1", 3, 1, "1"),
+				"stale");
+		writer.saveProgress(report, validationReport, true);
+
+		// cleared then refilled to a larger size
+		reporter.clearValidationReport(context);
+		reporter.addItemToValidationReport(context, "Neptune-", "Checkpoint", 2, "W", "E");
+		reporter.addCheckPointReportError(context, "Neptune-Checkpoint-1", new DataLocation("file1", 4, 1, "2"),
+				"first");
+		reporter.addCheckPointReportError(context, "Neptune-Checkpoint-2", new DataLocation("file2", 5, 2, "3"),
+				"second");
+		writer.saveProgress(report, validationReport, true);
+		String spool = FileUtils.readFileToString(new File(d, ReportWriter.SPOOL_FILE), "UTF-8");
+		Assert.assertFalse(spool.contains("stale"), "cleared errors should not be spooled");
+		writer.saveFinal(report, validationReport);
+
+		ByteArrayOutputStream oStream = new ByteArrayOutputStream();
+		PrintStream stream = new PrintStream(oStream, false, "UTF-8");
+		validationReport.print(stream);
+		stream.close();
+		Assert.assertEquals(Files.readAllBytes(new File(d, VALIDATION_FILE).toPath()), oStream.toByteArray(),
+				"final validation report should be identical to full print");
+	}
+
+	@Test(groups = { "reportWriter" }, description = "action report summary is a valid json document")
+	public void verifyActionReportSummary() throws Exception {
+		ActionReport report = new ActionReport();
+		ByteArrayOutputStream oStream = new ByteArrayOutputStream();
+		PrintStream stream = new PrintStream(oStream);
+		report.printSummary(stream);
+		JSONObject res = new JSONObject(oStream.toString());
+		JSONObject json = res.getJSONObject("action_report");
+		Assert.assertTrue(json.has("progression"), "summary should contain progression");
+		Assert.assertEquals(json.getString("result"), ReportConstant.STATUS_OK, "summary should contain result");
+		Assert.assertFalse(json.has("files"), "summary should not contain files");
+	}
+}
@@ -0,0 +1,92 @@
+package mobi.chouette.exchange.validation;
+
+import mobi.chouette.model.ConnectionLink;
+import mobi.chouette.model.Line;
+import mobi.chouette.model.Route;
+import mobi.chouette.model.StopArea;
+import mobi.chouette.model.StopPoint;
+import mobi.chouette.model.type.ChouetteAreaEnum;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ValidationDataCollectorTest {
+
+	@Test(groups = { "collector" }, description = "shared data are compact copies")
+	public void verifySharedCopies() throws Exception {
+		StopArea parent = buildArea(1L, "Test:StopArea:1", ChouetteAreaEnum.CommercialStopPoint);
+		StopArea quay1 = buildArea(2L, "Test:StopArea:2", ChouetteAreaEnum.BoardingPosition);
+		StopArea quay2 = buildArea(3L, "Test:StopArea:3", ChouetteAreaEnum.BoardingPosition);
+		quay1.setParent(parent);
+		quay2.setParent(parent);
+		ConnectionLink link = new ConnectionLink();
+		link.setId(10L);
+		link.setObjectId("Test:ConnectionLink:1");
+		link.setStartOfLink(quay1);
+		link.setEndOfLink(quay2);
+
+		Line line = new Line();
+		line.setId(20L);
+		line.setObjectId("Test:Line:1");
+		Route route = new Route();
+		route.setId(21L);
+		route.setObjectId("Test:Route:1");
+		route.setLine(line);
+		StopPoint point1 = buildPoint(22L, "Test:StopPoint:1", route, quay1);
+		StopPoint point2 = buildPoint(23L, "Test:StopPoint:2", route, quay2);
+
+		ValidationData data = new ValidationData();
+		new ValidationDataCollector().collect(data, line);
+
+		Assert.assertEquals(data.getStopAreas().size(), 3, "stop areas collected");
+		Assert.assertEquals(data.getConnectionLinks().size(), 1, "connection links collected");
+		Assert.assertEquals(data.getLinesOfStopAreas().get(quay1.getObjectId()).size(), 1, "lines of stop areas");
+		StopArea copy1 = null;
+		for (StopArea area : data.getStopAreas()) {
+			Assert.assertNotSame(area, parent);
+			Assert.assertNotSame(area, quay1);
+			Assert.assertNotSame(area, quay2);
+			Assert.assertTrue(area.getContainedStopPoints().isEmpty(), "no stop points in copy");
+			Assert.assertTrue(area.getContainedStopAreas().isEmpty(), "no children in copy");
+			if (area.getObjectId().equals(quay1.getObjectId()))
+				copy1 = area;
+		}
+		Assert.assertNotNull(copy1);
+		Assert.assertEquals(copy1.getId(), quay1.getId());
+		Assert.assertEquals(copy1.getName(), quay1.getName());
+		Assert.assertEquals(copy1.getLatitude(), quay1.getLatitude());
+		Assert.assertEquals(copy1.getParent().getObjectId(), parent.getObjectId());
+		Assert.assertNotSame(copy1.getParent(), parent);
+
+		ConnectionLink linkCopy = data.getConnectionLinks().iterator().next();
+		Assert.assertNotSame(linkCopy, link);
+		Assert.assertSame(linkCopy.getStartOfLink(), copy1, "link copy should use stop area copies");
+		Assert.assertTrue(linkCopy.getStartOfLink().getConnectionStartLinks().isEmpty(), "no links in copy");
+		Assert.assertSame(data.getStopPoints().get(0), point1);
+		Assert.assertSame(data.getStopPoints().get(1), point2);
+
+		data.dispose();
+		Assert.assertTrue(data.getSharedObjects().isEmpty(), "shared copies released");
+	}
+
+	private StopArea buildArea(Long id, String objectId, ChouetteAreaEnum type) {
+		StopArea area = new StopArea();
+		area.setId(id);
+		area.setObjectId(objectId);
+		area.setName("area " + id);
+		area.setAreaType(type);
+		area.setLatitude(new java.math.BigDecimal("48.8" + id));
+		area.setLongitude(new java.math.BigDecimal("2.3" + id));
+		return area;
+	}
+
+	private StopPoint buildPoint(Long id, String objectId, Route route, StopArea area) {
+		StopPoint point = new StopPoint();
+		point.setId(id);
+		point.setObjectId(objectId);
+		point.setPosition(route.getStopPoints().size());
+		point.setRoute(route);
+		point.setContainedInStopArea(area);
+		return point;
+	}
+}
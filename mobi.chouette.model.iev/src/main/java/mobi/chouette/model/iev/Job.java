@@ -17,6 +17,7 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Index;
 import javax.persistence.JoinColumn;
+import javax.persistence.PreUpdate;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.xml.bind.annotation.XmlEnum;
@@ -29,7 +30,8 @@ import lombok.ToString;
 @EqualsAndHashCode(of = { "id" })
 @ToString(exclude = { "parametersAsString" })
 @Entity
-@Table(name = "jobs",indexes = {@Index(name = "i_referential_type_status", columnList = "referential,type,status")})
+@Table(name = "jobs",indexes = {@Index(name = "i_referential_type_status", columnList = "referential,type,status"),
+		@Index(name = "i_referential_updated", columnList = "referential,updated")})
 @Data
 public class Job implements Serializable {
 
@@ -94,6 +96,12 @@ public class Job implements Serializable {
 		this.type = type;
 	}
 
+	// any change is seen by jobs listings version
+	@PreUpdate
+	protected void touch() {
+		updated = new Date();
+	}
+
 	@XmlType
 	@XmlEnum(String.class)
 	public enum STATUS implements java.io.Serializable {
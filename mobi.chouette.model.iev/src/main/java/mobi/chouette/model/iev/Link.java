@@ -11,7 +11,7 @@ import lombok.ToString;
 
 @Embeddable
 @NoArgsConstructor
-@ToString(exclude={"method","href"})
+@ToString(exclude={"method","href","checksum"})
 public class Link implements java.io.Serializable {
 
 	private static final long serialVersionUID = 1L;
@@ -45,6 +45,14 @@ public class Link implements java.io.Serializable {
 	@Setter
 	private String rel;
 
+	/**
+	 * SHA-256 of linked file content when known
+	 */
+	@Column(name = "checksum")
+	@Getter
+	@Setter
+	private String checksum;
+
 	@Transient
 	@Getter
 	@Setter
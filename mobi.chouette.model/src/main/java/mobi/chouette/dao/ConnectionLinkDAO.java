@@ -5,4 +5,23 @@ import mobi.chouette.model.ConnectionLink;
 
 public interface ConnectionLinkDAO extends GenericDAO<ConnectionLink> {
 
+	/**
+	 * merge connection links with a single COPY and set-based statements
+	 * <p>
+	 * data contains one line per connection link in COPY text format, columns
+	 * are : objectid, departure objectid, arrival objectid, object_version,
+	 * creation_time, creator_id, name, comment, link_distance, computed
+	 * distance, link_type, default_duration, frequent_traveller_duration,
+	 * occasional_traveller_duration, mobility_restricted_traveller_duration,
+	 * mobility_restricted_suitability, stairs_availability, lift_availability,
+	 * int_user_needs
+	 * <p>
+	 * existing rows keep their value for null columns and unknown stop areas;
+	 * computed distance is used when no link distance is known
+	 * 
+	 * @param data
+	 * @return merge counts
+	 */
+	MergeResult merge(String data);
+
 }
@@ -5,4 +5,12 @@ import mobi.chouette.model.Line;
 
 public interface LineDAO extends GenericDAO<Line> {
 
+	/**
+	 * save line content fingerprint, once its passing times are committed
+	 * 
+	 * @param objectId
+	 * @param contentHash
+	 */
+	void updateContentHash(String objectId, String contentHash);
+
 }
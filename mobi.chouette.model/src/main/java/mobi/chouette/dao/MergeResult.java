@@ -0,0 +1,70 @@
+package mobi.chouette.dao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * counts of a set-based merge of COPY data into a table
+ */
+@ToString(exclude = "changes")
+public class MergeResult {
+
+	/**
+	 * rows inserted
+	 */
+	@Getter
+	@Setter
+	private int created;
+
+	/**
+	 * existing rows with at least one modified column
+	 */
+	@Getter
+	@Setter
+	private int updated;
+
+	/**
+	 * existing rows left as is
+	 */
+	@Getter
+	@Setter
+	private int unchanged;
+
+	/**
+	 * object ids of existing rows by changed reference column
+	 */
+	@Getter
+	private Map<String, List<String>> changes = new HashMap<>();
+
+	/**
+	 * @param column
+	 * @return object ids of existing rows whose column has changed, never null
+	 */
+	public List<String> getChanges(String column) {
+		List<String> result = changes.get(column);
+		if (result == null) {
+			result = new ArrayList<>();
+			changes.put(column, result);
+		}
+		return result;
+	}
+
+	/**
+	 * @return existing rows, updated or not
+	 */
+	public int getExisting() {
+		return updated + unchanged;
+	}
+
+	public void add(MergeResult other) {
+		created += other.created;
+		updated += other.updated;
+		unchanged += other.unchanged;
+	}
+}
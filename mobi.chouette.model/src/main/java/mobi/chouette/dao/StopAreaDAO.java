@@ -5,4 +5,22 @@ import mobi.chouette.model.StopArea;
 
 public interface StopAreaDAO extends GenericDAO<StopArea> {
 
+	/**
+	 * merge stop areas with a single COPY and set-based statements
+	 * <p>
+	 * data contains one line per stop area in COPY text format, columns are :
+	 * objectid, parent objectid, object_version, creation_time, creator_id,
+	 * name, comment, area_type, registration_number, nearest_topic_name,
+	 * fare_code, longitude, latitude, long_lat_type, country_code,
+	 * street_name, mobility_restricted_suitability, stairs_availability,
+	 * lift_availability, int_user_needs, zip_code, city_name, url, time_zone
+	 * <p>
+	 * existing rows keep their value for null columns, except parent; changes
+	 * of area_type and parent_id on existing rows are reported
+	 * 
+	 * @param data
+	 * @return merge counts
+	 */
+	MergeResult merge(String data);
+
 }
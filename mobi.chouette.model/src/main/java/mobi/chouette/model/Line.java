@@ -140,6 +140,20 @@ public class Line extends NeptuneIdentifiedObject implements ObjectIdTypes {
 	@Column(name = "stable_id")
 	private String stableId;
 
+	/**
+	 * fingerprint of line content at last import
+	 * 
+	 * @param contentHash
+	 *            New value
+	 * @return The actual value
+	 * 
+	 * @since 3.4.6
+	 */
+	@Getter
+	@Setter
+	@Column(name = "content_hash")
+	private String contentHash;
+
 	/**
 	 * set published name <br/>
 	 * truncated to 255 characters if too long
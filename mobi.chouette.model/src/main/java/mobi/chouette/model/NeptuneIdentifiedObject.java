@@ -126,8 +126,30 @@ public abstract class NeptuneIdentifiedObject extends NeptuneObject implements
 		return p.matcher(oid).matches();
 	}
 
-	private String[] objectIdArray() {
-		return objectId.split(":");
+	/**
+	 * return part of objectId as {@link String#split(String)} on ':' would,
+	 * without splitting the whole objectId on each call
+	 * 
+	 * @param index
+	 *            0 for prefix, 2 for technical id
+	 * @return part or empty string if objectId has less than 3 parts
+	 */
+	private String objectIdPart(int index) {
+		int first = objectId.indexOf(':');
+		int second = first < 0 ? -1 : objectId.indexOf(':', first + 1);
+		if (second < 0)
+			return "";
+		// split removes trailing empty parts
+		boolean hasThirdPart = false;
+		for (int i = second + 1; i < objectId.length() && !hasThirdPart; i++) {
+			hasThirdPart = objectId.charAt(i) != ':';
+		}
+		if (!hasThirdPart)
+			return "";
+		if (index == 0)
+			return objectId.substring(0, first).trim();
+		int third = objectId.indexOf(':', second + 1);
+		return objectId.substring(second + 1, third < 0 ? objectId.length() : third).trim();
 	}
 
 	/**
@@ -136,10 +158,7 @@ public abstract class NeptuneIdentifiedObject extends NeptuneObject implements
 	 * @return String
 	 */
 	public String objectIdPrefix() {
-		if (objectIdArray().length > 2) {
-			return objectIdArray()[0].trim();
-		} else
-			return "";
+		return objectIdPart(0);
 	}
 
 	/**
@@ -148,10 +167,7 @@ public abstract class NeptuneIdentifiedObject extends NeptuneObject implements
 	 * @return String
 	 */
 	public String objectIdSuffix() {
-		if (objectIdArray().length > 2)
-			return objectIdArray()[2].trim();
-		else
-			return "";
+		return objectIdPart(2);
 	}
 
 	protected void copyAttributes(NeptuneIdentifiedObject source) 
@@ -1,22 +1,28 @@
 package mobi.chouette.model.util;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import lombok.extern.log4j.Log4j;
 
-import org.geotools.geometry.jts.JTS;
 import org.geotools.referencing.CRS;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
 
-import com.vividsolutions.jts.geom.Envelope;
-
+/**
+ * coordinates transformation between EPSG systems
+ * <p>
+ * math transforms are cached and may be shared between threads ; failures
+ * are reported to the caller, {@link #getLastException()} only reports
+ * failures of the current thread.
+ */
 @Log4j
 public class CoordinateUtil
 {
-   private static Map<String, MathTransform> map = new HashMap<String, MathTransform>();
+   private static final ConcurrentMap<String, MathTransform> map = new ConcurrentHashMap<String, MathTransform>();
+
+   private static final ThreadLocal<Exception> ex = new ThreadLocal<Exception>();
 
    private static MathTransform createMathTransform(String source, String target)
          throws Exception
@@ -28,36 +34,49 @@ public class CoordinateUtil
          CoordinateReferenceSystem sourceCRS = CRS.decode(source);
          CoordinateReferenceSystem targetCRS = CRS.decode(target);
          transform = CRS.findMathTransform(sourceCRS, targetCRS);
-         map.put(key, transform);
+         MathTransform previous = map.putIfAbsent(key, transform);
+         if (previous != null)
+            transform = previous;
       }
       return transform;
    }
-   
-   private static Exception ex;
-   
+
+   /**
+    * @return last failure of {@link #transform(String, String, Coordinate)}
+    *         in current thread, cleared by this call
+    */
    public static Exception getLastException()
    {
-	   Exception val = ex;
-	   ex = null;
-	   return val;
+      Exception val = ex.get();
+      ex.remove();
+      return val;
    }
 
+   /**
+    * transform a point
+    *
+    * @param source
+    *           source system (EPSG:xxx)
+    * @param target
+    *           target system (EPSG:xxx)
+    * @param p
+    *           point to transform
+    * @return transformed point, null on failure
+    */
    public static Coordinate transform(String source, String target, Coordinate p)
    {
       Coordinate result = null;
       try
       {
-         MathTransform transform = createMathTransform(source, target);
-         Envelope envelope = new Envelope(p.x.doubleValue(), p.x.doubleValue(),
-               p.y.doubleValue(), p.y.doubleValue());
-         Envelope geometry = JTS.transform(envelope, transform);
+         double[] point = transform(source, target,
+               new double[] { p.x.doubleValue(), p.y.doubleValue() });
 
-         result = new Coordinate(new BigDecimal(geometry.getMinX()),
-               new BigDecimal(geometry.getMinY()));
+         result = new Coordinate(new BigDecimal(point[0]), new BigDecimal(
+               point[1]));
 
       } catch (Exception e)
       {
-    	  ex = e;
+         ex.set(e);
          log.error("fail to convert from " + source + " to " + target
                + " projected point " + p + " : " + e.getMessage());
       }
@@ -65,4 +84,26 @@ public class CoordinateUtil
       return result;
    }
 
+   /**
+    * transform points in one call
+    *
+    * @param source
+    *           source system (EPSG:xxx)
+    * @param target
+    *           target system (EPSG:xxx)
+    * @param points
+    *           x and y of each point, in source system axis order
+    * @return transformed x and y of each point
+    * @throws Exception
+    *            unknown system or point out of transformation domain
+    */
+   public static double[] transform(String source, String target,
+         double[] points) throws Exception
+   {
+      MathTransform transform = createMathTransform(source, target);
+      double[] result = new double[points.length];
+      transform.transform(points, 0, result, 0, points.length / 2);
+      return result;
+   }
+
 }
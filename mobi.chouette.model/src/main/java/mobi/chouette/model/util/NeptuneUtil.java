@@ -1,5 +1,6 @@
 package mobi.chouette.model.util;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -119,25 +120,63 @@ public abstract class NeptuneUtil {
 	 *            type of projection (EPSG:xxx)
 	 */
 	public static void toProjection(NeptuneLocalizedObject object, String projectionType) {
-		if (!object.hasCoordinates())
-			return;
+		object.toProjection(projectionType);
+	}
 
-		String projection = null;
-		if (projectionType == null || projectionType.isEmpty()) {
-			object.setX(null);
-			object.setY(null);
-			object.setProjectionType(null);
-			return;
+	/**
+	 * project latitude and longitude on x and y of objects not already
+	 * projected, in one transformation<br/>
+	 * clears projections if no projection is given
+	 * 
+	 * @param objects
+	 *            objects to project
+	 * @param projectionType
+	 *            type of projection (EPSG:xxx)
+	 */
+	public static void toProjection(Collection<? extends NeptuneLocalizedObject> objects, String projectionType) {
+		List<NeptuneLocalizedObject> targets = new ArrayList<>(objects.size());
+		for (NeptuneLocalizedObject object : objects) {
+			if (object == null || !object.hasCoordinates())
+				continue;
+			if (projectionType == null || projectionType.isEmpty()) {
+				object.toProjection(projectionType);
+				continue;
+			}
+			if (object.hasProjection())
+				continue;
+			targets.add(object);
 		}
-		if (object.hasProjection())
+		if (targets.isEmpty())
 			return;
-		projection = projectionType.toUpperCase();
+		String projection = projectionType.toUpperCase();
 
-		Coordinate p = new Coordinate(object.getLongitude(), object.getLatitude());
-		Coordinate coordinate = CoordinateUtil.transform(Coordinate.WGS84, projection, p);
-		if (coordinate != null) {
-			object.setX(coordinate.x);
-			object.setY(coordinate.y);
+		double[] points = new double[targets.size() * 2];
+		int i = 0;
+		for (NeptuneLocalizedObject object : targets) {
+			points[i++] = object.getLatitude().doubleValue();
+			points[i++] = object.getLongitude().doubleValue();
+		}
+		try {
+			points = CoordinateUtil.transform(Coordinate.WGS84, projection, points);
+		} catch (Exception e) {
+			// point by point to keep valid ones
+			log.warn("fail to convert " + targets.size() + " points from " + Coordinate.WGS84 + " to " + projection
+					+ " : " + e.getMessage());
+			for (NeptuneLocalizedObject object : targets) {
+				object.toProjection(projection);
+			}
+			return;
+		}
+		i = 0;
+		for (NeptuneLocalizedObject object : targets) {
+			double x = points[i++];
+			double y = points[i++];
+			if (Double.isNaN(x) || Double.isInfinite(x) || Double.isNaN(y) || Double.isInfinite(y)) {
+				object.toProjection(projection);
+				continue;
+			}
+			object.setX(new BigDecimal(x));
+			object.setY(new BigDecimal(y));
 			object.setProjectionType(projection);
 		}
 	}
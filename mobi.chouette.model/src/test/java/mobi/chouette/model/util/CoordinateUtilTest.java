@@ -1,10 +1,27 @@
 package mobi.chouette.model.util;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import lombok.extern.log4j.Log4j;
+
+import org.geotools.geometry.jts.JTS;
+import org.geotools.referencing.CRS;
+import org.opengis.referencing.operation.MathTransform;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.vividsolutions.jts.geom.Envelope;
+
+@Log4j
 public class CoordinateUtilTest {
 	@Test(groups = { "coordinate" }, description = "transform from WGS84")
 	public void testTransformFromWGS84() throws Exception 
@@ -36,4 +53,166 @@ public class CoordinateUtilTest {
 		Assert.assertTrue(c2.y.doubleValue() > -1,"y must be arround -1 : "+c2.y);
 	}
 
+	@Test(groups = { "coordinate" }, description = "transform points in one call")
+	public void testTransformBatch() throws Exception 
+	{
+		double[] points = createPoints(1000, 1L);
+		double[] result = CoordinateUtil.transform(Coordinate.WGS84, Coordinate.LAMBERT, points);
+		Assert.assertEquals(result.length, points.length);
+		for (int i = 0; i < points.length; i += 2)
+		{
+			Coordinate c = CoordinateUtil.transform(Coordinate.WGS84, Coordinate.LAMBERT,
+					new Coordinate(BigDecimal.valueOf(points[i]), BigDecimal.valueOf(points[i + 1])));
+			Assert.assertEquals(result[i], c.x.doubleValue(), "x of point " + i / 2);
+			Assert.assertEquals(result[i + 1], c.y.doubleValue(), "y of point " + i / 2);
+		}
+	}
+
+	@Test(groups = { "coordinate" }, description = "failure reported to caller only")
+	public void testFailure() throws Exception 
+	{
+		try
+		{
+			CoordinateUtil.transform(Coordinate.WGS84, "EPSG:unknown", new double[] { 45, 0 });
+			Assert.fail("exception expected");
+		} catch (Exception e)
+		{
+			// expected
+		}
+		Assert.assertNull(CoordinateUtil.getLastException(), "batch failure not stored");
+
+		Coordinate c = CoordinateUtil.transform(Coordinate.WGS84, "EPSG:unknown",
+				new Coordinate(BigDecimal.valueOf(45), BigDecimal.valueOf(0)));
+		Assert.assertNull(c);
+		Thread other = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				Assert.assertNull(CoordinateUtil.getLastException(), "other thread failure");
+			}
+		});
+		other.start();
+		other.join();
+		Assert.assertNotNull(CoordinateUtil.getLastException(), "current thread failure");
+		Assert.assertNull(CoordinateUtil.getLastException(), "cleared");
+	}
+
+	@Test(groups = { "coordinate" }, description = "concurrent transformations")
+	public void testConcurrent() throws Exception 
+	{
+		final String[][] systems = { { Coordinate.WGS84, Coordinate.LAMBERT }, { Coordinate.LAMBERT, Coordinate.WGS84 },
+				{ Coordinate.WGS84, "EPSG:2154" }, { Coordinate.WGS84, "EPSG:unknown" } };
+		final double[] points = createPoints(2000, 2L);
+		final double[][] expected = new double[systems.length][];
+		for (int i = 0; i < systems.length - 1; i++)
+		{
+			expected[i] = CoordinateUtil.transform(systems[i][0], systems[i][1],
+					i == 1 ? CoordinateUtil.transform(Coordinate.WGS84, Coordinate.LAMBERT, points) : points);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try
+		{
+			List<Future<String>> futures = new ArrayList<>();
+			for (int t = 0; t < 64; t++)
+			{
+				final int index = t % systems.length;
+				futures.add(executor.submit(new Callable<String>()
+				{
+					@Override
+					public String call() throws Exception
+					{
+						double[] source = index == 1 ? CoordinateUtil.transform(Coordinate.WGS84, Coordinate.LAMBERT,
+								points) : points;
+						for (int i = 0; i < source.length; i += 2)
+						{
+							Coordinate c = CoordinateUtil.transform(systems[index][0], systems[index][1],
+									new Coordinate(new BigDecimal(source[i]), new BigDecimal(source[i + 1])));
+							Exception e = CoordinateUtil.getLastException();
+							if (expected[index] == null)
+							{
+								if (c != null || e == null)
+									return "failure expected for " + systems[index][1];
+								continue;
+							}
+							if (c == null || e != null)
+								return "unexpected failure " + e;
+							if (c.x.doubleValue() != expected[index][i] || c.y.doubleValue() != expected[index][i + 1])
+								return "point " + i / 2 + " differs for " + systems[index][1];
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<String> future : futures)
+			{
+				Assert.assertNull(future.get());
+			}
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test(groups = { "coordinate" }, description = "transform 1M points", enabled = false)
+	public void benchmark() throws Exception 
+	{
+		int count = 1000000;
+		double[] points = createPoints(count, 3L);
+
+		// former way : envelope per point
+		Map<String, MathTransform> transforms = new HashMap<String, MathTransform>();
+		long start = System.currentTimeMillis();
+		double sum = 0;
+		for (int i = 0; i < points.length; i += 2)
+		{
+			String key = Coordinate.WGS84 + "-" + Coordinate.LAMBERT;
+			MathTransform transform = transforms.get(key);
+			if (transform == null)
+			{
+				transform = CRS.findMathTransform(CRS.decode(Coordinate.WGS84), CRS.decode(Coordinate.LAMBERT));
+				transforms.put(key, transform);
+			}
+			Coordinate p = new Coordinate(BigDecimal.valueOf(points[i]), BigDecimal.valueOf(points[i + 1]));
+			Envelope envelope = JTS.transform(new Envelope(p.x.doubleValue(), p.x.doubleValue(), p.y.doubleValue(),
+					p.y.doubleValue()), transform);
+			Coordinate c = new Coordinate(new BigDecimal(envelope.getMinX()), new BigDecimal(envelope.getMinY()));
+			sum += c.x.doubleValue();
+		}
+		long former = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < points.length; i += 2)
+		{
+			sum -= CoordinateUtil.transform(Coordinate.WGS84, Coordinate.LAMBERT,
+					new Coordinate(BigDecimal.valueOf(points[i]), BigDecimal.valueOf(points[i + 1]))).x.doubleValue();
+		}
+		long single = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		double[] result = CoordinateUtil.transform(Coordinate.WGS84, Coordinate.LAMBERT, points);
+		long batch = System.currentTimeMillis() - start;
+
+		log.info("CoordinateUtil : " + count + " points, former " + former + " ms, per point " + single
+				+ " ms, batch " + batch + " ms");
+		Assert.assertEquals(result.length, points.length);
+		Assert.assertTrue(Math.abs(sum) < 1e-3 * count, "same results");
+	}
+
+	/**
+	 * latitude and longitude over France
+	 */
+	private double[] createPoints(int count, long seed)
+	{
+		Random random = new Random(seed);
+		double[] points = new double[count * 2];
+		for (int i = 0; i < points.length; i += 2)
+		{
+			points[i] = 43 + random.nextDouble() * 7;
+			points[i + 1] = -4 + random.nextDouble() * 11;
+		}
+		return points;
+	}
+
 }
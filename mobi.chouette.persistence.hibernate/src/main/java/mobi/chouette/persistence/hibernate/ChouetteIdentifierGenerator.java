@@ -1,14 +1,26 @@
 package mobi.chouette.persistence.hibernate;
 
 import java.io.Serializable;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import lombok.extern.log4j.Log4j;
 
@@ -16,6 +28,7 @@ import org.hibernate.HibernateException;
 import org.hibernate.MappingException;
 import org.hibernate.cfg.ObjectNameNormalizer;
 import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.jdbc.connections.spi.MultiTenantConnectionProvider;
 import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.id.Configurable;
 import org.hibernate.id.IdentifierGenerator;
@@ -36,15 +49,27 @@ public class ChouetteIdentifierGenerator implements IdentifierGenerator,
 	public static final String DEF_SEQUENCE_NAME = "hibernate_sequence";
 	public static final String INCREMENT_PARAM = "increment_size";
 	public static final int DEFAULT_INCREMENT_SIZE = 100;
+	public static final String MAX_INCREMENT_PARAM = "max_increment_size";
+	public static final int DEFAULT_MAX_INCREMENT_SIZE = 10000;
+	public static final String PREFETCH_PARAM = "prefetch";
+
+	// a block consumed faster than this doubles next block size
+	private static final long FAST_CONSUMPTION_DELAY = 2000;
+	// a block consumed slower than this halves next block size
+	private static final long SLOW_CONSUMPTION_DELAY = 60000;
 
 	private String sql;
 	private String sequenceName;
 	private Type identifierType;
 	private int incrementSize;
-	
-	private static List<ChouetteIdentifierGenerator> instances = new ArrayList<>();
-	
-	private Map<String,State> states = new ConcurrentHashMap<>();
+	private int maxIncrementSize;
+	private boolean prefetch;
+
+	private static List<ChouetteIdentifierGenerator> instances = new CopyOnWriteArrayList<>();
+
+	private static ExecutorService prefetchExecutor;
+
+	private ConcurrentMap<String, State> states = new ConcurrentHashMap<>();
 
 	
 	public static void deleteTenant(String tenantIdentifier)
@@ -53,6 +78,37 @@ public class ChouetteIdentifierGenerator implements IdentifierGenerator,
 			instance.states.remove(tenantIdentifier);
 		}
 	}
+
+	/**
+	 * return sequence round-trips done for a tenant since last reset
+	 * 
+	 * @param tenantIdentifier
+	 * @return round-trips count by sequence name
+	 */
+	public static Map<String, Long> getRoundTrips(String tenantIdentifier)
+	{
+		Map<String, Long> result = new TreeMap<>();
+		for (ChouetteIdentifierGenerator instance : instances) {
+			State state = instance.states.get(tenantIdentifier);
+			if (state != null && state.roundTrips.get() > 0)
+				result.put(instance.sequenceName, state.roundTrips.get());
+		}
+		return result;
+	}
+
+	/**
+	 * reset sequence round-trips counters of a tenant, called at job start
+	 * 
+	 * @param tenantIdentifier
+	 */
+	public static void resetRoundTrips(String tenantIdentifier)
+	{
+		for (ChouetteIdentifierGenerator instance : instances) {
+			State state = instance.states.get(tenantIdentifier);
+			if (state != null)
+				state.roundTrips.set(0);
+		}
+	}
 	
 	public ChouetteIdentifierGenerator()
 	{
@@ -65,7 +121,10 @@ public class ChouetteIdentifierGenerator implements IdentifierGenerator,
 		this.identifierType = type;
 		this.sequenceName = determineSequenceName(params, dialect);
 		this.incrementSize = determineIncrementSize(params);
-		this.sql = getSequenceNextValString(sequenceName, incrementSize);	
+		this.maxIncrementSize = Math.max(incrementSize,
+				ConfigurationHelper.getInt(MAX_INCREMENT_PARAM, params, DEFAULT_MAX_INCREMENT_SIZE));
+		this.prefetch = ConfigurationHelper.getBoolean(PREFETCH_PARAM, params, false);
+		this.sql = getSequenceNextValString(sequenceName);
 		log.info("----------------configure sequence "+sequenceName+" ------------") ;
 	}
 
@@ -73,39 +132,128 @@ public class ChouetteIdentifierGenerator implements IdentifierGenerator,
 	public Serializable generate(SessionImplementor session, Object object)
 			throws HibernateException {
 
-		State state = states.get(session.getTenantIdentifier());
-		
-		if (state == null)
-		{
-			state = new State();
-			states.put(session.getTenantIdentifier(), state);
+		String tenantIdentifier = session.getTenantIdentifier();
+		State state = states.get(tenantIdentifier);
+		if (state == null) {
+			state = new State(incrementSize);
+			State previous = states.putIfAbsent(tenantIdentifier, state);
+			if (previous != null)
+				state = previous;
 		}
-		
-		if (state.hiValue == null || state.value == null || state.hiValue.lt(state.value) ) {
-			state.hiValue = getNextValue(session);
-			state.value = state.hiValue.copy().subtract(incrementSize);
-			// System.out.println("[DSU] ? nextval --------------> : " + value);
+
+		while (true) {
+			Block block = state.current.get();
+			if (block != null) {
+				long id = block.next.getAndIncrement();
+				if (id <= block.hi) {
+					if (prefetch && id == block.prefetchMark)
+						prefetch(session, tenantIdentifier, state);
+					IntegralDataTypeHolder result = buildHolder();
+					result.initialize(id);
+					return result.makeValue();
+				}
+			}
+			// block exhausted : only one thread installs its new block, ids
+			// of the other fetched blocks are lost as any sequence gap
+			Block next = nextBlock(session, state, block);
+			state.current.compareAndSet(block, next);
 		}
-		Number result = state.value.makeValueThenIncrement();
-		// System.out.println("[DSU] nextval --------------> : " + value);
-		return result;
 	}
 
-	protected IntegralDataTypeHolder getNextValue(SessionImplementor session) {
+	private Block nextBlock(SessionImplementor session, State state, Block exhausted) {
+		// adapted on each consumed block, prefetched or not, so that next
+		// prefetch uses it
+		int size = adaptBlockSize(state, exhausted);
+		Future<Block> prefetched = state.prefetched.getAndSet(null);
+		if (prefetched != null) {
+			try {
+				Block block = prefetched.get();
+				if (block != null)
+					return block;
+			} catch (Exception e) {
+				log.warn("prefetch of sequence " + sequenceName + " failed : " + e.getMessage());
+			}
+		}
+		long hiValue = getNextValue(session, size);
+		state.roundTrips.incrementAndGet();
+		return new Block(hiValue, size);
+	}
+
+	/**
+	 * grow block size when blocks are consumed quickly (bulk imports), shrink
+	 * it back when they are consumed slowly
+	 */
+	private int adaptBlockSize(State state, Block exhausted) {
+		int size = state.blockSize.get();
+		if (exhausted != null) {
+			long delay = System.currentTimeMillis() - exhausted.created;
+			if (delay < FAST_CONSUMPTION_DELAY && size < maxIncrementSize) {
+				size = Math.min(size * 2, maxIncrementSize);
+			} else if (delay > SLOW_CONSUMPTION_DELAY && size > incrementSize) {
+				size = Math.max(size / 2, incrementSize);
+			}
+			state.blockSize.set(size);
+		}
+		return size;
+	}
+
+	/**
+	 * fetch next block in background on a dedicated connection, sequences
+	 * being non transactional
+	 */
+	private void prefetch(SessionImplementor session, final String tenantIdentifier, final State state) {
+		if (state.prefetched.get() != null)
+			return;
+		final MultiTenantConnectionProvider provider = session.getFactory().getServiceRegistry()
+				.getService(MultiTenantConnectionProvider.class);
+		final int size = state.blockSize.get();
+		FutureTask<Block> task = new FutureTask<>(new Callable<Block>() {
+			@Override
+			public Block call() throws Exception {
+				Connection connection = provider.getConnection(tenantIdentifier);
+				try (PreparedStatement st = connection.prepareStatement(sql)) {
+					st.setLong(1, size);
+					try (ResultSet rs = st.executeQuery()) {
+						rs.next();
+						state.roundTrips.incrementAndGet();
+						return new Block(rs.getLong(1), size);
+					}
+				} finally {
+					provider.releaseConnection(tenantIdentifier, connection);
+				}
+			}
+		});
+		if (state.prefetched.compareAndSet(null, task))
+			getPrefetchExecutor().execute(task);
+	}
+
+	private static synchronized ExecutorService getPrefetchExecutor() {
+		if (prefetchExecutor == null) {
+			prefetchExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "sequence-prefetch");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return prefetchExecutor;
+	}
+
+	protected long getNextValue(SessionImplementor session, int size) {
 		try {
 
-			//System.out.println("ChouetteIdentifierGenerator.getNextValue() : " + sql);
 			PreparedStatement st = session.getTransactionCoordinator()
 					.getJdbcCoordinator().getStatementPreparer()
 					.prepareStatement(sql);
 			try {
+				st.setLong(1, size);
 				ResultSet rs = session.getTransactionCoordinator()
 						.getJdbcCoordinator().getResultSetReturn().extract(st);
 				try {
 					rs.next();
-					IntegralDataTypeHolder result = buildHolder();
-					result.initialize(rs, 1);
-					return result;
+					return rs.getLong(1);
 				} finally {
 					session.getTransactionCoordinator().getJdbcCoordinator()
 							.release(rs, st);
@@ -122,10 +270,13 @@ public class ChouetteIdentifierGenerator implements IdentifierGenerator,
 
 	}
 
-	protected String getSequenceNextValString(String sequenceName,
-			int incrementSize) {
+	/**
+	 * @return query reserving a block of values, the block size being given as
+	 *         parameter
+	 */
+	protected String getSequenceNextValString(String sequenceName) {
 		return "select setval('" + sequenceName + "', nextval('"
-				+ sequenceName + "') + " + incrementSize + ")";
+				+ sequenceName + "') + ?)";
 	}
 
 	protected IntegralDataTypeHolder buildHolder() {
@@ -152,10 +303,35 @@ public class ChouetteIdentifierGenerator implements IdentifierGenerator,
 		return ConfigurationHelper.getInt(INCREMENT_PARAM, params,
 				DEFAULT_INCREMENT_SIZE);
 	}
-	
-	private class State
+
+	/**
+	 * range [hiValue - size, hiValue] reserved by one sequence round-trip
+	 */
+	private static class Block
 	{
-		IntegralDataTypeHolder hiValue ;
-		 IntegralDataTypeHolder value ;
+		final AtomicLong next;
+		final long hi;
+		final long prefetchMark;
+		final long created = System.currentTimeMillis();
+
+		Block(long hiValue, int size)
+		{
+			this.hi = hiValue;
+			this.next = new AtomicLong(hiValue - size);
+			this.prefetchMark = hiValue - size / 2;
+		}
+	}
+
+	private static class State
+	{
+		final AtomicReference<Block> current = new AtomicReference<>();
+		final AtomicReference<Future<Block>> prefetched = new AtomicReference<>();
+		final AtomicInteger blockSize;
+		final AtomicLong roundTrips = new AtomicLong();
+
+		State(int incrementSize)
+		{
+			blockSize = new AtomicInteger(incrementSize);
+		}
 	}
-}
\ No newline at end of file
+}
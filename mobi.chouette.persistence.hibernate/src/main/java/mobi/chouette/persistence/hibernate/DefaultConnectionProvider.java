@@ -2,9 +2,15 @@ package mobi.chouette.persistence.hibernate;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import javax.sql.DataSource;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import org.hibernate.HibernateException;
 import org.hibernate.cfg.AvailableSettings;
@@ -22,8 +28,20 @@ public class DefaultConnectionProvider implements
 
 	private static final long serialVersionUID = 1L;
 
+	private static final String TRANSACTION_SYNCHRONIZATION_REGISTRY = "java:comp/TransactionSynchronizationRegistry";
+
+	private static final String PHYSICAL_CONNECTION_CLASS = "org.postgresql.PGConnection";
+
 	private DataSource _datasource;
 
+	private TransactionSynchronizationRegistry _registry;
+
+	private Class<?> _physicalConnectionClass;
+
+	// current schema of pooled physical connections
+	private final Map<Object, String> _schemas = Collections
+			.synchronizedMap(new WeakHashMap<Object, String>());
+
 	@Override
 	public Connection getAnyConnection() throws SQLException {
 		return _datasource.getConnection();
@@ -34,8 +52,13 @@ public class DefaultConnectionProvider implements
 		final Connection connection = getAnyConnection();
 		try {
 			if (identifier != null && !identifier.isEmpty()) {
-				connection.createStatement().execute(
-						"SET SCHEMA '" + identifier + "'");
+				Object key = getPhysicalConnection(connection);
+				if (!identifier.equals(_schemas.get(key))) {
+					try (Statement statement = connection.createStatement()) {
+						statement.execute("SET SCHEMA '" + identifier + "'");
+					}
+					trackSchema(connection, key, identifier);
+				}
 			}
 		} catch (SQLException e) {
 			throw new HibernateException(
@@ -45,6 +68,55 @@ public class DefaultConnectionProvider implements
 		return connection;
 	}
 
+	/**
+	 * remember schema of a physical connection ; a SET issued in a
+	 * transaction is undone on rollback, so it is only kept if the
+	 * transaction commits
+	 */
+	private void trackSchema(Connection connection, final Object key,
+			String identifier) throws SQLException {
+		if (connection.getAutoCommit()) {
+			_schemas.put(key, identifier);
+			return;
+		}
+		if (_registry != null && _registry.getTransactionKey() != null) {
+			try {
+				_registry.registerInterposedSynchronization(new Synchronization() {
+					@Override
+					public void beforeCompletion() {
+					}
+
+					@Override
+					public void afterCompletion(int status) {
+						if (status != Status.STATUS_COMMITTED)
+							_schemas.remove(key);
+					}
+				});
+				_schemas.put(key, identifier);
+				return;
+			} catch (IllegalStateException e) {
+				// transaction completing : schema is unknown
+			}
+		}
+		_schemas.remove(key);
+	}
+
+	/**
+	 * @return the pooled connection behind the datasource handle, or the
+	 *         handle itself when it cannot be unwrapped
+	 */
+	private Object getPhysicalConnection(Connection connection) {
+		if (_physicalConnectionClass != null) {
+			try {
+				if (connection.isWrapperFor(_physicalConnectionClass))
+					return connection.unwrap(_physicalConnectionClass);
+			} catch (SQLException e) {
+				// not unwrappable
+			}
+		}
+		return connection;
+	}
+
 	@Override
 	public void releaseAnyConnection(Connection connection) throws SQLException {
 //		try {
@@ -115,6 +187,20 @@ public class DefaultConnectionProvider implements
 					+ "] found in JNDI location [" + datasource + "]");
 		}
 
+		try {
+			_registry = (TransactionSynchronizationRegistry) jndi
+					.locate(TRANSACTION_SYNCHRONIZATION_REGISTRY);
+		} catch (RuntimeException e) {
+			// not in a JTA environment : schemas of transactional
+			// connections are not tracked
+			_registry = null;
+		}
+		try {
+			_physicalConnectionClass = Class.forName(PHYSICAL_CONNECTION_CLASS);
+		} catch (ClassNotFoundException e) {
+			_physicalConnectionClass = null;
+		}
+
 	}
 
 	private Map<?, ?> getSettings(ServiceRegistryImplementor registry) {
@@ -126,6 +212,8 @@ public class DefaultConnectionProvider implements
 	@Override
 	public void stop() {
 		_datasource = null;
+		_registry = null;
+		_schemas.clear();
 	}
 
 }
\ No newline at end of file
@@ -1,23 +1,59 @@
 package mobi.chouette.schema.checker;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.EJB;
-import javax.ejb.Stateless;
+import javax.ejb.Singleton;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 
+import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.ContenerChecker;
 import mobi.chouette.dao.SchemaDAO;
 
-@Stateless(name = ContenerChecker.NAME)
+/**
+ * Validates referential names against database schemas
+ * <p>
+ * Schema list is loaded on first use, so that deployment does not depend on
+ * the database. A known name is trusted for {@link #MAX_AGE} ; this age is kept
+ * short so that a job on a dropped referential is refused. An unknown name
+ * (new referential) reloads the list, at most once every
+ * {@link #MISS_RELOAD_DELAY} so that requests on a missing referential do not
+ * query the catalog each time.
+ */
+@Singleton(name = ContenerChecker.NAME)
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Log4j
 public class SchemaManager implements ContenerChecker {
 
+	private static final long MAX_AGE = 10000;
+
+	private static final long MISS_RELOAD_DELAY = 2000;
+
 	@EJB
 	SchemaDAO schemaDAO;
 
+	private volatile Set<String> schemas = Collections.emptySet();
+
+	private volatile long loadTime = 0;
+
 	@Override
 	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
 	public boolean validateContener(String contenerName) {
-		return schemaDAO.getSchemaListing().contains(contenerName);
+		long now = System.currentTimeMillis();
+		if (loadTime != 0) {
+			boolean known = schemas.contains(contenerName);
+			long age = now - loadTime;
+			if (known && age < MAX_AGE)
+				return true;
+			if (!known && age < MISS_RELOAD_DELAY)
+				return false;
+		}
+		return load(now).contains(contenerName);
 	}
 
 	@Override
@@ -25,4 +61,16 @@ public class SchemaManager implements ContenerChecker {
 		return "iev";
 	}
 
+	/**
+	 * reload schema list unless another thread did it since request time
+	 */
+	private synchronized Set<String> load(long requestTime) {
+		if (loadTime < requestTime) {
+			schemas = Collections.unmodifiableSet(new HashSet<>(schemaDAO.getSchemaListing()));
+			loadTime = System.currentTimeMillis();
+			log.debug("found " + schemas.size() + " schemas");
+		}
+		return schemas;
+	}
+
 }
@@ -0,0 +1,21 @@
+package mobi.chouette.scheduler;
+
+import java.util.List;
+
+/**
+ * JMX view of running jobs performance metrics
+ */
+public interface JobMetricsMXBean {
+
+	/**
+	 * @return ids of running jobs
+	 */
+	List<Long> getActiveJobs();
+
+	/**
+	 * @param id
+	 *            job id
+	 * @return metrics of a running job as json, null if not running
+	 */
+	String getMetrics(long id);
+}
@@ -0,0 +1,65 @@
+package mobi.chouette.scheduler;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.extern.log4j.Log4j;
+import mobi.chouette.common.JobMetrics;
+
+/**
+ * publish running jobs performance metrics as
+ * {@value #OBJECT_NAME} mbean
+ */
+@Singleton(name = JobMetricsMonitor.BEAN_NAME)
+@Startup
+@Log4j
+public class JobMetricsMonitor implements JobMetricsMXBean {
+
+	public static final String BEAN_NAME = "JobMetricsMonitor";
+
+	public static final String OBJECT_NAME = "mobi.chouette:type=JobMetrics";
+
+	private ObjectName objectName;
+
+	@PostConstruct
+	private void init() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			objectName = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(objectName))
+				server.registerMBean(this, objectName);
+		} catch (Exception e) {
+			log.warn("cannot register " + OBJECT_NAME + " : " + e.getMessage());
+			objectName = null;
+		}
+	}
+
+	@PreDestroy
+	private void destroy() {
+		if (objectName == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (Exception e) {
+			log.warn("cannot unregister " + OBJECT_NAME + " : " + e.getMessage());
+		}
+	}
+
+	@Override
+	public List<Long> getActiveJobs() {
+		return JobMetrics.getActiveIds();
+	}
+
+	@Override
+	public String getMetrics(long id) {
+		JobMetrics metrics = JobMetrics.getActive(id);
+		return metrics == null ? null : metrics.toJson();
+	}
+}
@@ -1,5 +1,6 @@
 package mobi.chouette.scheduler;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -20,7 +21,10 @@ import javax.naming.InitialContext;
 
 import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Color;
+import mobi.chouette.common.ContenerChecker;
+import mobi.chouette.common.PropertyNames;
 import mobi.chouette.dao.iev.JobDAO;
+import mobi.chouette.model.iev.Job;
 import mobi.chouette.model.iev.Job.STATUS;
 import mobi.chouette.persistence.hibernate.ContextHolder;
 import mobi.chouette.service.JobService;
@@ -49,33 +53,77 @@ public class Scheduler {
   	@Resource(lookup = "java:comp/DefaultManagedExecutorService")
 	ManagedExecutorService executor;
 	
+	@EJB(beanName = ContenerChecker.NAME)
+	ContenerChecker checker;
+
 	Map<Long,Future<STATUS>> startedFutures = new ConcurrentHashMap<>();
 	// Map<Long,Task> startedTasks = new ConcurrentHashMap<>();
 
+	/**
+	 * started jobs until their task ends, even if canceled
+	 */
+	Map<Long,Job> runningJobs = new ConcurrentHashMap<>();
+
+	private SchedulingPolicy policy;
+
 	public int getActivejobsCount()
 	{
 		return startedFutures.size();
 	}
 
+	/**
+	 * start the waiting jobs the scheduling policy allows ; jobs of all
+	 * referentials compete for the concurrent jobs limit
+	 */
 	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
-	public void schedule(String referential) {
+	public void schedule() {
 		
-		log.info("schedule referential "+referential);
-		JobService jobService =  jobManager.getNextJob(referential);
-		if (jobService != null) {
+		log.info("schedule waiting jobs");
+		Map<Long, JobService> waiting = new HashMap<>();
+		for (JobService jobService : jobManager.scheduledJobs()) {
+			if (!runningJobs.containsKey(jobService.getId()))
+				waiting.put(jobService.getId(), jobService);
+		}
+		List<Job> jobs = new ArrayList<>(waiting.size());
+		for (JobService jobService : waiting.values()) {
+			jobs.add(jobService.getJob());
+		}
+		List<Job> selected = getPolicy().select(jobs, runningJobs.values(), System.currentTimeMillis());
+		if (selected.isEmpty())
+		{
+			log.info("nothing to schedule ");
+		}
+		for (Job job : selected) {
+			JobService jobService = waiting.get(job.getId());
 			log.info("start a new job "+jobService.getId());
 			jobManager.start(jobService);
 
 			Map<String, String> properties = new HashMap<String, String>();
 			Task task = new Task(jobService, properties, new TaskListener());
 			// startedTasks.put(jobService.getId(),  task);
+			runningJobs.put(jobService.getId(), jobService.getJob());
 			Future<STATUS> future = executor.submit(task);
 			startedFutures.put(jobService.getId(), future);
 		}
-		else
-		{
-			log.info("nothing to schedule ");
+	}
+
+	private SchedulingPolicy getPolicy() {
+		if (policy == null) {
+			String context = checker.getContext();
+			int maxJobs = Integer.parseInt(System.getProperty(context + PropertyNames.MAX_CONCURRENT_JOBS,
+					System.getProperty(context + PropertyNames.MAX_STARTED_JOBS, "5")));
+			Map<String, Integer> priorities = new HashMap<>();
+			String prefix = context + PropertyNames.JOB_PRIORITY;
+			for (String key : System.getProperties().stringPropertyNames()) {
+				if (key.startsWith(prefix))
+					priorities.put(key.substring(prefix.length()), Integer.valueOf(System.getProperty(key)));
+			}
+			long agingDelay = Long.parseLong(System.getProperty(context + PropertyNames.JOB_AGING_DELAY, "300")) * 1000L;
+			policy = new SchedulingPolicy(maxJobs, priorities, agingDelay);
+			log.info("scheduling " + maxJobs + " concurrent jobs, priorities " + priorities + ", aging delay "
+					+ agingDelay + " ms");
 		}
+		return policy;
 	}
 	
 
@@ -103,8 +151,9 @@ public class Scheduler {
 				return job.getStatus() == STATUS.SCHEDULED;
 			}
 		});
-		for (JobService jobService : created) {
-			schedule(jobService.getReferential());
+		// one pass considers jobs of all referentials
+		if (!created.isEmpty()) {
+			schedule();
 		}
 	}
 
@@ -171,6 +220,7 @@ public class Scheduler {
 			// remove task from stated map
 			// startedTasks.remove(task.getJob().getId());
 			startedFutures.remove(task.getJob().getId());
+			runningJobs.remove(task.getJob().getId());
 			// launch next task
 			executor.execute(new Runnable() {
 
@@ -178,12 +228,11 @@ public class Scheduler {
 				public void run() {
 					ContextHolder.setContext(null);
 					try {
-						String referential = task.getJob().getReferential();
 						InitialContext initialContext = new InitialContext();
 						Scheduler scheduler = (Scheduler) initialContext.lookup("java:app/mobi.chouette.service/"
 								+ BEAN_NAME);
 
-						scheduler.schedule(referential);
+						scheduler.schedule();
 					} catch (Exception e) {
 						log.error(e.getMessage(),e);
 					}
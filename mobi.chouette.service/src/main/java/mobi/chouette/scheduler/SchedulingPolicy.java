@@ -0,0 +1,192 @@
+package mobi.chouette.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.Getter;
+import mobi.chouette.model.iev.Job;
+
+/**
+ * choice of the scheduled jobs to start
+ * <p>
+ * a referential is guarded by a reader/writer lock : exporters and validators
+ * only read it and may run together, any other action (importer ...) runs
+ * alone. Conflicting jobs of a referential keep their creation order, so a
+ * waiting writer is not overtaken by later readers.
+ * <p>
+ * startable jobs share the concurrent jobs limit : jobs of tenants running
+ * less than their fair share of the limit go first, then jobs of highest
+ * priority ; the priority of a waiting job grows by one at each aging delay.
+ * The tenant of a job is its referential.
+ */
+public class SchedulingPolicy {
+
+	public static final Set<String> READER_ACTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+			"exporter", "validator")));
+
+	public static final int DEFAULT_PRIORITY = 0;
+
+	@Getter
+	private final int maxJobs;
+
+	private final Map<String, Integer> priorities;
+
+	@Getter
+	private final long agingDelay;
+
+	/**
+	 * @param maxJobs
+	 *            concurrent jobs limit
+	 * @param priorities
+	 *            priority by action, {@link #DEFAULT_PRIORITY} for missing
+	 *            ones
+	 * @param agingDelay
+	 *            waiting time in milliseconds raising priority by one, 0 for
+	 *            no aging
+	 */
+	public SchedulingPolicy(int maxJobs, Map<String, Integer> priorities, long agingDelay) {
+		if (maxJobs < 1)
+			throw new IllegalArgumentException("maxJobs must be positive");
+		this.maxJobs = maxJobs;
+		this.priorities = new HashMap<>(priorities);
+		this.agingDelay = agingDelay;
+	}
+
+	public static boolean isReader(Job job) {
+		return READER_ACTIONS.contains(job.getAction());
+	}
+
+	public int getPriority(String action) {
+		Integer priority = priorities.get(action);
+		return priority == null ? DEFAULT_PRIORITY : priority.intValue();
+	}
+
+	/**
+	 * @param job
+	 * @param now
+	 *            current time in milliseconds
+	 * @return action priority raised by waiting time
+	 */
+	public long getEffectivePriority(Job job, long now) {
+		long priority = getPriority(job.getAction());
+		if (agingDelay > 0 && job.getCreated() != null) {
+			priority += Math.max(0L, now - job.getCreated().getTime()) / agingDelay;
+		}
+		return priority;
+	}
+
+	/**
+	 * select jobs to start now
+	 *
+	 * @param waiting
+	 *            scheduled jobs
+	 * @param running
+	 *            started jobs
+	 * @param now
+	 *            current time in milliseconds
+	 * @return jobs to start, in starting order
+	 */
+	public List<Job> select(Collection<Job> waiting, Collection<Job> running, final long now) {
+		List<Job> result = new ArrayList<>();
+		int free = maxJobs - running.size();
+		if (free <= 0 || waiting.isEmpty())
+			return result;
+
+		final Map<String, Integer> runningCounts = new HashMap<>();
+		Set<String> writing = new HashSet<>();
+		for (Job job : running) {
+			increment(runningCounts, job.getReferential());
+			if (!isReader(job))
+				writing.add(job.getReferential());
+		}
+
+		// waiting jobs by referential in creation order
+		List<Job> sorted = new ArrayList<>(waiting);
+		Collections.sort(sorted, new Comparator<Job>() {
+			@Override
+			public int compare(Job o1, Job o2) {
+				return o1.getId().compareTo(o2.getId());
+			}
+		});
+		Map<String, List<Job>> queues = new LinkedHashMap<>();
+		for (Job job : sorted) {
+			List<Job> queue = queues.get(job.getReferential());
+			if (queue == null) {
+				queue = new ArrayList<>();
+				queues.put(job.getReferential(), queue);
+			}
+			queue.add(job);
+		}
+
+		// startable jobs : leading readers, or leading writer on idle
+		// referential ; a writer is never a candidate with other jobs of its
+		// referential
+		List<Job> candidates = new ArrayList<>();
+		for (Map.Entry<String, List<Job>> entry : queues.entrySet()) {
+			if (writing.contains(entry.getKey()))
+				continue;
+			List<Job> queue = entry.getValue();
+			if (!isReader(queue.get(0))) {
+				if (!runningCounts.containsKey(entry.getKey()))
+					candidates.add(queue.get(0));
+				continue;
+			}
+			for (Job job : queue) {
+				if (!isReader(job))
+					break;
+				candidates.add(job);
+			}
+		}
+		if (candidates.isEmpty())
+			return result;
+
+		Set<String> tenants = new HashSet<>(runningCounts.keySet());
+		for (Job job : candidates) {
+			tenants.add(job.getReferential());
+		}
+		final int share = Math.max(1, maxJobs / tenants.size());
+
+		Comparator<Job> comparator = new Comparator<Job>() {
+			@Override
+			public int compare(Job o1, Job o2) {
+				int count1 = count(runningCounts, o1.getReferential());
+				int count2 = count(runningCounts, o2.getReferential());
+				int result = Boolean.compare(count1 >= share, count2 >= share);
+				if (result == 0)
+					result = Long.compare(getEffectivePriority(o2, now), getEffectivePriority(o1, now));
+				if (result == 0)
+					result = Integer.compare(count1, count2);
+				if (result == 0)
+					result = o1.getId().compareTo(o2.getId());
+				return result;
+			}
+		};
+		while (free > 0 && !candidates.isEmpty()) {
+			Job best = Collections.min(candidates, comparator);
+			candidates.remove(best);
+			result.add(best);
+			increment(runningCounts, best.getReferential());
+			free--;
+		}
+		return result;
+	}
+
+	private static void increment(Map<String, Integer> counts, String key) {
+		counts.put(key, count(counts, key) + 1);
+	}
+
+	private static int count(Map<String, Integer> counts, String key) {
+		Integer count = counts.get(key);
+		return count == null ? 0 : count.intValue();
+	}
+
+}
@@ -1,5 +1,6 @@
 package mobi.chouette.scheduler;
 
+import java.nio.file.Paths;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
@@ -12,10 +13,12 @@ import lombok.ToString;
 import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Constant;
 import mobi.chouette.common.Context;
+import mobi.chouette.common.JobMetrics;
 import mobi.chouette.common.chain.Command;
 import mobi.chouette.common.chain.CommandFactory;
 import mobi.chouette.model.iev.Job;
 import mobi.chouette.model.iev.Job.STATUS;
+import mobi.chouette.persistence.hibernate.ChouetteIdentifierGenerator;
 import mobi.chouette.persistence.hibernate.ContextHolder;
 import mobi.chouette.service.JobService;
 
@@ -48,6 +51,11 @@ public class Task implements Callable<Job.STATUS>, ManagedTask, Constant {
 		STATUS result = STATUS.TERMINATED;
 		if (context.containsKey(CANCEL_ASKED)) return STATUS.CANCELED;
 		ContextHolder.setContext(job.getReferential());
+		ChouetteIdentifierGenerator.resetRoundTrips(job.getReferential());
+		JobMetrics metrics = new JobMetrics(job.getId());
+		context.put(METRICS, metrics);
+		JobMetrics.setCurrent(metrics);
+		metrics.register();
 		try {
 			InitialContext initialContext = new InitialContext();
 			context.put(INITIAL_CONTEXT, initialContext);
@@ -60,6 +68,19 @@ public class Task implements Callable<Job.STATUS>, ManagedTask, Constant {
 			log.error(e.getMessage(),e);
 			result = STATUS.ABORTED;
 		} finally {
+			Map<String, Long> roundTrips = ChouetteIdentifierGenerator.getRoundTrips(job.getReferential());
+			log.info("sequence round-trips for job " + job.getId() + " : " + roundTrips);
+			for (Long count : roundTrips.values()) {
+				metrics.add(JobMetrics.SEQUENCE_ROUND_TRIPS, count);
+			}
+			metrics.stop();
+			try {
+				metrics.save(Paths.get(job.getPathName()));
+			} catch (Exception e) {
+				log.warn("cannot save metrics for job " + job.getId() + " : " + e.getMessage());
+			}
+			metrics.unregister();
+			JobMetrics.setCurrent(null);
 			context.clear();
 			ContextHolder.setContext(null);
 		}
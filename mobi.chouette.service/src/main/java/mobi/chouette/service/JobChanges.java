@@ -0,0 +1,115 @@
+package mobi.chouette.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * job change counters by referential
+ * <p>
+ * counters are incremented once a job change is committed ; job listing long
+ * polls register a listener on them instead of querying jobs repeatedly or
+ * holding a thread. Counters are local to the server, waiting clients should
+ * query jobs again after a bounded delay to see changes made elsewhere.
+ */
+public class JobChanges {
+
+	private static final Map<String, Counter> counters = new HashMap<>();
+
+	private JobChanges() {
+	}
+
+	/**
+	 * job change listener
+	 */
+	public interface Listener {
+		/**
+		 * called once, by the thread signaling the change : implementations
+		 * should hand over any long work
+		 * 
+		 * @param value
+		 *            new counter value
+		 */
+		void changed(long value);
+	}
+
+	/**
+	 * @param referential
+	 * @return current counter value
+	 */
+	public static long current(String referential) {
+		Counter counter = counter(referential);
+		synchronized (counter) {
+			return counter.value;
+		}
+	}
+
+	/**
+	 * signal a job change and call registered listeners
+	 *
+	 * @param referential
+	 */
+	public static void changed(String referential) {
+		Counter counter = counter(referential);
+		List<Listener> listeners;
+		long value;
+		synchronized (counter) {
+			value = ++counter.value;
+			listeners = counter.listeners;
+			counter.listeners = new ArrayList<>();
+		}
+		for (Listener listener : listeners) {
+			listener.changed(value);
+		}
+	}
+
+	/**
+	 * register a listener for the next job change
+	 *
+	 * @param referential
+	 * @param seen
+	 *            counter value already known by caller
+	 * @param listener
+	 * @return false if counter has already changed since seen, listener is then
+	 *         not registered
+	 */
+	public static boolean listen(String referential, long seen, Listener listener) {
+		Counter counter = counter(referential);
+		synchronized (counter) {
+			if (counter.value != seen)
+				return false;
+			counter.listeners.add(listener);
+			return true;
+		}
+	}
+
+	/**
+	 * unregister a listener not called yet
+	 *
+	 * @param referential
+	 * @param listener
+	 */
+	public static void cancel(String referential, Listener listener) {
+		Counter counter = counter(referential);
+		synchronized (counter) {
+			counter.listeners.remove(listener);
+		}
+	}
+
+	private static Counter counter(String referential) {
+		synchronized (counters) {
+			Counter counter = counters.get(referential);
+			if (counter == null) {
+				counter = new Counter();
+				counters.put(referential, counter);
+			}
+			return counter;
+		}
+	}
+
+	private static class Counter {
+		private long value = 0;
+		private List<Listener> listeners = new ArrayList<>();
+	}
+}
@@ -3,9 +3,14 @@ package mobi.chouette.service;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.logging.Level;
@@ -26,6 +31,7 @@ import mobi.chouette.model.iev.Job;
 import mobi.chouette.model.iev.Link;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang.StringUtils;
 
 @Data
@@ -83,50 +89,66 @@ public class JobService implements JobData, ServiceConstants {
 				throw new RequestServiceException(RequestExceptionCode.MISSING_PARAMETERS, "");
 			}
 
-			StringWriter writer = new StringWriter();
-			IOUtils.copy(inputStreamsByName.get(PARAMETERS_FILE), writer, "UTF-8");
-
 			final InputValidator validator = getCommandInputValidator(getAction(), getType());
-			setParametersAsString(writer.toString());
-			writer.close();
-			Parameters parameters = new Parameters(getParametersAsString(), validator);
-
-			FileWriter fwriter = new FileWriter(filePath(PARAMETERS_FILE).toFile());
-			fwriter.write(getParametersAsString());
-			fwriter.write("\n");
-			fwriter.close();
-			addLink(MediaType.APPLICATION_JSON, Link.PARAMETERS_REL);
-
+			String parametersAsString = IOUtils.toString(inputStreamsByName.get(PARAMETERS_FILE), "UTF-8");
 
 			String inputStreamName = selectDataInputStreamName(inputStreamsByName);
 			if (inputStreamName != null) {
-				Files.copy(inputStreamsByName.get(inputStreamName), filePath(inputStreamName));
-				addLink(MediaType.APPLICATION_OCTET_STREAM, Link.DATA_REL);
-				addLink(MediaType.APPLICATION_OCTET_STREAM, Link.INPUT_REL);
-				job.setInputFilename(inputStreamName);
+				saveInputStream(inputStreamName, inputStreamsByName.get(inputStreamName), validator, 0);
 			}
+			saveParameters(parametersAsString, validator);
 
-			// Class.forName(getCommandInputValidatorName());
-			if (!validator.checkParameters(parameters.getConfiguration(), parameters.getValidation()))
-				throw new RequestServiceException(RequestExceptionCode.INVALID_PARAMETERS, "");
-			if (!validator.checkFilename(job.getInputFilename()))
-				throw new RequestServiceException(RequestExceptionCode.INVALID_FILE_FORMAT, "");
-			
-			if (inputStreamName != null) {
-				if (!validator.checkFile(job.getInputFilename(), filePath(inputStreamName), parameters.getConfiguration()))
-					throw new RequestServiceException(RequestExceptionCode.INVALID_FORMAT, "");
-			}
-			
-			JSONUtil.toJSON(filePath(ACTION_PARAMETERS_FILE), parameters.getConfiguration());
-			addLink(MediaType.APPLICATION_JSON, Link.ACTION_PARAMETERS_REL);
+		} catch (ServiceException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			Logger.getLogger(JobService.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
+			throw new RequestServiceException(RequestExceptionCode.INVALID_PARAMETERS, ex);
+		}
 
-			if (parameters.getValidation() != null) {
-				JSONUtil.toJSON(filePath(VALIDATION_PARAMETERS_FILE), parameters.getValidation());
-				addLink(MediaType.APPLICATION_JSON, Link.VALIDATION_PARAMETERS_REL);
+	}
+
+	/**
+	 * Read upload parts in request order and write data file straight to job
+	 * directory
+	 * 
+	 * @param parts
+	 *            upload parts
+	 * @param maxSize
+	 *            maximum data file size in bytes, 0 for no limit
+	 * @throws ServiceException
+	 *             : if parts not valid with job
+	 */
+	public void saveInputParts(MultipartReader parts, long maxSize) throws ServiceException {
+		try {
+			if (maxSize > 0 && parts.getLength() > maxSize + MAX_PARAMETERS_SIZE) {
+				throw new RequestServiceException(RequestExceptionCode.TOO_LARGE_FILE, "");
+			}
+			final InputValidator validator = getCommandInputValidator(getAction(), getType());
+			String parametersAsString = null;
+			for (MultipartReader.Part part = parts.next(); part != null; part = parts.next()) {
+				String filename = part.getFilename();
+				if (filename == null) {
+					throw new ServiceException(ServiceExceptionCode.INVALID_REQUEST, "missing filename in part");
+				}
+				// protect filename from invalid url chars
+				filename = removeSpecialChars(filename);
+				if (filename.equals(PARAMETERS_FILE)) {
+					if (parametersAsString != null) {
+						throw new RequestServiceException(RequestExceptionCode.DUPPLICATE_PARAMETERS, "");
+					}
+					byte[] bytes = IOUtils.toByteArray(new BoundedInputStream(part.getInputStream(), MAX_PARAMETERS_SIZE + 1));
+					if (bytes.length > MAX_PARAMETERS_SIZE) {
+						throw new RequestServiceException(RequestExceptionCode.TOO_LARGE_FILE, PARAMETERS_FILE);
+					}
+					parametersAsString = new String(bytes, "UTF-8");
+				} else if (job.getInputFilename() == null) {
+					saveInputStream(filename, part.getInputStream(), validator, maxSize);
+				}
+			}
+			if (parametersAsString == null) {
+				throw new RequestServiceException(RequestExceptionCode.MISSING_PARAMETERS, "");
 			}
-			
-			validator.initReport(this);
-			setStatus(Job.STATUS.SCHEDULED); // job is ready
+			saveParameters(parametersAsString, validator);
 
 		} catch (ServiceException ex) {
 			throw ex;
@@ -134,7 +156,104 @@ public class JobService implements JobData, ServiceConstants {
 			Logger.getLogger(JobService.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
 			throw new RequestServiceException(RequestExceptionCode.INVALID_PARAMETERS, ex);
 		}
+	}
+
+	/**
+	 * copy data file with a fixed size buffer, computing its checksum on the
+	 * fly ; file name and signature are checked before the whole file is read
+	 */
+	private void saveInputStream(String name, InputStream input, InputValidator validator, long maxSize)
+			throws IOException, ServiceException {
+		if (!validator.checkFilename(name))
+			throw new RequestServiceException(RequestExceptionCode.INVALID_FILE_FORMAT, "");
+
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long size = 0;
+		try (OutputStream output = Files.newOutputStream(filePath(name))) {
+			int count = IOUtils.read(input, buffer);
+			if (!checkSignature(name, buffer, count))
+				throw new RequestServiceException(RequestExceptionCode.INVALID_FORMAT, "");
+			while (count > 0) {
+				size += count;
+				if (maxSize > 0 && size > maxSize)
+					throw new RequestServiceException(RequestExceptionCode.TOO_LARGE_FILE, name);
+				digest.update(buffer, 0, count);
+				output.write(buffer, 0, count);
+				count = input.read(buffer);
+			}
+		}
+		String checksum = toHex(digest.digest());
+		addLink(MediaType.APPLICATION_OCTET_STREAM, Link.DATA_REL, checksum);
+		addLink(MediaType.APPLICATION_OCTET_STREAM, Link.INPUT_REL, checksum);
+		job.setInputFilename(name);
+	}
+
+	/**
+	 * save and check parameters, then check saved data file
+	 */
+	private void saveParameters(String parametersAsString, InputValidator validator) throws Exception {
+		setParametersAsString(parametersAsString);
+		Parameters parameters = new Parameters(getParametersAsString(), validator);
+
+		FileWriter fwriter = new FileWriter(filePath(PARAMETERS_FILE).toFile());
+		fwriter.write(getParametersAsString());
+		fwriter.write("\n");
+		fwriter.close();
+		addLink(MediaType.APPLICATION_JSON, Link.PARAMETERS_REL);
+
+		// Class.forName(getCommandInputValidatorName());
+		if (!validator.checkParameters(parameters.getConfiguration(), parameters.getValidation()))
+			throw new RequestServiceException(RequestExceptionCode.INVALID_PARAMETERS, "");
+		if (!validator.checkFilename(job.getInputFilename()))
+			throw new RequestServiceException(RequestExceptionCode.INVALID_FILE_FORMAT, "");
+
+		if (job.getInputFilename() != null) {
+			if (!validator.checkFile(job.getInputFilename(), filePath(job.getInputFilename()),
+					parameters.getConfiguration()))
+				throw new RequestServiceException(RequestExceptionCode.INVALID_FORMAT, "");
+		}
+
+		JSONUtil.toJSON(filePath(ACTION_PARAMETERS_FILE), parameters.getConfiguration());
+		addLink(MediaType.APPLICATION_JSON, Link.ACTION_PARAMETERS_REL);
+
+		if (parameters.getValidation() != null) {
+			JSONUtil.toJSON(filePath(VALIDATION_PARAMETERS_FILE), parameters.getValidation());
+			addLink(MediaType.APPLICATION_JSON, Link.VALIDATION_PARAMETERS_REL);
+		}
+
+		validator.initReport(this);
+		setStatus(Job.STATUS.SCHEDULED); // job is ready
+	}
+
+	/**
+	 * zip archives are rejected on their first bytes
+	 */
+	private static boolean checkSignature(String name, byte[] buffer, int count) {
+		if (name.toLowerCase().endsWith(".zip")) {
+			return count >= 2 && buffer[0] == 'P' && buffer[1] == 'K';
+		}
+		return true;
+	}
 
+	private static String removeSpecialChars(String filename) {
+		return filename.replaceAll("[^\\w-_\\.]", "_");
+	}
+
+	public static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static String toHex(byte[] bytes) {
+		StringBuilder result = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return result.toString();
 	}
 
 	private String selectDataInputStreamName(final Map<String, InputStream> inputStreamsByName) {
@@ -223,10 +342,96 @@ public class JobService implements JobData, ServiceConstants {
 	 *            : link key
 	 */
 	public void addLink(String mediaType, String rel) {
+		addLink(mediaType, rel, null);
+	}
+
+	/**
+	 * add a link or replace
+	 * 
+	 * @param mediaType
+	 *            : mime type
+	 * @param rel
+	 *            : link key
+	 * @param checksum
+	 *            : linked file checksum
+	 */
+	public void addLink(String mediaType, String rel, String checksum) {
 		linkRemove(rel);
 		Link link = new Link(mediaType, rel);
+		link.setChecksum(checksum);
 		job.getLinks().add(link);
+	}
 
+	/**
+	 * file name of link
+	 * 
+	 * @param rel
+	 *            link key
+	 * @return file name or null if link is not a job file
+	 */
+	public String getLinkFilename(String rel) {
+		if (rel.equals(Link.PARAMETERS_REL)) {
+			return PARAMETERS_FILE;
+		} else if (rel.equals(Link.ACTION_PARAMETERS_REL)) {
+			return ACTION_PARAMETERS_FILE;
+		} else if (rel.equals(Link.VALIDATION_PARAMETERS_REL)) {
+			return VALIDATION_PARAMETERS_FILE;
+		} else if (rel.equals(Link.DATA_REL)) {
+			return getAction().equals("exporter") ? getOutputFilename() : getInputFilename();
+		} else if (rel.equals(Link.INPUT_REL)) {
+			return getInputFilename();
+		} else if (rel.equals(Link.OUTPUT_REL)) {
+			return getOutputFilename();
+		} else if (rel.equals(Link.VALIDATION_REL)) {
+			return VALIDATION_FILE;
+		} else if (rel.equals(Link.REPORT_REL)) {
+			return REPORT_FILE;
+		}
+		return null;
+	}
+
+	/**
+	 * checksum of job file
+	 * 
+	 * @param filename
+	 * @return checksum saved with file link or null
+	 */
+	public String getChecksum(String filename) {
+		for (Link link : job.getLinks()) {
+			if (link.getChecksum() != null && filename.equals(getLinkFilename(link.getRel()))) {
+				return link.getChecksum();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * compute missing checksums of linked files, once job files are complete
+	 * 
+	 * @throws IOException
+	 */
+	public void addChecksums() throws IOException {
+		for (Link link : job.getLinks()) {
+			String filename = getLinkFilename(link.getRel());
+			if (link.getChecksum() != null || filename == null)
+				continue;
+			java.nio.file.Path path = filePath(filename);
+			if (Files.exists(path))
+				link.setChecksum(checksum(path));
+		}
+	}
+
+	private static String checksum(java.nio.file.Path path) throws IOException {
+		MessageDigest digest = newDigest();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			while (channel.read(buffer) != -1) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+		return toHex(digest.digest());
 	}
 
 	/**
@@ -9,7 +9,6 @@ import java.nio.file.LinkOption;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
@@ -26,11 +25,15 @@ import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 import javax.ws.rs.core.MediaType;
 
 import lombok.extern.log4j.Log4j;
 import mobi.chouette.common.Constant;
 import mobi.chouette.common.ContenerChecker;
+import mobi.chouette.common.JobMetrics;
 import mobi.chouette.common.PropertyNames;
 import mobi.chouette.dao.iev.JobDAO;
 import mobi.chouette.dao.iev.StatDAO;
@@ -45,9 +48,6 @@ import mobi.chouette.scheduler.Scheduler;
 
 import org.apache.commons.io.FileUtils;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
-
 @Stateless(name = JobServiceManager.BEAN_NAME)
 @Startup
 @Log4j
@@ -73,10 +73,15 @@ public class JobServiceManager {
 	@Resource(lookup = "java:comp/DefaultManagedExecutorService")
 	ManagedExecutorService executor;
 
+	@Resource
+	TransactionSynchronizationRegistry registry;
+
 	private static Set<Object> referentials = Collections.synchronizedSet(new HashSet<>());
 
 	private static int maxJobs = 5;
 
+	private static long maxUploadSize = 0;
+
 	private static String lock = "lock";
 
 	private String rootDirectory;
@@ -90,6 +95,13 @@ public class JobServiceManager {
 			return;
 		System.setProperty(context + PropertyNames.MAX_STARTED_JOBS, "5");
 		System.setProperty(context + PropertyNames.MAX_COPY_BY_JOB, "5");
+		System.setProperty(context + PropertyNames.MAX_UPLOAD_SIZE, "0");
+		System.setProperty(context + PropertyNames.MAX_CONCURRENT_JOBS, "5");
+		System.setProperty(context + PropertyNames.JOB_PRIORITY + "importer", "0");
+		System.setProperty(context + PropertyNames.JOB_PRIORITY + "exporter", "1");
+		System.setProperty(context + PropertyNames.JOB_PRIORITY + "validator", "1");
+		System.setProperty(context + PropertyNames.JOB_AGING_DELAY, "300");
+		System.setProperty(context + PropertyNames.BULK_MERGE, "true");
 		try {
 			// set default properties
 			System.setProperty(checker.getContext() + PropertyNames.ROOT_DIRECTORY, System.getProperty("user.home"));
@@ -120,6 +132,7 @@ public class JobServiceManager {
 			log.error("cannot process properties", e);
 		}
 		maxJobs = Integer.parseInt(System.getProperty(checker.getContext() + PropertyNames.MAX_STARTED_JOBS));
+		maxUploadSize = Long.parseLong(System.getProperty(checker.getContext() + PropertyNames.MAX_UPLOAD_SIZE));
 		rootDirectory = System.getProperty(checker.getContext() + PropertyNames.ROOT_DIRECTORY);
 
 		// migrate jobs
@@ -130,18 +143,73 @@ public class JobServiceManager {
 	public JobService create(String referential, String action, String type, Map<String, InputStream> inputStreamsByName)
 			throws ServiceException {
 		// Valider les parametres
-		validateReferential(referential);
+		checkReferential(referential);
 		synchronized (lock) {
 			if (scheduler.getActivejobsCount() >= maxJobs) {
 				throw new RequestServiceException(RequestExceptionCode.TOO_MANY_ACTIVE_JOBS, "" + maxJobs
 						+ " active jobs");
 			}
 			JobService jobService = jobServiceManager.createJob(referential, action, type, inputStreamsByName);
-			scheduler.schedule(referential);
+			scheduler.schedule();
 			return jobService;
 		}
 	}
 
+	/**
+	 * create a job from upload parts read as they arrive
+	 * <p>
+	 * the job is saved first to get its directory, parts are written there
+	 * outside of any transaction, then the job is scheduled
+	 */
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public JobService create(String referential, String action, String type, MultipartReader parts)
+			throws ServiceException {
+		// Valider les parametres
+		checkReferential(referential);
+		checkActiveJobs();
+		JobService jobService = jobServiceManager.initJob(referential, action, type);
+		try {
+			jobService.saveInputParts(parts, maxUploadSize);
+		} catch (ServiceException ex) {
+			log.info("fail to create job ");
+			jobServiceManager.deleteBadCreatedJob(jobService);
+			throw ex;
+		}
+		synchronized (lock) {
+			try {
+				checkActiveJobs();
+			} catch (ServiceException ex) {
+				jobServiceManager.deleteBadCreatedJob(jobService);
+				throw ex;
+			}
+			jobService = jobServiceManager.scheduleJob(jobService);
+			scheduler.schedule();
+			return jobService;
+		}
+	}
+
+	/**
+	 * schedule again an import which stopped on failure ; it restarts from its
+	 * checkpoint, skipping the steps and lines already committed
+	 */
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public JobService resume(String referential, Long id) throws ServiceException {
+		checkReferential(referential);
+		synchronized (lock) {
+			checkActiveJobs();
+			JobService jobService = jobServiceManager.rescheduleJob(referential, id);
+			scheduler.schedule();
+			return jobService;
+		}
+	}
+
+	private void checkActiveJobs() throws RequestServiceException {
+		if (scheduler.getActivejobsCount() >= maxJobs) {
+			throw new RequestServiceException(RequestExceptionCode.TOO_MANY_ACTIVE_JOBS, "" + maxJobs
+					+ " active jobs");
+		}
+	}
+
 	public List<Stat> getMontlyStats() throws ServiceException {
 		try {
 			return statDAO.getCurrentYearStats();
@@ -178,6 +246,7 @@ public class JobServiceManager {
 
 			jobDAO.update(jobService.getJob());
 			// jobDAO.detach(jobService.getJob());
+			notifyChange(referential);
 
 			return jobService;
 
@@ -192,7 +261,82 @@ public class JobServiceManager {
 		}
 	}
 
-	private void deleteBadCreatedJob(JobService jobService) {
+	/**
+	 * save a new job to get its directory
+	 */
+	public JobService initJob(String referential, String action, String type) throws ServiceException {
+		JobService jobService = new JobService(rootDirectory, referential, action, type);
+		jobDAO.create(jobService.getJob());
+		log.info("job " + jobService.getJob().getId() + " created");
+		try {
+			// mkdir
+			if (Files.exists(jobService.getPath())) {
+				// réutilisation anormale d'un id de job (réinitialisation de la
+				// séquence à l'extérieur de l'appli?)
+				FileUtils.deleteDirectory(jobService.getPath().toFile());
+			}
+			Files.createDirectories(jobService.getPath());
+		} catch (IOException ex) {
+			log.info("fail to create job " + ex.getMessage() + " " + ex.getClass().getName());
+			deleteBadCreatedJob(jobService);
+			throw new ServiceException(ServiceExceptionCode.INTERNAL_ERROR, ex);
+		}
+		return jobService;
+	}
+
+	/**
+	 * save job with its inputs
+	 */
+	public JobService scheduleJob(JobService jobService) {
+		// set cancel link
+		jobService.addLink(MediaType.APPLICATION_JSON, Link.CANCEL_REL);
+		jobService.setJob(jobDAO.update(jobService.getJob()));
+		notifyChange(jobService.getReferential());
+		return jobService;
+	}
+
+	/**
+	 * set back a stopped import to scheduled, keeping its inputs and
+	 * checkpoint
+	 */
+	public JobService rescheduleJob(String referential, Long id) throws ServiceException {
+		JobService jobService = getJobService(referential, id);
+		if (jobService.getStatus().ordinal() <= STATUS.STARTED.ordinal()) {
+			throw new RequestServiceException(RequestExceptionCode.SCHEDULED_JOB, "referential = " + referential
+					+ " ,id = " + id);
+		}
+		// only imports stopped before their end can resume
+		if (!jobService.getAction().equals(Constant.IMPORTER)
+				|| !(jobService.getStatus().equals(STATUS.ABORTED) || jobService.getStatus().equals(STATUS.CANCELED))
+				|| !Files.exists(Paths.get(jobService.getPathName(), Constant.CHECKPOINT_FILE))) {
+			throw new RequestServiceException(RequestExceptionCode.UNRESUMABLE_JOB, "referential = " + referential
+					+ " ,id = " + id);
+		}
+		log.info("resume job " + id);
+
+		// reports of previous run are replaced
+		for (String file : new String[] { Constant.REPORT_FILE, Constant.VALIDATION_FILE, Constant.METRICS_FILE }) {
+			try {
+				Files.deleteIfExists(Paths.get(jobService.getPathName(), file));
+			} catch (IOException e) {
+				log.warn("fail to delete " + file + " of job " + id, e);
+			}
+		}
+		jobService.removeLink(Link.DELETE_REL);
+		jobService.removeLink(Link.REPORT_REL);
+		jobService.removeLink(Link.VALIDATION_REL);
+		jobService.addLink(MediaType.APPLICATION_JSON, Link.CANCEL_REL);
+		jobService.setStatus(STATUS.SCHEDULED);
+		jobService.setUpdated(new Date());
+		jobService.setJob(jobDAO.update(jobService.getJob()));
+		notifyChange(referential);
+		return jobService;
+	}
+
+	/**
+	 * remove a job which failed on creation and its directory
+	 */
+	public void deleteBadCreatedJob(JobService jobService) {
 		if (jobService == null || jobService.getJob().getId() == null)
 			return;
 		try {
@@ -202,8 +346,8 @@ public class JobServiceManager {
 		} catch (IOException ex1) {
 			log.error("fail to delete directory " + jobService.getPath(), ex1);
 		}
-		Job job = jobService.getJob();
-		if (job != null && job.getId() != null) {
+		Job job = jobDAO.find(jobService.getJob().getId());
+		if (job != null) {
 			log.info("deleting bad job " + job.getId());
 			jobDAO.delete(job);
 		}
@@ -226,8 +370,18 @@ public class JobServiceManager {
 		if (referentials.contains(referential))
 			return;
 
+		checkReferential(referential);
+	}
+
+	/**
+	 * validate referential without local cache, used before creating jobs so
+	 * that dropped referentials are refused
+	 */
+	private void checkReferential(final String referential) throws ServiceException {
+
 		boolean result = checker.validateContener(referential);
 		if (!result) {
+			referentials.remove(referential);
 			throw new RequestServiceException(RequestExceptionCode.UNKNOWN_REFERENTIAL, "referential");
 		}
 
@@ -245,18 +399,41 @@ public class JobServiceManager {
 	}
 
 	/**
-	 * find next waiting job on referential <br/>
-	 * return null if a job is STARTED or if no job is SCHEDULED
+	 * performance metrics of a job : live ones while running, saved ones after
 	 * 
-	 * @param referential
-	 * @return
+	 * @return metrics as json
 	 */
-	public JobService getNextJob(String referential) {
-		Job job = jobDAO.getNextJob(referential);
-		if (job == null) {
-			return null;
+	public String metrics(String referential, Long id) throws ServiceException {
+		validateReferential(referential);
+		JobService jobService = getJobService(referential, id);
+		JobMetrics metrics = JobMetrics.getActive(id);
+		if (metrics != null) {
+			return metrics.toJson();
+		}
+		java.nio.file.Path path = Paths.get(jobService.getPathName(), Constant.METRICS_FILE);
+		if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+			throw new RequestServiceException(RequestExceptionCode.UNKNOWN_FILE, "referential = " + referential
+					+ " ,id = " + id);
+		}
+		try {
+			return new String(Files.readAllBytes(path), "UTF-8");
+		} catch (IOException e) {
+			throw new ServiceException(ServiceExceptionCode.INTERNAL_ERROR, e);
+		}
+	}
+
+	/**
+	 * find waiting jobs of all referentials
+	 * 
+	 * @return SCHEDULED jobs
+	 */
+	public List<JobService> scheduledJobs() {
+		List<Job> jobs = jobDAO.findByStatus(Job.STATUS.SCHEDULED);
+		List<JobService> jobServices = new ArrayList<>(jobs.size());
+		for (Job job : jobs) {
+			jobServices.add(new JobService(rootDirectory, job));
 		}
-		return new JobService(rootDirectory, job);
+		return jobServices;
 	}
 
 	public void start(JobService jobService) {
@@ -265,6 +442,7 @@ public class JobServiceManager {
 		jobService.setStarted(new Date());
 		jobService.addLink(MediaType.APPLICATION_JSON, Link.REPORT_REL);
 		jobDAO.update(jobService.getJob());
+		notifyChange(jobService.getReferential());
 	}
 
 	public JobService cancel(String referential, Long id) throws ServiceException {
@@ -285,6 +463,7 @@ public class JobServiceManager {
 
 			jobService.setUpdated(new Date());
 			jobDAO.update(jobService.getJob());
+			notifyChange(referential);
 
 		}
 		return jobService;
@@ -303,6 +482,7 @@ public class JobServiceManager {
 			log.error("fail to delete directory " + jobService.getPath(), e);
 		}
 		jobDAO.delete(jobService.getJob());
+		notifyChange(referential);
 	}
 
 	public void drop(String referential) throws ServiceException {
@@ -317,6 +497,7 @@ public class JobServiceManager {
 
 		// remove all jobs
 		jobDAO.deleteAll(referential);
+		notifyChange(referential);
 
 		// clean directories
 		try {
@@ -354,8 +535,10 @@ public class JobServiceManager {
 			if (Files.exists(Paths.get(jobService.getPathName(), Constant.VALIDATION_FILE)))
 				jobService.addLink(MediaType.APPLICATION_JSON, Link.VALIDATION_REL);
 		}
+		addChecksums(jobService);
 		jobService.setUpdated(new Date());
 		jobDAO.update(jobService.getJob());
+		notifyChange(jobService.getReferential());
 		
 		// update statistics
 		// Ajout des statistiques d'import, export ou validation en base de données
@@ -390,9 +573,22 @@ public class JobServiceManager {
 				jobService.addLink(MediaType.APPLICATION_JSON, Link.VALIDATION_REL);
 		}
 
+		addChecksums(jobService);
 		jobService.setUpdated(new Date());
 		jobDAO.update(jobService.getJob());
+		notifyChange(jobService.getReferential());
+
+	}
 
+	/**
+	 * job files are complete : save their checksums as download entity tags
+	 */
+	private void addChecksums(JobService jobService) {
+		try {
+			jobService.addChecksums();
+		} catch (IOException e) {
+			log.error("fail to compute checksums for job " + jobService.getId(), e);
+		}
 	}
 
 	public List<JobService> findAll() {
@@ -453,30 +649,49 @@ public class JobServiceManager {
 	public List<JobService> jobs(String referential, String action[], final Long version, Job.STATUS[] status) throws ServiceException {
 		validateReferential(referential);
 
-		List<Job> jobs = null;
-		if (action == null) {
-			jobs = jobDAO.findByReferential(referential,status);
-		} else {
-			jobs = jobDAO.findByReferentialAndAction(referential, action,status);
+		// filter on update time if given, otherwise don't return deleted jobs
+		List<Job> jobs = jobDAO.findByReferentialAndVersion(referential, action, status, version);
+
+		List<JobService> jobServices = new ArrayList<>(jobs.size());
+		for (Job job : jobs) {
+			jobServices.add(new JobService(rootDirectory, job));
 		}
+		return jobServices;
+	}
 
-		Collection<Job> filtered = Collections2.filter(jobs, new Predicate<Job>() {
+	/**
+	 * jobs version of referential, changed by any job creation, update or
+	 * deletion
+	 * 
+	 * @param referential
+	 * @return version token
+	 * @throws ServiceException
+	 */
+	public String jobsVersion(String referential) throws ServiceException {
+		validateReferential(referential);
+		return jobDAO.getVersion(referential);
+	}
+
+	/**
+	 * wake up jobs listing long polls once the current transaction is
+	 * committed
+	 */
+	private void notifyChange(final String referential) {
+		if (registry == null || registry.getTransactionKey() == null) {
+			JobChanges.changed(referential);
+			return;
+		}
+		registry.registerInterposedSynchronization(new Synchronization() {
 			@Override
-			public boolean apply(Job job) {
-				// filter on update time if given, otherwise don't return
-				// deleted jobs
-				boolean versionZeroCondition = (version == 0) && job.getStatus().ordinal() < STATUS.DELETED.ordinal();
-				boolean versionNonZeroCondition = (version > 0) && version < job.getUpdated().getTime();
+			public void beforeCompletion() {
+			}
 
-				return versionZeroCondition || versionNonZeroCondition;
+			@Override
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED)
+					JobChanges.changed(referential);
 			}
 		});
-
-		List<JobService> jobServices = new ArrayList<>(filtered.size());
-		for (Job job : filtered) {
-			jobServices.add(new JobService(rootDirectory, job));
-		}
-		return jobServices;
 	}
 
 	// administration operation
@@ -0,0 +1,257 @@
+package mobi.chouette.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * streaming multipart/form-data reader
+ * <p>
+ * parts are read in request order straight from the request body with a fixed
+ * size buffer ; the content of a part must be consumed before the next part is
+ * read, unread content is skipped.
+ */
+public class MultipartReader {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int MAX_HEADER_SIZE = 16 * 1024;
+
+	private final InputStream input;
+
+	/**
+	 * CRLF--boundary
+	 */
+	private final byte[] delimiter;
+
+	private final byte[] buffer;
+
+	private int head = 0;
+
+	private int tail = 0;
+
+	private boolean eof = false;
+
+	private boolean finished = false;
+
+	private PartInputStream current;
+
+	/**
+	 * declared body length, -1 if unknown
+	 */
+	@Getter
+	private final long length;
+
+	public MultipartReader(InputStream input, String boundary, long length) {
+		this.input = input;
+		this.length = length;
+		delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+		buffer = new byte[BUFFER_SIZE + delimiter.length];
+		// first delimiter is not preceded by CRLF
+		buffer[tail++] = '\r';
+		buffer[tail++] = '\n';
+	}
+
+	/**
+	 * @param contentType
+	 *            multipart content type
+	 * @return boundary or null
+	 */
+	public static String getBoundary(String contentType) {
+		if (contentType == null)
+			return null;
+		for (String token : contentType.split(";")) {
+			token = token.trim();
+			if (token.toLowerCase().startsWith("boundary=")) {
+				String boundary = token.substring("boundary=".length()).trim();
+				if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\""))
+					boundary = boundary.substring(1, boundary.length() - 1);
+				return boundary.isEmpty() ? null : boundary;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * skip remaining content of current part and read next part headers
+	 *
+	 * @return next part or null after last part
+	 * @throws IOException
+	 *             on read error or malformed body
+	 */
+	public Part next() throws IOException {
+		if (finished)
+			return null;
+		// skip preamble or remaining content
+		PartInputStream previous = current == null ? new PartInputStream() : current;
+		byte[] skip = new byte[BUFFER_SIZE];
+		while (previous.read(skip, 0, skip.length) != -1)
+			;
+		current = null;
+
+		String line = readLine();
+		if (line.startsWith("--")) {
+			finished = true;
+			return null;
+		}
+		if (!line.trim().isEmpty())
+			throw new IOException("malformed multipart delimiter");
+
+		Map<String, String> headers = new HashMap<>();
+		int size = 0;
+		for (line = readLine(); !line.isEmpty(); line = readLine()) {
+			size += line.length();
+			if (size > MAX_HEADER_SIZE)
+				throw new IOException("multipart headers too large");
+			int index = line.indexOf(':');
+			if (index > 0)
+				headers.put(line.substring(0, index).trim().toLowerCase(), line.substring(index + 1).trim());
+		}
+		current = new PartInputStream();
+		return new Part(headers, current);
+	}
+
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		while (true) {
+			if (!fill(1))
+				throw new EOFException("unexpected end of multipart body");
+			byte b = buffer[head++];
+			if (b == '\n')
+				break;
+			if (line.size() > MAX_HEADER_SIZE)
+				throw new IOException("multipart header line too large");
+			line.write(b);
+		}
+		byte[] bytes = line.toByteArray();
+		int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * read input until count bytes are buffered
+	 *
+	 * @return false when input ends before
+	 */
+	private boolean fill(int count) throws IOException {
+		if (tail - head >= count)
+			return true;
+		if (head > 0) {
+			System.arraycopy(buffer, head, buffer, 0, tail - head);
+			tail -= head;
+			head = 0;
+		}
+		while (tail < count && !eof) {
+			int read = input.read(buffer, tail, buffer.length - tail);
+			if (read == -1)
+				eof = true;
+			else
+				tail += read;
+		}
+		return tail >= count;
+	}
+
+	private int indexOfDelimiter() {
+		byte first = delimiter[0];
+		int last = tail - delimiter.length;
+		for (int i = head; i <= last; i++) {
+			if (buffer[i] != first)
+				continue;
+			int j = 1;
+			while (j < delimiter.length && buffer[i + j] == delimiter[j])
+				j++;
+			if (j == delimiter.length)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * multipart part, content is available until next part is read
+	 */
+	public static class Part {
+
+		private final Map<String, String> headers;
+
+		@Getter
+		private final InputStream inputStream;
+
+		private Part(Map<String, String> headers, InputStream inputStream) {
+			this.headers = headers;
+			this.inputStream = inputStream;
+		}
+
+		/**
+		 * @param name
+		 *            header name, case insensitive
+		 * @return header value or null
+		 */
+		public String getHeader(String name) {
+			return headers.get(name.toLowerCase());
+		}
+
+		/**
+		 * @return filename of content disposition header or null
+		 */
+		public String getFilename() {
+			String header = getHeader("Content-Disposition");
+			if (header != null) {
+				for (String token : header.split(";")) {
+					if (token.trim().startsWith("filename")) {
+						return token.substring(token.indexOf('=') + 1).trim().replace("\"", "");
+					}
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * part content, ends before next delimiter
+	 */
+	private class PartInputStream extends InputStream {
+
+		private boolean ended = false;
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int read = read(b, 0, 1);
+			return read == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (ended)
+				return -1;
+			if (len == 0)
+				return 0;
+			fill(delimiter.length);
+			int index = indexOfDelimiter();
+			int available;
+			if (index >= 0) {
+				available = index - head;
+			} else {
+				if (eof)
+					throw new EOFException("unexpected end of multipart body");
+				// keep bytes which may start a delimiter
+				available = tail - head - delimiter.length + 1;
+			}
+			if (available == 0) {
+				head += delimiter.length;
+				ended = true;
+				return -1;
+			}
+			int count = Math.min(len, available);
+			System.arraycopy(buffer, head, b, off, count);
+			head += count;
+			return count;
+		}
+	}
+}
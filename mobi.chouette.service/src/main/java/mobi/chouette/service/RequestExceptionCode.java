@@ -24,6 +24,8 @@ public enum RequestExceptionCode {
     UNREADABLE_PARAMETERS,
     UNKNOWN_JOB, 
     SCHEDULED_JOB,
+    UNRESUMABLE_JOB,
     REFERENTIAL_BUSY,
-    TOO_MANY_ACTIVE_JOBS
+    TOO_MANY_ACTIVE_JOBS,
+    TOO_LARGE_FILE
 }
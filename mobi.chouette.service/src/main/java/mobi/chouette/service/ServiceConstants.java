@@ -30,5 +30,10 @@ public interface ServiceConstants extends Constant{
 	public static final String PUT_METHOD = "put";
 	public static final String DELETE_METHOD = "delete";
 
+	// uploads
+	public static final int BUFFER_SIZE = 64 * 1024;
+	public static final int MAX_PARAMETERS_SIZE = 1024 * 1024;
+	public static final String CHECKSUM_ALGORITHM = "SHA-256";
+
 
 }
@@ -0,0 +1,271 @@
+package mobi.chouette.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mobi.chouette.model.iev.Job;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SchedulingPolicyTest {
+
+	private static final long AGING = 60000L;
+
+	private long clock = 1000000L;
+
+	@Test(groups = { "scheduling" }, description = "readers share a referential, writers run alone")
+	public void readersAndWriters() {
+		SchedulingPolicy policy = createPolicy(10);
+		Job export = createJob(1, "ref1", "exporter");
+		Job validation = createJob(2, "ref1", "validator");
+		Job importer = createJob(3, "ref1", "importer");
+		Job otherImport = createJob(4, "ref2", "importer");
+		Job otherExport = createJob(5, "ref2", "exporter");
+
+		List<Job> selected = policy.select(Arrays.asList(importer, validation, export, otherExport, otherImport),
+				Collections.<Job> emptyList(), clock);
+		Assert.assertEquals(ids(selected), set(1, 2, 4), "readers together, first writer alone");
+
+		// writer waits for running readers
+		selected = policy.select(Arrays.asList(importer, otherExport), Arrays.asList(export, validation, otherImport),
+				clock);
+		Assert.assertTrue(selected.isEmpty(), "writer must wait readers, reader must wait writer");
+
+		selected = policy.select(Arrays.asList(importer, otherExport), Collections.<Job> emptyList(), clock);
+		Assert.assertEquals(ids(selected), set(3, 5));
+	}
+
+	@Test(groups = { "scheduling" }, description = "waiting writer is not overtaken by later readers")
+	public void writerOrder() {
+		SchedulingPolicy policy = createPolicy(10);
+		Job running = createJob(1, "ref1", "exporter");
+		Job importer = createJob(2, "ref1", "importer");
+		Job export = createJob(3, "ref1", "exporter");
+
+		Assert.assertTrue(policy.select(Arrays.asList(export, importer), Arrays.asList(running), clock).isEmpty());
+		Assert.assertEquals(ids(policy.select(Arrays.asList(export, importer), Collections.<Job> emptyList(), clock)),
+				set(2));
+	}
+
+	@Test(groups = { "scheduling" }, description = "concurrent jobs limit")
+	public void limit() {
+		SchedulingPolicy policy = createPolicy(3);
+		List<Job> waiting = new ArrayList<>();
+		for (int i = 1; i <= 10; i++) {
+			waiting.add(createJob(i, "ref" + i, "importer"));
+		}
+		Assert.assertEquals(ids(policy.select(waiting, Collections.<Job> emptyList(), clock)), set(1, 2, 3));
+		Assert.assertEquals(ids(policy.select(waiting, waiting.subList(0, 2), clock)), set(3));
+		Assert.assertTrue(policy.select(waiting, waiting.subList(0, 3), clock).isEmpty());
+	}
+
+	@Test(groups = { "scheduling" }, description = "action priorities and aging")
+	public void priorities() {
+		SchedulingPolicy policy = createPolicy(1);
+		Job importer = createJob(1, "ref1", "importer");
+		Job export = createJob(2, "ref2", "exporter");
+		Assert.assertEquals(ids(policy.select(Arrays.asList(importer, export), Collections.<Job> emptyList(), clock)),
+				set(2), "exporter has higher priority");
+
+		// exports keep coming : import ages until it wins
+		long start = clock;
+		int id = 3;
+		while (true) {
+			clock += AGING / 4;
+			Job next = createJob(id++, "ref" + id, "exporter");
+			List<Job> selected = policy.select(Arrays.asList(importer, next), Collections.<Job> emptyList(), clock);
+			Assert.assertEquals(selected.size(), 1);
+			if (selected.get(0) == importer)
+				break;
+		}
+		Assert.assertTrue(clock - start >= AGING, "import must wait for aging");
+		Assert.assertTrue(clock - start <= 2 * AGING, "import must not starve");
+	}
+
+	@Test(groups = { "scheduling" }, description = "tenants under fair share go first")
+	public void fairShare() {
+		Map<String, Integer> priorities = new HashMap<>();
+		priorities.put("exporter", 5);
+		SchedulingPolicy policy = new SchedulingPolicy(4, priorities, AGING);
+		List<Job> running = Arrays.asList(createJob(1, "busy", "exporter"), createJob(2, "busy", "exporter"),
+				createJob(3, "busy", "exporter"));
+		Job busy = createJob(4, "busy", "exporter");
+		Job quiet = createJob(5, "quiet", "validator");
+		Assert.assertEquals(ids(policy.select(Arrays.asList(busy, quiet), running, clock)), set(5),
+				"tenant over its share must give way");
+
+		// idle capacity is not left unused
+		Assert.assertEquals(ids(policy.select(Arrays.asList(busy), running, clock)), set(4));
+	}
+
+	@Test(groups = { "scheduling" }, description = "1000 jobs on 20 referentials with a local executor")
+	public void stress() throws Exception {
+		final int maxJobs = 6;
+		final SchedulingPolicy policy = createPolicy(maxJobs);
+		LocalScheduler scheduler = new LocalScheduler(policy);
+		Random random = new Random(1234);
+		String[] actions = { "importer", "exporter", "exporter", "validator" };
+		for (int i = 1; i <= 1000; i++) {
+			scheduler.waiting.add(createJob(i, "ref" + random.nextInt(20), actions[random.nextInt(actions.length)]));
+		}
+		scheduler.run(1000);
+
+		Assert.assertTrue(scheduler.errors.isEmpty(), scheduler.errors.toString());
+		Assert.assertEquals(scheduler.done.size(), 1000, "all jobs must run");
+		Assert.assertTrue(scheduler.maxRunning <= maxJobs, "concurrent jobs limit exceeded");
+		Assert.assertTrue(scheduler.maxRunning > 1, "jobs must run concurrently");
+	}
+
+	/**
+	 * same loop as {@link Scheduler} : select on each job end, checking locks
+	 * when tasks start
+	 */
+	private static class LocalScheduler {
+
+		private final SchedulingPolicy policy;
+
+		private final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+		private final List<Job> waiting = new ArrayList<>();
+
+		private final List<Job> running = new ArrayList<>();
+
+		private final Set<Long> done = new HashSet<>();
+
+		private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+
+		private final Random random = new Random(5678);
+
+		private int maxRunning = 0;
+
+		private CountDownLatch latch;
+
+		private final Map<String, AtomicInteger> readers = new HashMap<>();
+
+		private final Map<String, AtomicInteger> writers = new HashMap<>();
+
+		private LocalScheduler(SchedulingPolicy policy) {
+			this.policy = policy;
+		}
+
+		void run(int count) throws Exception {
+			latch = new CountDownLatch(count);
+			for (Job job : waiting) {
+				readers.put(job.getReferential(), new AtomicInteger());
+				writers.put(job.getReferential(), new AtomicInteger());
+			}
+			try {
+				schedule();
+				Assert.assertTrue(latch.await(60, TimeUnit.SECONDS), "jobs must end");
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+
+		synchronized void schedule() {
+			for (final Job job : policy.select(waiting, running, System.currentTimeMillis())) {
+				checkOrder(job);
+				waiting.remove(job);
+				running.add(job);
+				maxRunning = Math.max(maxRunning, running.size());
+				final long duration = random.nextInt(3);
+				executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							execute(job, duration);
+						} catch (Throwable e) {
+							errors.add(job + " : " + e);
+						} finally {
+							end(job);
+						}
+					}
+				});
+			}
+		}
+
+		synchronized void end(Job job) {
+			running.remove(job);
+			done.add(job.getId());
+			latch.countDown();
+			schedule();
+		}
+
+		/**
+		 * conflicting jobs created before must have ended
+		 */
+		private void checkOrder(Job job) {
+			for (Job other : waiting) {
+				if (other.getId() < job.getId() && other.getReferential().equals(job.getReferential())
+						&& !(SchedulingPolicy.isReader(job) && SchedulingPolicy.isReader(other)))
+					errors.add(job + " started before " + other);
+			}
+		}
+
+		private void execute(Job job, long duration) throws InterruptedException {
+			AtomicInteger readCount = readers.get(job.getReferential());
+			AtomicInteger writeCount = writers.get(job.getReferential());
+			if (SchedulingPolicy.isReader(job)) {
+				readCount.incrementAndGet();
+				if (writeCount.get() != 0)
+					errors.add(job + " reads while writing");
+				Thread.sleep(duration);
+				readCount.decrementAndGet();
+			} else {
+				if (writeCount.incrementAndGet() != 1 || readCount.get() != 0)
+					errors.add(job + " writes while used");
+				Thread.sleep(duration);
+				writeCount.decrementAndGet();
+			}
+		}
+	}
+
+	private SchedulingPolicy createPolicy(int maxJobs) {
+		Map<String, Integer> priorities = new HashMap<>();
+		priorities.put("importer", 0);
+		priorities.put("exporter", 1);
+		priorities.put("validator", 1);
+		return new SchedulingPolicy(maxJobs, priorities, AGING);
+	}
+
+	private Job createJob(long id, String referential, String action) {
+		Job job = new Job(referential, action, "dummy");
+		job.setId(id);
+		job.setCreated(new Date(clock));
+		job.setStatus(Job.STATUS.SCHEDULED);
+		return job;
+	}
+
+	private static Set<Long> ids(Collection<Job> jobs) {
+		Set<Long> result = new HashSet<>();
+		for (Job job : jobs) {
+			result.add(job.getId());
+		}
+		return result;
+	}
+
+	private static Set<Long> set(long... ids) {
+		Set<Long> result = new HashSet<>();
+		for (long id : ids) {
+			result.add(id);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,61 @@
+package mobi.chouette.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class JobChangesTest {
+
+	@Test(groups = { "JobChanges" }, description = "listener is called on change")
+	public void listenChange() throws Exception {
+		String referential = "changes_test";
+		long seen = JobChanges.current(referential);
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicLong received = new AtomicLong();
+		boolean registered = JobChanges.listen(referential, seen, new JobChanges.Listener() {
+			@Override
+			public void changed(long value) {
+				received.set(value);
+				latch.countDown();
+			}
+		});
+		Assert.assertTrue(registered, "listener registered");
+
+		JobChanges.changed("other_test");
+		Assert.assertEquals(latch.getCount(), 1, "other referential change ignored");
+
+		JobChanges.changed(referential);
+		Assert.assertTrue(latch.await(5, TimeUnit.SECONDS), "listener called");
+		Assert.assertEquals(received.get(), seen + 1);
+
+		// listeners are called once
+		JobChanges.changed(referential);
+		Assert.assertEquals(received.get(), seen + 1);
+	}
+
+	@Test(groups = { "JobChanges" }, description = "change already seen or listener canceled")
+	public void listenSeenOrCanceled() throws Exception {
+		String referential = "seen_test";
+		long seen = JobChanges.current(referential);
+		final AtomicLong received = new AtomicLong(-1);
+		JobChanges.Listener listener = new JobChanges.Listener() {
+			@Override
+			public void changed(long value) {
+				received.set(value);
+			}
+		};
+
+		// change not seen by caller : not registered
+		JobChanges.changed(referential);
+		Assert.assertFalse(JobChanges.listen(referential, seen, listener));
+
+		// canceled listener not called
+		Assert.assertTrue(JobChanges.listen(referential, seen + 1, listener));
+		JobChanges.cancel(referential, listener);
+		JobChanges.changed(referential);
+		Assert.assertEquals(received.get(), -1);
+	}
+}
@@ -0,0 +1,157 @@
+package mobi.chouette.service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ejb.EJB;
+
+import mobi.chouette.dao.iev.JobDAO;
+import mobi.chouette.model.iev.Job;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.testng.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.importer.ZipImporter;
+import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class JobDAOTest extends Arquillian {
+
+	private static final String REFERENTIAL = "job_dao_test";
+
+	private static final Job.STATUS[] ALL = new Job.STATUS[0];
+
+	@EJB
+	JobDAO jobDAO;
+
+	@Deployment
+	public static EnterpriseArchive createDeployment() {
+
+		EnterpriseArchive result;
+		File[] files = Maven.resolver().loadPomFromFile("pom.xml").resolve("mobi.chouette:mobi.chouette.service")
+				.withTransitivity().asFile();
+		List<File> jars = new ArrayList<>();
+		List<JavaArchive> modules = new ArrayList<>();
+		for (File file : files) {
+			if (file.getName().startsWith("mobi.chouette.exchange")
+					|| file.getName().startsWith("mobi.chouette.service")
+					|| file.getName().startsWith("mobi.chouette.dao")) {
+				String name = file.getName().split("\\-")[0] + ".jar";
+				JavaArchive archive = ShrinkWrap.create(ZipImporter.class, name).importFrom(file).as(JavaArchive.class);
+				modules.add(archive);
+			} else {
+				jars.add(file);
+			}
+		}
+		File[] filesDao = Maven.resolver().loadPomFromFile("pom.xml").resolve("mobi.chouette:mobi.chouette.dao")
+				.withTransitivity().asFile();
+		if (filesDao.length == 0) {
+			throw new NullPointerException("no dao");
+		}
+		for (File file : filesDao) {
+			if (file.getName().startsWith("mobi.chouette.dao")) {
+				String name = file.getName().split("\\-")[0] + ".jar";
+
+				JavaArchive archive = ShrinkWrap.create(ZipImporter.class, name).importFrom(file).as(JavaArchive.class);
+				modules.add(archive);
+				if (!modules.contains(archive))
+					modules.add(archive);
+			} else {
+				if (!jars.contains(file))
+					jars.add(file);
+			}
+		}
+		final WebArchive testWar = ShrinkWrap.create(WebArchive.class, "test.war")
+				.addAsResource("test-persistence.xml", "META-INF/persistence.xml")
+				.addAsWebInfResource("postgres-ds.xml").addClass(DummyChecker.class)
+				.addClass(JobDAOTest.class);
+
+		result = ShrinkWrap.create(EnterpriseArchive.class, "test.ear").addAsLibraries(jars.toArray(new File[0]))
+				.addAsModules(modules.toArray(new JavaArchive[0])).addAsModule(testWar)
+				.addAsResource(EmptyAsset.INSTANCE, "beans.xml");
+		return result;
+	}
+
+	private Job createJob(Job.STATUS status) {
+		Job job = new Job(REFERENTIAL, "importer", "neptune");
+		job.setStatus(status);
+		jobDAO.create(job);
+		return job;
+	}
+
+	private List<Long> ids(List<Job> jobs) {
+		List<Long> result = new ArrayList<>();
+		for (Job job : jobs) {
+			result.add(job.getId());
+		}
+		return result;
+	}
+
+	@AfterMethod(alwaysRun = true)
+	public void clean() {
+		// created jobs are not seen by deleteAll
+		for (Job job : jobDAO.findByReferential(REFERENTIAL, new Job.STATUS[] { Job.STATUS.CREATED })) {
+			job.setStatus(Job.STATUS.DELETED);
+			jobDAO.update(job);
+		}
+		jobDAO.deleteAll(REFERENTIAL);
+	}
+
+	@Test(groups = { "JobDAO" }, description = "version 0 lists all but created and deleted jobs")
+	public void versionZero() {
+		Job scheduled = createJob(Job.STATUS.SCHEDULED);
+		Job terminated = createJob(Job.STATUS.TERMINATED);
+		createJob(Job.STATUS.DELETED);
+		createJob(Job.STATUS.CREATED);
+
+		List<Long> ids = ids(jobDAO.findByReferentialAndVersion(REFERENTIAL, null, ALL, 0));
+		Assert.assertEquals(ids.size(), 2, "listed jobs");
+		Assert.assertTrue(ids.contains(scheduled.getId()));
+		Assert.assertTrue(ids.contains(terminated.getId()));
+	}
+
+	@Test(groups = { "JobDAO" }, description = "positive version lists jobs updated after it, deleted ones included")
+	public void versionPositive() throws Exception {
+		createJob(Job.STATUS.TERMINATED);
+		Job old = createJob(Job.STATUS.SCHEDULED);
+		Thread.sleep(10);
+		long version = System.currentTimeMillis();
+		Thread.sleep(10);
+		Job recent = createJob(Job.STATUS.SCHEDULED);
+		old.setStatus(Job.STATUS.DELETED);
+		jobDAO.update(old);
+
+		List<Long> ids = ids(jobDAO.findByReferentialAndVersion(REFERENTIAL, null, ALL, version));
+		Assert.assertEquals(ids.size(), 2, "listed jobs");
+		Assert.assertTrue(ids.contains(recent.getId()));
+		Assert.assertTrue(ids.contains(old.getId()), "deleted job is listed as a change");
+	}
+
+	@Test(groups = { "JobDAO" }, description = "negative version lists no job")
+	public void versionNegative() {
+		createJob(Job.STATUS.SCHEDULED);
+
+		Assert.assertTrue(jobDAO.findByReferentialAndVersion(REFERENTIAL, null, ALL, -1).isEmpty());
+	}
+
+	@Test(groups = { "JobDAO" }, description = "version token follows job changes")
+	public void versionToken() throws Exception {
+		String empty = jobDAO.getVersion(REFERENTIAL);
+		Job job = createJob(Job.STATUS.SCHEDULED);
+		String created = jobDAO.getVersion(REFERENTIAL);
+		Assert.assertNotEquals(created, empty, "token changed by creation");
+		Assert.assertEquals(jobDAO.getVersion(REFERENTIAL), created, "token stable without change");
+
+		Thread.sleep(10);
+		job.setStatus(Job.STATUS.STARTED);
+		jobDAO.update(job);
+		Assert.assertNotEquals(jobDAO.getVersion(REFERENTIAL), created, "token changed by status change");
+	}
+}
@@ -0,0 +1,59 @@
+package mobi.chouette.service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import mobi.chouette.common.Constant;
+import mobi.chouette.model.iev.Job;
+import mobi.chouette.model.iev.Link;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class JobServiceTest implements Constant {
+
+	private static final String ROOT = "target/jobs";
+
+	@Test(groups = { "JobService" }, description = "checksums of job files")
+	public void addChecksums() throws Exception {
+		FileUtils.deleteQuietly(Paths.get(ROOT).toFile());
+		Job job = new Job("checksum_test", "exporter", "gtfs");
+		job.setId(1L);
+		job.setOutputFilename("export.zip");
+		JobService jobService = new JobService(ROOT, job);
+		jobService.addLink("application/octet-stream", Link.OUTPUT_REL);
+		jobService.addLink("application/octet-stream", Link.DATA_REL);
+		jobService.addLink("application/json", Link.REPORT_REL);
+		jobService.addLink("application/json", Link.VALIDATION_REL);
+		jobService.addLink("application/json", Link.CANCEL_REL);
+
+		Path directory = Files.createDirectories(jobService.getPath());
+		byte[] output = new byte[200 * 1024 + 17];
+		new Random(1).nextBytes(output);
+		Files.write(directory.resolve("export.zip"), output);
+		byte[] report = "{\"action_report\":{}}".getBytes(StandardCharsets.UTF_8);
+		Files.write(directory.resolve(REPORT_FILE), report);
+
+		jobService.addChecksums();
+
+		Assert.assertEquals(jobService.getChecksum("export.zip"), sha256(output));
+		Assert.assertEquals(jobService.getChecksum(REPORT_FILE), sha256(report));
+		Assert.assertNull(jobService.getChecksum(VALIDATION_FILE), "missing file");
+		Assert.assertNull(jobService.getChecksum(PARAMETERS_FILE), "no link");
+		for (Link link : job.getLinks()) {
+			if (link.getRel().equals(Link.DATA_REL))
+				Assert.assertEquals(link.getChecksum(), sha256(output), "exporter data is output");
+			if (link.getRel().equals(Link.CANCEL_REL))
+				Assert.assertNull(link.getChecksum());
+		}
+	}
+
+	private String sha256(byte[] bytes) throws Exception {
+		return JobService.toHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+	}
+}
@@ -0,0 +1,106 @@
+package mobi.chouette.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MultipartReaderTest {
+
+	private static final String BOUNDARY = "----chouette4tTg5ZHmJbvY";
+
+	@Test(groups = { "MultipartReader" }, description = "boundary parameter")
+	public void getBoundary() {
+		Assert.assertEquals(MultipartReader.getBoundary("multipart/form-data; boundary=" + BOUNDARY), BOUNDARY);
+		Assert.assertEquals(MultipartReader.getBoundary("multipart/form-data; charset=utf-8; Boundary=\"a b\""), "a b");
+		Assert.assertNull(MultipartReader.getBoundary("multipart/form-data"));
+		Assert.assertNull(MultipartReader.getBoundary(null));
+	}
+
+	@Test(groups = { "MultipartReader" }, description = "parts read in order")
+	public void readParts() throws Exception {
+		byte[] data = new byte[300 * 1024];
+		new Random(1).nextBytes(data);
+		// delimiter prefixes inside data
+		byte[] prefix = ("\r\n--" + BOUNDARY.substring(0, 10)).getBytes(StandardCharsets.ISO_8859_1);
+		System.arraycopy(prefix, 0, data, 1000, prefix.length);
+		System.arraycopy(prefix, 0, data, data.length - prefix.length, prefix.length);
+		byte[] parameters = "{\"parameters\":{}}".getBytes(StandardCharsets.UTF_8);
+		byte[] body = body(new String[] { "parameters.json", "data.zip" }, new byte[][] { parameters, data });
+
+		for (int chunk : new int[] { 1, 7, 4096, body.length }) {
+			MultipartReader reader = new MultipartReader(new ChunkedInputStream(body, chunk), BOUNDARY, body.length);
+			MultipartReader.Part part = reader.next();
+			Assert.assertEquals(part.getFilename(), "parameters.json");
+			Assert.assertEquals(part.getHeader("content-type"), "application/octet-stream");
+			Assert.assertEquals(IOUtils.toByteArray(part.getInputStream()), parameters);
+			part = reader.next();
+			Assert.assertEquals(part.getFilename(), "data.zip");
+			Assert.assertEquals(IOUtils.toByteArray(part.getInputStream()), data, "chunk " + chunk);
+			Assert.assertEquals(part.getInputStream().read(), -1);
+			Assert.assertNull(reader.next());
+			Assert.assertNull(reader.next());
+		}
+	}
+
+	@Test(groups = { "MultipartReader" }, description = "unread content is skipped")
+	public void skipParts() throws Exception {
+		byte[] body = body(new String[] { "a.txt", "b.txt", "c.txt" },
+				new byte[][] { "first".getBytes(), new byte[0], "third".getBytes() });
+		MultipartReader reader = new MultipartReader(new ByteArrayInputStream(body), BOUNDARY, -1);
+		Assert.assertEquals(reader.next().getFilename(), "a.txt");
+		MultipartReader.Part part = reader.next();
+		Assert.assertEquals(part.getFilename(), "b.txt");
+		Assert.assertEquals(IOUtils.toByteArray(part.getInputStream()).length, 0);
+		part = reader.next();
+		Assert.assertEquals(part.getFilename(), "c.txt");
+		Assert.assertEquals(IOUtils.toString(part.getInputStream()), "third");
+		Assert.assertNull(reader.next());
+	}
+
+	@Test(groups = { "MultipartReader" }, description = "truncated body", expectedExceptions = EOFException.class)
+	public void truncated() throws Exception {
+		byte[] body = body(new String[] { "data.zip" }, new byte[][] { new byte[10000] });
+		MultipartReader reader = new MultipartReader(new ByteArrayInputStream(body, 0, body.length - 100), BOUNDARY,
+				-1);
+		IOUtils.toByteArray(reader.next().getInputStream());
+	}
+
+	private byte[] body(String[] names, byte[][] contents) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write("preamble\r\n".getBytes(StandardCharsets.ISO_8859_1));
+		for (int i = 0; i < names.length; i++) {
+			body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + names[i]
+					+ "\"\r\nContent-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+			body.write(contents[i]);
+			body.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+		}
+		body.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+		return body.toByteArray();
+	}
+
+	/**
+	 * network like stream returning small chunks
+	 */
+	private static class ChunkedInputStream extends FilterInputStream {
+
+		private final int chunk;
+
+		private ChunkedInputStream(byte[] bytes, int chunk) {
+			super(new ByteArrayInputStream(bytes));
+			this.chunk = chunk;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return super.read(b, off, Math.min(len, chunk));
+		}
+	}
+}
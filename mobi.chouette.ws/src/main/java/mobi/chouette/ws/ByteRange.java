@@ -0,0 +1,131 @@
+package mobi.chouette.ws;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response.Status;
+
+import lombok.Getter;
+
+/**
+ * part of a file to send for a Range request
+ * <p>
+ * only single byte ranges are supported : multiple or invalid ranges, and
+ * ranges whose If-Range validator does not match, send the whole file.
+ */
+public class ByteRange {
+
+	public static final String RANGE = "Range";
+	public static final String IF_RANGE = "If-Range";
+	public static final String ACCEPT_RANGES = "Accept-Ranges";
+	public static final String CONTENT_RANGE = "Content-Range";
+
+	private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+	/**
+	 * OK, PARTIAL_CONTENT or REQUESTED_RANGE_NOT_SATISFIABLE
+	 */
+	@Getter
+	private final Status status;
+
+	/**
+	 * first byte
+	 */
+	@Getter
+	private final long offset;
+
+	/**
+	 * byte count
+	 */
+	@Getter
+	private final long length;
+
+	/**
+	 * Content-Range header value, null for whole file
+	 */
+	@Getter
+	private final String contentRange;
+
+	private ByteRange(Status status, long offset, long length, String contentRange) {
+		this.status = status;
+		this.offset = offset;
+		this.length = length;
+		this.contentRange = contentRange;
+	}
+
+	/**
+	 * @param range
+	 *            Range header, may be null
+	 * @param ifRange
+	 *            If-Range header, may be null
+	 * @param tag
+	 *            file entity tag, may be null
+	 * @param lastModified
+	 *            file modification time, without milliseconds
+	 * @param size
+	 *            file size
+	 * @return range to send
+	 */
+	public static ByteRange of(String range, String ifRange, EntityTag tag, Date lastModified, long size) {
+		ByteRange whole = new ByteRange(Status.OK, 0, size, null);
+		if (range == null || !range.startsWith("bytes=") || range.indexOf(',') >= 0)
+			return whole;
+		if (ifRange != null && !matches(ifRange, tag, lastModified))
+			return whole;
+		String value = range.substring("bytes=".length()).trim();
+		int index = value.indexOf('-');
+		if (index < 0)
+			return whole;
+		long first;
+		long last;
+		try {
+			if (index == 0) {
+				// suffix range
+				long suffix = Long.parseLong(value.substring(1));
+				if (suffix <= 0)
+					return unsatisfiable(size);
+				first = Math.max(0, size - suffix);
+				last = size - 1;
+			} else {
+				first = Long.parseLong(value.substring(0, index));
+				last = index == value.length() - 1 ? size - 1 : Math.min(Long.parseLong(value.substring(index + 1)),
+						size - 1);
+				if (last < first && first < size)
+					return whole;
+			}
+		} catch (NumberFormatException e) {
+			return whole;
+		}
+		if (first >= size)
+			return unsatisfiable(size);
+		return new ByteRange(Status.PARTIAL_CONTENT, first, last - first + 1, "bytes " + first + "-" + last + "/"
+				+ size);
+	}
+
+	private static ByteRange unsatisfiable(long size) {
+		return new ByteRange(Status.REQUESTED_RANGE_NOT_SATISFIABLE, 0, 0, "bytes */" + size);
+	}
+
+	/**
+	 * If-Range validator check : strong entity tag or exact modification date
+	 */
+	static boolean matches(String ifRange, EntityTag tag, Date lastModified) {
+		ifRange = ifRange.trim();
+		if (ifRange.startsWith("W/"))
+			return false;
+		if (ifRange.startsWith("\"")) {
+			return tag != null && !tag.isWeak() && ifRange.equals("\"" + tag.getValue() + "\"");
+		}
+		try {
+			SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+			format.setTimeZone(TimeZone.getTimeZone("GMT"));
+			return format.parse(ifRange).getTime() == lastModified.getTime();
+		} catch (ParseException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package mobi.chouette.ws;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * file range sent with {@link FileChannel#transferTo}, letting the system copy
+ * file bytes when the container output allows it
+ */
+public class FileRangeOutput implements StreamingOutput {
+
+	private final Path path;
+
+	private final long offset;
+
+	private final long length;
+
+	/**
+	 * @param path
+	 *            file
+	 * @param offset
+	 *            first byte
+	 * @param length
+	 *            byte count
+	 */
+	public FileRangeOutput(Path path, long offset, long length) {
+		this.path = path;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public void write(OutputStream output) throws IOException, WebApplicationException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			WritableByteChannel target = Channels.newChannel(output);
+			long position = offset;
+			long remaining = length;
+			while (remaining > 0) {
+				long count = channel.transferTo(position, remaining, target);
+				if (count <= 0) {
+					if (position >= channel.size())
+						throw new EOFException(path + " truncated");
+					continue;
+				}
+				position += count;
+				remaining -= count;
+			}
+		}
+		output.flush();
+	}
+}
@@ -1,6 +1,7 @@
 package mobi.chouette.ws;
 
 
+import java.net.URI;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -80,6 +81,10 @@ public class JobInfo implements ServiceConstants {
 	private AbstractParameter actionParameters;
 
 	public JobInfo(JobService job, boolean addLink, UriInfo uriInfo) throws ServiceException {
+		this(job, addLink, uriInfo.getBaseUri());
+	}
+
+	public JobInfo(JobService job, boolean addLink, URI baseUri) throws ServiceException {
 		id = job.getId();
 		referential = job.getReferential();
 		action = job.getAction();
@@ -96,7 +101,7 @@ public class JobInfo implements ServiceConstants {
 			for (Link link : job.getJob().getLinks()) {
 				link.setHref(getRelHref(link.getRel(), job));
 				link.setMethod(getMethod(link.getRel(), job));
-				linkInfos.add(new LinkInfo(link, uriInfo));
+				linkInfos.add(new LinkInfo(link, baseUri));
 			}
 		}
 	}
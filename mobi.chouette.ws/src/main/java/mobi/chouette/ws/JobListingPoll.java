@@ -0,0 +1,200 @@
+package mobi.chouette.ws;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+
+import lombok.extern.log4j.Log4j;
+import mobi.chouette.model.iev.Job;
+import mobi.chouette.service.JobChanges;
+import mobi.chouette.service.JobService;
+import mobi.chouette.service.JobServiceManager;
+import mobi.chouette.service.ServiceException;
+
+/**
+ * jobs listing request, answered with the listing when jobs differ from the
+ * If-None-Match entity tag, with 304 Not Modified otherwise
+ * <p>
+ * a suspended request waits for a job change without holding a thread : it is
+ * checked again on {@link JobChanges} notification, and every
+ * {@link #CHECK_PERIOD} seconds to see changes made by other servers, until its
+ * deadline.
+ */
+@Log4j
+public class JobListingPoll implements JobChanges.Listener, TimeoutHandler, Runnable {
+
+	// version check period in seconds
+	static final int CHECK_PERIOD = 5;
+
+	private final JobServiceManager jobServiceManager;
+	private final String referential;
+	private final Long version;
+	private final String[] action;
+	private final Job.STATUS[] status;
+	private final String ifNoneMatch;
+	private final URI baseUri;
+	private final long deadline;
+
+	private AsyncResponse asyncResponse;
+	private Executor executor;
+
+	/**
+	 * @param jobServiceManager
+	 * @param referential
+	 * @param version
+	 * @param action
+	 * @param status
+	 * @param ifNoneMatch
+	 *            If-None-Match header, may be null
+	 * @param wait
+	 *            maximum wait for a change in seconds
+	 * @param baseUri
+	 *            base of job links
+	 */
+	public JobListingPoll(JobServiceManager jobServiceManager, String referential, Long version, String[] action,
+			Job.STATUS[] status, String ifNoneMatch, int wait, URI baseUri) {
+		this.jobServiceManager = jobServiceManager;
+		this.referential = referential;
+		this.version = version;
+		this.action = action;
+		this.status = status;
+		this.ifNoneMatch = ifNoneMatch;
+		this.baseUri = baseUri;
+		this.deadline = System.currentTimeMillis() + Math.max(wait, 0) * 1000L;
+	}
+
+	/**
+	 * entity tag of a jobs listing : jobs version and filter parameters
+	 */
+	public static EntityTag tag(String jobsVersion, Long version, String[] action, Job.STATUS[] status) {
+		String filter = version + "-" + Integer.toHexString(Arrays.hashCode(action) * 31 + Arrays.hashCode(status));
+		return new EntityTag(jobsVersion + "-" + filter);
+	}
+
+	/**
+	 * If-None-Match check
+	 *
+	 * @return true when one of the header entity tags matches tag
+	 */
+	public static boolean matches(String ifNoneMatch, EntityTag tag) {
+		if (ifNoneMatch == null)
+			return false;
+		for (String value : ifNoneMatch.split(",")) {
+			value = value.trim();
+			if (value.equals("*"))
+				return true;
+			// weak comparison
+			if (value.startsWith("W/"))
+				value = value.substring(2);
+			if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\""))
+				value = value.substring(1, value.length() - 1);
+			if (value.equals(tag.getValue()))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * check jobs once
+	 *
+	 * @return listing when jobs changed, 304 when unchanged and deadline is
+	 *         reached, null otherwise
+	 * @throws ServiceException
+	 */
+	public Response check() throws ServiceException {
+		EntityTag tag = tag(jobServiceManager.jobsVersion(referential), version, action, status);
+		if (!matches(ifNoneMatch, tag)) {
+			return listing(tag);
+		}
+		if (System.currentTimeMillis() >= deadline) {
+			ResponseBuilder builder = Response.notModified(tag);
+			builder.header(RestService.api_version_key, RestService.api_version);
+			return builder.build();
+		}
+		return null;
+	}
+
+	private Response listing(EntityTag tag) throws ServiceException {
+		List<JobInfo> result = new ArrayList<>();
+		List<JobService> jobServices = jobServiceManager.jobs(referential, action, version, status);
+		for (JobService jobService : jobServices) {
+			result.add(new JobInfo(jobService, true, baseUri));
+		}
+		jobServices.clear();
+
+		// cache control
+		ResponseBuilder builder = Response.ok(result);
+		builder.header(RestService.api_version_key, RestService.api_version);
+		builder.tag(tag);
+		CacheControl cc = new CacheControl();
+		cc.setNoCache(true);
+		builder.cacheControl(cc);
+		return builder.build();
+	}
+
+	/**
+	 * suspend request until jobs change or deadline
+	 *
+	 * @param asyncResponse
+	 * @param executor
+	 *            checks triggered by changes and timeouts are run by it
+	 */
+	public void suspend(AsyncResponse asyncResponse, Executor executor) {
+		this.asyncResponse = asyncResponse;
+		this.executor = executor;
+		asyncResponse.setTimeoutHandler(this);
+		run();
+	}
+
+	@Override
+	public synchronized void run() {
+		if (asyncResponse.isDone())
+			return;
+		try {
+			while (true) {
+				long seen = JobChanges.current(referential);
+				Response response = check();
+				if (response != null) {
+					JobChanges.cancel(referential, this);
+					asyncResponse.resume(response);
+					return;
+				}
+				// a change between check and listen is checked again
+				if (JobChanges.listen(referential, seen, this))
+					break;
+			}
+			long remaining = Math.max(deadline - System.currentTimeMillis(), 1);
+			asyncResponse.setTimeout(Math.min(remaining, CHECK_PERIOD * 1000L), TimeUnit.MILLISECONDS);
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+			JobChanges.cancel(referential, this);
+			asyncResponse.resume(new WebApplicationException("INTERNAL_ERROR", Status.INTERNAL_SERVER_ERROR));
+		}
+	}
+
+	@Override
+	public void changed(long value) {
+		// called by committing thread
+		executor.execute(this);
+	}
+
+	@Override
+	public void handleTimeout(AsyncResponse asyncResponse) {
+		// keep request suspended until checked
+		JobChanges.cancel(referential, this);
+		asyncResponse.setTimeout(CHECK_PERIOD, TimeUnit.SECONDS);
+		executor.execute(this);
+	}
+}
@@ -1,5 +1,7 @@
 package mobi.chouette.ws;
 
+import java.net.URI;
+
 import javax.ws.rs.core.UriInfo;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -29,9 +31,14 @@ public class LinkInfo {
 	private String method;
 	
 	public LinkInfo(Link link,UriInfo uriInfo)
+	{
+		this(link, uriInfo.getBaseUri());
+	}
+
+	public LinkInfo(Link link,URI baseUri)
 	{
 		rel = link.getRel();
-		href = uriInfo.getBaseUri()+link.getHref();
+		href = baseUri+link.getHref();
 		type = link.getType();
 		method = link.getMethod();
 	}
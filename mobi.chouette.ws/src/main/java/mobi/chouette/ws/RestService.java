@@ -1,34 +1,35 @@
 package mobi.chouette.ws;
 
-import java.io.File;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Date;
 
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
@@ -42,6 +43,7 @@ import mobi.chouette.model.iev.Job.STATUS;
 import mobi.chouette.model.iev.Link;
 import mobi.chouette.service.JobService;
 import mobi.chouette.service.JobServiceManager;
+import mobi.chouette.service.MultipartReader;
 import mobi.chouette.service.RequestExceptionCode;
 import mobi.chouette.service.RequestServiceException;
 import mobi.chouette.service.ServiceException;
@@ -49,8 +51,6 @@ import mobi.chouette.service.ServiceExceptionCode;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
-import org.jboss.resteasy.plugins.providers.multipart.InputPart;
-import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
 
 @Path("/referentials")
 @Log4j
@@ -59,41 +59,50 @@ public class RestService implements Constant {
 
 	// voir swagger
 
-	private static String api_version_key = "X-ChouetteIEV-Media-Type";
-	private static String api_version = "iev.v1.0; format=json";
+	static String api_version_key = "X-ChouetteIEV-Media-Type";
+	static String api_version = "iev.v1.0; format=json";
+
+	// jobs listing long poll : maximum wait in seconds
+	private static final int MAX_WAIT = 60;
 
 	@Inject
 	JobServiceManager jobServiceManager;
+
+	@Resource(lookup = "java:comp/DefaultManagedExecutorService")
+	ManagedExecutorService executor;
 	
 	@Context
 	UriInfo uriInfo;
 
+	@Context
+	Request request;
+
 	// post asynchronous job
+	// parts are read from the request body as they arrive
 	@POST
 	@Path("/{ref}/{action}{type:(/[^/]+?)?}")
 	@Consumes(MediaType.MULTIPART_FORM_DATA)
 	@Produces({ MediaType.APPLICATION_JSON })
 	public Response upload(@PathParam("ref") String referential, @PathParam("action") String action,
-			@PathParam("type") String type, MultipartFormDataInput input) {
-		Map<String, InputStream> inputStreamByName = null;
+			@PathParam("type") String type, @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType,
+			@DefaultValue("-1") @HeaderParam(HttpHeaders.CONTENT_LENGTH) long contentLength, InputStream input) {
 		try {
 			log.info(Color.CYAN + "Call upload referential = " + referential + ", action = " + action
 					+ (type == null ? "" : ", type = " + type) + Color.NORMAL);
-			
-			
-			
+
 			// Convertir les parametres fournis
 			type = parseType(type);
-			inputStreamByName = readParts(input);
-			
+			String boundary = MultipartReader.getBoundary(contentType);
+			if (boundary == null) {
+				throw new ServiceException(ServiceExceptionCode.INVALID_REQUEST, "missing multipart boundary");
+			}
+			MultipartReader parts = new MultipartReader(input, boundary, contentLength);
 
-					
-					
 			// Relayer le service au JobServiceManager
 			ResponseBuilder builder = Response.accepted();
 			{
 				
-				JobService jobService = jobServiceManager.create(referential, action, type, inputStreamByName);
+				JobService jobService = jobServiceManager.create(referential, action, type, parts);
 
 				// Produire la vue
 				builder.location(URI.create(MessageFormat.format("{0}/{1}/scheduled_jobs/{2,number,#}", ROOT_PATH,
@@ -113,22 +122,15 @@ public class RestService implements Constant {
 			log.error(e.getMessage(), e);
 			throw new WebApplicationException("INTERNAL_ERROR", Status.INTERNAL_SERVER_ERROR);
 		} finally {
-			if (inputStreamByName != null) {
-				for (InputStream is : inputStreamByName.values()) {
-					try {
-						is.close();
-					} catch (Exception e) {
-						Logger.getLogger(RestService.class.getName()).log(Level.SEVERE, e.getMessage(), e);
-					}
-				}
+			try {
+				input.close();
+			} catch (Exception e) {
+				log.error(e.getMessage(), e);
 			}
 			log.info(Color.CYAN + "upload returns" + Color.NORMAL);
 		}
 	}
-	
-	
-	
-			
+
 	private WebApplicationException toWebApplicationException(ServiceException exception) {
 		return new WebApplicationException(exception.getMessage(), toWebApplicationCode(exception.getExceptionCode()));
 	}
@@ -166,11 +168,14 @@ public class RestService implements Constant {
 		case UNKNOWN_JOB:
 			return Status.NOT_FOUND;
 		case SCHEDULED_JOB:
+		case UNRESUMABLE_JOB:
 			return Status.METHOD_NOT_ALLOWED;
 		case REFERENTIAL_BUSY:
 			return Status.CONFLICT;
 		case TOO_MANY_ACTIVE_JOBS:
 			return Status.SERVICE_UNAVAILABLE;
+		case TOO_LARGE_FILE:
+			return Status.REQUEST_ENTITY_TOO_LARGE;
 		}
 		return Status.BAD_REQUEST;
 	}
@@ -182,38 +187,19 @@ public class RestService implements Constant {
 		return type;
 	}
 
-	private Map<String, InputStream> readParts(MultipartFormDataInput input) throws Exception {
-
-		Map<String, InputStream> result = new HashMap<String, InputStream>();
-
-		for (InputPart part : input.getParts()) {
-			MultivaluedMap<String, String> headers = part.getHeaders();
-			String header = headers.getFirst(HttpHeaders.CONTENT_DISPOSITION);
-			String filename = getFilename(header);
-
-			if (filename == null) {
-				throw new ServiceException(ServiceExceptionCode.INVALID_REQUEST, "missing filename in part");
-			}
-			// protect filename from invalid url chars
-			filename = removeSpecialChars(filename);
-			result.put(filename, part.getBody(InputStream.class, null));
-		}
-		return result;
-	}
-
-	private String removeSpecialChars(String filename) {
-		return filename.replaceAll("[^\\w-_\\.]", "_");
-	}
-
 	// download attached file
+	// job files are immutable once job is terminated : they are served with
+	// their checksum as entity tag, conditional requests and single byte
+	// ranges are supported
 	@GET
 	@Path("/{ref}/data/{id}/{filepath: .*}")
 	@Produces({ MediaType.APPLICATION_OCTET_STREAM, MediaType.APPLICATION_JSON })
 	public Response download(@PathParam("ref") String referential, @PathParam("id") Long id,
-			@PathParam("filepath") String filename) {
+			@PathParam("filepath") String filename, @HeaderParam(ByteRange.RANGE) String range,
+			@HeaderParam(ByteRange.IF_RANGE) String ifRange) {
 		try {
 			log.info(Color.CYAN + "Call download referential = " + referential + ", id = " + id + ", filename = "
-					+ filename + Color.NORMAL);
+					+ filename + (range == null ? "" : ", range = " + range) + Color.NORMAL);
 
 			// Retrieve JobService
 			ResponseBuilder builder = null;
@@ -222,10 +208,34 @@ public class RestService implements Constant {
 				JobService jobService = jobServiceManager.download(referential, id, filename);
 
 				// Build response
-				File file = new File(Paths.get(jobService.getPathName(), filename).toString());
-				builder = Response.ok(file);
-				builder.header(HttpHeaders.CONTENT_DISPOSITION,
-						MessageFormat.format("attachment; filename=\"{0}\"", filename));
+				java.nio.file.Path path = Paths.get(jobService.getPathName(), filename);
+				long size = Files.size(path);
+				// http dates have no milliseconds
+				Date lastModified = new Date(Files.getLastModifiedTime(path).toMillis() / 1000 * 1000);
+				String checksum = jobService.getChecksum(filename);
+				EntityTag tag = checksum == null ? null : new EntityTag(checksum);
+
+				// conditional request
+				builder = tag == null ? request.evaluatePreconditions(lastModified) : request.evaluatePreconditions(
+						lastModified, tag);
+				if (builder == null) {
+					ByteRange bytes = ByteRange.of(range, ifRange, tag, lastModified, size);
+					if (bytes.getStatus() == Status.REQUESTED_RANGE_NOT_SATISFIABLE) {
+						builder = Response.status(bytes.getStatus());
+					} else {
+						builder = Response.status(bytes.getStatus()).entity(
+								new FileRangeOutput(path, bytes.getOffset(), bytes.getLength()));
+						builder.header(HttpHeaders.CONTENT_LENGTH, bytes.getLength());
+					}
+					if (bytes.getContentRange() != null)
+						builder.header(ByteRange.CONTENT_RANGE, bytes.getContentRange());
+					builder.header(HttpHeaders.CONTENT_DISPOSITION,
+							MessageFormat.format("attachment; filename=\"{0}\"", filename));
+				}
+				builder.header(ByteRange.ACCEPT_RANGES, "bytes");
+				builder.lastModified(lastModified);
+				if (tag != null)
+					builder.tag(tag);
 
 				if (FilenameUtils.getExtension(filename).toLowerCase().equals("json")) {
 					type = MediaType.APPLICATION_JSON_TYPE;
@@ -258,45 +268,40 @@ public class RestService implements Constant {
 	}
 
 	// jobs listing
+	// with If-None-Match, answer 304 when jobs are unchanged ; with wait > 0,
+	// the request is suspended up to wait seconds for a change before
+	// answering 304
 	@GET
 	@Path("/{ref}/jobs")
 	@Produces({ MediaType.APPLICATION_JSON })
-	public Response jobs(@PathParam("ref") String referential,
-			@DefaultValue("0") @QueryParam("version") final Long version, @QueryParam("action") final String[] action, @QueryParam("status") final Job.STATUS[] status) {
+	public void jobs(@PathParam("ref") String referential,
+			@DefaultValue("0") @QueryParam("version") final Long version, @QueryParam("action") final String[] action, @QueryParam("status") final Job.STATUS[] status,
+			@DefaultValue("0") @QueryParam("wait") final int wait,
+			@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @Suspended AsyncResponse asyncResponse) {
 
 		try {
 			log.info(Color.CYAN + "Call jobs referential = " + referential + ", action = " + StringUtils.join(action,',')+", status = " + StringUtils.join(status,',') + ", version = "
-					+ version + Color.NORMAL);
-
-			// create jobs listing
-			List<JobInfo> result = new ArrayList<>();
-
-			// re factor Parameters dependencies
-			{
-				List<JobService> jobServices = jobServiceManager.jobs(referential, action, version,status);
-				for (JobService jobService : jobServices) {
-					JobInfo jobInfo = new JobInfo(jobService, true, uriInfo);
-					result.add(jobInfo);
-				}
-				jobServices.clear();
+					+ version + ", wait = " + wait + Color.NORMAL);
+
+			// conditional request
+			JobListingPoll poll = new JobListingPoll(jobServiceManager, referential, version, action, status,
+					ifNoneMatch, Math.min(wait, MAX_WAIT), uriInfo.getBaseUri());
+			Response response = poll.check();
+			if (response != null) {
+				asyncResponse.resume(response);
+			} else {
+				// waits for a job change without holding this thread
+				poll.suspend(asyncResponse, executor);
 			}
-			// cache control
-			ResponseBuilder builder = Response.ok(result);
-			builder.header(api_version_key, api_version);
-			// CacheControl cc = new CacheControl();
-			// cc.setMaxAge(-1);
-			// builder.cacheControl(cc);
-
-			return builder.build();
 		} catch (RequestServiceException ex) {
 			log.info("RequestCode = " + ex.getRequestCode() + ", Message = " + ex.getMessage(),ex);
-			throw toWebApplicationException(ex);
+			asyncResponse.resume(toWebApplicationException(ex));
 		} catch (ServiceException e) {
 			log.error("Code = " + e.getCode() + ", Message = " + e.getMessage());
-			throw toWebApplicationException(e);
+			asyncResponse.resume(toWebApplicationException(e));
 		} catch (Exception ex) {
 			log.error(ex.getMessage(), ex);
-			throw new WebApplicationException("INTERNAL_ERROR", Status.INTERNAL_SERVER_ERROR);
+			asyncResponse.resume(new WebApplicationException("INTERNAL_ERROR", Status.INTERNAL_SERVER_ERROR));
 		}
 	}
 
@@ -347,6 +352,61 @@ public class RestService implements Constant {
 		}
 	}
 
+	// resume failed import from its checkpoint
+	@POST
+	@Path("/{ref}/jobs/{id}/resume")
+	@Produces({ MediaType.APPLICATION_JSON })
+	public Response resume(@PathParam("ref") String referential, @PathParam("id") Long id, String dummy) {
+		try {
+			log.info(Color.CYAN + "Call resume referential = " + referential + ", id = " + id + Color.NORMAL);
+
+			JobService jobService = jobServiceManager.resume(referential, id);
+			ResponseBuilder builder = Response.accepted();
+			builder.location(URI.create(MessageFormat.format("{0}/{1}/scheduled_jobs/{2,number,#}", ROOT_PATH,
+					jobService.getReferential(), jobService.getId())));
+			builder.header(api_version_key, api_version);
+			return builder.build();
+
+		} catch (RequestServiceException ex) {
+			log.info("RequestCode = " + ex.getRequestCode() + ", Message = " + ex.getMessage());
+			throw toWebApplicationException(ex);
+		} catch (ServiceException e) {
+			log.error("Code = " + e.getCode() + ", Message = " + e.getMessage());
+			throw toWebApplicationException(e);
+		} catch (Exception ex) {
+			log.error(ex.getMessage(), ex);
+			throw new WebApplicationException("INTERNAL_ERROR", Status.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	// view job performance metrics, live while running
+	@GET
+	@Path("/{ref}/jobs/{id}/metrics")
+	@Produces({ MediaType.APPLICATION_JSON })
+	public Response metrics(@PathParam("ref") String referential, @PathParam("id") Long id) {
+		try {
+			log.info(Color.CYAN + "Call metrics referential = " + referential + ", id = " + id + Color.NORMAL);
+
+			String metrics = jobServiceManager.metrics(referential, id);
+			ResponseBuilder builder = Response.ok(metrics, MediaType.APPLICATION_JSON_TYPE);
+			CacheControl cc = new CacheControl();
+			cc.setNoCache(true);
+			builder.cacheControl(cc);
+			builder.header(api_version_key, api_version);
+			return builder.build();
+
+		} catch (RequestServiceException ex) {
+			log.info("RequestCode = " + ex.getRequestCode() + ", Message = " + ex.getMessage());
+			throw toWebApplicationException(ex);
+		} catch (ServiceException e) {
+			log.error("Code = " + e.getCode() + ", Message = " + e.getMessage());
+			throw toWebApplicationException(e);
+		} catch (Exception ex) {
+			log.error(ex.getMessage(), ex);
+			throw new WebApplicationException("INTERNAL_ERROR", Status.INTERNAL_SERVER_ERROR);
+		}
+	}
+
 	// cancel job
 	@DELETE
 	@Path("/{ref}/scheduled_jobs/{id}")
@@ -492,18 +552,5 @@ public class RestService implements Constant {
 		}
 	}
 
-	private String getFilename(String header) {
-		String result = null;
-
-		if (header != null) {
-			for (String token : header.split(";")) {
-				if (token.trim().startsWith("filename")) {
-					result = token.substring(token.indexOf('=') + 1).trim().replace("\"", "");
-					break;
-				}
-			}
-		}
-		return result;
-	}
 
 }
@@ -0,0 +1,89 @@
+package mobi.chouette.ws;
+
+import java.util.Date;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response.Status;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ByteRangeTest {
+
+	private static final long SIZE = 1000;
+
+	private static final EntityTag TAG = new EntityTag("5d41402abc4b2a76b9719d911017c592");
+
+	// Sun, 18 Oct 2015 00:00:00 GMT
+	private static final Date LAST_MODIFIED = new Date(1445126400000L);
+
+	private ByteRange of(String range) {
+		return ByteRange.of(range, null, TAG, LAST_MODIFIED, SIZE);
+	}
+
+	private void assertRange(ByteRange range, long offset, long length, String contentRange) {
+		Assert.assertEquals(range.getStatus(), Status.PARTIAL_CONTENT);
+		Assert.assertEquals(range.getOffset(), offset, "offset");
+		Assert.assertEquals(range.getLength(), length, "length");
+		Assert.assertEquals(range.getContentRange(), contentRange);
+	}
+
+	private void assertWhole(ByteRange range) {
+		Assert.assertEquals(range.getStatus(), Status.OK);
+		Assert.assertEquals(range.getOffset(), 0);
+		Assert.assertEquals(range.getLength(), SIZE);
+		Assert.assertNull(range.getContentRange());
+	}
+
+	@Test(groups = { "ByteRange" }, description = "bounded range")
+	public void bounded() {
+		assertRange(of("bytes=0-99"), 0, 100, "bytes 0-99/1000");
+		assertRange(of("bytes=500-2000"), 500, 500, "bytes 500-999/1000");
+	}
+
+	@Test(groups = { "ByteRange" }, description = "suffix range")
+	public void suffix() {
+		assertRange(of("bytes=-100"), 900, 100, "bytes 900-999/1000");
+		assertRange(of("bytes=-5000"), 0, SIZE, "bytes 0-999/1000");
+	}
+
+	@Test(groups = { "ByteRange" }, description = "open-ended range")
+	public void openEnded() {
+		assertRange(of("bytes=100-"), 100, 900, "bytes 100-999/1000");
+		assertRange(of("bytes=999-"), 999, 1, "bytes 999-999/1000");
+	}
+
+	@Test(groups = { "ByteRange" }, description = "multiple or invalid ranges send whole file")
+	public void whole() {
+		assertWhole(of(null));
+		assertWhole(of("bytes=0-9,20-29"));
+		assertWhole(of("items=0-9"));
+		assertWhole(of("bytes=abc"));
+		assertWhole(of("bytes=a-9"));
+		assertWhole(of("bytes=50-10"));
+	}
+
+	@Test(groups = { "ByteRange" }, description = "unsatisfiable ranges")
+	public void unsatisfiable() {
+		for (String value : new String[] { "bytes=1000-", "bytes=2000-3000", "bytes=-0" }) {
+			ByteRange range = of(value);
+			Assert.assertEquals(range.getStatus(), Status.REQUESTED_RANGE_NOT_SATISFIABLE, value);
+			Assert.assertEquals(range.getContentRange(), "bytes */1000", value);
+		}
+	}
+
+	@Test(groups = { "ByteRange" }, description = "If-Range validators")
+	public void ifRange() {
+		String tag = "\"" + TAG.getValue() + "\"";
+		assertRange(ByteRange.of("bytes=0-9", tag, TAG, LAST_MODIFIED, SIZE), 0, 10, "bytes 0-9/1000");
+		assertRange(ByteRange.of("bytes=0-9", "Sun, 18 Oct 2015 00:00:00 GMT", TAG, LAST_MODIFIED, SIZE), 0, 10,
+				"bytes 0-9/1000");
+
+		// mismatch sends whole file
+		assertWhole(ByteRange.of("bytes=0-9", "\"other\"", TAG, LAST_MODIFIED, SIZE));
+		assertWhole(ByteRange.of("bytes=0-9", "W/" + tag, TAG, LAST_MODIFIED, SIZE));
+		assertWhole(ByteRange.of("bytes=0-9", tag, null, LAST_MODIFIED, SIZE));
+		assertWhole(ByteRange.of("bytes=0-9", "Sun, 18 Oct 2015 00:00:01 GMT", TAG, LAST_MODIFIED, SIZE));
+		assertWhole(ByteRange.of("bytes=0-9", "yesterday", TAG, LAST_MODIFIED, SIZE));
+	}
+}
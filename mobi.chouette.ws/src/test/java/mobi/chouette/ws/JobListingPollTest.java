@@ -0,0 +1,92 @@
+package mobi.chouette.ws;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import mobi.chouette.model.iev.Job;
+import mobi.chouette.service.JobService;
+import mobi.chouette.service.JobServiceManager;
+import mobi.chouette.service.ServiceException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class JobListingPollTest {
+
+	private static final String VERSION = "3-1445212800000";
+
+	private static final URI BASE_URI = URI.create("http://localhost/chouette_iev/");
+
+	private static class FixedJobServiceManager extends JobServiceManager {
+		private int listings = 0;
+
+		@Override
+		public String jobsVersion(String referential) throws ServiceException {
+			return VERSION;
+		}
+
+		@Override
+		public List<JobService> jobs(String referential, String[] action, Long version, Job.STATUS[] status)
+				throws ServiceException {
+			listings++;
+			return new ArrayList<>();
+		}
+	}
+
+	private JobListingPoll poll(FixedJobServiceManager manager, String ifNoneMatch) {
+		return new JobListingPoll(manager, "test", 0L, new String[0], new Job.STATUS[0], ifNoneMatch, 0, BASE_URI);
+	}
+
+	@Test(groups = { "JobListing" }, description = "matching version returns 304")
+	public void notModified() throws Exception {
+		FixedJobServiceManager manager = new FixedJobServiceManager();
+		EntityTag tag = JobListingPoll.tag(VERSION, 0L, new String[0], new Job.STATUS[0]);
+
+		Response response = poll(manager, "\"" + tag.getValue() + "\"").check();
+		Assert.assertEquals(response.getStatus(), Status.NOT_MODIFIED.getStatusCode());
+		Assert.assertEquals(manager.listings, 0, "jobs not listed");
+	}
+
+	@Test(groups = { "JobListing" }, description = "other version returns listing")
+	public void modified() throws Exception {
+		FixedJobServiceManager manager = new FixedJobServiceManager();
+
+		Response response = poll(manager, "\"2-1445212700000-0-0\"").check();
+		Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
+		Assert.assertEquals(manager.listings, 1, "jobs listed");
+
+		response = poll(manager, null).check();
+		Assert.assertEquals(response.getStatus(), Status.OK.getStatusCode());
+		Assert.assertEquals(manager.listings, 2, "jobs listed");
+	}
+
+	@Test(groups = { "JobListing" }, description = "waiting poll is not answered before deadline")
+	public void waiting() throws Exception {
+		FixedJobServiceManager manager = new FixedJobServiceManager();
+		EntityTag tag = JobListingPoll.tag(VERSION, 0L, new String[0], new Job.STATUS[0]);
+
+		JobListingPoll poll = new JobListingPoll(manager, "test", 0L, new String[0], new Job.STATUS[0], "\""
+				+ tag.getValue() + "\"", 60, BASE_URI);
+		Assert.assertNull(poll.check(), "request suspended");
+	}
+
+	@Test(groups = { "JobListing" }, description = "If-None-Match parsing")
+	public void matches() {
+		EntityTag tag = new EntityTag("3-100-0-1f");
+		Assert.assertTrue(JobListingPoll.matches("\"3-100-0-1f\"", tag));
+		Assert.assertTrue(JobListingPoll.matches("W/\"3-100-0-1f\"", tag));
+		Assert.assertTrue(JobListingPoll.matches("\"2-90-0-1f\", \"3-100-0-1f\"", tag));
+		Assert.assertTrue(JobListingPoll.matches("*", tag));
+		Assert.assertFalse(JobListingPoll.matches("\"2-90-0-1f\"", tag));
+		Assert.assertFalse(JobListingPoll.matches(null, tag));
+
+		// filter parameters are part of the tag
+		Assert.assertNotEquals(JobListingPoll.tag("3-100", 0L, new String[0], new Job.STATUS[0]),
+				JobListingPoll.tag("3-100", 0L, new String[] { "importer" }, new Job.STATUS[0]));
+	}
+}
@@ -599,7 +599,8 @@ CREATE TABLE lines (
     url character varying(255),
     color character varying(6),
     text_color character varying(6),
-    stable_id character varying(255)
+    stable_id character varying(255),
+    content_hash character varying(32)
 );
 
 